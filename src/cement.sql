@@ -125,6 +125,15 @@ CREATE INDEX idx_cement_plant_geodata_plant ON cement_plant_geodata (plant_id);
 CREATE INDEX idx_cement_plant_geodata_file ON cement_plant_geodata (file_id);
 CREATE INDEX idx_cement_plant_geodata_identification ON cement_plant_geodata (identification_id);
 
+-- 瓦片数据表（按内容哈希去重，内容相同的瓦片只保存一份）
+CREATE TABLE geospatial_tile_blobs (
+    content_hash VARCHAR(64) PRIMARY KEY,
+    tile_data BYTEA NOT NULL,
+    data_size INTEGER,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+COMMENT ON TABLE geospatial_tile_blobs IS '瓦片数据表（按内容SHA-256去重）';
+
 -- 8. 地理数据瓦片表 (geospatial_tiles)
 CREATE TABLE geospatial_tiles (
     tile_id BIGSERIAL PRIMARY KEY,
@@ -135,13 +144,70 @@ CREATE TABLE geospatial_tiles (
     tile_data BYTEA,
     tile_size INTEGER DEFAULT 256,
     format VARCHAR(10) DEFAULT 'PNG',
+    content_hash VARCHAR(64) REFERENCES geospatial_tile_blobs(content_hash),  -- 瓦片内容SHA-256，用作HTTP ETag
+    render_generation BIGINT,            -- 整体重新生成的批次号，增量写入和按需渲染的瓦片为NULL
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     UNIQUE(file_id, zoom_level, tile_x, tile_y)
 );
 COMMENT ON TABLE geospatial_tiles IS '地理数据瓦片表';
+COMMENT ON COLUMN geospatial_tiles.tile_data IS '历史瓦片数据，新瓦片数据保存在 geospatial_tile_blobs';
+COMMENT ON COLUMN geospatial_tiles.content_hash IS '瓦片内容SHA-256（十六进制），写入瓦片时计算';
+COMMENT ON COLUMN geospatial_tiles.render_generation IS '整体重新生成的批次号，完成时删除其他批次的瓦片';
+
+-- 瓦片批次号序列
+CREATE SEQUENCE geospatial_tile_generation_seq;
 
 -- 索引
 CREATE INDEX idx_geospatial_tiles_file_zoom ON geospatial_tiles (file_id, zoom_level);
+-- 清理瓦片数据时按哈希查找引用
+CREATE INDEX idx_geospatial_tiles_content_hash ON geospatial_tiles (content_hash);
+
+-- 瓦片源影像清单表（重新处理文件时按条带/分块校验值比较，只重新生成变化区域的瓦片）
+CREATE TABLE geospatial_tile_manifests (
+    file_id BIGINT PRIMARY KEY REFERENCES geospatial_files(file_id) ON DELETE CASCADE,
+    layout TEXT NOT NULL,
+    chunk_count INTEGER NOT NULL,
+    chunk_checksums BYTEA NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+COMMENT ON TABLE geospatial_tile_manifests IS '瓦片源影像清单表';
+COMMENT ON COLUMN geospatial_tile_manifests.chunk_checksums IS '各条带/分块原始字节的CRC32，每个4字节大端';
+
+-- 栅格波段统计表（上传处理时单次遍历影像计算）
+CREATE TABLE geospatial_file_stats (
+    file_id BIGINT NOT NULL REFERENCES geospatial_files(file_id) ON DELETE CASCADE,
+    band_index INTEGER NOT NULL,
+    valid_count BIGINT,
+    no_data_count BIGINT,
+    min_value DOUBLE PRECISION,
+    max_value DOUBLE PRECISION,
+    mean_value DOUBLE PRECISION,
+    std_dev DOUBLE PRECISION,
+    histogram_min DOUBLE PRECISION,
+    histogram_max DOUBLE PRECISION,
+    histogram BIGINT[],
+    computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (file_id, band_index)
+);
+COMMENT ON TABLE geospatial_file_stats IS '栅格波段统计表';
+COMMENT ON COLUMN geospatial_file_stats.histogram IS '直方图各分箱计数，[histogram_min, histogram_max] 均分';
+
+-- 水泥厂周边区域统计表（以水泥厂为中心、指定半径内的影像像素统计）
+CREATE TABLE cement_plant_zonal_stats (
+    plant_id BIGINT NOT NULL REFERENCES cement_plants(plant_id) ON DELETE CASCADE,
+    file_id BIGINT NOT NULL REFERENCES geospatial_files(file_id) ON DELETE CASCADE,
+    data_type VARCHAR(50),
+    radius_meters DOUBLE PRECISION NOT NULL,
+    pixel_count BIGINT,
+    no_data_count BIGINT,
+    mean_value DOUBLE PRECISION,
+    min_value DOUBLE PRECISION,
+    max_value DOUBLE PRECISION,
+    computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (plant_id, file_id)
+);
+COMMENT ON TABLE cement_plant_zonal_stats IS '水泥厂周边区域影像统计表';
+CREATE INDEX idx_cement_plant_zonal_stats_file ON cement_plant_zonal_stats (file_id);
 
 -- 9. 视图：水泥厂完整信息
 CREATE VIEW cement_plant_full_info AS
@@ -170,4 +236,76 @@ FROM cement_plants cp
 LEFT JOIN cement_plant_geodata cpg ON cp.plant_id = cpg.plant_id
 LEFT JOIN geospatial_files gf ON cpg.file_id = gf.file_id;
 
-COMMENT ON VIEW cement_plant_full_info IS '水泥厂完整信息视图，包含地理数据信息';
\ No newline at end of file
+COMMENT ON VIEW cement_plant_full_info IS '水泥厂完整信息视图，包含地理数据信息';
+
+-- ==================== 升级脚本（已有数据库执行） ====================
+ALTER TABLE geospatial_tiles ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+-- 瓦片数据去重：迁移已有瓦片数据到 geospatial_tile_blobs
+CREATE TABLE IF NOT EXISTS geospatial_tile_blobs (
+    content_hash VARCHAR(64) PRIMARY KEY,
+    tile_data BYTEA NOT NULL,
+    data_size INTEGER,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+UPDATE geospatial_tiles SET content_hash = encode(sha256(tile_data), 'hex')
+WHERE content_hash IS NULL AND tile_data IS NOT NULL;
+INSERT INTO geospatial_tile_blobs (content_hash, tile_data, data_size)
+SELECT DISTINCT ON (content_hash) content_hash, tile_data, length(tile_data)
+FROM geospatial_tiles WHERE tile_data IS NOT NULL
+ON CONFLICT (content_hash) DO NOTHING;
+UPDATE geospatial_tiles SET tile_data = NULL WHERE tile_data IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_geospatial_tiles_content_hash ON geospatial_tiles (content_hash);
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'geospatial_tiles_content_hash_fkey') THEN
+        ALTER TABLE geospatial_tiles ADD CONSTRAINT geospatial_tiles_content_hash_fkey
+            FOREIGN KEY (content_hash) REFERENCES geospatial_tile_blobs(content_hash);
+    END IF;
+END $$;
+
+-- 瓦片批次号（整体重新生成完成时删除其他批次的瓦片）
+ALTER TABLE geospatial_tiles ADD COLUMN IF NOT EXISTS render_generation BIGINT;
+CREATE SEQUENCE IF NOT EXISTS geospatial_tile_generation_seq;
+
+-- 瓦片源影像清单
+CREATE TABLE IF NOT EXISTS geospatial_tile_manifests (
+    file_id BIGINT PRIMARY KEY REFERENCES geospatial_files(file_id) ON DELETE CASCADE,
+    layout TEXT NOT NULL,
+    chunk_count INTEGER NOT NULL,
+    chunk_checksums BYTEA NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 栅格波段统计
+CREATE TABLE IF NOT EXISTS geospatial_file_stats (
+    file_id BIGINT NOT NULL REFERENCES geospatial_files(file_id) ON DELETE CASCADE,
+    band_index INTEGER NOT NULL,
+    valid_count BIGINT,
+    no_data_count BIGINT,
+    min_value DOUBLE PRECISION,
+    max_value DOUBLE PRECISION,
+    mean_value DOUBLE PRECISION,
+    std_dev DOUBLE PRECISION,
+    histogram_min DOUBLE PRECISION,
+    histogram_max DOUBLE PRECISION,
+    histogram BIGINT[],
+    computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (file_id, band_index)
+);
+
+-- 水泥厂周边区域统计
+CREATE TABLE IF NOT EXISTS cement_plant_zonal_stats (
+    plant_id BIGINT NOT NULL REFERENCES cement_plants(plant_id) ON DELETE CASCADE,
+    file_id BIGINT NOT NULL REFERENCES geospatial_files(file_id) ON DELETE CASCADE,
+    data_type VARCHAR(50),
+    radius_meters DOUBLE PRECISION NOT NULL,
+    pixel_count BIGINT,
+    no_data_count BIGINT,
+    mean_value DOUBLE PRECISION,
+    min_value DOUBLE PRECISION,
+    max_value DOUBLE PRECISION,
+    computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (plant_id, file_id)
+);
+CREATE INDEX IF NOT EXISTS idx_cement_plant_zonal_stats_file ON cement_plant_zonal_stats (file_id);
@@ -6,6 +6,8 @@ import com.lyz.pojo.CementPlantDataDTO;
 import com.lyz.pojo.PageBean;
 import com.lyz.pojo.Result;
 import com.lyz.service.CementPlantService;
+import com.lyz.service.impl.PointClusterService;
+import com.lyz.utils.PointClusterIndex;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -15,6 +17,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 水泥厂管理控制器
@@ -28,6 +31,9 @@ public class CementPlantController {
     @Autowired
     private CementPlantService cementPlantService;
     
+    @Autowired
+    private PointClusterService pointClusterService;
+    
     // ==================== 水泥厂基本信息管理 ====================
     
     @GetMapping("/{plantId}")
@@ -47,6 +53,15 @@ public class CementPlantController {
         return Result.success(plants);
     }
     
+    @GetMapping("/cluster")
+    @Operation(summary = "水泥厂点聚合", description = "按缩放级别返回范围内的水泥厂聚合（聚合或单个水泥厂）")
+    public Result<List<PointClusterIndex.Cluster>> clusterPlants(
+            @RequestParam Double minLng, @RequestParam Double minLat,
+            @RequestParam Double maxLng, @RequestParam Double maxLat,
+            @RequestParam Integer zoom) {
+        return getClusters(PointClusterService.LAYER_PLANTS, minLng, minLat, maxLng, maxLat, zoom);
+    }
+    
     @GetMapping("/page")
     @Operation(summary = "分页查询水泥厂", description = "分页查询水泥厂列表")
     public Result<PageBean<CementPlant>> pagePlants(
@@ -127,6 +142,30 @@ public class CementPlantController {
         return Result.success(identifications);
     }
     
+    @GetMapping("/identification/cluster")
+    @Operation(summary = "识别记录点聚合", description = "按缩放级别返回范围内的识别记录聚合（聚合或单条识别记录）")
+    public Result<List<PointClusterIndex.Cluster>> clusterIdentifications(
+            @RequestParam Double minLng, @RequestParam Double minLat,
+            @RequestParam Double maxLng, @RequestParam Double maxLat,
+            @RequestParam Integer zoom) {
+        return getClusters(PointClusterService.LAYER_IDENTIFICATIONS, minLng, minLat, maxLng, maxLat, zoom);
+    }
+    
+    @GetMapping("/cluster/stats")
+    @Operation(summary = "点聚合索引统计", description = "查看各图层聚合索引的点数、待合并点数和是否待重建")
+    public Result<Map<String, Object>> getClusterStats() {
+        return Result.success(pointClusterService.getStats());
+    }
+    
+    private Result<List<PointClusterIndex.Cluster>> getClusters(String layer, Double minLng, Double minLat,
+                                                                Double maxLng, Double maxLat, Integer zoom) {
+        try {
+            return Result.success(pointClusterService.getClusters(layer, minLng, minLat, maxLng, maxLat, zoom));
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        }
+    }
+    
     @GetMapping("/identification/page")
     @Operation(summary = "分页查询识别记录", description = "分页查询识别记录列表")
     public Result<PageBean<CementPlantIdentification>> pageIdentifications(
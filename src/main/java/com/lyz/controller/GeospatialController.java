@@ -1,26 +1,55 @@
 package com.lyz.controller;
 
 import com.lyz.pojo.Result;
+import com.lyz.service.TileCacheService;
+import com.lyz.service.impl.BandMathService;
+import com.lyz.service.impl.CogService;
+import com.lyz.service.impl.RasterStatsService;
+import com.lyz.service.impl.MosaicTileService;
+import com.lyz.service.impl.MvtTileService;
+import com.lyz.service.impl.PointSampleService;
+import com.lyz.service.impl.TemporalCompositeService;
+import com.lyz.service.impl.TileEncoder;
+import com.lyz.service.impl.TilePrefetchService;
 import com.lyz.service.impl.TifProcessingService;
+import com.lyz.service.impl.ZonalStatsService;
 import com.lyz.mapper.GeospatialMapper;
 import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.RasterBandStats;
+import com.lyz.pojo.TileRenderStats;
+import com.lyz.pojo.ZonalStats;
+import com.lyz.pojo.PointSample;
+import com.lyz.pojo.TileKey;
+import com.lyz.utils.Sha256Util;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,9 +67,54 @@ public class GeospatialController {
     @Autowired
     private GeospatialMapper geospatialMapper;
     
+    @Autowired
+    private TileCacheService tileCacheService;
+    
+    @Autowired
+    private BandMathService bandMathService;
+    
+    @Autowired
+    private RasterStatsService rasterStatsService;
+    
+    @Autowired
+    private ZonalStatsService zonalStatsService;
+    
+    @Autowired
+    private PointSampleService pointSampleService;
+    
+    @Autowired
+    private MosaicTileService mosaicTileService;
+    
+    @Autowired
+    private TemporalCompositeService temporalCompositeService;
+    
+    @Autowired
+    private TileEncoder tileEncoder;
+    
+    @Autowired
+    private CogService cogService;
+    
+    @Autowired
+    private TilePrefetchService tilePrefetchService;
+    
+    @Autowired
+    private MvtTileService mvtTileService;
+    
+    // 单次批量获取的最大瓦片数
+    @Value("${tile.batch.max-fetch-tiles:256}")
+    private int maxBatchTiles;
+    
+    // 瓦片最细级别上限
+    @Value("${tile.render.max-zoom:20}")
+    private int maxTileZoom;
+    
     // 文件上传目录
     private static final String UPLOAD_DIR = "D:/tif-files/";
     
+    // 空瓦片只需生成一次，内容固定，ETag也固定
+    private static final byte[] EMPTY_TILE = generateEmptyTile();
+    private static final String EMPTY_TILE_ETAG = "\"" + Sha256Util.getSha256String(EMPTY_TILE) + "\"";
+    
     @PostMapping("/upload-tif")
     @Operation(summary = "上传TIF文件", description = "上传TIF文件并开始处理")
     public Result<Map<String, Object>> uploadTifFile(
@@ -93,41 +167,73 @@ public class GeospatialController {
     }
     
     @GetMapping("/tile/{fileId}/{z}/{x}/{y}")
-    @Operation(summary = "获取瓦片数据", description = "根据文件ID和瓦片坐标获取瓦片数据")
+    @Operation(summary = "获取瓦片数据", description = "根据文件ID和瓦片坐标获取瓦片数据，支持ETag/If-None-Match与If-Modified-Since条件请求")
     public ResponseEntity<byte[]> getTile(
             @PathVariable Long fileId,
             @PathVariable Integer z,
             @PathVariable Integer x,
-            @PathVariable Integer y) {
+            @PathVariable Integer y,
+            WebRequest webRequest) {
         
+        if (!isValidTile(z, x, y)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
         try {
-            // 检查文件是否存在
-            GeospatialFile file = geospatialMapper.findFileById(fileId);
-            if (file == null) {
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-            }
+            // 记录访问热度，后台预取相邻瓦片
+            tilePrefetchService.recordAccess(fileId, z, x, y);
             
-            // 获取瓦片数据
-            byte[] tileData = tifProcessingService.getTileData(fileId, z, x, y);
+            // 先查内存缓存，命中时无需访问数据库
+            GeospatialTile tile = tileCacheService.getTile(fileId, z, x, y);
             
-            if (tileData != null && tileData.length > 0) {
+            if (tile == null) {
+                // 检查文件是否存在
+                GeospatialFile file = geospatialMapper.findFileById(fileId);
+                if (file == null) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                
+                // 获取瓦片数据（按需渲染模式下缺失瓦片现场生成）并放入缓存
+                tile = tifProcessingService.getTile(file, z, x, y);
+                tileCacheService.putTile(fileId, z, x, y, tile);
+            }
+            
+            if (tile != null) {
+                String eTag = "\"" + tile.getContentHash() + "\"";
+                long lastModified = tile.getCreatedAt() != null
+                        ? tile.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                        : -1;
+                
+                // 客户端缓存仍然有效，返回304且不带响应体
+                if (webRequest.checkNotModified(eTag, lastModified)) {
+                    return notModified(eTag, "public, max-age=3600");
+                }
+                
+                byte[] tileData = tile.getTileData();
                 HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.IMAGE_PNG);
+                headers.setContentType(tileMediaType(tileData));
                 headers.setContentLength(tileData.length);
-                headers.setCacheControl("public, max-age=3600"); // 缓存1小时
+                headers.setCacheControl("public, max-age=3600"); // 缓存1小时，过期后凭ETag重新验证
+                headers.setETag(eTag);
+                if (lastModified > 0) {
+                    headers.setLastModified(lastModified);
+                }
                 headers.set("Access-Control-Allow-Origin", "*"); // 允许跨域
                 
                 return new ResponseEntity<>(tileData, headers, HttpStatus.OK);
             } else {
-                // 生成空瓦片
-                byte[] emptyTile = generateEmptyTile();
+                // 返回空瓦片
+                if (webRequest.checkNotModified(EMPTY_TILE_ETAG)) {
+                    return notModified(EMPTY_TILE_ETAG, "public, max-age=300");
+                }
+                
                 HttpHeaders headers = new HttpHeaders();
                 headers.setContentType(MediaType.IMAGE_PNG);
-                headers.setContentLength(emptyTile.length);
+                headers.setContentLength(EMPTY_TILE.length);
                 headers.setCacheControl("public, max-age=300"); // 缓存5分钟
+                headers.setETag(EMPTY_TILE_ETAG);
                 headers.set("Access-Control-Allow-Origin", "*");
                 
-                return new ResponseEntity<>(emptyTile, headers, HttpStatus.OK);
+                return new ResponseEntity<>(EMPTY_TILE, headers, HttpStatus.OK);
             }
             
         } catch (Exception e) {
@@ -136,10 +242,144 @@ public class GeospatialController {
         }
     }
     
+    @PostMapping("/tiles/{fileId}")
+    @Operation(summary = "批量获取瓦片", description = "一次获取同一文件的多个瓦片（请求体为 [[z,x,y], ...]），" +
+            "只做一次登录校验和文件查询，已生成的瓦片一次查询取回。响应为二进制信封（大端序）：" +
+            "瓦片数(int32)，随后每个瓦片依次为 z、x、y、数据长度(int32) 和数据，长度为0表示该瓦片不存在；" +
+            "坐标超出范围（级别超过上限或x/y不在[0, 2^z)内）时整个请求返回400")
+    public ResponseEntity<StreamingResponseBody> getTiles(
+            @PathVariable Long fileId,
+            @RequestBody java.util.List<int[]> coordinates) {
+        
+        if (coordinates == null || coordinates.isEmpty() || coordinates.size() > maxBatchTiles) {
+            return ResponseEntity.badRequest().build();
+        }
+        java.util.List<TileKey> keys = new java.util.ArrayList<>(coordinates.size());
+        for (int[] c : coordinates) {
+            if (c == null || c.length != 3 || !isValidTile(c[0], c[1], c[2])) {
+                return ResponseEntity.badRequest().build();
+            }
+            keys.add(new TileKey(fileId, c[0], c[1], c[2]));
+        }
+        
+        GeospatialFile file = geospatialMapper.findFileById(fileId);
+        if (file == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        
+        // 先查内存缓存，未命中的瓦片一次取回（按需渲染模式下缺失瓦片现场生成）后放入缓存
+        GeospatialTile[] tiles = new GeospatialTile[keys.size()];
+        java.util.List<Integer> misses = new java.util.ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            TileKey key = keys.get(i);
+            tiles[i] = tileCacheService.getTile(fileId, key.z(), key.x(), key.y());
+            if (tiles[i] == null) {
+                misses.add(i);
+            }
+        }
+        if (!misses.isEmpty()) {
+            java.util.List<GeospatialTile> loaded = tifProcessingService.getTiles(file,
+                    misses.stream().map(keys::get).toList());
+            for (int m = 0; m < misses.size(); m++) {
+                TileKey key = keys.get(misses.get(m));
+                tiles[misses.get(m)] = loaded.get(m);
+                tileCacheService.putTile(fileId, key.z(), key.x(), key.y(), loaded.get(m));
+            }
+        }
+        
+        for (TileKey key : keys) {
+            tilePrefetchService.recordAccess(fileId, key.z(), key.x(), key.y());
+        }
+        
+        StreamingResponseBody body = outputStream -> {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+            out.writeInt(tiles.length);
+            for (int i = 0; i < tiles.length; i++) {
+                TileKey key = keys.get(i);
+                byte[] data = tiles[i] != null ? tiles[i].getTileData() : null;
+                out.writeInt(key.z());
+                out.writeInt(key.x());
+                out.writeInt(key.y());
+                out.writeInt(data != null ? data.length : 0);
+                if (data != null) {
+                    out.write(data);
+                }
+            }
+            out.flush();
+        };
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setCacheControl("no-store");
+        headers.set("X-Tile-Count", String.valueOf(tiles.length));
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Expose-Headers", "X-Tile-Count");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    @GetMapping("/mosaic/{dataType}/{z}/{x}/{y}")
+    @Operation(summary = "获取镶嵌瓦片", description = "将关联了同一数据类型的所有影像作为无缝图层实时合成瓦片，priority为newest（最新影像优先）或max（第一波段最大值）")
+    public ResponseEntity<byte[]> getMosaicTile(
+            @PathVariable String dataType,
+            @PathVariable Integer z,
+            @PathVariable Integer x,
+            @PathVariable Integer y,
+            @RequestParam(value = "priority", defaultValue = "newest") String priority,
+            WebRequest webRequest) {
+        try {
+            GeospatialTile tile = mosaicTileService.getTile(dataType, priority, z, x, y);
+            byte[] tileData = tile != null ? tile.getTileData() : EMPTY_TILE;
+            String eTag = tile != null ? "\"" + tile.getContentHash() + "\"" : EMPTY_TILE_ETAG;
+            // 镶嵌结果随新影像加入而变化，缓存时间比单文件瓦片短
+            String cacheControl = "public, max-age=300";
+            if (webRequest.checkNotModified(eTag)) {
+                return notModified(eTag, cacheControl);
+            }
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(tileMediaType(tileData));
+            headers.setContentLength(tileData.length);
+            headers.setCacheControl(cacheControl);
+            headers.setETag(eTag);
+            headers.set("Access-Control-Allow-Origin", "*");
+            return new ResponseEntity<>(tileData, headers, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("获取镶嵌瓦片失败: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    /**
+     * 瓦片坐标是否在范围内：级别不超过上限，x/y 在 [0, 2^z) 内
+     */
+    private boolean isValidTile(int z, int x, int y) {
+        return z >= 0 && z <= maxTileZoom && x >= 0 && y >= 0 && x < 1L << z && y < 1L << z;
+    }
+    
+    /**
+     * 瓦片内容类型（按图层配置可能是PNG或JPEG）
+     */
+    private static MediaType tileMediaType(byte[] tileData) {
+        return "JPEG".equals(TileEncoder.formatOf(tileData)) ? MediaType.IMAGE_JPEG : MediaType.IMAGE_PNG;
+    }
+    
+    /**
+     * 构造304响应
+     */
+    private <T> ResponseEntity<T> notModified(String eTag, String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        headers.setCacheControl(cacheControl);
+        headers.set("Access-Control-Allow-Origin", "*");
+        return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+    }
+    
     /**
      * 生成空瓦片
      */
-    private byte[] generateEmptyTile() {
+    private static byte[] generateEmptyTile() {
         try {
             BufferedImage emptyImage = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -158,6 +398,72 @@ public class GeospatialController {
         }
     }
     
+    @GetMapping("/mvt/{layer}/{z}/{x}/{y}")
+    @Operation(summary = "获取矢量瓦片", description = "获取水泥厂（plants）或识别记录（identifications）点图层的Mapbox矢量瓦片，" +
+            "要素属性包含状态、最近NDVI等；数据变化后瓦片缓存自动失效，支持ETag条件请求")
+    public ResponseEntity<byte[]> getVectorTile(
+            @PathVariable String layer,
+            @PathVariable Integer z,
+            @PathVariable Integer x,
+            @PathVariable Integer y,
+            WebRequest webRequest) {
+        try {
+            byte[] tile = mvtTileService.getTile(layer, z, x, y);
+            // 按瓦片内容生成ETag：服务重启或多实例部署时，内容不变的瓦片ETag也不变
+            String eTag = "\"" + Sha256Util.getSha256String(tile) + "\"";
+            if (webRequest.checkNotModified(eTag)) {
+                return notModified(eTag, "public, max-age=60");
+            }
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/vnd.mapbox-vector-tile"));
+            headers.setContentLength(tile.length);
+            headers.setCacheControl("public, max-age=60"); // 数据会被编辑，缓存1分钟后凭ETag重新验证
+            headers.setETag(eTag);
+            headers.set("Access-Control-Allow-Origin", "*");
+            return new ResponseEntity<>(tile, headers, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            System.err.println("获取矢量瓦片失败: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    @GetMapping("/mvt/stats")
+    @Operation(summary = "获取矢量瓦片缓存统计", description = "获取数据版本、缓存命中率和占用字节数")
+    public Result<Map<String, Object>> getVectorTileStats() {
+        return Result.success(mvtTileService.getStats());
+    }
+    
+    @GetMapping("/tile-cache/stats")
+    @Operation(summary = "获取瓦片缓存统计", description = "获取瓦片内存缓存的命中、未命中、淘汰次数及占用字节数")
+    public Result<Map<String, Object>> getTileCacheStats() {
+        return Result.success(tileCacheService.getStats());
+    }
+    
+    @GetMapping("/tile-encode/stats")
+    @Operation(summary = "获取瓦片编码统计", description = "按编码格式（png/palette/jpeg）获取瓦片数、平均字节数和平均编码耗时")
+    public Result<Map<String, Object>> getTileEncodeStats() {
+        return Result.success(tileEncoder.getStats());
+    }
+    
+    @GetMapping("/tile-prefetch/stats")
+    @Operation(summary = "获取瓦片预取统计", description = "获取访问记录数、预取和预热的瓦片数、丢弃的预取任务数等")
+    public Result<Map<String, Object>> getTilePrefetchStats() {
+        return Result.success(tilePrefetchService.getStats());
+    }
+    
+    @GetMapping("/tile-render/stats/{fileId}")
+    @Operation(summary = "获取瓦片生成统计", description = "获取文件最近一次瓦片生成的吞吐量及解码、编码、写入耗时")
+    public Result<TileRenderStats> getTileRenderStats(@PathVariable Long fileId) {
+        TileRenderStats stats = tifProcessingService.getRenderStats(fileId);
+        if (stats != null) {
+            return Result.success(stats);
+        }
+        return Result.geoserverResourceNotFound("暂无该文件的瓦片生成统计");
+    }
+    
     @GetMapping("/tif-info/{fileId}")
     @Operation(summary = "获取TIF文件信息", description = "获取TIF文件的详细信息")
     public Result<GeospatialFile> getTifInfo(@PathVariable Long fileId) {
@@ -173,6 +479,107 @@ public class GeospatialController {
         }
     }
     
+    @GetMapping("/tif-stats/{fileId}")
+    @Operation(summary = "获取TIF波段统计", description = "获取上传处理时计算的各波段最小/最大值、均值、标准差和直方图")
+    public Result<java.util.List<RasterBandStats>> getTifStats(@PathVariable Long fileId) {
+        try {
+            java.util.List<RasterBandStats> stats = rasterStatsService.getStats(fileId);
+            if (stats.isEmpty()) {
+                return Result.geoserverResourceNotFound("文件不存在或统计尚未完成");
+            }
+            return Result.success(stats);
+        } catch (Exception e) {
+            return Result.internalServerError("获取波段统计失败: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/cog/{fileId}")
+    @Operation(summary = "获取COG文件", description = "获取上传处理时生成的云优化GeoTIFF（分块、带概览），" +
+            "支持HTTP Range按字节范围读取（206 Partial Content）和ETag条件请求，可供前端直接按需读取分块")
+    public ResponseEntity<Resource> getCog(@PathVariable Long fileId, WebRequest webRequest) {
+        GeospatialFile file = geospatialMapper.findFileById(fileId);
+        if (file == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        File cogFile = cogService.getCogFile(fileId, new File(file.getFilePath()));
+        if (cogFile == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        
+        long lastModified = cogFile.lastModified();
+        String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(cogFile.length()) + "\"";
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return notModified(eTag, "public, max-age=3600");
+        }
+        
+        // 请求带Range头时由Spring按范围返回206和Content-Range
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("image/tiff"));
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setCacheControl("public, max-age=3600");
+        headers.setETag(eTag);
+        headers.setLastModified(lastModified);
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Expose-Headers", "Content-Range, Accept-Ranges, Content-Length, ETag");
+        return new ResponseEntity<>(new FileSystemResource(cogFile), headers, HttpStatus.OK);
+    }
+    
+    @PostMapping("/cog/{fileId}")
+    @Operation(summary = "生成COG文件", description = "后台把指定TIF文件重新转换为云优化GeoTIFF")
+    public Result<Void> convertCog(@PathVariable Long fileId) {
+        GeospatialFile file = geospatialMapper.findFileById(fileId);
+        if (file == null) {
+            return Result.geoserverResourceNotFound("文件不存在");
+        }
+        File tifFile = new File(file.getFilePath());
+        if (!tifFile.exists()) {
+            return Result.geoserverResourceNotFound("TIF文件不存在");
+        }
+        cogService.submit(fileId, tifFile);
+        return Result.<Void>success();
+    }
+    
+    @PostMapping("/zonal-stats")
+    @Operation(summary = "计算水泥厂周边统计", description = "对所有关联影像（或指定影像）批量统计每个水泥厂指定半径内的均值、最小值和最大值，后台执行")
+    public Result<Void> computeZonalStats(
+            @RequestParam(value = "radius", defaultValue = "1000") Double radius,
+            @RequestParam(value = "dataType", defaultValue = "NDVI") String dataType,
+            @RequestParam(value = "fileId", required = false) Long fileId) {
+        try {
+            if (!zonalStatsService.submit(radius, dataType, fileId)) {
+                return Result.badRequest("已有周边统计任务正在运行");
+            }
+            return Result.<Void>success();
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/zonal-stats/{plantId}")
+    @Operation(summary = "获取水泥厂周边统计", description = "获取水泥厂在各关联影像上的周边统计结果")
+    public Result<java.util.List<ZonalStats>> getZonalStats(@PathVariable Long plantId) {
+        try {
+            return Result.success(zonalStatsService.getStats(plantId));
+        } catch (Exception e) {
+            return Result.internalServerError("获取周边统计失败: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/sample")
+    @Operation(summary = "点采样", description = "查询经纬度处在所有覆盖该点的影像上的像素值，按获取日期排序返回时间序列")
+    public Result<java.util.List<PointSample>> samplePoint(
+            @RequestParam("lon") Double lon,
+            @RequestParam("lat") Double lat,
+            @RequestParam(value = "dataType", required = false) String dataType) {
+        try {
+            return Result.success(pointSampleService.sample(lon, lat, dataType));
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        } catch (Exception e) {
+            return Result.internalServerError("点采样失败: " + e.getMessage());
+        }
+    }
+    
     @PostMapping("/process-tif/{fileId}")
     @Operation(summary = "处理TIF文件", description = "重新处理指定的TIF文件")
     public Result<Void> processTif(@PathVariable Long fileId) {
@@ -190,6 +597,61 @@ public class GeospatialController {
         }
     }
     
+    @PostMapping("/band-math/{fileId}")
+    @Operation(summary = "波段运算", description = "按表达式（如 (NIR-RED)/(NIR+RED)）逐分块计算多光谱影像的派生栅格，" +
+            "结果登记为新文件并关联到源影像的水泥厂，计算完成后自动生成瓦片")
+    public Result<Map<String, Object>> bandMath(
+            @PathVariable Long fileId,
+            @RequestParam(value = "expression", defaultValue = "(NIR-RED)/(NIR+RED)") String expression,
+            @RequestParam(value = "dataType", defaultValue = "NDVI") String dataType,
+            @RequestParam(value = "plantId", required = false) Long plantId) {
+        try {
+            GeospatialFile derived = bandMathService.submit(fileId, expression, dataType, plantId);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("sourceFileId", fileId);
+            result.put("fileId", derived.getFileId());
+            result.put("fileName", derived.getFileName());
+            result.put("status", derived.getStatus());
+            return Result.success(result);
+            
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        } catch (IOException e) {
+            return Result.fileSystemError("读取源影像失败: " + e.getMessage());
+        } catch (Exception e) {
+            return Result.geoserverProcessingError("波段运算失败: " + e.getMessage());
+        }
+    }
+    
+    @PostMapping("/composite")
+    @Operation(summary = "时间合成", description = "对获取日期范围内某一数据类型的所有影像逐像素合成（max/min/mean/median），" +
+            "结果登记为新文件（数据类型如 NDVI_MAX）并关联到输入影像的水泥厂，计算完成后自动生成瓦片")
+    public Result<Map<String, Object>> composite(
+            @RequestParam(value = "dataType", defaultValue = "NDVI") String dataType,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "method", defaultValue = "max") String method,
+            @RequestParam(value = "plantId", required = false) Long plantId) {
+        try {
+            GeospatialFile composite = temporalCompositeService.submit(dataType, from, to,
+                    TemporalCompositeService.Method.parse(method), plantId);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("fileId", composite.getFileId());
+            result.put("fileName", composite.getFileName());
+            result.put("status", composite.getStatus());
+            return Result.success(result);
+            
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        } catch (IOException e) {
+            return Result.fileSystemError("读取输入影像失败: " + e.getMessage());
+        } catch (Exception e) {
+            return Result.geoserverProcessingError("时间合成失败: " + e.getMessage());
+        }
+    }
+    
     @GetMapping("/files")
     @Operation(summary = "获取文件列表", description = "获取所有地理数据文件列表")
     public Result<java.util.List<GeospatialFile>> getFiles(
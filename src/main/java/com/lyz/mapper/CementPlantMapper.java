@@ -2,8 +2,10 @@ package com.lyz.mapper;
 
 import com.lyz.pojo.CementPlant;
 import com.lyz.pojo.CementPlantIdentification;
+import com.lyz.pojo.CementPlantMapPoint;
 import org.apache.ibatis.annotations.*;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -44,6 +46,26 @@ public interface CementPlantMapper {
     List<CementPlant> findByLocationRange(@Param("minLng") Double minLng, @Param("maxLng") Double maxLng,
                                          @Param("minLat") Double minLat, @Param("maxLat") Double maxLat);
     
+    // 地图图层：全部水泥厂及其最近一次识别的NDVI
+    @Select("SELECT cp.plant_id, cp.plant_name, cp.longitude, cp.latitude, cp.province, cp.city, cp.status, " +
+            "li.ndvi_index AS latest_ndvi, li.identification_time AS latest_identification_time, " +
+            "(SELECT COUNT(*) FROM cement_plant_identifications c WHERE c.plant_id = cp.plant_id) AS identification_count " +
+            "FROM cement_plants cp LEFT JOIN LATERAL (SELECT ndvi_index, identification_time " +
+            "FROM cement_plant_identifications i WHERE i.plant_id = cp.plant_id " +
+            "ORDER BY i.identification_time DESC LIMIT 1) li ON TRUE")
+    List<CementPlantMapPoint> listPlantMapPoints();
+    
+    // 点聚合索引：只取ID和坐标，逐行回调，不为每行创建实体对象
+    @Select("SELECT plant_id AS id, longitude, latitude FROM cement_plants " +
+            "WHERE longitude IS NOT NULL AND latitude IS NOT NULL")
+    @ResultType(Map.class)
+    void scanPlantCoordinates(ResultHandler<Map<String, Object>> handler);
+    
+    @Select("SELECT identification_id AS id, longitude, latitude FROM cement_plant_identifications " +
+            "WHERE longitude IS NOT NULL AND latitude IS NOT NULL")
+    @ResultType(Map.class)
+    void scanIdentificationCoordinates(ResultHandler<Map<String, Object>> handler);
+    
     // 水泥厂识别记录相关操作
     @Select("SELECT cpi.*, cp.plant_name FROM cement_plant_identifications cpi " +
             "LEFT JOIN cement_plants cp ON cpi.plant_id = cp.plant_id " +
@@ -1,9 +1,16 @@
 package com.lyz.mapper;
 
 import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.pojo.GeospatialTileManifest;
 import com.lyz.pojo.CementPlantGeodata;
+import com.lyz.pojo.RasterBandStats;
+import com.lyz.pojo.ZonalStats;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.type.ArrayTypeHandler;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -35,6 +42,24 @@ public interface GeospatialMapper {
     })
     List<GeospatialFile> listFiles(@Param("fileType") String fileType, @Param("status") String status);
     
+    // 关联了指定数据类型且已处理、有地理范围的文件，按获取日期（没有时按上传时间）从新到旧排列
+    @Select("SELECT gf.* FROM geospatial_files gf " +
+            "JOIN (SELECT file_id, MAX(acquisition_date) AS acquired FROM cement_plant_geodata " +
+            "WHERE UPPER(data_type) = UPPER(#{dataType}) GROUP BY file_id) r ON gf.file_id = r.file_id " +
+            "WHERE gf.status = 'processed' AND gf.bounds_west IS NOT NULL " +
+            "ORDER BY COALESCE(r.acquired, gf.upload_time) DESC, gf.file_id DESC")
+    List<GeospatialFile> listMosaicFiles(@Param("dataType") String dataType);
+    
+    // 获取日期在 [from, to) 内、关联了指定数据类型的已处理文件
+    @Select("SELECT gf.* FROM geospatial_files gf WHERE gf.status = 'processed' AND EXISTS (" +
+            "SELECT 1 FROM cement_plant_geodata cpg WHERE cpg.file_id = gf.file_id " +
+            "AND UPPER(cpg.data_type) = UPPER(#{dataType}) " +
+            "AND cpg.acquisition_date >= #{from} AND cpg.acquisition_date < #{to}) " +
+            "ORDER BY gf.file_id")
+    List<GeospatialFile> listCompositeInputs(@Param("dataType") String dataType,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+    
     @Insert("INSERT INTO geospatial_files (file_name, file_path, file_type, file_size, coordinate_system, " +
             "bounds_west, bounds_east, bounds_south, bounds_north, resolution_x, resolution_y, bands_count, " +
             "data_type, upload_time, upload_user_id, status) " +
@@ -48,7 +73,10 @@ public interface GeospatialMapper {
             "file_size = #{fileSize}, coordinate_system = #{coordinateSystem}, bounds_west = #{boundsWest}, " +
             "bounds_east = #{boundsEast}, bounds_south = #{boundsSouth}, bounds_north = #{boundsNorth}, " +
             "resolution_x = #{resolutionX}, resolution_y = #{resolutionY}, bands_count = #{bandsCount}, " +
-            "data_type = #{dataType}, status = #{status} WHERE file_id = #{fileId}")
+            "data_type = #{dataType}, status = #{status}, " +
+            "bounds_geom = ST_MakeEnvelope(CAST(#{boundsWest} AS DOUBLE PRECISION), CAST(#{boundsSouth} AS DOUBLE PRECISION), " +
+            "CAST(#{boundsEast} AS DOUBLE PRECISION), CAST(#{boundsNorth} AS DOUBLE PRECISION), 4326) " +
+            "WHERE file_id = #{fileId}")
     void updateFile(GeospatialFile geospatialFile);
     
     @Delete("DELETE FROM geospatial_files WHERE file_id = #{fileId}")
@@ -73,6 +101,14 @@ public interface GeospatialMapper {
             "WHERE cpg.file_id = #{fileId} ORDER BY cpg.created_at DESC")
     List<CementPlantGeodata> listGeodataByFileId(@Param("fileId") Long fileId);
     
+    @Select({
+        "<script>",
+        "SELECT * FROM cement_plant_geodata WHERE file_id IN",
+        "<foreach collection='fileIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+        "</script>"
+    })
+    List<CementPlantGeodata> listGeodataByFileIds(@Param("fileIds") List<Long> fileIds);
+    
     @Insert("INSERT INTO cement_plant_geodata (plant_id, file_id, identification_id, data_type, " +
             "acquisition_date, processing_status, created_at) " +
             "VALUES (#{plantId}, #{fileId}, #{identificationId}, #{dataType}, " +
@@ -90,17 +126,144 @@ public interface GeospatialMapper {
     void deleteGeodataRelation(@Param("relationId") Long relationId);
     
     // 瓦片数据相关操作
-    @Select("SELECT tile_data FROM geospatial_tiles WHERE file_id = #{fileId} AND zoom_level = #{zoom} " +
-            "AND tile_x = #{x} AND tile_y = #{y}")
+    // 瓦片数据按内容哈希存放在 geospatial_tile_blobs，tile_data 列只保留升级前的历史数据
+    @Select("SELECT COALESCE(b.tile_data, t.tile_data) FROM geospatial_tiles t " +
+            "LEFT JOIN geospatial_tile_blobs b ON b.content_hash = t.content_hash " +
+            "WHERE t.file_id = #{fileId} AND t.zoom_level = #{zoom} AND t.tile_x = #{x} AND t.tile_y = #{y}")
     byte[] getTileData(@Param("fileId") Long fileId, @Param("zoom") Integer zoom, 
                       @Param("x") Integer x, @Param("y") Integer y);
     
-    @Insert("INSERT INTO geospatial_tiles (file_id, zoom_level, tile_x, tile_y, tile_data, tile_size, format) " +
-            "VALUES (#{fileId}, #{zoom}, #{x}, #{y}, #{tileData}, #{tileSize}, #{format}) " +
-            "ON CONFLICT (file_id, zoom_level, tile_x, tile_y) DO UPDATE SET " +
-            "tile_data = EXCLUDED.tile_data, created_at = NOW()")
+    @Select("SELECT t.file_id, t.zoom_level, t.tile_x, t.tile_y, COALESCE(b.tile_data, t.tile_data) AS tile_data, " +
+            "t.tile_size, t.format, t.content_hash, t.created_at FROM geospatial_tiles t " +
+            "LEFT JOIN geospatial_tile_blobs b ON b.content_hash = t.content_hash " +
+            "WHERE t.file_id = #{fileId} AND t.zoom_level = #{zoom} AND t.tile_x = #{x} AND t.tile_y = #{y}")
+    GeospatialTile getTile(@Param("fileId") Long fileId, @Param("zoom") Integer zoom,
+                           @Param("x") Integer x, @Param("y") Integer y);
+    
+    // 一次查询同一文件的多个瓦片（批量获取瓦片时使用）
+    @Select({
+        "<script>",
+        "SELECT t.file_id, t.zoom_level, t.tile_x, t.tile_y, COALESCE(b.tile_data, t.tile_data) AS tile_data,",
+        "t.tile_size, t.format, t.content_hash, t.created_at FROM geospatial_tiles t",
+        "LEFT JOIN geospatial_tile_blobs b ON b.content_hash = t.content_hash",
+        "WHERE t.file_id = #{fileId} AND (t.zoom_level, t.tile_x, t.tile_y) IN",
+        "<foreach collection='keys' item='k' open='(' separator=',' close=')'>(#{k.z}, #{k.x}, #{k.y})</foreach>",
+        "</script>"
+    })
+    List<GeospatialTile> listTiles(@Param("fileId") Long fileId, @Param("keys") List<TileKey> keys);
+    
+    @Delete("DELETE FROM geospatial_tiles WHERE file_id = #{fileId}")
+    void deleteTilesByFileId(@Param("fileId") Long fileId);
+    
+    // 清理不再被引用的瓦片数据分两步：先锁定候选行（跳过写入方已锁定的行），再在新的语句快照下复查后删除，
+    // 两步需在同一事务中执行。写入方通过 insertTileBlob 锁定数据行直到提交，因此不会删除即将被引用的数据
+    @Select("SELECT b.content_hash FROM geospatial_tile_blobs b WHERE NOT EXISTS " +
+            "(SELECT 1 FROM geospatial_tiles t WHERE t.content_hash = b.content_hash) " +
+            "FOR UPDATE OF b SKIP LOCKED")
+    List<String> lockOrphanTileBlobs();
+    
+    @Delete({
+        "<script>",
+        "DELETE FROM geospatial_tile_blobs b WHERE b.content_hash IN",
+        "<foreach collection='hashes' item='h' open='(' separator=',' close=')'>#{h}</foreach>",
+        "AND NOT EXISTS (SELECT 1 FROM geospatial_tiles t WHERE t.content_hash = b.content_hash)",
+        "</script>"
+    })
+    int deleteUnreferencedTileBlobs(@Param("hashes") List<String> hashes);
+    
+    // 瓦片数据按内容哈希只保存一份；已存在时做一次空更新，锁定该行直到事务提交，
+    // 避免并发的清理在瓦片行写入前删除它
+    @Insert("INSERT INTO geospatial_tile_blobs (content_hash, tile_data, data_size) " +
+            "VALUES (#{contentHash}, #{tileData}, #{dataSize}) " +
+            "ON CONFLICT (content_hash) DO UPDATE SET data_size = EXCLUDED.data_size")
+    void insertTileBlob(@Param("contentHash") String contentHash, @Param("tileData") byte[] tileData,
+                        @Param("dataSize") Integer dataSize);
+    
+    // 瓦片行只保存内容哈希，数据需先通过 insertTileBlob 写入；generation 为整体重新生成的批次号，其余写入为null
+    @Insert("INSERT INTO geospatial_tiles (file_id, zoom_level, tile_x, tile_y, tile_size, format, content_hash, " +
+            "render_generation) VALUES (#{fileId}, #{zoom}, #{x}, #{y}, #{tileSize}, #{format}, #{contentHash}, " +
+            "#{generation}) ON CONFLICT (file_id, zoom_level, tile_x, tile_y) DO UPDATE SET " +
+            "tile_data = NULL, content_hash = EXCLUDED.content_hash, render_generation = EXCLUDED.render_generation, " +
+            "created_at = NOW()")
     void insertTile(@Param("fileId") Long fileId, @Param("zoom") Integer zoom, 
                    @Param("x") Integer x, @Param("y") Integer y, 
-                   @Param("tileData") byte[] tileData, @Param("tileSize") Integer tileSize, 
-                   @Param("format") String format);
+                   @Param("tileSize") Integer tileSize, 
+                   @Param("format") String format, @Param("contentHash") String contentHash,
+                   @Param("generation") Long generation);
+    
+    // 整体重新生成瓦片的批次号
+    @Select("SELECT nextval('geospatial_tile_generation_seq')")
+    long nextTileGeneration();
+    
+    // 整体重新生成完成后删除不属于本批次的旧瓦片（旧网格、旧级别或已不在影像范围内的瓦片）
+    @Delete("DELETE FROM geospatial_tiles WHERE file_id = #{fileId} " +
+            "AND render_generation IS DISTINCT FROM #{generation}")
+    void deleteTilesExceptGeneration(@Param("fileId") Long fileId, @Param("generation") Long generation);
+    
+    // 瓦片源影像清单相关操作
+    @Insert("INSERT INTO geospatial_tile_manifests (file_id, layout, chunk_count, chunk_checksums, updated_at) " +
+            "VALUES (#{fileId}, #{layout}, #{chunkCount}, #{chunkChecksums}, NOW()) " +
+            "ON CONFLICT (file_id) DO UPDATE SET layout = EXCLUDED.layout, chunk_count = EXCLUDED.chunk_count, " +
+            "chunk_checksums = EXCLUDED.chunk_checksums, updated_at = NOW()")
+    void upsertTileManifest(GeospatialTileManifest manifest);
+    
+    @Select("SELECT * FROM geospatial_tile_manifests WHERE file_id = #{fileId}")
+    GeospatialTileManifest findTileManifest(@Param("fileId") Long fileId);
+    
+    @Delete("DELETE FROM geospatial_tile_manifests WHERE file_id = #{fileId}")
+    void deleteTileManifest(@Param("fileId") Long fileId);
+    
+    // 栅格波段统计相关操作
+    @Insert("INSERT INTO geospatial_file_stats (file_id, band_index, valid_count, no_data_count, min_value, max_value, " +
+            "mean_value, std_dev, histogram_min, histogram_max, histogram, computed_at) " +
+            "VALUES (#{fileId}, #{bandIndex}, #{validCount}, #{noDataCount}, #{minValue}, #{maxValue}, #{meanValue}, " +
+            "#{stdDev}, #{histogramMin}, #{histogramMax}, " +
+            "#{histogram,typeHandler=org.apache.ibatis.type.ArrayTypeHandler}, NOW()) " +
+            "ON CONFLICT (file_id, band_index) DO UPDATE SET valid_count = EXCLUDED.valid_count, " +
+            "no_data_count = EXCLUDED.no_data_count, min_value = EXCLUDED.min_value, max_value = EXCLUDED.max_value, " +
+            "mean_value = EXCLUDED.mean_value, std_dev = EXCLUDED.std_dev, histogram_min = EXCLUDED.histogram_min, " +
+            "histogram_max = EXCLUDED.histogram_max, histogram = EXCLUDED.histogram, computed_at = NOW()")
+    void upsertBandStats(RasterBandStats stats);
+    
+    @Select("SELECT * FROM geospatial_file_stats WHERE file_id = #{fileId} ORDER BY band_index")
+    @Results({
+        @Result(column = "histogram", property = "histogram", typeHandler = ArrayTypeHandler.class)
+    })
+    List<RasterBandStats> listBandStats(@Param("fileId") Long fileId);
+    
+    @Delete("DELETE FROM geospatial_file_stats WHERE file_id = #{fileId}")
+    void deleteBandStats(@Param("fileId") Long fileId);
+    
+    // 水泥厂周边区域统计相关操作
+    // 待统计的（水泥厂, 影像）组合，按影像分组
+    @Select({
+        "<script>",
+        "SELECT DISTINCT cpg.plant_id, cpg.file_id, cpg.data_type, cp.longitude, cp.latitude",
+        "FROM cement_plant_geodata cpg",
+        "JOIN cement_plants cp ON cpg.plant_id = cp.plant_id",
+        "JOIN geospatial_files gf ON cpg.file_id = gf.file_id",
+        "WHERE UPPER(cpg.data_type) = UPPER(#{dataType})",
+        "<if test='fileId != null'>",
+        "AND cpg.file_id = #{fileId}",
+        "</if>",
+        "ORDER BY cpg.file_id, cp.latitude DESC",
+        "</script>"
+    })
+    List<ZonalStats> listZonalTargets(@Param("dataType") String dataType, @Param("fileId") Long fileId);
+    
+    @Insert("INSERT INTO cement_plant_zonal_stats (plant_id, file_id, data_type, radius_meters, pixel_count, " +
+            "no_data_count, mean_value, min_value, max_value, computed_at) " +
+            "VALUES (#{plantId}, #{fileId}, #{dataType}, #{radiusMeters}, #{pixelCount}, #{noDataCount}, " +
+            "#{meanValue}, #{minValue}, #{maxValue}, NOW()) " +
+            "ON CONFLICT (plant_id, file_id) DO UPDATE SET data_type = EXCLUDED.data_type, " +
+            "radius_meters = EXCLUDED.radius_meters, pixel_count = EXCLUDED.pixel_count, " +
+            "no_data_count = EXCLUDED.no_data_count, mean_value = EXCLUDED.mean_value, " +
+            "min_value = EXCLUDED.min_value, max_value = EXCLUDED.max_value, computed_at = NOW()")
+    void upsertZonalStats(ZonalStats stats);
+    
+    @Select("SELECT zs.*, cp.plant_name, cp.longitude, cp.latitude, gf.file_name FROM cement_plant_zonal_stats zs " +
+            "LEFT JOIN cement_plants cp ON zs.plant_id = cp.plant_id " +
+            "LEFT JOIN geospatial_files gf ON zs.file_id = gf.file_id " +
+            "WHERE zs.plant_id = #{plantId} ORDER BY zs.file_id")
+    List<ZonalStats> listZonalStatsByPlantId(@Param("plantId") Long plantId);
 }
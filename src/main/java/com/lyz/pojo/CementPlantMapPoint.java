@@ -0,0 +1,33 @@
+package com.lyz.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 地图图层上的水泥厂点（水泥厂基本信息和最近一次识别结果）
+ */
+@Data
+public class CementPlantMapPoint {
+    private Long plantId;
+
+    private String plantName;
+
+    private Double longitude;
+
+    private Double latitude;
+
+    private String province;
+
+    private String city;
+
+    private String status;
+
+    private Float latestNdvi; // 最近一次识别的NDVI指数，没有识别记录时为空
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private LocalDateTime latestIdentificationTime;
+
+    private Integer identificationCount;
+}
@@ -31,6 +31,8 @@ public class GeospatialTile {
     
     private String format = "PNG"; // 瓦片格式
     
+    private String contentHash; // 瓦片内容SHA-256，用作ETag
+    
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
     private LocalDateTime createdAt;
     
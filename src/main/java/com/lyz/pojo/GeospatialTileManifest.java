@@ -0,0 +1,21 @@
+package com.lyz.pojo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 瓦片源影像清单（上次生成瓦片时的影像布局和各条带/分块校验值，用于增量重新生成瓦片）
+ */
+@Data
+public class GeospatialTileManifest {
+    private Long fileId;
+
+    private String layout; // 影像布局和渲染参数摘要
+
+    private Integer chunkCount; // 条带/分块数
+
+    private byte[] chunkChecksums; // 各条带/分块的CRC32（每个4字节，大端）
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,32 @@
+package com.lyz.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 某一坐标在一幅影像上的像素值（点采样结果，按时间排序构成时间序列）
+ */
+@Data
+public class PointSample {
+    private Long fileId;
+
+    private String fileName;
+
+    private String dataType; // 影像数据类型（cement_plant_geodata.data_type，如 NDVI），未关联时为空
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private LocalDateTime acquisitionDate; // 数据获取日期，未记录时为空
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private LocalDateTime uploadTime;
+
+    private Integer pixelX; // 像素列号
+
+    private Integer pixelY; // 像素行号
+
+    private Double value; // 第一波段的值，无数据时为空
+
+    private Double[] bandValues; // 各波段的值，无数据时为空
+}
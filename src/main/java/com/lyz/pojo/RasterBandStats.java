@@ -0,0 +1,37 @@
+package com.lyz.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 栅格波段统计信息
+ */
+@Data
+public class RasterBandStats {
+    private Long fileId;
+
+    private Integer bandIndex; // 波段序号（从1开始）
+
+    private Long validCount; // 有效像素数
+
+    private Long noDataCount; // 无数据像素数（含NaN）
+
+    private Double minValue;
+
+    private Double maxValue;
+
+    private Double meanValue;
+
+    private Double stdDev; // 总体标准差
+
+    private Double histogramMin; // 直方图范围下限
+
+    private Double histogramMax; // 直方图范围上限
+
+    private Long[] histogram; // 直方图各分箱计数（范围均分）
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private LocalDateTime computedAt;
+}
@@ -0,0 +1,7 @@
+package com.lyz.pojo;
+
+/**
+ * 瓦片坐标键（文件ID + z/x/y）
+ */
+public record TileKey(long fileId, int z, int x, int y) {
+}
@@ -0,0 +1,43 @@
+package com.lyz.pojo;
+
+import lombok.Data;
+
+/**
+ * 瓦片金字塔生成统计信息
+ */
+@Data
+public class TileRenderStats {
+    private Long fileId;
+
+    private int parallelism; // 渲染并行度
+
+    private long tileCount; // 生成瓦片数
+
+    private long totalBytes; // 编码后瓦片总字节数
+
+    private long elapsedMillis; // 总耗时（毫秒）
+
+    private double tilesPerSecond; // 吞吐量（瓦片/秒）
+
+    private long decodeMillis; // 源影像窗口解码累计耗时（各线程之和）
+
+    private long downsampleMillis; // 下采样累计耗时（各线程之和）
+
+    private long encodeMillis; // 瓦片编码累计耗时（各线程之和）
+
+    private String codec; // 瓦片编码格式（png/palette/jpeg）
+
+    private double bytesPerTile; // 平均每个瓦片的编码后字节数
+
+    private long writeMillis; // 写入存储耗时（单写线程）
+
+    private long writeBatches; // 批量提交次数（数据库往返次数）
+
+    private double writeBytesPerSecond; // 批量写入吞吐量（字节/秒）
+
+    private boolean incremental; // 是否增量生成（只重新生成源影像变化区域的瓦片）
+
+    private long reusedTiles; // 增量生成时直接读取的未变化瓦片数
+
+    private int changedChunks; // 增量生成时源影像变化的条带/分块数
+}
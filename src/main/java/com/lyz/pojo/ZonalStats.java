@@ -0,0 +1,41 @@
+package com.lyz.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 水泥厂周边区域统计（按水泥厂和影像文件）
+ */
+@Data
+public class ZonalStats {
+    private Long plantId;
+
+    private Long fileId;
+
+    private String dataType; // 影像数据类型（NDVI等）
+
+    private Double longitude; // 水泥厂经度（统计中心）
+
+    private Double latitude; // 水泥厂纬度（统计中心）
+
+    private Double radiusMeters; // 统计半径（米）
+
+    private Long pixelCount; // 半径内有效像素数
+
+    private Long noDataCount; // 半径内无数据像素数
+
+    private Double meanValue;
+
+    private Double minValue;
+
+    private Double maxValue;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private LocalDateTime computedAt;
+
+    // 关联查询字段
+    private String plantName;
+    private String fileName;
+}
@@ -0,0 +1,54 @@
+package com.lyz.service;
+
+import com.lyz.pojo.GeospatialTile;
+
+import java.util.Map;
+
+/**
+ * 瓦片内存缓存服务接口
+ * 在瓦片存储之前提供按字节限额的本地缓存，热点瓦片无需访问数据库
+ */
+public interface TileCacheService {
+
+    /**
+     * 获取缓存的瓦片
+     * @param fileId 文件ID
+     * @param z 缩放级别
+     * @param x 瓦片X坐标
+     * @param y 瓦片Y坐标
+     * @return 瓦片（含数据、内容哈希和生成时间），未命中返回null
+     */
+    GeospatialTile getTile(Long fileId, int z, int x, int y);
+
+    /**
+     * 瓦片是否已缓存（不计入命中统计，预取时用于跳过已缓存的瓦片）
+     * @param fileId 文件ID
+     * @param z 缩放级别
+     * @param x 瓦片X坐标
+     * @param y 瓦片Y坐标
+     * @return 已缓存返回true
+     */
+    boolean containsTile(Long fileId, int z, int x, int y);
+
+    /**
+     * 缓存瓦片
+     * @param fileId 文件ID
+     * @param z 缩放级别
+     * @param x 瓦片X坐标
+     * @param y 瓦片Y坐标
+     * @param tile 瓦片
+     */
+    void putTile(Long fileId, int z, int x, int y, GeospatialTile tile);
+
+    /**
+     * 使指定文件的全部瓦片缓存失效（文件重新处理时调用）
+     * @param fileId 文件ID
+     */
+    void evictFile(Long fileId);
+
+    /**
+     * 获取缓存统计信息（命中、未命中、淘汰次数及占用字节数）
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+}
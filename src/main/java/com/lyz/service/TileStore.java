@@ -0,0 +1,100 @@
+package com.lyz.service;
+
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.service.impl.TileRenderEngine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 瓦片存储接口
+ * 由配置项 tile.store.type 选择实现：db（geospatial_tiles表，默认）或 archive（每个文件一个打包瓦片文件）
+ */
+public interface TileStore {
+
+    /**
+     * 瓦片写入会话：生成金字塔时由单个写线程使用，关闭时提交全部瓦片
+     */
+    interface TileWriter extends TileRenderEngine.TileSink, AutoCloseable {
+
+        /**
+         * 提交已写入的瓦片
+         */
+        void flush() throws IOException;
+
+        /**
+         * 放弃本次写入（生成失败时调用）：之后 close 不再提交，已有瓦片保持不变；
+         * 已单独落盘的部分（数据库已提交的批次、追加日志中的瓦片）无法撤回
+         */
+        void abort() throws IOException;
+
+        /**
+         * 写入批次数（数据库往返次数或文件提交次数）
+         */
+        long getFlushCount();
+
+        /**
+         * 写入吞吐量（字节/秒）
+         */
+        double getBytesPerSecond();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * 为文件打开瓦片写入会话（整体重新生成金字塔时使用）：提交后文件只保留本次写入的瓦片
+     * @param fileId 文件ID
+     * @return 写入会话
+     */
+    TileWriter openWriter(Long fileId) throws IOException;
+
+    /**
+     * 为文件打开增量写入会话（增量重新生成金字塔时使用）：覆盖写入的瓦片，保留其余已有瓦片
+     * @param fileId 文件ID
+     * @return 写入会话
+     */
+    TileWriter openPatchWriter(Long fileId) throws IOException;
+
+    /**
+     * 获取瓦片
+     * @param fileId 文件ID
+     * @param z 缩放级别
+     * @param x 瓦片X坐标
+     * @param y 瓦片Y坐标
+     * @return 瓦片（含数据、内容哈希和生成时间），不存在返回null
+     */
+    GeospatialTile getTile(Long fileId, int z, int x, int y);
+    
+    /**
+     * 批量获取同一文件的多个瓦片（默认逐个获取，实现可合并为一次查询）
+     * @param fileId 文件ID
+     * @param keys 瓦片坐标（只使用 z/x/y）
+     * @return 与 keys 一一对应的瓦片，不存在的位置为null
+     */
+    default List<GeospatialTile> getTiles(Long fileId, List<TileKey> keys) {
+        List<GeospatialTile> tiles = new ArrayList<>(keys.size());
+        for (TileKey key : keys) {
+            tiles.add(getTile(fileId, key.z(), key.x(), key.y()));
+        }
+        return tiles;
+    }
+
+    /**
+     * 写入单个瓦片（按需渲染时使用，已存在则覆盖）
+     * @param fileId 文件ID
+     * @param z 缩放级别
+     * @param x 瓦片X坐标
+     * @param y 瓦片Y坐标
+     * @param tileData 瓦片数据
+     */
+    void putTile(Long fileId, int z, int x, int y, byte[] tileData) throws IOException;
+
+    /**
+     * 删除文件的全部瓦片
+     * @param fileId 文件ID
+     */
+    void deleteTiles(Long fileId) throws IOException;
+}
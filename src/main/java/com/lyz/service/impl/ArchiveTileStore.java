@@ -0,0 +1,396 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.service.TileStore;
+import com.lyz.utils.TileAppendLog;
+import com.lyz.utils.TileArchiveReader;
+import com.lyz.utils.TileArchiveWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 打包文件瓦片存储：每个文件的瓦片金字塔保存为一个打包文件（{fileId}.{版本}.tiles），
+ * 读取时内存映射，不再占用数据库空间，也不需要JDBC和bytea解码。
+ * 按需渲染的单个瓦片追加到 {fileId}.tiles.log，读取时优先于打包文件。
+ * 重新生成的金字塔以新版本号发布，不覆盖旧文件：已映射的文件在映射被回收前不能替换或删除（Windows），
+ * 旧版本在之后打开读取器时尽量删除，删除失败的留待下次。
+ */
+@Service
+@ConditionalOnProperty(name = "tile.store.type", havingValue = "archive")
+public class ArchiveTileStore implements TileStore {
+
+    // 打包文件目录
+    @Value("${tile.store.archive-dir:${file.upload-dir}/tiles}")
+    private String archiveDir;
+
+    // 已打开的读取器（按文件ID）
+    private final Map<Long, TileArchiveReader> readers = new ConcurrentHashMap<>();
+
+    // 已打开的追加日志（按文件ID）
+    private final Map<Long, TileAppendLog> appendLogs = new ConcurrentHashMap<>();
+
+    // 上一个打包文件版本号（毫秒时间戳，保证递增）
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    @Override
+    public TileWriter openWriter(Long fileId) throws IOException {
+        return new ArchiveWriter(fileId, new TileArchiveWriter(archivePath(fileId, nextVersion())));
+    }
+
+    /**
+     * 打包文件只能整体替换，增量写入的瓦片追加到日志中，读取时优先于打包文件
+     */
+    @Override
+    public TileWriter openPatchWriter(Long fileId) {
+        return new AppendLogWriter(getAppendLog(fileId, true));
+    }
+
+    @Override
+    public GeospatialTile getTile(Long fileId, int z, int x, int y) {
+        TileAppendLog appendLog = getAppendLog(fileId, false);
+        if (appendLog != null) {
+            try {
+                byte[] tileData = appendLog.read(z, x, y);
+                if (tileData != null) {
+                    Instant writeTime = appendLog.getWriteTime(z, x, y);
+                    return toTile(fileId, z, x, y, tileData, appendLog.getContentHash(z, x, y),
+                            LocalDateTime.ofInstant(writeTime, ZoneId.systemDefault()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取瓦片日志失败: fileId=" + fileId, e);
+            }
+        }
+
+        TileArchiveReader reader = getReader(fileId);
+        if (reader == null) {
+            return null;
+        }
+        int index = reader.find(z, x, y);
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer data = reader.getData(index);
+        if (!data.hasRemaining()) {
+            return null;
+        }
+        // 复制出映射区：瓦片以byte[]放入内存缓存，切片会让旧版本的映射一直不能回收，打包文件也就无法删除
+        byte[] tileData = new byte[data.remaining()];
+        data.get(tileData);
+        return toTile(fileId, z, x, y, tileData, reader.getContentHash(index),
+                LocalDateTime.ofInstant(reader.getLastModified(), ZoneId.systemDefault()));
+    }
+
+    @Override
+    public void putTile(Long fileId, int z, int x, int y, byte[] tileData) throws IOException {
+        getAppendLog(fileId, true).append(z, x, y, tileData);
+    }
+
+    /**
+     * 删除文件的瓦片；仍被映射的打包文件删除失败时发布一个空的新版本，旧瓦片不再可读
+     */
+    @Override
+    public void deleteTiles(Long fileId) throws IOException {
+        closeReader(fileId);
+        closeAppendLog(fileId);
+        Files.deleteIfExists(appendLogPath(fileId));
+        if (!deleteArchives(fileId, null)) {
+            try (TileArchiveWriter empty = new TileArchiveWriter(archivePath(fileId, nextVersion()))) {
+                empty.commit();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        readers.keySet().forEach(this::closeReader);
+        appendLogs.keySet().forEach(this::closeAppendLog);
+    }
+
+    private GeospatialTile toTile(Long fileId, int z, int x, int y, byte[] tileData, String contentHash,
+                                  LocalDateTime createdAt) {
+        GeospatialTile tile = new GeospatialTile();
+        tile.setFileId(fileId);
+        tile.setZoomLevel(z);
+        tile.setTileX(x);
+        tile.setTileY(y);
+        tile.setTileData(tileData);
+        tile.setTileSize(256);
+        tile.setContentHash(contentHash);
+        tile.setCreatedAt(createdAt);
+        return tile;
+    }
+
+    /**
+     * 获取文件最新版本打包文件的读取器，打包文件不存在返回null
+     * 打开新版本时顺带删除旧版本
+     */
+    private TileArchiveReader getReader(Long fileId) {
+        return readers.computeIfAbsent(fileId, id -> {
+            try {
+                List<Path> archives = listArchives(id);
+                if (archives.isEmpty()) {
+                    return null;
+                }
+                Path latest = archives.get(archives.size() - 1);
+                TileArchiveReader reader = TileArchiveReader.open(latest);
+                deleteArchives(id, latest);
+                return reader;
+            } catch (IOException e) {
+                throw new UncheckedIOException("打开瓦片打包文件失败: fileId=" + id, e);
+            }
+        });
+    }
+
+    /**
+     * 文件的全部打包文件，按版本升序（旧格式的 {fileId}.tiles 为版本0）
+     */
+    private List<Path> listArchives(Long fileId) throws IOException {
+        Path dir = Paths.get(archiveDir);
+        List<Path> archives = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return archives;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, fileId + ".*tiles")) {
+            for (Path path : stream) {
+                if (archiveVersion(fileId, path) >= 0) {
+                    archives.add(path);
+                }
+            }
+        }
+        archives.sort((a, b) -> Long.compare(archiveVersion(fileId, a), archiveVersion(fileId, b)));
+        return archives;
+    }
+
+    /**
+     * 打包文件的版本号，不是该文件的打包文件返回-1
+     */
+    private static long archiveVersion(Long fileId, Path path) {
+        String name = path.getFileName().toString();
+        if (name.equals(fileId + ".tiles")) {
+            return 0;
+        }
+        String prefix = fileId + ".";
+        if (!name.startsWith(prefix) || !name.endsWith(".tiles")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - ".tiles".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 删除文件的打包文件（keep除外），仍被映射等原因删除失败的保留到下次
+     * @return 是否全部删除
+     */
+    private boolean deleteArchives(Long fileId, Path keep) throws IOException {
+        boolean deleted = true;
+        for (Path path : listArchives(fileId)) {
+            if (path.equals(keep)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                deleted = false;
+                System.err.println("删除旧瓦片打包文件失败，稍后重试: " + path + ", " + e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 关闭并移除读取器，下次读取时重新打开
+     */
+    private void closeReader(Long fileId) {
+        TileArchiveReader reader = readers.remove(fileId);
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.err.println("关闭瓦片打包文件失败: fileId=" + fileId + ", " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取文件的追加日志
+     * @param create 日志文件不存在时是否创建
+     */
+    private TileAppendLog getAppendLog(Long fileId, boolean create) {
+        return appendLogs.computeIfAbsent(fileId, id -> {
+            Path path = appendLogPath(id);
+            if (!create && !Files.exists(path)) {
+                return null;
+            }
+            try {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+                return TileAppendLog.open(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("打开瓦片日志失败: " + path, e);
+            }
+        });
+    }
+
+    private void closeAppendLog(Long fileId) {
+        TileAppendLog appendLog = appendLogs.remove(fileId);
+        if (appendLog != null) {
+            try {
+                appendLog.close();
+            } catch (IOException e) {
+                System.err.println("关闭瓦片日志失败: fileId=" + fileId + ", " + e.getMessage());
+            }
+        }
+    }
+
+    private long nextVersion() {
+        return lastVersion.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    }
+
+    private Path archivePath(Long fileId, long version) {
+        return Paths.get(archiveDir, fileId + "." + version + ".tiles");
+    }
+
+    private Path appendLogPath(Long fileId) {
+        return Paths.get(archiveDir, fileId + ".tiles.log");
+    }
+
+    /**
+     * 打包文件写入会话：关闭时提交为新版本，放弃后关闭时丢弃临时文件
+     */
+    private final class ArchiveWriter implements TileWriter {
+        private final Long fileId;
+        private final TileArchiveWriter writer;
+        private boolean aborted;
+        private long totalBytes;
+        private long flushCount;
+        private long flushNanos;
+
+        ArchiveWriter(Long fileId, TileArchiveWriter writer) {
+            this.fileId = fileId;
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(int z, int x, int y, byte[] tileData) throws IOException {
+            long t0 = System.nanoTime();
+            writer.write(z, x, y, tileData);
+            flushNanos += System.nanoTime() - t0;
+            totalBytes += tileData.length;
+        }
+
+        /**
+         * 打包文件只能整体提交，中途不落盘
+         */
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public long getFlushCount() {
+            return flushCount;
+        }
+
+        @Override
+        public double getBytesPerSecond() {
+            return flushNanos == 0 ? 0 : totalBytes * 1e9 / flushNanos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (aborted) {
+                // 未提交的临时文件在关闭时删除，旧打包文件和追加日志保持不变
+                writer.close();
+                return;
+            }
+            boolean committed = false;
+            try {
+                long t0 = System.nanoTime();
+                writer.commit();
+                committed = true;
+                flushNanos += System.nanoTime() - t0;
+                flushCount++;
+            } finally {
+                writer.close();
+                if (committed) {
+                    // 新版本已发布，下次读取时打开新文件并删除旧版本；整套金字塔已重新生成，追加日志作废
+                    closeReader(fileId);
+                    closeAppendLog(fileId);
+                    Files.deleteIfExists(appendLogPath(fileId));
+                }
+            }
+        }
+    }
+
+    /**
+     * 追加日志写入会话：每个瓦片立即追加，关闭时无需提交
+     */
+    private static final class AppendLogWriter implements TileWriter {
+        private final TileAppendLog appendLog;
+        private long totalBytes;
+        private long appendCount;
+        private long writeNanos;
+
+        AppendLogWriter(TileAppendLog appendLog) {
+            this.appendLog = appendLog;
+        }
+
+        @Override
+        public void write(int z, int x, int y, byte[] tileData) throws IOException {
+            long t0 = System.nanoTime();
+            appendLog.append(z, x, y, tileData);
+            writeNanos += System.nanoTime() - t0;
+            totalBytes += tileData.length;
+            appendCount++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        /**
+         * 追加的瓦片各自完整，放弃时保留已追加的瓦片
+         */
+        @Override
+        public void abort() {
+        }
+
+        @Override
+        public long getFlushCount() {
+            return appendCount;
+        }
+
+        @Override
+        public double getBytesPerSecond() {
+            return writeNanos == 0 ? 0 : totalBytes * 1e9 / writeNanos;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.CementPlantGeodata;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.utils.BandMathExpression;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.GeoTiffWriter;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 波段运算服务
+ * 对多光谱影像（如GF-2、Sentinel-2的4波段B/G/R/NIR）按表达式逐分块计算派生栅格（如NDVI），
+ * 结果保存为单波段FLOAT32分块GeoTIFF，登记为新的地理数据文件，通过 cement_plant_geodata
+ * 与源影像所属水泥厂关联后按普通TIF文件生成瓦片（按数据类型着色）。
+ * 各分块在线程池中并行计算，每个线程只持有当前分块的样本数组，整幅结果不会驻留内存。
+ */
+@Service
+public class BandMathService {
+
+    private static final int TILE_SIZE = 256;
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    @Autowired
+    private TifProcessingService tifProcessingService;
+
+    // 分块计算并行度，默认为CPU核数
+    @Value("${tile.band-math.parallelism:0}")
+    private int parallelism;
+
+    // 波段别名（名称:从1开始的波段号），默认按GF-2/Sentinel-2四波段B、G、R、NIR顺序
+    @Value("${tile.band-math.band-aliases:BLUE:1,GREEN:2,RED:3,NIR:4}")
+    private String bandAliases;
+
+    // 运算任务依次执行，分块在计算线程池中并行
+    private ExecutorService jobExecutor;
+    private ExecutorService tileExecutor;
+
+    // 每个计算线程的波段样本和结果缓冲区
+    private final ThreadLocal<float[][]> bandBuffers = ThreadLocal.withInitial(() -> new float[0][]);
+    private final ThreadLocal<float[]> resultBuffer = ThreadLocal.withInitial(() -> new float[TILE_SIZE * TILE_SIZE]);
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        jobExecutor = Executors.newSingleThreadExecutor();
+        tileExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        tileExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交波段运算
+     * 校验表达式和源影像后立即登记派生文件（状态processing）和水泥厂关联，计算在后台执行，
+     * 完成后派生文件按普通TIF文件处理（解析元数据、生成瓦片）
+     * @param sourceFileId 源影像文件ID
+     * @param expression 表达式，如 (NIR-RED)/(NIR+RED)
+     * @param dataType 派生数据类型，如 NDVI（决定文件名、关联的数据类型和着色）
+     * @param plantId 额外关联的水泥厂ID，可为空（源影像已有的关联会自动继承）
+     * @return 派生文件记录
+     */
+    public GeospatialFile submit(Long sourceFileId, String expression, String dataType, Long plantId)
+            throws IOException {
+        GeospatialFile source = geospatialMapper.findFileById(sourceFileId);
+        if (source == null) {
+            throw new IllegalArgumentException("源文件不存在: " + sourceFileId);
+        }
+        File sourceFile = new File(source.getFilePath());
+        if (!sourceFile.exists()) {
+            throw new IOException("TIF文件不存在: " + source.getFilePath());
+        }
+        BandMathExpression compiled = BandMathExpression.compile(expression, parseAliases(bandAliases));
+        GeoTiffHeader header = GeoTiffHeader.read(sourceFile.toPath());
+        if (compiled.getBandCount() > header.getSamplesPerPixel()) {
+            throw new IllegalArgumentException("表达式引用了第" + compiled.getBandCount() + "波段，源影像只有"
+                    + header.getSamplesPerPixel() + "个波段");
+        }
+
+        String type = dataType.toUpperCase(Locale.ROOT);
+        Path target = derivedPath(sourceFile.toPath(), type);
+        GeospatialFile derived = registerDerivedFile(source, target);
+        List<CementPlantGeodata> relations = linkPlants(sourceFileId, derived.getFileId(), type, plantId);
+
+        jobExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                int tiles = compute(sourceFile, header, compiled, target);
+                System.out.println("波段运算完成: " + sourceFileId + " -> " + derived.getFileId() + ", 表达式="
+                        + compiled.getSource() + ", 分块数=" + tiles + ", 耗时="
+                        + (System.currentTimeMillis() - start) + "ms");
+                updateRelations(relations, "processed");
+                tifProcessingService.processTifFile(derived.getFileId(), target.toString());
+            } catch (Exception e) {
+                System.err.println("波段运算失败: fileId=" + sourceFileId + ", " + e.getMessage());
+                updateRelations(relations, "error");
+                derived.setStatus("error");
+                geospatialMapper.updateFile(derived);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * 逐分块计算派生栅格并写入GeoTIFF
+     * @return 计算的分块数
+     */
+    int compute(File sourceFile, GeoTiffHeader header, BandMathExpression expression, Path target)
+            throws IOException {
+        int bands = expression.getBandCount();
+        float noData = header.getNoData() != null ? header.getNoData().floatValue() : Float.NaN;
+        try (TiffReaderPool readerPool = new TiffReaderPool(sourceFile);
+             GeoTiffWriter writer = new GeoTiffWriter(target, header.getWidth(), header.getHeight(), TILE_SIZE)) {
+            if (header.isGeoreferenced()) {
+                writer.setGeoreference(header.getOriginX(), header.getOriginY(), header.getPixelSizeX(),
+                        header.getPixelSizeY(), header.getEpsgCode());
+            }
+
+            // 按行优先提交，同时处理的分块读取的是相邻的源数据条带
+            List<Future<?>> futures = new ArrayList<>(writer.getTilesAcross() * writer.getTilesDown());
+            for (int row = 0; row < writer.getTilesDown(); row++) {
+                for (int col = 0; col < writer.getTilesAcross(); col++) {
+                    int tileCol = col;
+                    int tileRow = row;
+                    futures.add(tileExecutor.submit(() -> {
+                        computeTile(readerPool, writer, expression, bands, noData, tileCol, tileRow);
+                        return null;
+                    }));
+                }
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("波段运算失败: " + cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("波段运算被中断", e);
+            }
+            writer.commit();
+            return futures.size();
+        }
+    }
+
+    /**
+     * 计算单个分块：读取源窗口各波段样本，按表达式求值，源无数据值的像素输出NaN
+     */
+    private void computeTile(TiffReaderPool readerPool, GeoTiffWriter writer, BandMathExpression expression,
+                             int bands, float noData, int col, int row) throws IOException {
+        int x = col * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        int count = TILE_SIZE * TILE_SIZE;
+        float[][] samples = bandBuffers.get();
+        if (samples.length < bands) {
+            samples = new float[bands][count];
+            bandBuffers.set(samples);
+        }
+        float[] result = resultBuffer.get();
+
+        int w;
+        int h;
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            Raster raster = reader.readRasterWindow(x, y, TILE_SIZE, TILE_SIZE, 1);
+            w = raster.getWidth();
+            h = raster.getHeight();
+            for (int b = 0; b < bands; b++) {
+                raster.getSamples(raster.getMinX(), raster.getMinY(), w, h, b, samples[b]);
+            }
+        } finally {
+            readerPool.release(reader);
+        }
+
+        int n = w * h;
+        expression.evaluate(samples, n, result);
+        if (!Float.isNaN(noData)) {
+            for (int b = 0; b < bands; b++) {
+                float[] band = samples[b];
+                for (int i = 0; i < n; i++) {
+                    if (band[i] == noData) {
+                        result[i] = Float.NaN;
+                    }
+                }
+            }
+        }
+
+        // 边缘分块：结果按实际宽度紧凑存放，展开为分块行宽，空白处填NaN
+        if (w < TILE_SIZE || h < TILE_SIZE) {
+            for (int r = h - 1; r >= 0; r--) {
+                System.arraycopy(result, r * w, result, r * TILE_SIZE, w);
+                Arrays.fill(result, r * TILE_SIZE + w, (r + 1) * TILE_SIZE, Float.NaN);
+            }
+            Arrays.fill(result, h * TILE_SIZE, count, Float.NaN);
+        }
+        writer.writeTile(col, row, result);
+    }
+
+    /**
+     * 派生文件路径：与源文件同目录，文件名加数据类型后缀
+     */
+    private static Path derivedPath(Path source, String dataType) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return source.resolveSibling(base + "_" + dataType + ".tif");
+    }
+
+    /**
+     * 登记派生文件，重复运算时复用已有记录
+     */
+    private GeospatialFile registerDerivedFile(GeospatialFile source, Path target) {
+        GeospatialFile derived = geospatialMapper.findFileByPath(target.toString());
+        if (derived == null) {
+            derived = new GeospatialFile();
+            derived.setFileName(target.getFileName().toString());
+            derived.setFilePath(target.toString());
+            derived.setFileType("TIF");
+            derived.setUploadUserId(source.getUploadUserId());
+            derived.setStatus("processing");
+            geospatialMapper.insertFile(derived);
+        } else {
+            derived.setStatus("processing");
+            geospatialMapper.updateFile(derived);
+        }
+        return derived;
+    }
+
+    /**
+     * 派生文件继承源影像的水泥厂关联（数据类型改为派生类型，获取日期不变）
+     */
+    private List<CementPlantGeodata> linkPlants(Long sourceFileId, Long derivedFileId, String dataType, Long plantId) {
+        List<CementPlantGeodata> sourceRelations = geospatialMapper.listGeodataByFileId(sourceFileId);
+        Set<Long> linked = new LinkedHashSet<>();
+        for (CementPlantGeodata relation : geospatialMapper.listGeodataByFileId(derivedFileId)) {
+            if (dataType.equalsIgnoreCase(relation.getDataType())) {
+                linked.add(relation.getPlantId());
+            }
+        }
+
+        List<CementPlantGeodata> relations = new ArrayList<>();
+        List<CementPlantGeodata> templates = new ArrayList<>(sourceRelations);
+        if (plantId != null) {
+            CementPlantGeodata extra = new CementPlantGeodata();
+            extra.setPlantId(plantId);
+            templates.add(extra);
+        }
+        for (CementPlantGeodata template : templates) {
+            if (!linked.add(template.getPlantId())) {
+                continue;
+            }
+            CementPlantGeodata relation = new CementPlantGeodata();
+            relation.setPlantId(template.getPlantId());
+            relation.setFileId(derivedFileId);
+            relation.setIdentificationId(template.getIdentificationId());
+            relation.setDataType(dataType);
+            relation.setAcquisitionDate(template.getAcquisitionDate());
+            relation.setProcessingStatus("processing");
+            geospatialMapper.insertGeodataRelation(relation);
+            relations.add(relation);
+        }
+        return relations;
+    }
+
+    private void updateRelations(List<CementPlantGeodata> relations, String status) {
+        for (CementPlantGeodata relation : relations) {
+            relation.setProcessingStatus(status);
+            geospatialMapper.updateGeodataRelation(relation);
+        }
+    }
+
+    /**
+     * 解析波段别名配置 "NAME:波段号,..."
+     */
+    static Map<String, Integer> parseAliases(String spec) {
+        Map<String, Integer> aliases = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return aliases;
+        }
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("无效的波段别名: " + item);
+            }
+            aliases.put(parts[0].trim().toUpperCase(Locale.ROOT), Integer.parseInt(parts[1].trim()));
+        }
+        return aliases;
+    }
+}
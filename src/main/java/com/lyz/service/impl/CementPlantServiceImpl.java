@@ -41,6 +41,12 @@ public class CementPlantServiceImpl implements CementPlantService {
     @Autowired
     private DataLockService dataLockService;
     
+    @Autowired
+    private MvtTileService mvtTileService;
+    
+    @Autowired
+    private PointClusterService pointClusterService;
+    
     @Override
     public CementPlant findById(Long plantId) {
         return cementPlantMapper.findById(plantId);
@@ -71,16 +77,24 @@ public class CementPlantServiceImpl implements CementPlantService {
             cementPlant.setStatus("active");
         }
         cementPlantMapper.insert(cementPlant);
+        mvtTileService.invalidate();
+        pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, cementPlant.getPlantId(),
+                cementPlant.getLongitude(), cementPlant.getLatitude());
     }
     
     @Override
     public void updatePlant(CementPlant cementPlant) {
         cementPlantMapper.update(cementPlant);
+        mvtTileService.invalidate();
+        pointClusterService.invalidate(PointClusterService.LAYER_PLANTS);
     }
     
     @Override
     public void deletePlant(Long plantId) {
         cementPlantMapper.deleteById(plantId);
+        mvtTileService.invalidate();
+        pointClusterService.invalidate(PointClusterService.LAYER_PLANTS);
+        pointClusterService.invalidate(PointClusterService.LAYER_IDENTIFICATIONS);
     }
     
     @Override
@@ -113,16 +127,23 @@ public class CementPlantServiceImpl implements CementPlantService {
             identification.setDataSource("GF-2");
         }
         cementPlantMapper.insertIdentification(identification);
+        mvtTileService.invalidate();
+        pointClusterService.onInserted(PointClusterService.LAYER_IDENTIFICATIONS, identification.getIdentificationId(),
+                identification.getLongitude(), identification.getLatitude());
     }
     
     @Override
     public void updateIdentification(CementPlantIdentification identification) {
         cementPlantMapper.updateIdentification(identification);
+        mvtTileService.invalidate();
+        pointClusterService.invalidate(PointClusterService.LAYER_IDENTIFICATIONS);
     }
     
     @Override
     public void deleteIdentification(Long identificationId) {
         cementPlantMapper.deleteIdentificationById(identificationId);
+        mvtTileService.invalidate();
+        pointClusterService.invalidate(PointClusterService.LAYER_IDENTIFICATIONS);
     }
     
     @Override
@@ -170,6 +191,8 @@ public class CementPlantServiceImpl implements CementPlantService {
                 
                 cementPlantMapper.insert(newPlant);
                 plantId = newPlant.getPlantId();
+                pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, plantId,
+                        newPlant.getLongitude(), newPlant.getLatitude());
                 
                 // 缓存新创建的水泥厂信息
                 cacheCementPlant(newPlant);
@@ -196,6 +219,9 @@ public class CementPlantServiceImpl implements CementPlantService {
             identification.setCreatedAt(LocalDateTime.now());
             
             cementPlantMapper.insertIdentification(identification);
+            mvtTileService.invalidate();
+            pointClusterService.onInserted(PointClusterService.LAYER_IDENTIFICATIONS,
+                    identification.getIdentificationId(), identification.getLongitude(), identification.getLatitude());
             
             // 5. 如果有TIF文件路径，处理地理数据
             if (dataDTO.getTifFilePath() != null && !dataDTO.getTifFilePath().isEmpty()) {
@@ -0,0 +1,211 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.CogWriter;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 云优化GeoTIFF（COG）转换服务
+ * 上传处理时在后台把TIF重写为分块、带概览的COG（{cog-dir}/{fileId}.tif），
+ * 客户端可按HTTP Range只读取文件头和需要的分块，不必下载整个文件；
+ * 按需渲染瓦片时也优先读取COG的分块，而不是原始影像的整行条带。
+ * 全分辨率分块并行读取和压缩，概览逐级由上一级的分块并行生成。
+ */
+@Service
+public class CogService {
+
+    // COG文件目录
+    @Value("${tile.cog.dir:${file.upload-dir}/cog}")
+    private String cogDir;
+
+    // 分块边长（16的倍数）
+    @Value("${tile.cog.block-size:512}")
+    private int blockSize;
+
+    // 转换并行度，默认为CPU核数
+    @Value("${tile.cog.parallelism:0}")
+    private int parallelism;
+
+    // 转换任务依次执行，分块在工作线程池中并行
+    private ExecutorService jobExecutor;
+    private ExecutorService blockExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        jobExecutor = Executors.newSingleThreadExecutor();
+        blockExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        blockExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交转换任务，完成后替换文件已有的COG
+     */
+    public void submit(Long fileId, File tifFile) {
+        jobExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                if (convert(tifFile, getCogPath(fileId))) {
+                    System.out.println("COG转换完成: fileId=" + fileId + ", 耗时="
+                            + (System.currentTimeMillis() - start) + "ms");
+                }
+            } catch (Exception e) {
+                System.err.println("COG转换失败: fileId=" + fileId + ", " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 获取文件的COG
+     * @param sourceFile 原始TIF文件，COG比它旧时视为过期
+     * @return COG文件，尚未生成或已过期时返回null
+     */
+    public File getCogFile(Long fileId, File sourceFile) {
+        File cog = getCogPath(fileId).toFile();
+        if (!cog.isFile() || (sourceFile != null && cog.lastModified() < sourceFile.lastModified())) {
+            return null;
+        }
+        return cog;
+    }
+
+    private Path getCogPath(Long fileId) {
+        return Paths.get(cogDir, fileId + ".tif");
+    }
+
+    /**
+     * 把TIF转换为COG
+     * @return 样本类型不受支持、跳过转换时返回false
+     */
+    boolean convert(File tifFile, Path target) throws IOException {
+        GeoTiffHeader header = GeoTiffHeader.read(tifFile.toPath());
+        if (!CogWriter.isSupported(header.getBitsPerSample(), header.getSampleFormat())) {
+            System.out.println("COG转换跳过，不支持的样本类型: " + tifFile.getName() + ", "
+                    + header.getDataTypeName());
+            return false;
+        }
+
+        int bands = header.getSamplesPerPixel();
+        try (CogWriter writer = new CogWriter(target, header.getWidth(), header.getHeight(), bands,
+                header.getBitsPerSample(), header.getSampleFormat(), blockSize, header.getNoData());
+             TiffReaderPool readerPool = new TiffReaderPool(tifFile)) {
+            if (header.isGeoreferenced()) {
+                writer.setGeoreference(header.getOriginX(), header.getOriginY(), header.getPixelSizeX(),
+                        header.getPixelSizeY(), header.getEpsgCode());
+            }
+
+            // 全分辨率分块从原始影像读取
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int row = 0; row < writer.getTilesDown(0); row++) {
+                for (int col = 0; col < writer.getTilesAcross(0); col++) {
+                    int c = col;
+                    int r = row;
+                    tasks.add(() -> {
+                        writer.writeTile(c, r, readBlock(readerPool, header, writer, c, r));
+                        return null;
+                    });
+                }
+            }
+            runAll(tasks);
+
+            // 概览逐级生成，同一级的分块互不依赖
+            for (int level = 1; level < writer.getLevelCount(); level++) {
+                tasks.clear();
+                for (int row = 0; row < writer.getTilesDown(level); row++) {
+                    for (int col = 0; col < writer.getTilesAcross(level); col++) {
+                        int l = level;
+                        int c = col;
+                        int r = row;
+                        tasks.add(() -> {
+                            writer.buildOverviewTile(l, c, r);
+                            return null;
+                        });
+                    }
+                }
+                runAll(tasks);
+            }
+            writer.commit();
+        }
+        return true;
+    }
+
+    /**
+     * 读取一个全分辨率分块的样本（像素交错，行宽为分块边长，超出影像的部分为填充值）
+     */
+    private double[] readBlock(TiffReaderPool readerPool, GeoTiffHeader header, CogWriter writer,
+                               int col, int row) throws IOException {
+        int size = writer.getBlockSize();
+        int bands = header.getSamplesPerPixel();
+        int x = col * size;
+        int y = row * size;
+        int w = Math.min(size, header.getWidth() - x);
+        int h = Math.min(size, header.getHeight() - y);
+
+        Raster raster;
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            raster = reader.readRasterWindow(x, y, w, h, 1);
+        } finally {
+            readerPool.release(reader);
+        }
+        double[] window = raster.getPixels(raster.getMinX(), raster.getMinY(), w, h, (double[]) null);
+
+        double[] samples = new double[size * size * bands];
+        Arrays.fill(samples, writer.getFillValue());
+        for (int j = 0; j < h; j++) {
+            System.arraycopy(window, j * w * bands, samples, j * size * bands, w * bands);
+        }
+        return samples;
+    }
+
+    /**
+     * 并行执行一组任务，任一失败时取消其余任务
+     */
+    private void runAll(List<Callable<Void>> tasks) throws IOException {
+        List<Future<Void>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Void> task : tasks) {
+            futures.add(blockExecutor.submit(task));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("COG转换失败: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("COG转换被中断", e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.ColorRamp;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 颜色渐变注册表
+ * 按数据类型（NDVI等）提供数值影像的颜色渐变，可在配置 tile.color-ramps 中覆盖或新增，
+ * 未配置的数据类型使用 DEFAULT 渐变
+ */
+@Component
+@ConfigurationProperties(prefix = "tile")
+public class ColorRampRegistry {
+
+    public static final String DEFAULT = "DEFAULT";
+
+    // 内置渐变
+    private static final Map<String, String> BUILT_IN = Map.of(
+            "NDVI", "-1:#0c0c0c,-0.2:#bfbfbf,0:#eaeaea,0.1:#ccc682,0.2:#91bf51,0.4:#4f892d,0.6:#306d1c,1:#0f540a",
+            DEFAULT, "0:#000000,1:#ffffff");
+
+    // 查找表长度
+    @Value("${tile.color-ramp-size:1024}")
+    private int rampSize;
+
+    // 配置的渐变：数据类型 -> 控制点定义
+    private Map<String, String> colorRamps = new HashMap<>();
+
+    // 已生成的查找表
+    private final Map<String, ColorRamp> ramps = new ConcurrentHashMap<>();
+
+    /**
+     * 获取数据类型对应的颜色渐变
+     * 派生类型（如时间合成的 NDVI_MAX）未单独配置时使用其基础类型（NDVI）的渐变
+     * @param dataType 数据类型（不区分大小写），null或未配置时使用DEFAULT
+     */
+    public ColorRamp getRamp(String dataType) {
+        String key = dataType == null ? DEFAULT : dataType.toUpperCase(Locale.ROOT);
+        while (!colorRamps.containsKey(key) && !BUILT_IN.containsKey(key)) {
+            int suffix = key.lastIndexOf('_');
+            if (suffix <= 0) {
+                key = DEFAULT;
+                break;
+            }
+            key = key.substring(0, suffix);
+        }
+        return ramps.computeIfAbsent(key, k -> ColorRamp.parse(colorRamps.getOrDefault(k, BUILT_IN.get(k)), rampSize));
+    }
+
+    public Map<String, String> getColorRamps() {
+        return colorRamps;
+    }
+
+    public void setColorRamps(Map<String, String> colorRamps) {
+        // 键统一为大写
+        Map<String, String> normalized = new HashMap<>();
+        colorRamps.forEach((k, v) -> normalized.put(k.toUpperCase(Locale.ROOT), v));
+        this.colorRamps = normalized;
+        ramps.clear();
+    }
+}
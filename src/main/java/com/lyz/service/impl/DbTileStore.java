@@ -0,0 +1,118 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.service.TileStore;
+import com.lyz.utils.Sha256Util;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据库瓦片存储：瓦片坐标保存在 geospatial_tiles 表中，
+ * 瓦片数据按内容哈希去重后保存在 geospatial_tile_blobs 表中（瓦片行以外键引用）。
+ * 写入会话关闭和删除瓦片后清理不再被引用的瓦片数据。
+ */
+@Service
+@ConditionalOnProperty(name = "tile.store.type", havingValue = "db", matchIfMissing = true)
+public class DbTileStore implements TileStore {
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    // 批量写入：累积多少个瓦片提交一次
+    @Value("${tile.batch.flush-tiles:500}")
+    private int batchFlushTiles;
+
+    // 批量写入：累积多少字节提交一次
+    @Value("${tile.batch.flush-bytes:16777216}")
+    private long batchFlushBytes;
+
+    /**
+     * 整体替换：关闭时在最后一次提交的同一事务中删除本次未写入的旧瓦片
+     */
+    @Override
+    public TileWriter openWriter(Long fileId) {
+        return new TileBatchWriter(sqlSessionFactory, fileId, batchFlushTiles, batchFlushBytes, true);
+    }
+
+    /**
+     * 按瓦片坐标覆盖写入的瓦片，不删除其余瓦片
+     */
+    @Override
+    public TileWriter openPatchWriter(Long fileId) {
+        return new TileBatchWriter(sqlSessionFactory, fileId, batchFlushTiles, batchFlushBytes, false);
+    }
+
+    /**
+     * 历史数据没有内容哈希时现场计算
+     */
+    @Override
+    public GeospatialTile getTile(Long fileId, int z, int x, int y) {
+        GeospatialTile tile = geospatialMapper.getTile(fileId, z, x, y);
+        if (tile == null || tile.getTileData() == null || tile.getTileData().length == 0) {
+            return null;
+        }
+        if (tile.getContentHash() == null) {
+            tile.setContentHash(Sha256Util.getSha256String(tile.getTileData()));
+        }
+        return tile;
+    }
+
+    /**
+     * 一次查询取回全部瓦片，再按坐标对应回请求顺序
+     */
+    @Override
+    public List<GeospatialTile> getTiles(Long fileId, List<TileKey> keys) {
+        Map<TileKey, GeospatialTile> found = new HashMap<>();
+        if (!keys.isEmpty()) {
+            for (GeospatialTile tile : geospatialMapper.listTiles(fileId, keys)) {
+                if (tile.getTileData() == null || tile.getTileData().length == 0) {
+                    continue;
+                }
+                if (tile.getContentHash() == null) {
+                    tile.setContentHash(Sha256Util.getSha256String(tile.getTileData()));
+                }
+                found.put(new TileKey(fileId, tile.getZoomLevel(), tile.getTileX(), tile.getTileY()), tile);
+            }
+        }
+        List<GeospatialTile> tiles = new ArrayList<>(keys.size());
+        for (TileKey key : keys) {
+            tiles.add(found.get(new TileKey(fileId, key.z(), key.x(), key.y())));
+        }
+        return tiles;
+    }
+
+    /**
+     * 数据行和瓦片行在同一事务中写入，期间数据行保持锁定，不会被并发的清理删除
+     */
+    @Override
+    @Transactional
+    public void putTile(Long fileId, int z, int x, int y, byte[] tileData) {
+        String contentHash = Sha256Util.getSha256String(tileData);
+        geospatialMapper.insertTileBlob(contentHash, tileData, tileData.length);
+        geospatialMapper.insertTile(fileId, z, x, y, 256, TileEncoder.formatOf(tileData), contentHash, null);
+    }
+
+    /**
+     * 删除瓦片行后清理不再被引用的瓦片数据
+     */
+    @Override
+    @Transactional
+    public void deleteTiles(Long fileId) {
+        geospatialMapper.deleteTilesByFileId(fileId);
+        TileBatchWriter.deleteOrphanBlobs(geospatialMapper);
+    }
+}
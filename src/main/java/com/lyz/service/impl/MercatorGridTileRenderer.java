@@ -0,0 +1,337 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.ColorRamp;
+import com.lyz.utils.CrsTransformUtil;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.TileImageUtil;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Web墨卡托网格瓦片渲染器
+ * 瓦片按标准XYZ全球网格（EPSG:3857）编号，与Web地图请求的z/x/y一致。
+ * 每个瓦片先由瓦片范围反算出源影像窗口，只读取该窗口，再逐像素重投影（最近邻采样）。
+ * 逐像素坐标转换按16像素间隔的网格节点精确计算，节点之间双线性插值。
+ */
+public class MercatorGridTileRenderer implements TileRenderEngine.TileRenderer {
+
+    // Web墨卡托全球范围（米）
+    private static final double WORLD_SIZE = 2 * Math.PI * 6378137.0;
+    private static final double HALF_WORLD = WORLD_SIZE / 2;
+
+    // 坐标转换插值网格间隔（像素）
+    private static final int GRID_STEP = 16;
+    private static final int GRID_NODES = TileImageUtil.TILE_SIZE / GRID_STEP + 1;
+
+    // 最细级别之上额外生成的概览级数（影像缩小到一个瓦片之后）
+    private static final int OVERVIEW_LEVELS = 2;
+
+    private final TiffReaderPool readerPool;
+    private final ColorRamp colorRamp;
+    private final float noData;
+    private final int width;
+    private final int height;
+    private final int epsg;
+    private final double originX;
+    private final double originY;
+    private final double pixelSizeX;
+    private final double pixelSizeY;
+
+    // 影像覆盖范围（Web墨卡托坐标）
+    private final double minMercatorX;
+    private final double minMercatorY;
+    private final double maxMercatorX;
+    private final double maxMercatorY;
+
+    private final int minZoom;
+    private final int maxZoom;
+
+    /**
+     * 文件是否可以按Web墨卡托网格切片（有地理参考且坐标系受支持）
+     */
+    public static boolean supports(GeoTiffHeader header) {
+        return header.isGeoreferenced() && CrsTransformUtil.isSupported(header.getEpsgCode());
+    }
+
+    /**
+     * @param tifFile TIF文件
+     * @param header 文件头（必须满足 supports）
+     * @param maxZoomLimit 最细级别上限
+     * @param colorRamp 单波段数值影像的颜色渐变，null表示按影像自身颜色
+     */
+    public MercatorGridTileRenderer(File tifFile, GeoTiffHeader header, int maxZoomLimit, ColorRamp colorRamp) {
+        this.readerPool = new TiffReaderPool(tifFile);
+        this.colorRamp = colorRamp;
+        this.noData = header.getNoData() != null ? header.getNoData().floatValue() : Float.NaN;
+        this.width = header.getWidth();
+        this.height = header.getHeight();
+        this.epsg = header.getEpsgCode();
+        this.originX = header.getOriginX();
+        this.originY = header.getOriginY();
+        this.pixelSizeX = header.getPixelSizeX();
+        this.pixelSizeY = header.getPixelSizeY();
+
+        double[] lonLat = CrsTransformUtil.toLonLatBounds(epsg, originX, originY - height * pixelSizeY,
+                originX + width * pixelSizeX, originY);
+        double[] min = CrsTransformUtil.lonLatToMercator(lonLat[0], lonLat[1]);
+        double[] max = CrsTransformUtil.lonLatToMercator(lonLat[2], lonLat[3]);
+        this.minMercatorX = min[0];
+        this.minMercatorY = min[1];
+        this.maxMercatorX = max[0];
+        this.maxMercatorY = max[1];
+
+        // 最细级别：瓦片像素不大于影像中心处一个源像素在墨卡托下的尺寸
+        double[] c0 = toMercator(width / 2.0, height / 2.0);
+        double[] c1 = toMercator(width / 2.0 + 1, height / 2.0 + 1);
+        double mercatorPixel = Math.max(Math.abs(c1[0] - c0[0]), Math.abs(c1[1] - c0[1]));
+        int nativeZoom = (int) Math.ceil(log2(WORLD_SIZE / (TileImageUtil.TILE_SIZE * mercatorPixel)));
+        this.maxZoom = Math.max(0, Math.min(maxZoomLimit, nativeZoom));
+
+        // 最粗级别：整幅影像约缩小到一个瓦片，再往上保留几级概览
+        double extent = Math.max(maxMercatorX - minMercatorX, maxMercatorY - minMercatorY);
+        int fitZoom = extent <= 0 ? maxZoom : (int) Math.floor(log2(WORLD_SIZE / extent));
+        this.minZoom = Math.max(0, Math.min(maxZoom, fitZoom - OVERVIEW_LEVELS));
+    }
+
+    @Override
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    @Override
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    @Override
+    public boolean intersects(int z, int x, int y) {
+        double span = WORLD_SIZE / (1L << z);
+        double tileMinX = -HALF_WORLD + x * span;
+        double tileMaxY = HALF_WORLD - y * span;
+        return tileMinX < maxMercatorX && tileMinX + span > minMercatorX
+                && tileMaxY > minMercatorY && tileMaxY - span < maxMercatorY;
+    }
+
+    @Override
+    public int[] renderLeaf(int x, int y) throws IOException {
+        return renderTile(maxZoom, x, y);
+    }
+
+    @Override
+    public int[] renderTile(int z, int x, int y) throws IOException {
+        TileWindow tile = locate(z, x, y);
+        if (tile == null) {
+            return null;
+        }
+        int[] window;
+        int winWidth;
+        int winHeight;
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            TiffWindowReader.ArgbWindow argb = reader.readArgbWindow(tile.winX(), tile.winY(), tile.winWidth(),
+                    tile.winHeight(), tile.subsampling(), colorRamp, noData);
+            winWidth = argb.width();
+            winHeight = argb.height();
+            window = argb.pixels();
+        } finally {
+            readerPool.release(reader);
+        }
+
+        int[] index = sourceIndex(tile, winWidth, winHeight);
+        int[] pixels = new int[index.length];
+        boolean any = false;
+        for (int i = 0; i < index.length; i++) {
+            if (index[i] >= 0) {
+                pixels[i] = window[index[i]];
+                any = true;
+            }
+        }
+        return any ? pixels : null;
+    }
+
+    /**
+     * 渲染瓦片的第一波段原始值（不着色，用于多影像按值合成）
+     * @return 256x256个值，影像范围外和无数据值为NaN；瓦片不在影像范围内返回null
+     */
+    public float[] renderValues(int z, int x, int y) throws IOException {
+        TileWindow tile = locate(z, x, y);
+        if (tile == null) {
+            return null;
+        }
+        Raster raster;
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            raster = reader.readRasterWindow(tile.winX(), tile.winY(), tile.winWidth(), tile.winHeight(),
+                    tile.subsampling());
+        } finally {
+            readerPool.release(reader);
+        }
+        int winWidth = raster.getWidth();
+        int winHeight = raster.getHeight();
+        float[] window = raster.getSamples(raster.getMinX(), raster.getMinY(), winWidth, winHeight, 0,
+                new float[winWidth * winHeight]);
+
+        int[] index = sourceIndex(tile, winWidth, winHeight);
+        float[] values = new float[index.length];
+        boolean any = false;
+        for (int i = 0; i < index.length; i++) {
+            float v = index[i] >= 0 ? window[index[i]] : Float.NaN;
+            if (v == noData) {
+                v = Float.NaN;
+            }
+            values[i] = v;
+            any |= index[i] >= 0;
+        }
+        return any ? values : null;
+    }
+
+    /**
+     * 瓦片对应的源影像窗口，及网格节点处的源像素坐标
+     */
+    private record TileWindow(int winX, int winY, int winWidth, int winHeight, int subsampling,
+                              float[] nodeCol, float[] nodeRow) {
+    }
+
+    /**
+     * 由瓦片范围反算源影像窗口，瓦片不在影像范围内返回null
+     */
+    private TileWindow locate(int z, int x, int y) {
+        if (z < 0 || z > maxZoom || !intersects(z, x, y)) {
+            return null;
+        }
+        int tileSize = TileImageUtil.TILE_SIZE;
+        double span = WORLD_SIZE / (1L << z);
+        double tileMinX = -HALF_WORLD + x * span;
+        double tileMaxY = HALF_WORLD - y * span;
+        double mercatorPixel = span / tileSize;
+
+        // 网格节点对应的源像素坐标，同时求源影像窗口
+        float[] nodeCol = new float[GRID_NODES * GRID_NODES];
+        float[] nodeRow = new float[GRID_NODES * GRID_NODES];
+        double minCol = Double.POSITIVE_INFINITY;
+        double minRow = Double.POSITIVE_INFINITY;
+        double maxCol = Double.NEGATIVE_INFINITY;
+        double maxRow = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < GRID_NODES; j++) {
+            for (int i = 0; i < GRID_NODES; i++) {
+                double[] lonLat = CrsTransformUtil.mercatorToLonLat(tileMinX + i * GRID_STEP * mercatorPixel,
+                        tileMaxY - j * GRID_STEP * mercatorPixel);
+                double[] src = CrsTransformUtil.fromLonLat(epsg, lonLat[0], lonLat[1]);
+                double col = (src[0] - originX) / pixelSizeX;
+                double row = (originY - src[1]) / pixelSizeY;
+                nodeCol[j * GRID_NODES + i] = (float) col;
+                nodeRow[j * GRID_NODES + i] = (float) row;
+                minCol = Math.min(minCol, col);
+                maxCol = Math.max(maxCol, col);
+                minRow = Math.min(minRow, row);
+                maxRow = Math.max(maxRow, row);
+            }
+        }
+        int winX = (int) Math.max(0, Math.floor(minCol));
+        int winY = (int) Math.max(0, Math.floor(minRow));
+        int winX2 = (int) Math.min(width, Math.ceil(maxCol) + 1);
+        int winY2 = (int) Math.min(height, Math.ceil(maxRow) + 1);
+        if (winX >= winX2 || winY >= winY2) {
+            return null;
+        }
+
+        // 窗口远大于瓦片时（较粗级别按需渲染）抽样读取
+        int subsampling = Math.max(1, (int) Math.floor(Math.min((winX2 - winX) / (double) tileSize,
+                (winY2 - winY) / (double) tileSize)));
+        return new TileWindow(winX, winY, winX2 - winX, winY2 - winY, subsampling, nodeCol, nodeRow);
+    }
+
+    /**
+     * 逐像素重投影：每个瓦片像素对应的窗口样本下标，影像范围外为-1
+     */
+    private int[] sourceIndex(TileWindow tile, int winWidth, int winHeight) {
+        int tileSize = TileImageUtil.TILE_SIZE;
+        int subsampling = tile.subsampling();
+        int[] index = new int[tileSize * tileSize];
+        for (int py = 0; py < tileSize; py++) {
+            int gj = py / GRID_STEP;
+            float fy = (py + 0.5f) / GRID_STEP - gj;
+            for (int px = 0; px < tileSize; px++) {
+                int gi = px / GRID_STEP;
+                float fx = (px + 0.5f) / GRID_STEP - gi;
+                int n = gj * GRID_NODES + gi;
+                float col = bilinear(tile.nodeCol(), n, fx, fy);
+                float row = bilinear(tile.nodeRow(), n, fx, fy);
+                index[py * tileSize + px] = -1;
+                if (col < 0 || row < 0 || col >= width || row >= height) {
+                    continue;
+                }
+                int sx = ((int) col - tile.winX()) / subsampling;
+                int sy = ((int) row - tile.winY()) / subsampling;
+                if (sx >= 0 && sy >= 0 && sx < winWidth && sy < winHeight) {
+                    index[py * tileSize + px] = sy * winWidth + sx;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 网格单元内双线性插值，n为单元左上角节点下标
+     */
+    private static float bilinear(float[] nodes, int n, float fx, float fy) {
+        float top = nodes[n] + (nodes[n + 1] - nodes[n]) * fx;
+        float bottom = nodes[n + GRID_NODES] + (nodes[n + GRID_NODES + 1] - nodes[n + GRID_NODES]) * fx;
+        return top + (bottom - top) * fy;
+    }
+
+    /**
+     * 沿区域边界取点投影到Web墨卡托，求覆盖的瓦片范围；
+     * 重投影插值可能用到区域外一个像素，范围向外扩展一个瓦片
+     */
+    @Override
+    public int[] leafRange(int x0, int y0, int x1, int y1) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int steps = 8;
+        for (int i = 0; i <= steps; i++) {
+            double col = x0 + (x1 - x0) * (double) i / steps;
+            double row = y0 + (y1 - y0) * (double) i / steps;
+            for (double[] point : new double[][]{toMercator(col, y0), toMercator(col, y1),
+                    toMercator(x0, row), toMercator(x1, row)}) {
+                minX = Math.min(minX, point[0]);
+                maxX = Math.max(maxX, point[0]);
+                minY = Math.min(minY, point[1]);
+                maxY = Math.max(maxY, point[1]);
+            }
+        }
+        if (!Double.isFinite(minX) || !Double.isFinite(minY) || !Double.isFinite(maxX) || !Double.isFinite(maxY)) {
+            return null;
+        }
+        int last = (int) ((1L << maxZoom) - 1);
+        double span = WORLD_SIZE / (1L << maxZoom);
+        return new int[]{
+                (int) Math.max(0, Math.floor((minX + HALF_WORLD) / span) - 1),
+                (int) Math.max(0, Math.floor((HALF_WORLD - maxY) / span) - 1),
+                (int) Math.min(last, Math.floor((maxX + HALF_WORLD) / span) + 1),
+                (int) Math.min(last, Math.floor((HALF_WORLD - minY) / span) + 1)};
+    }
+
+    /**
+     * 源像素坐标转换为Web墨卡托坐标
+     */
+    private double[] toMercator(double col, double row) {
+        double[] lonLat = CrsTransformUtil.toLonLat(epsg, originX + col * pixelSizeX, originY - row * pixelSizeY);
+        return CrsTransformUtil.lonLatToMercator(lonLat[0], lonLat[1]);
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    @Override
+    public void close() {
+        readerPool.close();
+    }
+}
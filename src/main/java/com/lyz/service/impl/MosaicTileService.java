@@ -0,0 +1,359 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.utils.ColorRamp;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.RefCountingLruCache;
+import com.lyz.utils.Sha256Util;
+import com.lyz.utils.StrTree;
+import com.lyz.utils.TileImageUtil;
+import com.lyz.utils.WeightedLruCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 镶嵌瓦片服务
+ * 把关联了同一数据类型（如NDVI）的所有影像视为一个无缝图层，按Web墨卡托z/x/y实时合成瓦片，无需离线拼接影像。
+ * 与瓦片相交的影像通过内存R树（影像经纬度范围）查找，按优先级合成：
+ * newest：按获取日期从新到旧叠加，较新影像的无数据/透明像素由较旧影像填补，瓦片填满后不再读取更旧的影像；
+ * max：逐像素取第一波段的最大值（如最大NDVI合成），再按数据类型的颜色渐变着色。
+ * 合成结果按字节数限额的LRU缓存，文件重新处理时清空。
+ */
+@Service
+public class MosaicTileService {
+
+    public static final String PRIORITY_NEWEST = "newest";
+    public static final String PRIORITY_MAX = "max";
+
+    // 缓存条目除数据外的估算开销
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // 无数据瓦片的缓存占位
+    private static final GeospatialTile EMPTY = new GeospatialTile();
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    @Autowired
+    private ColorRampRegistry colorRampRegistry;
+
+    @Autowired
+    private TileEncoder tileEncoder;
+
+    // 合成瓦片缓存字节上限，默认64MB
+    @Value("${tile.mosaic.cache-bytes:67108864}")
+    private long cacheBytes;
+
+    // 图层影像索引的最长使用时间（秒），超过后重建
+    @Value("${tile.mosaic.index-ttl-seconds:60}")
+    private long indexTtlSeconds;
+
+    // 最多保持打开的影像渲染器数
+    @Value("${tile.mosaic.max-open-files:32}")
+    private int maxOpenFiles;
+
+    // Web墨卡托网格最细级别上限
+    @Value("${tile.render.max-zoom:20}")
+    private int maxZoomLimit;
+
+    /**
+     * 合成瓦片缓存键
+     */
+    private record MosaicKey(String dataType, String priority, int z, int x, int y) {
+    }
+
+    /**
+     * 图层中的一幅影像，rank越小优先级越高（越新）
+     */
+    private record MosaicSource(int rank, GeospatialFile file) {
+    }
+
+    /**
+     * 图层影像索引快照
+     */
+    private record MosaicLayer(StrTree<MosaicSource> tree, long builtAt) {
+    }
+
+    private WeightedLruCache<MosaicKey, GeospatialTile> tileCache;
+
+    // 数据类型（大写） -> 图层索引
+    private final Map<String, MosaicLayer> layers = new ConcurrentHashMap<>();
+
+    // 正在合成的瓦片，同一瓦片的并发请求共享一次合成
+    private final Map<MosaicKey, CompletableFuture<GeospatialTile>> inflight = new ConcurrentHashMap<>();
+
+    // 各文件的渲染器（复用TIF读取器，按访问顺序保留；淘汰后等进行中的合成结束再关闭）
+    private RefCountingLruCache<Long, MercatorGridTileRenderer> renderers;
+
+    // 没有地理参考或坐标系不受支持、无法参与镶嵌的文件（读取失败不计入，文件重新处理时移除）
+    private final Set<Long> unsupportedFiles = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        tileCache = new WeightedLruCache<>(cacheBytes,
+                tile -> (tile.getTileData() != null ? tile.getTileData().length : 0) + ENTRY_OVERHEAD);
+        renderers = new RefCountingLruCache<>("mosaic-renderers", maxOpenFiles);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderers.clear();
+    }
+
+    /**
+     * 文件处理完成或删除后调用：重建图层索引并清空合成缓存
+     */
+    public void invalidate(Long fileId) {
+        layers.clear();
+        tileCache.clear();
+        unsupportedFiles.remove(fileId);
+        renderers.invalidate(fileId);
+    }
+
+    /**
+     * 获取镶嵌瓦片
+     * @param dataType 数据类型（cement_plant_geodata.data_type）
+     * @param priority 合成优先级：newest 或 max
+     * @return 瓦片，没有影像覆盖时返回null
+     */
+    public GeospatialTile getTile(String dataType, String priority, int z, int x, int y) throws IOException {
+        String mode = priority == null || priority.isEmpty() ? PRIORITY_NEWEST : priority.toLowerCase();
+        if (!PRIORITY_NEWEST.equals(mode) && !PRIORITY_MAX.equals(mode)) {
+            throw new IllegalArgumentException("不支持的合成优先级: " + priority);
+        }
+        if (z < 0 || z > maxZoomLimit || x < 0 || y < 0 || x >= (1L << z) || y >= (1L << z)) {
+            throw new IllegalArgumentException("瓦片坐标无效: " + z + "/" + x + "/" + y);
+        }
+        MosaicKey key = new MosaicKey(dataType.toUpperCase(), mode, z, x, y);
+        GeospatialTile cached = tileCache.get(key);
+        if (cached != null) {
+            return cached == EMPTY ? null : cached;
+        }
+
+        CompletableFuture<GeospatialTile> render = new CompletableFuture<>();
+        CompletableFuture<GeospatialTile> running = inflight.putIfAbsent(key, render);
+        if (running != null) {
+            try {
+                GeospatialTile tile = running.join();
+                return tile == EMPTY ? null : tile;
+            } catch (CompletionException e) {
+                throw new IOException("合成镶嵌瓦片失败: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        try {
+            Set<Long> failedFiles = new HashSet<>();
+            GeospatialTile tile = composite(key, failedFiles);
+            // 有影像读取失败时结果不完整，不缓存，下次请求重新合成
+            if (failedFiles.isEmpty()) {
+                tileCache.put(key, tile);
+            }
+            render.complete(tile);
+            return tile == EMPTY ? null : tile;
+        } catch (IOException | RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, render);
+        }
+    }
+
+    /**
+     * 合成瓦片
+     * @param failedFiles 收集读取失败、被跳过的文件
+     * @return 瓦片，没有影像覆盖时返回EMPTY
+     */
+    private GeospatialTile composite(MosaicKey key, Set<Long> failedFiles) throws IOException {
+        List<MosaicSource> sources = findSources(key.dataType(), key.z(), key.x(), key.y());
+        if (sources.isEmpty()) {
+            return EMPTY;
+        }
+        int[] pixels = PRIORITY_MAX.equals(key.priority())
+                ? compositeMax(sources, key.dataType(), key.z(), key.x(), key.y(), failedFiles)
+                : compositeNewest(sources, key.dataType(), key.z(), key.x(), key.y(), failedFiles);
+        if (pixels == null) {
+            return EMPTY;
+        }
+        byte[] tileData = tileEncoder.encode(pixels, tileEncoder.codecFor(key.dataType()));
+        GeospatialTile tile = new GeospatialTile();
+        tile.setZoomLevel(key.z());
+        tile.setTileX(key.x());
+        tile.setTileY(key.y());
+        tile.setTileData(tileData);
+        tile.setTileSize(TileImageUtil.TILE_SIZE);
+        tile.setFormat(TileEncoder.formatOf(tileData));
+        tile.setContentHash(Sha256Util.getSha256String(tileData));
+        tile.setCreatedAt(LocalDateTime.now());
+        return tile;
+    }
+
+    /**
+     * 从新到旧叠加：只填补尚未有颜色的像素，全部填满后停止
+     */
+    private int[] compositeNewest(List<MosaicSource> sources, String dataType, int z, int x, int y,
+                                  Set<Long> failedFiles) throws IOException {
+        int[] pixels = null;
+        int remaining = TileImageUtil.TILE_SIZE * TileImageUtil.TILE_SIZE;
+        for (MosaicSource source : sources) {
+            int[] layer;
+            try (RefCountingLruCache<Long, MercatorGridTileRenderer>.Lease lease = acquireRenderer(source.file(), dataType, failedFiles)) {
+                layer = lease == null ? null : lease.get().renderTile(z, x, y);
+            }
+            if (layer == null) {
+                continue;
+            }
+            if (pixels == null) {
+                pixels = new int[layer.length];
+            }
+            for (int i = 0; i < layer.length; i++) {
+                if ((pixels[i] >>> 24) == 0 && (layer[i] >>> 24) != 0) {
+                    pixels[i] = layer[i];
+                    remaining--;
+                }
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * 逐像素取第一波段最大值后着色
+     */
+    private int[] compositeMax(List<MosaicSource> sources, String dataType, int z, int x, int y,
+                               Set<Long> failedFiles) throws IOException {
+        float[] max = null;
+        for (MosaicSource source : sources) {
+            float[] values;
+            try (RefCountingLruCache<Long, MercatorGridTileRenderer>.Lease lease = acquireRenderer(source.file(), dataType, failedFiles)) {
+                values = lease == null ? null : lease.get().renderValues(z, x, y);
+            }
+            if (values == null) {
+                continue;
+            }
+            if (max == null) {
+                max = values;
+                continue;
+            }
+            for (int i = 0; i < values.length; i++) {
+                // NaN参与比较时保留另一方
+                if (values[i] > max[i] || max[i] != max[i]) {
+                    max[i] = values[i];
+                }
+            }
+        }
+        if (max == null) {
+            return null;
+        }
+        int[] pixels = new int[max.length];
+        colorRampRegistry.getRamp(dataType).apply(max, max.length, Float.NaN, pixels);
+        return pixels;
+    }
+
+    /**
+     * 与瓦片范围相交的影像，按优先级排列
+     */
+    private List<MosaicSource> findSources(String dataType, int z, int x, int y) {
+        double n = 1L << z;
+        double west = x / n * 360 - 180;
+        double east = (x + 1) / n * 360 - 180;
+        double north = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+        double south = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * (y + 1) / n))));
+        List<MosaicSource> sources = new ArrayList<>(currentLayer(dataType).tree().query(west, south, east, north));
+        sources.sort(Comparator.comparingInt(MosaicSource::rank));
+        return sources;
+    }
+
+    /**
+     * 获取图层索引，过期时重建
+     */
+    private MosaicLayer currentLayer(String dataType) {
+        long now = System.currentTimeMillis();
+        MosaicLayer layer = layers.get(dataType);
+        if (layer != null && now - layer.builtAt() < indexTtlSeconds * 1000) {
+            return layer;
+        }
+        List<GeospatialFile> files = geospatialMapper.listMosaicFiles(dataType);
+        List<MosaicSource> sources = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            sources.add(new MosaicSource(i, files.get(i)));
+        }
+        layer = new MosaicLayer(StrTree.build(sources, s -> new double[]{
+                s.file().getBoundsWest().doubleValue(), s.file().getBoundsSouth().doubleValue(),
+                s.file().getBoundsEast().doubleValue(), s.file().getBoundsNorth().doubleValue()}), now);
+        layers.put(dataType, layer);
+        return layer;
+    }
+
+    /**
+     * 借出文件的Web墨卡托渲染器，用完后关闭借用归还
+     * 文件无法按墨卡托网格切片时记入 unsupportedFiles 并返回null；
+     * 读取失败时只跳过本次合成（记入 failedFiles）并返回null，下次请求重试
+     */
+    private RefCountingLruCache<Long, MercatorGridTileRenderer>.Lease acquireRenderer(GeospatialFile file, String dataType,
+                                                                                     Set<Long> failedFiles) {
+        Long fileId = file.getFileId();
+        if (unsupportedFiles.contains(fileId)) {
+            return null;
+        }
+        try {
+            return renderers.acquire(fileId, id -> createRenderer(file, dataType));
+        } catch (IOException e) {
+            System.err.println("无法读取影像，本次镶嵌跳过: fileId=" + fileId + ", " + e.getMessage());
+            failedFiles.add(fileId);
+            return null;
+        }
+    }
+
+    /**
+     * 创建文件的Web墨卡托渲染器，文件无法按墨卡托网格切片时返回null
+     * 单波段数值影像按数据类型的颜色渐变着色，与单文件瓦片一致
+     */
+    private MercatorGridTileRenderer createRenderer(GeospatialFile file, String dataType) throws IOException {
+        File tifFile = new File(file.getFilePath());
+        GeoTiffHeader header = GeoTiffHeader.read(tifFile.toPath());
+        if (!MercatorGridTileRenderer.supports(header)) {
+            unsupportedFiles.add(file.getFileId());
+            return null;
+        }
+        ColorRamp colorRamp = null;
+        if (header.getSamplesPerPixel() == 1 && (header.getSampleFormat() == 3 || header.getBitsPerSample() > 8)) {
+            colorRamp = colorRampRegistry.getRamp(dataType);
+        }
+        return new MercatorGridTileRenderer(tifFile, header, maxZoomLimit, colorRamp);
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hitCount", tileCache.getHitCount());
+        stats.put("missCount", tileCache.getMissCount());
+        stats.put("evictionCount", tileCache.getEvictionCount());
+        stats.put("tileCount", tileCache.size());
+        stats.put("usedBytes", tileCache.getWeight());
+        stats.put("maxBytes", tileCache.getMaxWeight());
+        stats.put("layerCount", layers.size());
+        return stats;
+    }
+}
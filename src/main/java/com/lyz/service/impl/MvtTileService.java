@@ -0,0 +1,212 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.CementPlantMapper;
+import com.lyz.pojo.CementPlantIdentification;
+import com.lyz.pojo.CementPlantMapPoint;
+import com.lyz.utils.MvtEncoder;
+import com.lyz.utils.StrTree;
+import com.lyz.utils.WeightedLruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 水泥厂矢量瓦片服务
+ * 在进程内生成水泥厂（plants）和识别记录（identifications）两个点图层的Mapbox矢量瓦片，
+ * 前端不再经由GeoServer WFS/WMS，平移缩放也不再每次查询数据库。
+ * 全部点位一次载入内存并建立R树，每个瓦片按范围查询、投影量化到瓦片坐标后编码；
+ * 编码后的瓦片按字节限额缓存。水泥厂或识别记录写入后调用 invalidate，
+ * 丢弃点位快照和瓦片缓存（有事务时在提交后再丢弃一次，避免读到未提交前的数据）。
+ */
+@Service
+public class MvtTileService {
+
+    public static final String LAYER_PLANTS = "plants";
+    public static final String LAYER_IDENTIFICATIONS = "identifications";
+
+    // 最大缩放级别
+    private static final int MAX_ZOOM = 24;
+
+    @Autowired
+    private CementPlantMapper cementPlantMapper;
+
+    // 瓦片坐标范围
+    @Value("${tile.mvt.extent:4096}")
+    private int extent;
+
+    // 瓦片外缓冲区（瓦片坐标单位）
+    @Value("${tile.mvt.buffer:64}")
+    private int buffer;
+
+    // 编码后瓦片的缓存上限（字节），默认32MB
+    @Value("${tile.mvt.cache-bytes:33554432}")
+    private long cacheBytes;
+
+    /**
+     * 点位快照：两个图层的R树（经纬度）
+     */
+    private record Snapshot(long generation, StrTree<CementPlantMapPoint> plants,
+                            StrTree<CementPlantIdentification> identifications) {
+    }
+
+    // 数据版本，每次失效加1；快照和缓存的瓦片只在版本不变时使用
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private WeightedLruCache<String, byte[]> tileCache;
+
+    @PostConstruct
+    public void init() {
+        tileCache = new WeightedLruCache<>(cacheBytes, data -> data.length + 64);
+    }
+
+    /**
+     * 获取矢量瓦片
+     * @param layer 图层：plants 或 identifications
+     * @return 瓦片字节，瓦片内没有要素时为空数组
+     * @throws IllegalArgumentException 图层不存在或瓦片坐标超出范围
+     */
+    public byte[] getTile(String layer, int z, int x, int y) {
+        if (!LAYER_PLANTS.equals(layer) && !LAYER_IDENTIFICATIONS.equals(layer)) {
+            throw new IllegalArgumentException("不支持的矢量图层: " + layer + "，可选 plants/identifications");
+        }
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= 1L << z || y >= 1L << z) {
+            throw new IllegalArgumentException("瓦片坐标超出范围: " + z + "/" + x + "/" + y);
+        }
+
+        Snapshot current = getSnapshot();
+        String key = current.generation() + "/" + layer + "/" + z + "/" + x + "/" + y;
+        byte[] tile = tileCache.get(key);
+        if (tile != null) {
+            return tile;
+        }
+
+        MvtEncoder encoder = new MvtEncoder(z, x, y, extent, buffer);
+        double[] bounds = encoder.getBounds();
+        if (LAYER_PLANTS.equals(layer)) {
+            MvtEncoder.Layer plants = encoder.layer(LAYER_PLANTS);
+            for (CementPlantMapPoint plant : current.plants().query(bounds[0], bounds[1], bounds[2], bounds[3])) {
+                Map<String, Object> properties = new LinkedHashMap<>();
+                properties.put("plant_id", plant.getPlantId());
+                properties.put("name", plant.getPlantName());
+                properties.put("status", plant.getStatus());
+                properties.put("province", plant.getProvince());
+                properties.put("city", plant.getCity());
+                properties.put("latest_ndvi", plant.getLatestNdvi());
+                properties.put("latest_identification_time", plant.getLatestIdentificationTime());
+                properties.put("identification_count", plant.getIdentificationCount());
+                plants.addPoint(plant.getPlantId(), plant.getLongitude(), plant.getLatitude(), properties);
+            }
+        } else {
+            MvtEncoder.Layer identifications = encoder.layer(LAYER_IDENTIFICATIONS);
+            for (CementPlantIdentification identification
+                    : current.identifications().query(bounds[0], bounds[1], bounds[2], bounds[3])) {
+                Map<String, Object> properties = new LinkedHashMap<>();
+                properties.put("identification_id", identification.getIdentificationId());
+                properties.put("plant_id", identification.getPlantId());
+                properties.put("plant_name", identification.getPlantName());
+                properties.put("ndvi", identification.getNdviIndex());
+                properties.put("data_source", identification.getDataSource());
+                properties.put("identification_time", identification.getIdentificationTime());
+                identifications.addPoint(identification.getIdentificationId(),
+                        identification.getLongitude().doubleValue(), identification.getLatitude().doubleValue(),
+                        properties);
+            }
+        }
+        tile = encoder.encode();
+
+        // 生成期间数据已变化时不缓存
+        if (current.generation() == generation.get()) {
+            tileCache.put(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * 当前数据版本（进程内计数，只用于缓存失效）
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 水泥厂或识别记录变化后使快照和瓦片缓存失效
+     */
+    public void invalidate() {
+        invalidateNow();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow();
+                }
+            });
+        }
+    }
+
+    private void invalidateNow() {
+        generation.incrementAndGet();
+        snapshot = null;
+        tileCache.clear();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        long version = generation.get();
+        if (current != null && current.generation() == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            version = generation.get();
+            if (current != null && current.generation() == version) {
+                return current;
+            }
+            long start = System.currentTimeMillis();
+            List<CementPlantMapPoint> plants = cementPlantMapper.listPlantMapPoints().stream()
+                    .filter(p -> p.getLongitude() != null && p.getLatitude() != null).toList();
+            List<CementPlantIdentification> identifications = cementPlantMapper.listIdentifications().stream()
+                    .filter(i -> i.getLongitude() != null && i.getLatitude() != null).toList();
+            current = new Snapshot(version,
+                    StrTree.build(plants, p -> new double[]{p.getLongitude(), p.getLatitude(),
+                            p.getLongitude(), p.getLatitude()}),
+                    StrTree.build(identifications, i -> {
+                        double lon = i.getLongitude().doubleValue();
+                        double lat = i.getLatitude().doubleValue();
+                        return new double[]{lon, lat, lon, lat};
+                    }));
+            // 载入期间数据已变化时仍返回本次快照，但不保留
+            if (version == generation.get()) {
+                snapshot = current;
+            }
+            System.out.println("矢量瓦片点位载入完成: 水泥厂=" + plants.size() + ", 识别记录="
+                    + identifications.size() + ", 耗时=" + (System.currentTimeMillis() - start) + "ms");
+            return current;
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long hits = tileCache.getHitCount();
+        long misses = tileCache.getMissCount();
+        stats.put("generation", generation.get());
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("tileCount", tileCache.size());
+        stats.put("usedBytes", tileCache.getWeight());
+        stats.put("maxBytes", tileCache.getMaxWeight());
+        return stats;
+    }
+}
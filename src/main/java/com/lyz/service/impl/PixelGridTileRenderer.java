@@ -0,0 +1,113 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.ColorRamp;
+import com.lyz.utils.TileImageUtil;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 像素网格瓦片渲染器
+ * 瓦片按影像像素原点编号，最细一级每个瓦片像素对应一个源像素
+ */
+public class PixelGridTileRenderer implements TileRenderEngine.TileRenderer {
+
+    private final TiffReaderPool readerPool;
+    private final ColorRamp colorRamp;
+    private final float noData;
+    private final int width;
+    private final int height;
+    private final int maxZoom;
+
+    public PixelGridTileRenderer(File tifFile) throws IOException {
+        this(tifFile, null, Float.NaN);
+    }
+
+    /**
+     * @param tifFile TIF文件
+     * @param colorRamp 单波段数值影像的颜色渐变，null表示按影像自身颜色
+     * @param noData 无数据值（没有时传NaN）
+     */
+    public PixelGridTileRenderer(File tifFile, ColorRamp colorRamp, float noData) throws IOException {
+        this.readerPool = new TiffReaderPool(tifFile);
+        this.colorRamp = colorRamp;
+        this.noData = noData;
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            this.width = reader.getWidth();
+            this.height = reader.getHeight();
+        } finally {
+            readerPool.release(reader);
+        }
+        this.maxZoom = Math.max(0, (int) Math.ceil(Math.log(Math.max(width, height) / 256.0) / Math.log(2)));
+    }
+
+    @Override
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    @Override
+    public boolean intersects(int z, int x, int y) {
+        // 该级别一个瓦片覆盖的源像素范围
+        long span = (long) TileImageUtil.TILE_SIZE << (maxZoom - z);
+        return x * span < width && y * span < height;
+    }
+
+    @Override
+    public int[] renderLeaf(int x, int y) throws IOException {
+        int tileSize = TileImageUtil.TILE_SIZE;
+        int srcX = x * tileSize;
+        int srcY = y * tileSize;
+        int srcWidth = Math.min(tileSize, width - srcX);
+        int srcHeight = Math.min(tileSize, height - srcY);
+
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            return TileImageUtil.fromWindow(
+                    reader.readArgbWindow(srcX, srcY, srcWidth, srcHeight, 1, colorRamp, noData));
+        } finally {
+            readerPool.release(reader);
+        }
+    }
+
+    /**
+     * 较粗级别按步长抽样读取源影像窗口
+     */
+    @Override
+    public int[] renderTile(int z, int x, int y) throws IOException {
+        if (z < 0 || z > maxZoom || !intersects(z, x, y)) {
+            return null;
+        }
+        int scale = 1 << (maxZoom - z);
+        long span = (long) TileImageUtil.TILE_SIZE * scale;
+        int srcX = (int) (x * span);
+        int srcY = (int) (y * span);
+        int srcWidth = (int) Math.min(span, width - srcX);
+        int srcHeight = (int) Math.min(span, height - srcY);
+
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            return TileImageUtil.fromWindow(
+                    reader.readArgbWindow(srcX, srcY, srcWidth, srcHeight, scale, colorRamp, noData));
+        } finally {
+            readerPool.release(reader);
+        }
+    }
+
+    /**
+     * 最细一级瓦片与源像素一一对应，直接按瓦片尺寸换算
+     */
+    @Override
+    public int[] leafRange(int x0, int y0, int x1, int y1) {
+        int tileSize = TileImageUtil.TILE_SIZE;
+        return new int[]{x0 / tileSize, y0 / tileSize, (x1 - 1) / tileSize, (y1 - 1) / tileSize};
+    }
+
+    @Override
+    public void close() {
+        readerPool.close();
+    }
+}
@@ -0,0 +1,302 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.CementPlantMapper;
+import com.lyz.utils.PointClusterIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 水泥厂/识别记录点聚合服务
+ * 服务端按缩放级别聚合点位，前端不再下载全部记录后在浏览器中聚合。
+ * 每个图层首次查询时从数据库逐行读取ID和坐标到基本类型数组，构建分级聚合索引（PointClusterIndex）；
+ * 之后的查询只在对应级别的KD树上做范围查询。
+ * 新增记录直接加入索引的待合并点（有事务时在提交后加入），累计超过阈值时后台重建；
+ * 更新或删除记录后在后台重建，重建完成前仍使用旧索引。
+ */
+@Service
+public class PointClusterService {
+
+    public static final String LAYER_PLANTS = MvtTileService.LAYER_PLANTS;
+    public static final String LAYER_IDENTIFICATIONS = MvtTileService.LAYER_IDENTIFICATIONS;
+
+    // 最大查询缩放级别
+    private static final int MAX_QUERY_ZOOM = 24;
+
+    @Autowired
+    private CementPlantMapper cementPlantMapper;
+
+    // 聚合半径（像素）
+    @Value("${tile.cluster.radius:60}")
+    private double radius;
+
+    // 聚合半径参照的瓦片像素大小
+    @Value("${tile.cluster.extent:256}")
+    private int extent;
+
+    @Value("${tile.cluster.min-zoom:0}")
+    private int minZoom;
+
+    // 最大聚合级别，更大的级别返回单个点
+    @Value("${tile.cluster.max-zoom:16}")
+    private int maxZoom;
+
+    // 形成聚合的最少点数
+    @Value("${tile.cluster.min-points:2}")
+    private int minPoints;
+
+    // 新增点累计超过该数量时后台重建索引
+    @Value("${tile.cluster.rebuild-threshold:1024}")
+    private int rebuildThreshold;
+
+    /**
+     * 一个图层的索引状态
+     */
+    private final class LayerState {
+        private final String layer;
+        // 构建锁：同一图层同时只有一个构建
+        private final Object buildLock = new Object();
+        private volatile PointClusterIndex index;
+        // 数据版本：更新或删除后加1，索引记录构建时的版本
+        private final AtomicLong generation = new AtomicLong();
+        private volatile long builtGeneration = -1;
+        // 构建期间新增的点，构建完成后补入新索引
+        private boolean building;
+        private final List<Object[]> insertedDuringBuild = new ArrayList<>();
+        private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+        LayerState(String layer) {
+            this.layer = layer;
+        }
+    }
+
+    private final Map<String, LayerState> layers = new HashMap<>();
+    private ExecutorService rebuildExecutor;
+
+    @PostConstruct
+    public void init() {
+        layers.put(LAYER_PLANTS, new LayerState(LAYER_PLANTS));
+        layers.put(LAYER_IDENTIFICATIONS, new LayerState(LAYER_IDENTIFICATIONS));
+        rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "point-cluster-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 查询范围内的聚合
+     * @param layer 图层：plants 或 identifications
+     * @param minLng 最小经度（大于最大经度时表示跨越180度经线）
+     * @param minLat 最小纬度
+     * @param maxLng 最大经度
+     * @param maxLat 最大纬度
+     * @param zoom 缩放级别
+     * @throws IllegalArgumentException 图层不存在或参数超出范围
+     */
+    public List<PointClusterIndex.Cluster> getClusters(String layer, double minLng, double minLat,
+                                                       double maxLng, double maxLat, int zoom) {
+        LayerState state = getState(layer);
+        if (zoom < 0 || zoom > MAX_QUERY_ZOOM) {
+            throw new IllegalArgumentException("缩放级别超出范围: " + zoom);
+        }
+        if (minLat > maxLat || minLat < -90 || maxLat > 90 || Double.isNaN(minLng) || Double.isNaN(maxLng)) {
+            throw new IllegalArgumentException("无效的查询范围");
+        }
+        return getIndex(state).getClusters(minLng, minLat, maxLng, maxLat, zoom);
+    }
+
+    /**
+     * 新增记录后加入索引
+     */
+    public void onInserted(String layer, Long id, Number longitude, Number latitude) {
+        if (id == null || longitude == null || latitude == null) {
+            return;
+        }
+        LayerState state = getState(layer);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    insert(state, id, longitude.doubleValue(), latitude.doubleValue());
+                }
+            });
+        } else {
+            insert(state, id, longitude.doubleValue(), latitude.doubleValue());
+        }
+    }
+
+    /**
+     * 更新或删除记录后重建索引（有事务时在提交后重建）
+     */
+    public void invalidate(String layer) {
+        LayerState state = getState(layer);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markChanged(state);
+                }
+            });
+        } else {
+            markChanged(state);
+        }
+    }
+
+    private void markChanged(LayerState state) {
+        state.generation.incrementAndGet();
+        scheduleRebuild(state);
+    }
+
+    private void insert(LayerState state, long id, double longitude, double latitude) {
+        PointClusterIndex index;
+        synchronized (state) {
+            if (state.building) {
+                state.insertedDuringBuild.add(new Object[]{id, longitude, latitude});
+            }
+            index = state.index;
+        }
+        if (index == null) {
+            return;
+        }
+        if (index.insert(id, longitude, latitude) && index.getPendingCount() >= rebuildThreshold) {
+            scheduleRebuild(state);
+        }
+    }
+
+    private LayerState getState(String layer) {
+        LayerState state = layers.get(layer);
+        if (state == null) {
+            throw new IllegalArgumentException("不支持的聚合图层: " + layer + "，可选 plants/identifications");
+        }
+        return state;
+    }
+
+    private PointClusterIndex getIndex(LayerState state) {
+        PointClusterIndex index = state.index;
+        if (index == null) {
+            synchronized (state.buildLock) {
+                index = state.index;
+                if (index == null) {
+                    index = build(state);
+                }
+            }
+        } else if (state.builtGeneration != state.generation.get()) {
+            // 数据已变化：后台重建，重建完成前仍返回旧索引
+            scheduleRebuild(state);
+        }
+        return index;
+    }
+
+    private void scheduleRebuild(LayerState state) {
+        // 尚未构建过的图层在首次查询时构建
+        if (state.index == null || !state.rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            state.rebuildScheduled.set(false);
+            try {
+                synchronized (state.buildLock) {
+                    build(state);
+                }
+            } catch (Exception e) {
+                System.err.println("重建点聚合索引失败: " + state.layer + ", " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 从数据库读取坐标构建索引（调用方持有 state.buildLock）
+     */
+    private PointClusterIndex build(LayerState state) {
+        long start = System.currentTimeMillis();
+        long version = state.generation.get();
+        synchronized (state) {
+            state.building = true;
+            state.insertedDuringBuild.clear();
+        }
+
+        PointClusterIndex index;
+        try {
+            long[][] ids = {new long[1024]};
+            double[][] longitudes = {new double[1024]};
+            double[][] latitudes = {new double[1024]};
+            int[] count = {0};
+            ResultHandler<Map<String, Object>> handler = context -> {
+                Map<String, Object> row = context.getResultObject();
+                int n = count[0];
+                if (n == ids[0].length) {
+                    ids[0] = Arrays.copyOf(ids[0], n * 2);
+                    longitudes[0] = Arrays.copyOf(longitudes[0], n * 2);
+                    latitudes[0] = Arrays.copyOf(latitudes[0], n * 2);
+                }
+                ids[0][n] = ((Number) row.get("id")).longValue();
+                longitudes[0][n] = ((Number) row.get("longitude")).doubleValue();
+                latitudes[0][n] = ((Number) row.get("latitude")).doubleValue();
+                count[0] = n + 1;
+            };
+            if (LAYER_PLANTS.equals(state.layer)) {
+                cementPlantMapper.scanPlantCoordinates(handler);
+            } else {
+                cementPlantMapper.scanIdentificationCoordinates(handler);
+            }
+            index = new PointClusterIndex(ids[0], longitudes[0], latitudes[0], count[0],
+                    minZoom, maxZoom, radius, extent, minPoints);
+
+            synchronized (state) {
+                // 构建期间新增的点补入新索引（已在本次读取结果中的由索引按ID忽略）
+                for (Object[] inserted : state.insertedDuringBuild) {
+                    index.insert((Long) inserted[0], (Double) inserted[1], (Double) inserted[2]);
+                }
+                state.building = false;
+                state.insertedDuringBuild.clear();
+                state.index = index;
+                state.builtGeneration = version;
+            }
+            System.out.println("点聚合索引构建完成: " + state.layer + ", 点数=" + count[0]
+                    + ", 耗时=" + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            synchronized (state) {
+                state.building = false;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 索引统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (LayerState state : layers.values()) {
+            Map<String, Object> layerStats = new HashMap<>();
+            PointClusterIndex index = state.index;
+            layerStats.put("built", index != null);
+            layerStats.put("pointCount", index != null ? index.size() : 0);
+            layerStats.put("pendingCount", index != null ? index.getPendingCount() : 0);
+            layerStats.put("stale", index != null && state.builtGeneration != state.generation.get());
+            stats.put(state.layer, layerStats);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,254 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.CementPlantGeodata;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.PointSample;
+import com.lyz.utils.CrsTransformUtil;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.StrTree;
+import com.lyz.utils.TiffPixelReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 点采样服务
+ * 查询某一经纬度在所有已处理影像上的像素值，按获取日期（没有时按上传时间）排序返回时间序列。
+ * 候选影像通过内存中的R树（geospatial_files 的经纬度范围）查找，R树定期重建，文件处理完成后立即失效；
+ * 每幅影像只读取一个像素（未压缩影像定位读取，压缩影像只解码所在条带/分块），各影像在线程池中并行读取。
+ */
+@Service
+public class PointSampleService {
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    // 采样并行度，默认为CPU核数
+    @Value("${tile.sample.parallelism:0}")
+    private int parallelism;
+
+    // 空间索引的最长使用时间（秒），超过后重建
+    @Value("${tile.sample.index-ttl-seconds:60}")
+    private long indexTtlSeconds;
+
+    // 单次采样的超时时间（毫秒），超时未读完的影像不返回
+    @Value("${tile.sample.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private ExecutorService sampleExecutor;
+
+    // 当前空间索引，为null时下次查询重建
+    private volatile FileIndex index;
+
+    /**
+     * 空间索引快照
+     */
+    private record FileIndex(StrTree<GeospatialFile> tree, long builtAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        sampleExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sampleExecutor.shutdownNow();
+    }
+
+    /**
+     * 使空间索引失效（文件新增、处理完成或删除后调用）
+     */
+    public void invalidate() {
+        index = null;
+    }
+
+    /**
+     * 采样
+     * @param lon 经度
+     * @param lat 纬度
+     * @param dataType 只返回关联了该数据类型的影像，为空时返回所有影像
+     * @return 按时间排序的采样结果（不包含像素读取失败或超时的影像）
+     */
+    public List<PointSample> sample(double lon, double lat, String dataType) {
+        if (lon < -180 || lon > 180 || lat < -90 || lat > 90) {
+            throw new IllegalArgumentException("经纬度超出范围: " + lon + "," + lat);
+        }
+        List<GeospatialFile> candidates = currentIndex().tree().query(lon, lat);
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 关联记录提供数据类型和获取日期
+        Map<Long, List<CementPlantGeodata>> relations = new HashMap<>();
+        for (CementPlantGeodata relation : geospatialMapper.listGeodataByFileIds(
+                candidates.stream().map(GeospatialFile::getFileId).toList())) {
+            relations.computeIfAbsent(relation.getFileId(), k -> new ArrayList<>()).add(relation);
+        }
+
+        List<Callable<PointSample>> tasks = new ArrayList<>(candidates.size());
+        for (GeospatialFile file : candidates) {
+            CementPlantGeodata relation = findRelation(relations.get(file.getFileId()), dataType);
+            if (relation == null && dataType != null && !dataType.isEmpty()) {
+                continue;
+            }
+            tasks.add(() -> sampleFile(file, relation, lon, lat));
+        }
+        return collect(tasks);
+    }
+
+    /**
+     * 并行执行采样任务，按时间排序
+     */
+    List<PointSample> collect(List<Callable<PointSample>> tasks) {
+        List<PointSample> samples = new ArrayList<>(tasks.size());
+        try {
+            for (Future<PointSample> future : sampleExecutor.invokeAll(tasks, timeoutMs, TimeUnit.MILLISECONDS)) {
+                try {
+                    PointSample sample = future.get();
+                    if (sample != null) {
+                        samples.add(sample);
+                    }
+                } catch (CancellationException e) {
+                    System.err.println("点采样超时，跳过部分影像");
+                } catch (ExecutionException e) {
+                    System.err.println("点采样失败: " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        samples.sort(Comparator.comparing(PointSampleService::sampleTime,
+                        Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(PointSample::getFileId));
+        return samples;
+    }
+
+    /**
+     * 采样时间：获取日期，没有时用上传时间
+     */
+    private static LocalDateTime sampleTime(PointSample sample) {
+        return sample.getAcquisitionDate() != null ? sample.getAcquisitionDate() : sample.getUploadTime();
+    }
+
+    /**
+     * 选择文件的关联记录：指定数据类型时取该类型的记录，否则取第一条；同类型多条时取获取日期最早的
+     */
+    private static CementPlantGeodata findRelation(List<CementPlantGeodata> relations, String dataType) {
+        if (relations == null) {
+            return null;
+        }
+        CementPlantGeodata best = null;
+        for (CementPlantGeodata relation : relations) {
+            if (dataType != null && !dataType.isEmpty() && !dataType.equalsIgnoreCase(relation.getDataType())) {
+                continue;
+            }
+            if (best == null || (relation.getAcquisitionDate() != null && (best.getAcquisitionDate() == null
+                    || relation.getAcquisitionDate().isBefore(best.getAcquisitionDate())))) {
+                best = relation;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 读取一幅影像在经纬度处的像素
+     * @return 采样结果，坐标不在影像内或影像没有地理参考时返回null
+     */
+    PointSample sampleFile(GeospatialFile file, CementPlantGeodata relation, double lon, double lat)
+            throws IOException {
+        try (TiffPixelReader reader = TiffPixelReader.open(Path.of(file.getFilePath()))) {
+            GeoTiffHeader header = reader.getHeader();
+            int epsg = header.getEpsgCode();
+            if (epsg == 0 && file.getCoordinateSystem() != null && file.getCoordinateSystem().startsWith("EPSG:")) {
+                epsg = Integer.parseInt(file.getCoordinateSystem().substring(5));
+            }
+            if (!header.isGeoreferenced() || !CrsTransformUtil.isSupported(epsg)) {
+                return null;
+            }
+            double[] point = CrsTransformUtil.fromLonLat(epsg, lon, lat);
+            double col = Math.floor((point[0] - header.getOriginX()) / header.getPixelSizeX());
+            double row = Math.floor((header.getOriginY() - point[1]) / header.getPixelSizeY());
+            if (col < 0 || row < 0 || col >= header.getWidth() || row >= header.getHeight()) {
+                return null;
+            }
+
+            double[] values = reader.readPixel((int) col, (int) row);
+            Double noData = header.getNoData();
+            Double[] bandValues = new Double[values.length];
+            for (int b = 0; b < values.length; b++) {
+                boolean missing = Double.isNaN(values[b]) || (noData != null && values[b] == noData);
+                bandValues[b] = missing ? null : values[b];
+            }
+
+            PointSample sample = new PointSample();
+            sample.setFileId(file.getFileId());
+            sample.setFileName(file.getFileName());
+            sample.setUploadTime(file.getUploadTime());
+            sample.setPixelX((int) col);
+            sample.setPixelY((int) row);
+            sample.setBandValues(bandValues);
+            sample.setValue(bandValues.length > 0 ? bandValues[0] : null);
+            if (relation != null) {
+                sample.setDataType(relation.getDataType());
+                sample.setAcquisitionDate(relation.getAcquisitionDate());
+            }
+            return sample;
+        }
+    }
+
+    /**
+     * 获取空间索引，过期或失效时重建
+     */
+    private FileIndex currentIndex() {
+        FileIndex current = index;
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.builtAt() < indexTtlSeconds * 1000) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current == null || now - current.builtAt() >= indexTtlSeconds * 1000) {
+                current = new FileIndex(buildTree(geospatialMapper.listFiles(null, null)), now);
+                index = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 以文件的经纬度范围构建R树（跳过没有范围或处理失败的文件）
+     */
+    static StrTree<GeospatialFile> buildTree(List<GeospatialFile> files) {
+        List<GeospatialFile> indexed = files.stream()
+                .filter(f -> f.getBoundsWest() != null && f.getBoundsSouth() != null
+                        && f.getBoundsEast() != null && f.getBoundsNorth() != null)
+                .filter(f -> !"error".equals(f.getStatus()))
+                .toList();
+        return StrTree.build(indexed, f -> new double[]{
+                f.getBoundsWest().doubleValue(), f.getBoundsSouth().doubleValue(),
+                f.getBoundsEast().doubleValue(), f.getBoundsNorth().doubleValue()});
+    }
+}
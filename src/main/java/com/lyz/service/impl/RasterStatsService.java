@@ -0,0 +1,213 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.RasterBandStats;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.RasterStatsAccumulator;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 栅格统计服务
+ * 上传处理时单次遍历影像计算各波段的最小/最大值、均值、标准差和直方图，结果保存在 geospatial_file_stats，
+ * 之后查询统计无需再读取影像。
+ * 影像按整行宽度的数据块读取（每个条带/分块只解码一次），数据块分组后并行累加，
+ * 每组持有自己的累加器，最后合并。
+ */
+@Service
+public class RasterStatsService {
+
+    // 每个数据块的目标样本数
+    private static final int BLOCK_SAMPLES = 1 << 20;
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    // 统计并行度，默认为CPU核数
+    @Value("${tile.stats.parallelism:0}")
+    private int parallelism;
+
+    // 直方图分箱数
+    @Value("${tile.stats.histogram-bins:256}")
+    private int histogramBins;
+
+    // 统计任务依次执行，数据块在计算线程池中并行
+    private ExecutorService jobExecutor;
+    private ExecutorService blockExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        jobExecutor = Executors.newSingleThreadExecutor();
+        blockExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        blockExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交统计任务，完成后替换文件已有的统计结果
+     */
+    public void submit(Long fileId, File tifFile) {
+        jobExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                List<RasterBandStats> stats = compute(fileId, tifFile);
+                geospatialMapper.deleteBandStats(fileId);
+                for (RasterBandStats band : stats) {
+                    geospatialMapper.upsertBandStats(band);
+                }
+                System.out.println("栅格统计完成: fileId=" + fileId + ", 波段数=" + stats.size() + ", 耗时="
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                System.err.println("栅格统计失败: fileId=" + fileId + ", " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 获取文件的波段统计，尚未计算时返回空列表
+     */
+    public List<RasterBandStats> getStats(Long fileId) {
+        return geospatialMapper.listBandStats(fileId);
+    }
+
+    /**
+     * 计算各波段统计
+     */
+    List<RasterBandStats> compute(Long fileId, File tifFile) throws IOException {
+        GeoTiffHeader header = GeoTiffHeader.read(tifFile.toPath());
+        int width = header.getWidth();
+        int height = header.getHeight();
+        int bands = header.getSamplesPerPixel();
+        float noData = header.getNoData() != null ? header.getNoData().floatValue() : Float.NaN;
+
+        // 数据块为整行宽度，分块影像按分块高度对齐
+        int blockRows = Math.max(1, Math.min(height, BLOCK_SAMPLES / width));
+        if (header.getTileHeight() > 0 && blockRows > header.getTileHeight()) {
+            blockRows -= blockRows % header.getTileHeight();
+        }
+        int blockCount = (height + blockRows - 1) / blockRows;
+        int groupCount = Math.min(blockCount, parallelism * 4);
+        int rows = blockRows;
+
+        try (TiffReaderPool readerPool = new TiffReaderPool(tifFile)) {
+            List<Future<RasterStatsAccumulator[]>> futures = new ArrayList<>(groupCount);
+            for (int g = 0; g < groupCount; g++) {
+                int first = (int) ((long) blockCount * g / groupCount);
+                int last = (int) ((long) blockCount * (g + 1) / groupCount);
+                futures.add(blockExecutor.submit(() -> accumulate(readerPool, header, bands, noData,
+                        first * rows, Math.min(height, last * rows), rows)));
+            }
+
+            RasterStatsAccumulator[] total = newAccumulators(header, bands);
+            try {
+                for (Future<RasterStatsAccumulator[]> future : futures) {
+                    RasterStatsAccumulator[] part = future.get();
+                    for (int b = 0; b < bands; b++) {
+                        total[b].merge(part[b]);
+                    }
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("栅格统计失败: " + cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("栅格统计被中断", e);
+            }
+
+            List<RasterBandStats> result = new ArrayList<>(bands);
+            for (int b = 0; b < bands; b++) {
+                result.add(toStats(fileId, b + 1, total[b]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 累加 [rowStart, rowEnd) 行的样本
+     */
+    private RasterStatsAccumulator[] accumulate(TiffReaderPool readerPool, GeoTiffHeader header, int bands,
+                                                float noData, int rowStart, int rowEnd, int blockRows)
+            throws IOException {
+        RasterStatsAccumulator[] accumulators = newAccumulators(header, bands);
+        int width = header.getWidth();
+        float[] samples = new float[width * blockRows];
+        TiffWindowReader reader = readerPool.borrow();
+        try {
+            for (int y = rowStart; y < rowEnd; y += blockRows) {
+                int h = Math.min(blockRows, rowEnd - y);
+                Raster raster = reader.readRasterWindow(0, y, width, h, 1);
+                for (int b = 0; b < bands; b++) {
+                    raster.getSamples(raster.getMinX(), raster.getMinY(), width, h, b, samples);
+                    accumulators[b].add(samples, width * h, noData);
+                }
+            }
+        } finally {
+            readerPool.release(reader);
+        }
+        return accumulators;
+    }
+
+    /**
+     * 8位无符号影像的直方图范围固定为0~256，其他类型按数据自适应
+     */
+    private RasterStatsAccumulator[] newAccumulators(GeoTiffHeader header, int bands) {
+        RasterStatsAccumulator[] accumulators = new RasterStatsAccumulator[bands];
+        boolean byteData = header.getBitsPerSample() == 8 && header.getSampleFormat() == 1;
+        for (int b = 0; b < bands; b++) {
+            accumulators[b] = byteData
+                    ? new RasterStatsAccumulator(histogramBins, 0, 256)
+                    : new RasterStatsAccumulator(histogramBins);
+        }
+        return accumulators;
+    }
+
+    private static RasterBandStats toStats(Long fileId, int bandIndex, RasterStatsAccumulator accumulator) {
+        RasterBandStats stats = new RasterBandStats();
+        stats.setFileId(fileId);
+        stats.setBandIndex(bandIndex);
+        stats.setValidCount(accumulator.getCount());
+        stats.setNoDataCount(accumulator.getNoDataCount());
+        if (accumulator.getCount() > 0) {
+            stats.setMinValue(accumulator.getMin());
+            stats.setMaxValue(accumulator.getMax());
+            stats.setMeanValue(accumulator.getMean());
+            stats.setStdDev(accumulator.getStdDev());
+            stats.setHistogramMin(accumulator.getHistogramMin());
+            stats.setHistogramMax(accumulator.getHistogramMax());
+            long[] bins = accumulator.getHistogram();
+            Long[] histogram = new Long[bins.length];
+            for (int i = 0; i < bins.length; i++) {
+                histogram[i] = bins[i];
+            }
+            stats.setHistogram(histogram);
+        }
+        return stats;
+    }
+}
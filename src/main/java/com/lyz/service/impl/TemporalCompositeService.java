@@ -0,0 +1,482 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.CementPlantGeodata;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.GeoTiffWriter;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 时间合成服务
+ * 对某一数据类型（如NDVI）在获取日期范围内的所有影像逐像素归约（最大值、最小值、均值、中位数），
+ * 生成单波段FLOAT32分块GeoTIFF，登记为新的地理数据文件（数据类型如 NDVI_MAX），按普通TIF文件生成瓦片。
+ * 输入影像须使用相同坐标系和像素大小，输出范围为各输入范围的并集，网格与第一幅输入对齐；
+ * 每个输出分块从各输入读取对齐的窗口，在线程池中并行归约：最大值、最小值、均值逐幅累加到当前分块的累加器，
+ * 只有中位数需要同时保留与分块相交的各输入样本；缓冲区随分块分配，分块完成后即可回收。
+ */
+@Service
+public class TemporalCompositeService {
+
+    private static final int TILE_SIZE = 256;
+
+    // 像素大小允许的相对误差
+    private static final double PIXEL_SIZE_TOLERANCE = 1e-6;
+
+    /**
+     * 逐像素归约方式
+     */
+    public enum Method {
+        MAX, MIN, MEAN, MEDIAN;
+
+        public static Method parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的合成方式: " + name + "，可选 max、min、mean、median");
+            }
+        }
+    }
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    @Autowired
+    private TifProcessingService tifProcessingService;
+
+    // 分块计算并行度，默认为CPU核数
+    @Value("${tile.composite.parallelism:0}")
+    private int parallelism;
+
+    // 单次合成的最大输入影像数
+    @Value("${tile.composite.max-inputs:200}")
+    private int maxInputs;
+
+    private ExecutorService jobExecutor;
+    private ExecutorService tileExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        jobExecutor = Executors.newSingleThreadExecutor();
+        tileExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        tileExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交时间合成
+     * 校验输入影像后立即登记合成文件（状态processing）并关联到输入影像所属的水泥厂，计算在后台执行
+     * @param dataType 输入数据类型（cement_plant_geodata.data_type），如 NDVI
+     * @param from 获取日期起始（含）
+     * @param to 获取日期结束（含）
+     * @param method 合成方式
+     * @param plantId 额外关联的水泥厂ID，可为空
+     * @return 合成文件记录
+     */
+    public GeospatialFile submit(String dataType, LocalDate from, LocalDate to, Method method, Long plantId)
+            throws IOException {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("起始日期晚于结束日期");
+        }
+        List<GeospatialFile> inputs = geospatialMapper.listCompositeInputs(dataType, from.atStartOfDay(),
+                to.plusDays(1).atStartOfDay());
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("日期范围内没有已处理的" + dataType + "影像");
+        }
+        if (inputs.size() > maxInputs) {
+            throw new IllegalArgumentException("输入影像过多: " + inputs.size() + "，上限" + maxInputs);
+        }
+        List<File> files = new ArrayList<>(inputs.size());
+        for (GeospatialFile input : inputs) {
+            File file = new File(input.getFilePath());
+            if (!file.exists()) {
+                throw new IOException("TIF文件不存在: " + input.getFilePath());
+            }
+            files.add(file);
+        }
+        // 提前校验坐标系和像素大小
+        plan(readHeaders(files));
+
+        String type = dataType.toUpperCase(Locale.ROOT);
+        String resultType = type + "_" + method.name();
+        Path target = files.get(0).toPath().resolveSibling(resultType + "_" + from + "_" + to + ".tif");
+        GeospatialFile result = registerFile(inputs.get(0), target);
+        List<CementPlantGeodata> relations = linkPlants(inputs, result.getFileId(), resultType, to, plantId);
+
+        jobExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                int tiles = compute(files, method, target);
+                System.out.println("时间合成完成: " + resultType + " " + from + "~" + to + ", 输入=" + files.size()
+                        + ", fileId=" + result.getFileId() + ", 分块数=" + tiles + ", 耗时="
+                        + (System.currentTimeMillis() - start) + "ms");
+                updateRelations(relations, "processed");
+                tifProcessingService.processTifFile(result.getFileId(), target.toString());
+            } catch (Exception e) {
+                System.err.println("时间合成失败: " + resultType + " " + from + "~" + to + ", " + e.getMessage());
+                updateRelations(relations, "error");
+                result.setStatus("error");
+                geospatialMapper.updateFile(result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 输入影像在输出网格中的位置
+     */
+    private record InputGrid(int offsetX, int offsetY, int width, int height, float noData) {
+    }
+
+    /**
+     * 输出网格：范围为各输入的并集，网格与第一幅输入对齐
+     */
+    private record CompositePlan(int width, int height, double originX, double originY, double pixelSizeX,
+                                 double pixelSizeY, int epsg, boolean georeferenced, List<InputGrid> inputs) {
+    }
+
+    private static List<GeoTiffHeader> readHeaders(List<File> files) throws IOException {
+        List<GeoTiffHeader> headers = new ArrayList<>(files.size());
+        for (File file : files) {
+            headers.add(GeoTiffHeader.read(file.toPath()));
+        }
+        return headers;
+    }
+
+    /**
+     * 计算输出网格，输入坐标系或像素大小不一致时抛出IllegalArgumentException
+     */
+    static CompositePlan plan(List<GeoTiffHeader> headers) {
+        GeoTiffHeader first = headers.get(0);
+        if (!first.isGeoreferenced()) {
+            // 没有地理参考时只能按像素逐一对应，要求尺寸相同
+            for (GeoTiffHeader header : headers) {
+                if (header.isGeoreferenced() || header.getWidth() != first.getWidth()
+                        || header.getHeight() != first.getHeight()) {
+                    throw new IllegalArgumentException("没有地理参考的输入影像尺寸必须相同");
+                }
+            }
+            List<InputGrid> inputs = new ArrayList<>(headers.size());
+            for (GeoTiffHeader header : headers) {
+                inputs.add(new InputGrid(0, 0, header.getWidth(), header.getHeight(), noDataOf(header)));
+            }
+            return new CompositePlan(first.getWidth(), first.getHeight(), 0, 0, 1, 1, 0, false, inputs);
+        }
+
+        double psx = first.getPixelSizeX();
+        double psy = first.getPixelSizeY();
+        long minCol = Long.MAX_VALUE;
+        long minRow = Long.MAX_VALUE;
+        long maxCol = Long.MIN_VALUE;
+        long maxRow = Long.MIN_VALUE;
+        long[][] offsets = new long[headers.size()][2];
+        for (int i = 0; i < headers.size(); i++) {
+            GeoTiffHeader header = headers.get(i);
+            if (!header.isGeoreferenced() || header.getEpsgCode() != first.getEpsgCode()) {
+                throw new IllegalArgumentException("输入影像坐标系不一致，无法合成");
+            }
+            if (Math.abs(header.getPixelSizeX() - psx) > psx * PIXEL_SIZE_TOLERANCE
+                    || Math.abs(header.getPixelSizeY() - psy) > psy * PIXEL_SIZE_TOLERANCE) {
+                throw new IllegalArgumentException("输入影像像素大小不一致，无法合成");
+            }
+            // 相对第一幅输入的像素偏移，网格未严格对齐时取最近像素
+            long col = Math.round((header.getOriginX() - first.getOriginX()) / psx);
+            long row = Math.round((first.getOriginY() - header.getOriginY()) / psy);
+            offsets[i][0] = col;
+            offsets[i][1] = row;
+            minCol = Math.min(minCol, col);
+            minRow = Math.min(minRow, row);
+            maxCol = Math.max(maxCol, col + header.getWidth());
+            maxRow = Math.max(maxRow, row + header.getHeight());
+        }
+        if (maxCol - minCol > Integer.MAX_VALUE || maxRow - minRow > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("输入影像范围过大，无法合成");
+        }
+        List<InputGrid> inputs = new ArrayList<>(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            GeoTiffHeader header = headers.get(i);
+            inputs.add(new InputGrid((int) (offsets[i][0] - minCol), (int) (offsets[i][1] - minRow),
+                    header.getWidth(), header.getHeight(), noDataOf(header)));
+        }
+        return new CompositePlan((int) (maxCol - minCol), (int) (maxRow - minRow),
+                first.getOriginX() + minCol * psx, first.getOriginY() - minRow * psy, psx, psy,
+                first.getEpsgCode(), true, inputs);
+    }
+
+    private static float noDataOf(GeoTiffHeader header) {
+        return header.getNoData() != null ? header.getNoData().floatValue() : Float.NaN;
+    }
+
+    /**
+     * 逐分块合成并写入GeoTIFF
+     * @return 计算的分块数
+     */
+    int compute(List<File> files, Method method, Path target) throws IOException {
+        CompositePlan plan = plan(readHeaders(files));
+        List<TiffReaderPool> pools = new ArrayList<>(files.size());
+        try (GeoTiffWriter writer = new GeoTiffWriter(target, plan.width(), plan.height(), TILE_SIZE)) {
+            for (File file : files) {
+                pools.add(new TiffReaderPool(file));
+            }
+            if (plan.georeferenced()) {
+                writer.setGeoreference(plan.originX(), plan.originY(), plan.pixelSizeX(), plan.pixelSizeY(),
+                        plan.epsg());
+            }
+
+            List<Future<?>> futures = new ArrayList<>(writer.getTilesAcross() * writer.getTilesDown());
+            for (int row = 0; row < writer.getTilesDown(); row++) {
+                for (int col = 0; col < writer.getTilesAcross(); col++) {
+                    int tileCol = col;
+                    int tileRow = row;
+                    futures.add(tileExecutor.submit(() -> {
+                        computeTile(plan, pools, writer, method, tileCol, tileRow);
+                        return null;
+                    }));
+                }
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("时间合成失败: " + cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("时间合成被中断", e);
+            }
+            writer.commit();
+            return futures.size();
+        } finally {
+            pools.forEach(TiffReaderPool::close);
+        }
+    }
+
+    /**
+     * 计算单个输出分块：读取与分块相交的各输入窗口（无数据值转为NaN），逐像素归约
+     */
+    private void computeTile(CompositePlan plan, List<TiffReaderPool> pools, GeoTiffWriter writer, Method method,
+                             int col, int row) throws IOException {
+        int x0 = col * TILE_SIZE;
+        int y0 = row * TILE_SIZE;
+        Reducer reducer = new Reducer(method, TILE_SIZE * TILE_SIZE);
+        float[] window = null;
+        for (int i = 0; i < pools.size(); i++) {
+            InputGrid input = plan.inputs().get(i);
+            // 分块与输入的相交部分（输出网格坐标）
+            int ix0 = Math.max(x0, input.offsetX());
+            int iy0 = Math.max(y0, input.offsetY());
+            int ix1 = Math.min(x0 + TILE_SIZE, input.offsetX() + input.width());
+            int iy1 = Math.min(y0 + TILE_SIZE, input.offsetY() + input.height());
+            if (ix0 >= ix1 || iy0 >= iy1) {
+                continue;
+            }
+            // 中位数保留各输入样本，其余方式复用同一个窗口缓冲区
+            if (window == null || method == Method.MEDIAN) {
+                window = new float[TILE_SIZE * TILE_SIZE];
+            }
+            Arrays.fill(window, Float.NaN);
+            readInto(pools.get(i), input, ix0, iy0, ix1 - ix0, iy1 - iy0, window, (iy0 - y0) * TILE_SIZE + ix0 - x0);
+            reducer.add(window);
+        }
+        writer.writeTile(col, row, reducer.result());
+    }
+
+    /**
+     * 读取输入窗口写入分块缓冲区
+     * @param x 窗口左上角（输出网格坐标）
+     * @param offset 窗口左上角在分块缓冲区中的下标
+     */
+    private static void readInto(TiffReaderPool pool, InputGrid input, int x, int y, int w, int h, float[] target,
+                                 int offset) throws IOException {
+        Raster raster;
+        TiffWindowReader reader = pool.borrow();
+        try {
+            raster = reader.readRasterWindow(x - input.offsetX(), y - input.offsetY(), w, h, 1);
+        } finally {
+            pool.release(reader);
+        }
+        float noData = input.noData();
+        float[] line = new float[w];
+        for (int r = 0; r < h; r++) {
+            raster.getSamples(raster.getMinX(), raster.getMinY() + r, w, 1, 0, line);
+            int base = offset + r * TILE_SIZE;
+            for (int c = 0; c < w; c++) {
+                float v = line[c];
+                target[base + c] = v == noData ? Float.NaN : v;
+            }
+        }
+    }
+
+    /**
+     * 单个分块的逐像素归约，NaN不参与计算，没有有效值的像素输出NaN
+     * 最大值、最小值、均值逐幅累加，中位数保留加入的各输入样本，在取结果时排序
+     */
+    static final class Reducer {
+        private final Method method;
+        private final float[] result;
+        private final double[] sums;
+        private final int[] counts;
+        private final List<float[]> samples;
+
+        Reducer(Method method, int count) {
+            this.method = method;
+            this.result = new float[count];
+            Arrays.fill(result, Float.NaN);
+            this.sums = method == Method.MEAN ? new double[count] : null;
+            this.counts = method == Method.MEAN ? new int[count] : null;
+            this.samples = method == Method.MEDIAN ? new ArrayList<>() : null;
+        }
+
+        /**
+         * 加入一幅输入的样本（中位数方式会保留该数组，调用方不能再修改）
+         */
+        void add(float[] values) {
+            switch (method) {
+                case MAX, MIN -> {
+                    boolean max = method == Method.MAX;
+                    for (int i = 0; i < result.length; i++) {
+                        float v = values[i];
+                        float best = result[i];
+                        if (v == v && (best != best || (max ? v > best : v < best))) {
+                            result[i] = v;
+                        }
+                    }
+                }
+                case MEAN -> {
+                    for (int i = 0; i < result.length; i++) {
+                        float v = values[i];
+                        if (v == v) {
+                            sums[i] += v;
+                            counts[i]++;
+                        }
+                    }
+                }
+                case MEDIAN -> samples.add(values);
+            }
+        }
+
+        float[] result() {
+            if (method == Method.MEAN) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = counts[i] == 0 ? Float.NaN : (float) (sums[i] / counts[i]);
+                }
+            } else if (method == Method.MEDIAN && !samples.isEmpty()) {
+                float[] values = new float[samples.size()];
+                for (int i = 0; i < result.length; i++) {
+                    // 与分块相交的输入通常只有几幅到几十幅，插入排序即可
+                    int n = 0;
+                    for (float[] sample : samples) {
+                        float v = sample[i];
+                        if (v == v) {
+                            int j = n++;
+                            while (j > 0 && values[j - 1] > v) {
+                                values[j] = values[j - 1];
+                                j--;
+                            }
+                            values[j] = v;
+                        }
+                    }
+                    if (n > 0) {
+                        result[i] = (n & 1) == 1 ? values[n / 2] : (values[n / 2 - 1] + values[n / 2]) / 2;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 登记合成文件，重复合成时复用已有记录
+     */
+    private GeospatialFile registerFile(GeospatialFile template, Path target) {
+        GeospatialFile file = geospatialMapper.findFileByPath(target.toString());
+        if (file == null) {
+            file = new GeospatialFile();
+            file.setFileName(target.getFileName().toString());
+            file.setFilePath(target.toString());
+            file.setFileType("TIF");
+            file.setUploadUserId(template.getUploadUserId());
+            file.setStatus("processing");
+            geospatialMapper.insertFile(file);
+        } else {
+            file.setStatus("processing");
+            geospatialMapper.updateFile(file);
+        }
+        return file;
+    }
+
+    /**
+     * 合成文件关联到输入影像所属的全部水泥厂，获取日期记为日期范围的结束日期
+     */
+    private List<CementPlantGeodata> linkPlants(List<GeospatialFile> inputs, Long fileId, String dataType,
+                                                LocalDate to, Long plantId) {
+        Set<Long> plantIds = new LinkedHashSet<>();
+        for (CementPlantGeodata relation : geospatialMapper.listGeodataByFileIds(
+                inputs.stream().map(GeospatialFile::getFileId).toList())) {
+            plantIds.add(relation.getPlantId());
+        }
+        if (plantId != null) {
+            plantIds.add(plantId);
+        }
+        for (CementPlantGeodata relation : geospatialMapper.listGeodataByFileId(fileId)) {
+            if (dataType.equalsIgnoreCase(relation.getDataType())) {
+                plantIds.remove(relation.getPlantId());
+            }
+        }
+
+        List<CementPlantGeodata> relations = new ArrayList<>();
+        for (Long id : plantIds) {
+            CementPlantGeodata relation = new CementPlantGeodata();
+            relation.setPlantId(id);
+            relation.setFileId(fileId);
+            relation.setDataType(dataType);
+            relation.setAcquisitionDate(to.atStartOfDay());
+            relation.setProcessingStatus("processing");
+            geospatialMapper.insertGeodataRelation(relation);
+            relations.add(relation);
+        }
+        return relations;
+    }
+
+    private void updateRelations(List<CementPlantGeodata> relations, String status) {
+        for (CementPlantGeodata relation : relations) {
+            relation.setProcessingStatus(status);
+            geospatialMapper.updateGeodataRelation(relation);
+        }
+    }
+}
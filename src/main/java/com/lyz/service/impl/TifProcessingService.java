@@ -1,18 +1,43 @@
 package com.lyz.service.impl;
 
 import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.CementPlantGeodata;
 import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.GeospatialTileManifest;
+import com.lyz.pojo.TileKey;
+import com.lyz.pojo.TileRenderStats;
+import com.lyz.service.TileCacheService;
+import com.lyz.service.TileStore;
+import com.lyz.utils.ColorRamp;
+import com.lyz.utils.CrsTransformUtil;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.RefCountingLruCache;
+import com.lyz.utils.Sha256Util;
+import com.lyz.utils.TileImageUtil;
+import com.lyz.utils.TileSourceManifest;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -26,9 +51,76 @@ public class TifProcessingService {
     @Autowired
     private GeospatialMapper geospatialMapper;
     
+    @Autowired
+    private TileCacheService tileCacheService;
+    
+    @Autowired
+    private TileRenderEngine tileRenderEngine;
+    
+    @Autowired
+    private TileStore tileStore;
+    
+    @Autowired
+    private ColorRampRegistry colorRampRegistry;
+    
+    @Autowired
+    private TileEncoder tileEncoder;
+    
+    @Autowired
+    private RasterStatsService rasterStatsService;
+    
+    @Autowired
+    private CogService cogService;
+    
+    @Autowired
+    private PointSampleService pointSampleService;
+    
+    @Autowired
+    private MosaicTileService mosaicTileService;
+    
+    // 瓦片生成方式：eager（处理文件时生成整个金字塔）或 lazy（首次请求时按需渲染单个瓦片）
+    @Value("${tile.render.mode:eager}")
+    private String renderMode;
+    
+    // 瓦片网格：mercator（有地理参考时按Web墨卡托XYZ网格切片）或 pixel（按影像像素原点切片）
+    @Value("${tile.render.grid:mercator}")
+    private String renderGrid;
+    
+    // Web墨卡托网格最细级别上限
+    @Value("${tile.render.max-zoom:20}")
+    private int maxZoomLimit;
+    
     // 异步处理线程池
     private final ExecutorService executorService = Executors.newFixedThreadPool(4);
     
+    // 批量获取瓦片时按需渲染缺失瓦片的线程池
+    private final ExecutorService batchRenderExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors());
+    
+    // 最近的瓦片生成统计（按文件ID，最多保留100条）
+    private final Map<Long, TileRenderStats> renderStats = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, TileRenderStats> eldest) {
+            return size() > 100;
+        }
+    };
+    
+    // 按需渲染时各文件的渲染器（复用TIF读取器，按访问顺序最多保留16个；淘汰后等进行中的渲染结束再关闭）
+    private final RefCountingLruCache<Long, LazyRenderer> lazyRenderers = new RefCountingLruCache<>("lazy-renderers", 16);
+    
+    /**
+     * 按需渲染器及其瓦片编码方式（编码方式随渲染器解析一次，不再每个瓦片查询数据库）
+     */
+    private record LazyRenderer(TileRenderEngine.TileRenderer renderer, TileEncoder.Codec codec) implements AutoCloseable {
+        @Override
+        public void close() {
+            renderer.close();
+        }
+    }
+    
+    // 正在按需渲染的瓦片，同一瓦片的并发请求共享一次渲染
+    private final Map<TileKey, CompletableFuture<GeospatialTile>> inflightRenders = new ConcurrentHashMap<>();
+    
     /**
      * 处理TIF文件并生成瓦片数据
      * @param fileId 文件ID
@@ -43,8 +135,25 @@ public class TifProcessingService {
                 throw new IOException("TIF文件不存在: " + tifFilePath);
             }
             
-            // 2. 更新文件信息
+            // 2. 更新文件信息，后台计算波段统计并转换为COG
             updateFileMetadata(fileId, tifFile);
+            rasterStatsService.submit(fileId, tifFile);
+            cogService.submit(fileId, tifFile);
+            pointSampleService.invalidate();
+            mosaicTileService.invalidate(fileId);
+            
+            // 旧瓦片即将被重新生成，先清除内存缓存
+            tileCacheService.evictFile(fileId);
+            closeLazyRenderer(fileId);
+            
+            if (isLazyMode()) {
+                // 按需渲染：清除旧瓦片即可，瓦片在首次请求时生成
+                tileStore.deleteTiles(fileId);
+                geospatialMapper.deleteTileManifest(fileId);
+                tileCacheService.evictFile(fileId);
+                updateProcessingStatus(fileId, "processed");
+                return;
+            }
             
             // 3. 异步生成瓦片数据
             CompletableFuture.runAsync(() -> {
@@ -54,6 +163,10 @@ public class TifProcessingService {
                 } catch (Exception e) {
                     updateProcessingStatus(fileId, "error");
                     System.err.println("异步处理TIF文件失败: " + e.getMessage());
+                } finally {
+                    // 生成期间可能缓存了旧瓦片，完成后再清除一次（镶嵌图层此时才包含该文件）
+                    tileCacheService.evictFile(fileId);
+                    mosaicTileService.invalidate(fileId);
                 }
             }, executorService);
             
@@ -69,6 +182,7 @@ public class TifProcessingService {
     
     /**
      * 更新文件元数据
+     * 只解析TIFF文件头（少量定位读取），从GeoTIFF标签获取尺寸、波段、数据类型、坐标系和地理范围
      */
     private void updateFileMetadata(Long fileId, File tifFile) throws IOException {
         GeospatialFile file = geospatialMapper.findFileById(fileId);
@@ -76,45 +190,16 @@ public class TifProcessingService {
             // 设置文件大小
             file.setFileSize(tifFile.length());
             
-            // 尝试读取TIF文件的基本信息
             try {
-                BufferedImage image = ImageIO.read(tifFile);
-                if (image != null) {
-                    // 如果能读取为图像，设置基本信息
-                    file.setBandsCount(image.getColorModel().getNumComponents());
-                    file.setDataType("UINT8");
-                    
-                    // 根据文件名或内容推断地理范围（这里使用示例数据）
-                    // 实际应用中应该使用GDAL等专业库读取地理信息
-                    file.setBoundsWest(new BigDecimal("114.3000"));
-                    file.setBoundsEast(new BigDecimal("114.4000"));
-                    file.setBoundsSouth(new BigDecimal("38.1000"));
-                    file.setBoundsNorth(new BigDecimal("38.2000"));
-                    file.setResolutionX(new BigDecimal("0.0001"));
-                    file.setResolutionY(new BigDecimal("0.0001"));
-                } else {
-                    // 如果无法读取为图像，可能是地理TIF文件
-                    file.setBandsCount(1);
-                    file.setDataType("FLOAT32");
-                    
-                    // 设置默认地理范围
-                    file.setBoundsWest(new BigDecimal("114.3000"));
-                    file.setBoundsEast(new BigDecimal("114.4000"));
-                    file.setBoundsSouth(new BigDecimal("38.1000"));
-                    file.setBoundsNorth(new BigDecimal("38.2000"));
-                    file.setResolutionX(new BigDecimal("0.0001"));
-                    file.setResolutionY(new BigDecimal("0.0001"));
-                }
-            } catch (Exception e) {
-                // 如果读取失败，设置默认值
+                GeoTiffHeader header = GeoTiffHeader.read(tifFile.toPath());
+                file.setBandsCount(header.getSamplesPerPixel());
+                file.setDataType(header.getDataTypeName());
+                applyGeoreference(file, header);
+            } catch (IOException e) {
+                // 无法解析文件头，设置默认值
+                System.err.println("解析TIF文件头失败: " + e.getMessage());
                 file.setBandsCount(1);
                 file.setDataType("UNKNOWN");
-                file.setBoundsWest(new BigDecimal("114.3000"));
-                file.setBoundsEast(new BigDecimal("114.4000"));
-                file.setBoundsSouth(new BigDecimal("38.1000"));
-                file.setBoundsNorth(new BigDecimal("38.2000"));
-                file.setResolutionX(new BigDecimal("0.0001"));
-                file.setResolutionY(new BigDecimal("0.0001"));
             }
             
             file.setStatus("processing");
@@ -122,93 +207,230 @@ public class TifProcessingService {
         }
     }
     
+    /**
+     * 根据地理参考设置坐标系、分辨率和WGS84经纬度范围
+     * 没有地理参考或坐标系不受支持时不设置范围
+     */
+    private void applyGeoreference(GeospatialFile file, GeoTiffHeader header) {
+        if (!header.isGeoreferenced()) {
+            return;
+        }
+        double minX = header.getOriginX();
+        double maxY = header.getOriginY();
+        double maxX = minX + header.getWidth() * header.getPixelSizeX();
+        double minY = maxY - header.getHeight() * header.getPixelSizeY();
+        
+        int epsg = header.getEpsgCode();
+        if (epsg == 0 && Math.abs(minX) <= 180 && Math.abs(maxX) <= 180 && Math.abs(minY) <= 90 && Math.abs(maxY) <= 90) {
+            // 没有GeoKey但坐标落在经纬度范围内，按WGS84处理
+            epsg = 4326;
+        }
+        if (epsg != 0) {
+            file.setCoordinateSystem("EPSG:" + epsg);
+        }
+        file.setResolutionX(BigDecimal.valueOf(header.getPixelSizeX()));
+        file.setResolutionY(BigDecimal.valueOf(header.getPixelSizeY()));
+        
+        if (!CrsTransformUtil.isSupported(epsg)) {
+            System.err.println("不支持的坐标系，未设置地理范围: fileId=" + file.getFileId() + ", EPSG:" + epsg);
+            return;
+        }
+        double[] bounds = CrsTransformUtil.toLonLatBounds(epsg, minX, minY, maxX, maxY);
+        file.setBoundsWest(BigDecimal.valueOf(bounds[0]));
+        file.setBoundsSouth(BigDecimal.valueOf(bounds[1]));
+        file.setBoundsEast(BigDecimal.valueOf(bounds[2]));
+        file.setBoundsNorth(BigDecimal.valueOf(bounds[3]));
+    }
+    
     /**
      * 生成瓦片数据
      * 注意：这是一个简化版本，实际应用中需要使用专业的地理数据处理库
      */
     private void generateTiles(Long fileId, File tifFile) throws IOException {
-        // 这里应该使用GDAL或其他库来生成瓦片
-        // 目前使用示例方法
-        
-        // 尝试读取TIF文件作为图像（仅适用于某些TIF格式）
+        // 按窗口读取TIF文件（仅适用于ImageIO可解码为图像的TIF格式）
+        String dataType = findThematicDataType(fileId);
+        TileRenderEngine.TileRenderer renderer;
         try {
-            BufferedImage image = ImageIO.read(tifFile);
-            if (image != null) {
-                generateImageTiles(fileId, image);
-            } else {
-                // 如果无法作为图像读取，生成占位瓦片
-                generatePlaceholderTiles(fileId);
-            }
+            renderer = createRenderer(tifFile, dataType);
         } catch (Exception e) {
-            // 生成占位瓦片
+            // 无法作为图像读取，生成占位瓦片
+            System.err.println("无法解码TIF文件，生成占位瓦片: fileId=" + fileId + ", " + e.getMessage());
             generatePlaceholderTiles(fileId);
+            return;
+        }
+        // 渲染和写入失败直接抛出，保留已有瓦片，不用占位瓦片替换
+        try (renderer) {
+            generateImageTiles(fileId, tifFile, renderer, dataType);
         }
     }
     
     /**
-     * 从图像生成瓦片
+     * 从影像自底向上生成瓦片金字塔
+     * 有地理参考时按Web墨卡托XYZ网格编号，只生成与影像范围相交的瓦片；
+     * 否则按影像像素原点编号，0级为整幅影像的概览，maxZoom级为原始分辨率。
+     * 只有最细一级从源影像按窗口解码，每个较粗级别的瓦片由其四个子瓦片2x2下采样得到；
+     * 渲染和编码由TileRenderEngine并行执行，当前线程作为唯一写入者写入瓦片存储。
+     * 重新处理同一文件时与上次的源影像清单比较：影像布局和渲染参数不变时，只重新生成
+     * 变化的条带/分块覆盖的瓦片及其祖先瓦片，其余瓦片保持不变；影像完全未变化时不生成瓦片。
      */
-    private void generateImageTiles(Long fileId, BufferedImage image) throws IOException {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        
-        // 计算缩放级别
-        int maxZoom = (int) Math.ceil(Math.log(Math.max(width, height) / 256.0) / Math.log(2));
+    private void generateImageTiles(Long fileId, File tifFile, TileRenderEngine.TileRenderer renderer,
+                                    String dataType) throws IOException {
+        TileEncoder.Codec codec = tileEncoder.codecFor(dataType);
+        TileSourceManifest manifest = computeManifest(fileId, tifFile, renderer, dataType, codec);
+        List<int[]> changedRegions = manifest == null ? null : manifest.changedRegions(loadManifest(fileId));
+        Set<Long> dirtyLeaves = changedRegions == null ? null : findDirtyLeaves(renderer, changedRegions);
+        if (dirtyLeaves != null && dirtyLeaves.isEmpty()) {
+            System.out.println("源影像未变化，保留已有瓦片: fileId=" + fileId);
+            return;
+        }
         
-        for (int zoom = 0; zoom <= Math.min(maxZoom, 5); zoom++) {
-            int tileSize = 256;
-            int scale = 1 << zoom;
-            int tilesX = (int) Math.ceil(width / (double) (tileSize * scale));
-            int tilesY = (int) Math.ceil(height / (double) (tileSize * scale));
-            
-            for (int x = 0; x < tilesX; x++) {
-                for (int y = 0; y < tilesY; y++) {
-                    // 创建瓦片图像
-                    BufferedImage tileImage = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
-                    
-                    // 从原图像中提取瓦片区域
-                    int srcX = x * tileSize * scale;
-                    int srcY = y * tileSize * scale;
-                    int srcWidth = Math.min(tileSize * scale, width - srcX);
-                    int srcHeight = Math.min(tileSize * scale, height - srcY);
-                    
-                    if (srcWidth > 0 && srcHeight > 0) {
-                        BufferedImage srcTile = image.getSubimage(srcX, srcY, srcWidth, srcHeight);
-                        tileImage.getGraphics().drawImage(srcTile, 0, 0, tileSize, tileSize, null);
-                    }
-                    
-                    // 转换为字节数组
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    ImageIO.write(tileImage, "PNG", baos);
-                    byte[] tileData = baos.toByteArray();
-                    
-                    // 存储瓦片数据
-                    geospatialMapper.insertTile(fileId, zoom, x, y, tileData, tileSize, "PNG");
+        // 生成中途失败时已有瓦片不再与清单一致，先删除清单，成功后再保存
+        geospatialMapper.deleteTileManifest(fileId);
+        TileStore.TileWriter writer = dirtyLeaves == null
+                ? tileStore.openWriter(fileId) : tileStore.openPatchWriter(fileId);
+        TileRenderStats stats;
+        try {
+            stats = dirtyLeaves == null
+                    ? tileRenderEngine.render(fileId, renderer, codec, writer)
+                    : tileRenderEngine.renderIncremental(fileId, renderer, codec, writer, dirtyLeaves,
+                            (z, x, y) -> readStoredTile(fileId, z, x, y));
+        } catch (IOException | RuntimeException e) {
+            // 生成失败：放弃本次写入，不用半套金字塔替换已有瓦片
+            writer.abort();
+            throw e;
+        } finally {
+            writer.close();
+        }
+        // 写入会话关闭时提交最后一批，之后再取写入统计
+        stats.setWriteBatches(writer.getFlushCount());
+        stats.setWriteBytesPerSecond(writer.getBytesPerSecond());
+        if (dirtyLeaves != null) {
+            stats.setChangedChunks(changedRegions.size());
+        }
+        if (manifest != null) {
+            saveManifest(fileId, manifest);
+        }
+        recordRenderStats(stats);
+    }
+    
+    /**
+     * 计算源影像清单，渲染参数（网格、级别、颜色渐变、编码格式）计入布局摘要
+     * @return 清单，文件缺少条带/分块表等无法计算时返回null（只能全量生成）
+     */
+    private TileSourceManifest computeManifest(Long fileId, File tifFile, TileRenderEngine.TileRenderer renderer,
+                                               String dataType, TileEncoder.Codec codec) {
+        ColorRamp colorRamp = colorRampRegistry.getRamp(dataType);
+        String signature = renderer.getClass().getSimpleName() + ";zoom=" + renderer.getMinZoom() + "-"
+                + renderer.getMaxZoom() + ";ramp=" + colorRamp.fingerprint() + ";codec=" + codec;
+        try {
+            return TileSourceManifest.compute(tifFile.toPath(), signature);
+        } catch (IOException e) {
+            System.err.println("计算源影像清单失败，全量生成瓦片: fileId=" + fileId + ", " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private TileSourceManifest loadManifest(Long fileId) {
+        GeospatialTileManifest stored = geospatialMapper.findTileManifest(fileId);
+        if (stored == null || stored.getChunkChecksums() == null) {
+            return null;
+        }
+        return TileSourceManifest.fromBytes(stored.getLayout(), stored.getChunkChecksums());
+    }
+    
+    private void saveManifest(Long fileId, TileSourceManifest manifest) {
+        GeospatialTileManifest stored = new GeospatialTileManifest();
+        stored.setFileId(fileId);
+        stored.setLayout(manifest.getLayout());
+        stored.setChunkCount(manifest.getChunkCount());
+        stored.setChunkChecksums(manifest.toBytes());
+        geospatialMapper.upsertTileManifest(stored);
+    }
+    
+    /**
+     * 变化区域覆盖的最细一级瓦片
+     * @return 瓦片集合（TileRenderEngine.leafKey 编码），渲染器无法换算时返回null
+     */
+    static Set<Long> findDirtyLeaves(TileRenderEngine.TileRenderer renderer, List<int[]> changedRegions) {
+        Set<Long> leaves = new HashSet<>();
+        for (int[] region : changedRegions) {
+            int[] range = renderer.leafRange(region[0], region[1], region[2], region[3]);
+            if (range == null) {
+                return null;
+            }
+            for (int y = range[1]; y <= range[3]; y++) {
+                for (int x = range[0]; x <= range[2]; x++) {
+                    leaves.add(TileRenderEngine.leafKey(x, y));
                 }
             }
         }
+        return leaves;
+    }
+    
+    /**
+     * 读取已生成的瓦片像素（增量生成时未变化的瓦片参与父瓦片下采样）
+     */
+    private int[] readStoredTile(Long fileId, int z, int x, int y) throws IOException {
+        GeospatialTile tile = tileStore.getTile(fileId, z, x, y);
+        if (tile == null) {
+            return null;
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile.getTileData()));
+        return image == null ? null : TileImageUtil.fromImage(image);
+    }
+    
+    /**
+     * 记录最近一次瓦片生成统计
+     */
+    private void recordRenderStats(TileRenderStats stats) {
+        synchronized (renderStats) {
+            renderStats.put(stats.getFileId(), stats);
+        }
+        System.out.println("瓦片生成完成: fileId=" + stats.getFileId() + ", 瓦片数=" + stats.getTileCount()
+                + ", 耗时=" + stats.getElapsedMillis() + "ms, 吞吐量="
+                + String.format("%.1f", stats.getTilesPerSecond()) + "瓦片/秒, 解码=" + stats.getDecodeMillis()
+                + "ms, 编码=" + stats.getEncodeMillis() + "ms, 写入=" + stats.getWriteMillis() + "ms, 批次="
+                + stats.getWriteBatches() + ", 写入速率="
+                + String.format("%.2f", stats.getWriteBytesPerSecond() / (1024 * 1024)) + "MB/秒");
+    }
+    
+    /**
+     * 获取文件最近一次瓦片生成统计
+     */
+    public TileRenderStats getRenderStats(Long fileId) {
+        synchronized (renderStats) {
+            return renderStats.get(fileId);
+        }
     }
     
     /**
      * 生成占位瓦片
      */
     private void generatePlaceholderTiles(Long fileId) throws IOException {
-        // 创建一个简单的占位瓦片
-        BufferedImage placeholder = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
-        placeholder.getGraphics().fillRect(0, 0, 256, 256);
+        // 占位瓦片与源影像无关，下次处理时全量生成
+        geospatialMapper.deleteTileManifest(fileId);
         
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(placeholder, "PNG", baos);
-        byte[] tileData = baos.toByteArray();
+        // 白色占位瓦片
+        int[] pixels = new int[TileImageUtil.TILE_SIZE * TileImageUtil.TILE_SIZE];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        byte[] tileData = tileEncoder.encode(pixels, TileEncoder.Codec.PNG);
         
         // 为缩放级别0-2生成占位瓦片
-        for (int zoom = 0; zoom <= 2; zoom++) {
-            int tilesPerSide = 1 << zoom;
-            for (int x = 0; x < tilesPerSide; x++) {
-                for (int y = 0; y < tilesPerSide; y++) {
-                    geospatialMapper.insertTile(fileId, zoom, x, y, tileData, 256, "PNG");
+        TileStore.TileWriter writer = tileStore.openWriter(fileId);
+        try {
+            for (int zoom = 0; zoom <= 2; zoom++) {
+                int tilesPerSide = 1 << zoom;
+                for (int x = 0; x < tilesPerSide; x++) {
+                    for (int y = 0; y < tilesPerSide; y++) {
+                        writer.write(zoom, x, y, tileData);
+                    }
                 }
             }
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        } finally {
+            writer.close();
         }
     }
     
@@ -224,9 +446,163 @@ public class TifProcessingService {
     }
     
     /**
-     * 获取瓦片数据
+     * 获取瓦片（含内容哈希和生成时间）
+     * 按需渲染模式下，已处理文件的瓦片不存在时从源影像渲染该瓦片并写入瓦片存储
+     * @param file 瓦片所属文件
+     * @return 瓦片，不在影像范围内或无法渲染时返回null
+     */
+    public GeospatialTile getTile(GeospatialFile file, Integer zoom, Integer x, Integer y) {
+        GeospatialTile tile = tileStore.getTile(file.getFileId(), zoom, x, y);
+        if (tile != null || !isLazyMode() || !"processed".equals(file.getStatus())) {
+            return tile;
+        }
+        
+        TileKey key = new TileKey(file.getFileId(), zoom, x, y);
+        CompletableFuture<GeospatialTile> render = new CompletableFuture<>();
+        CompletableFuture<GeospatialTile> inflight = inflightRenders.putIfAbsent(key, render);
+        if (inflight != null) {
+            // 其他请求正在渲染同一瓦片，等待其结果
+            try {
+                return inflight.join();
+            } catch (CompletionException e) {
+                return null;
+            }
+        }
+        
+        try {
+            // 等待期间其他请求可能已写入
+            tile = tileStore.getTile(file.getFileId(), zoom, x, y);
+            if (tile == null) {
+                tile = renderTile(file, zoom, x, y);
+            }
+            render.complete(tile);
+            return tile;
+        } catch (Exception e) {
+            render.completeExceptionally(e);
+            System.err.println("按需渲染瓦片失败: fileId=" + file.getFileId() + ", " + zoom + "/" + x + "/" + y
+                    + ", " + e.getMessage());
+            return null;
+        } finally {
+            inflightRenders.remove(key, render);
+        }
+    }
+    
+    /**
+     * 批量获取同一文件的多个瓦片
+     * 已生成的瓦片由瓦片存储一次取回；按需渲染模式下缺失的瓦片并行渲染
+     * @param keys 瓦片坐标（只使用 z/x/y）
+     * @return 与 keys 一一对应的瓦片，不存在的位置为null
+     */
+    public List<GeospatialTile> getTiles(GeospatialFile file, List<TileKey> keys) {
+        List<GeospatialTile> tiles = tileStore.getTiles(file.getFileId(), keys);
+        if (!isLazyMode() || !"processed".equals(file.getStatus())) {
+            return tiles;
+        }
+        
+        Map<Integer, CompletableFuture<GeospatialTile>> renders = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (tiles.get(i) == null) {
+                TileKey key = keys.get(i);
+                renders.put(i, CompletableFuture.supplyAsync(
+                        () -> getTile(file, key.z(), key.x(), key.y()), batchRenderExecutor));
+            }
+        }
+        renders.forEach((i, render) -> tiles.set(i, render.join()));
+        return tiles;
+    }
+    
+    /**
+     * 渲染单个瓦片并写入瓦片存储
+     */
+    private GeospatialTile renderTile(GeospatialFile file, int zoom, int x, int y) throws IOException {
+        byte[] tileData;
+        try (RefCountingLruCache<Long, LazyRenderer>.Lease lease = lazyRenderers.acquire(file.getFileId(), fileId -> createLazyRenderer(file))) {
+            int[] pixels = lease.get().renderer().renderTile(zoom, x, y);
+            if (pixels == null) {
+                return null;
+            }
+            tileData = tileEncoder.encode(pixels, lease.get().codec());
+        }
+        tileStore.putTile(file.getFileId(), zoom, x, y, tileData);
+        
+        GeospatialTile tile = new GeospatialTile();
+        tile.setFileId(file.getFileId());
+        tile.setZoomLevel(zoom);
+        tile.setTileX(x);
+        tile.setTileY(y);
+        tile.setTileData(tileData);
+        tile.setTileSize(256);
+        tile.setFormat(TileEncoder.formatOf(tileData));
+        tile.setContentHash(Sha256Util.getSha256String(tileData));
+        tile.setCreatedAt(LocalDateTime.now());
+        return tile;
+    }
+    
+    /**
+     * 创建文件的按需渲染器
      */
-    public byte[] getTileData(Long fileId, Integer zoom, Integer x, Integer y) {
-        return geospatialMapper.getTileData(fileId, zoom, x, y);
+    private LazyRenderer createLazyRenderer(GeospatialFile file) throws IOException {
+        File tifFile = new File(file.getFilePath());
+        if (!tifFile.exists()) {
+            throw new IOException("TIF文件不存在: " + file.getFilePath());
+        }
+        // COG已生成时直接读取其分块
+        File cogFile = cogService.getCogFile(file.getFileId(), tifFile);
+        String dataType = findThematicDataType(file.getFileId());
+        TileRenderEngine.TileRenderer renderer = createRenderer(cogFile != null ? cogFile : tifFile, dataType);
+        return new LazyRenderer(renderer, tileEncoder.codecFor(dataType));
+    }
+    
+    private void closeLazyRenderer(Long fileId) {
+        lazyRenderers.invalidate(fileId);
+    }
+    
+    /**
+     * 创建瓦片渲染器
+     * 文件有地理参考且坐标系受支持时按Web墨卡托网格切片，否则按影像像素网格切片；
+     * 单波段数值影像（浮点、16位以上整数，如NDVI）按数据类型的颜色渐变着色
+     */
+    private TileRenderEngine.TileRenderer createRenderer(File tifFile, String dataType) throws IOException {
+        GeoTiffHeader header;
+        try {
+            header = GeoTiffHeader.read(tifFile.toPath());
+        } catch (IOException e) {
+            System.err.println("解析TIF文件头失败，按像素网格切片: " + e.getMessage());
+            return new PixelGridTileRenderer(tifFile);
+        }
+        
+        ColorRamp colorRamp = null;
+        if (header.getSamplesPerPixel() == 1 && (header.getSampleFormat() == 3 || header.getBitsPerSample() > 8)) {
+            colorRamp = colorRampRegistry.getRamp(dataType);
+        }
+        if (!"pixel".equalsIgnoreCase(renderGrid) && MercatorGridTileRenderer.supports(header)) {
+            return new MercatorGridTileRenderer(tifFile, header, maxZoomLimit, colorRamp);
+        }
+        float noData = header.getNoData() != null ? header.getNoData().floatValue() : Float.NaN;
+        return new PixelGridTileRenderer(tifFile, colorRamp, noData);
+    }
+    
+    /**
+     * 文件的专题数据类型（水泥厂关联中的NDVI等），没有关联时返回null
+     */
+    private String findThematicDataType(Long fileId) {
+        List<CementPlantGeodata> relations = geospatialMapper.listGeodataByFileId(fileId);
+        for (CementPlantGeodata relation : relations) {
+            if (relation.getDataType() != null) {
+                return relation.getDataType();
+            }
+        }
+        return null;
+    }
+    
+    private boolean isLazyMode() {
+        return "lazy".equalsIgnoreCase(renderMode);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        lazyRenderers.clear();
+        executorService.shutdown();
+        batchRenderExecutor.shutdown();
     }
 }
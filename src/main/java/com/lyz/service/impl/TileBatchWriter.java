@@ -0,0 +1,228 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.service.TileStore;
+import com.lyz.utils.Sha256Util;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 瓦片批量写入器
+ * 使用MyBatis BATCH执行器累积INSERT语句，每N个瓦片或M字节提交一次，
+ * 一个文件的金字塔只需少量数据库往返即可写完。
+ * 瓦片数据按内容哈希去重：同一写入会话中相同内容只写一次数据，瓦片行只引用哈希。
+ * 整体重新生成时（replace）瓦片行带本次的批次号，关闭时在最后一次提交的同一事务中删除其他批次的旧瓦片，
+ * 因此重新生成期间仍可读到旧瓦片，完成后只剩新金字塔；增量写入只覆盖写入的瓦片。
+ * 覆盖写入会使旧的瓦片数据失去引用，关闭时清理一次不再被引用的瓦片数据。
+ * 非线程安全，只能由单个写线程使用。
+ */
+public class TileBatchWriter implements TileStore.TileWriter {
+
+    private final SqlSession session;
+    private final GeospatialMapper mapper;
+    private final Long fileId;
+    private final int flushTiles;
+    private final long flushBytes;
+    // 整体重新生成的批次号，增量写入为null
+    private final Long generation;
+
+    // 待提交的瓦片数据（按哈希）和瓦片行，提交时分组发送，BATCH执行器每种语句只需一次往返
+    private final Map<String, byte[]> pendingBlobs = new LinkedHashMap<>();
+    private final List<PendingTile> pendingTiles = new ArrayList<>();
+    private long pendingBytes;
+
+    // 本会话已写入的内容哈希
+    private final Set<String> writtenHashes = new HashSet<>();
+
+    private boolean aborted;
+    private long tileCount;
+    private long totalBytes;
+    private long uniqueBlobCount;
+    private long flushCount;
+    private long flushNanos;
+
+    /**
+     * 增量写入：只覆盖写入的瓦片
+     * @param sqlSessionFactory 会话工厂
+     * @param fileId 文件ID
+     * @param flushTiles 累积多少个瓦片提交一次
+     * @param flushBytes 累积多少字节提交一次
+     */
+    public TileBatchWriter(SqlSessionFactory sqlSessionFactory, Long fileId, int flushTiles, long flushBytes) {
+        this(sqlSessionFactory, fileId, flushTiles, flushBytes, false);
+    }
+
+    /**
+     * @param sqlSessionFactory 会话工厂
+     * @param fileId 文件ID
+     * @param flushTiles 累积多少个瓦片提交一次
+     * @param flushBytes 累积多少字节提交一次
+     * @param replace 是否整体替换文件的瓦片（关闭时删除本次未写入的旧瓦片）
+     */
+    public TileBatchWriter(SqlSessionFactory sqlSessionFactory, Long fileId, int flushTiles, long flushBytes,
+                           boolean replace) {
+        this.session = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
+        this.mapper = session.getMapper(GeospatialMapper.class);
+        this.fileId = fileId;
+        this.flushTiles = Math.max(1, flushTiles);
+        this.flushBytes = Math.max(1, flushBytes);
+        try {
+            this.generation = replace ? mapper.nextTileGeneration() : null;
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    private record PendingTile(int z, int x, int y, String format, String contentHash) {
+    }
+
+    @Override
+    public void write(int z, int x, int y, byte[] tileData) throws IOException {
+        String contentHash = Sha256Util.getSha256String(tileData);
+        if (writtenHashes.add(contentHash)) {
+            pendingBlobs.put(contentHash, tileData);
+            pendingBytes += tileData.length;
+            uniqueBlobCount++;
+        }
+        pendingTiles.add(new PendingTile(z, x, y, TileEncoder.formatOf(tileData), contentHash));
+        tileCount++;
+        totalBytes += tileData.length;
+        if (pendingTiles.size() >= flushTiles || pendingBytes >= flushBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * 发送累积的语句并提交
+     */
+    @Override
+    public void flush() throws IOException {
+        if (pendingTiles.isEmpty()) {
+            return;
+        }
+        commitPending(false);
+    }
+
+    /**
+     * 发送累积的语句并提交
+     * @param deleteStale 是否在同一事务中删除其他批次的旧瓦片
+     */
+    private void commitPending(boolean deleteStale) throws IOException {
+        long t0 = System.nanoTime();
+        try {
+            // 先写数据再写引用
+            for (Map.Entry<String, byte[]> blob : pendingBlobs.entrySet()) {
+                mapper.insertTileBlob(blob.getKey(), blob.getValue(), blob.getValue().length);
+            }
+            for (PendingTile tile : pendingTiles) {
+                mapper.insertTile(fileId, tile.z(), tile.x(), tile.y(), 256, tile.format(), tile.contentHash(),
+                        generation);
+            }
+            if (deleteStale) {
+                mapper.deleteTilesExceptGeneration(fileId, generation);
+            }
+            session.flushStatements();
+            session.commit();
+        } catch (RuntimeException e) {
+            session.rollback();
+            throw new IOException("批量写入瓦片失败: " + e.getMessage(), e);
+        }
+        flushNanos += System.nanoTime() - t0;
+        flushCount++;
+        pendingBlobs.clear();
+        pendingTiles.clear();
+        pendingBytes = 0;
+    }
+
+    /**
+     * 丢弃未提交的瓦片；整体替换时不再删除旧瓦片
+     */
+    @Override
+    public void abort() {
+        aborted = true;
+        pendingBlobs.clear();
+        pendingTiles.clear();
+        pendingBytes = 0;
+        session.rollback();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!aborted && generation != null) {
+                // 整体替换：最后一批瓦片和删除旧瓦片一起提交
+                commitPending(true);
+            } else if (!aborted) {
+                flush();
+            }
+            // 放弃时已提交的批次无法撤回，仍清理被它们覆盖的瓦片数据
+            if (tileCount > 0 || (generation != null && !aborted)) {
+                try {
+                    deleteOrphanBlobs(mapper);
+                    session.commit();
+                } catch (RuntimeException e) {
+                    // 清理失败不影响已提交的瓦片，下次写入后再清理
+                    session.rollback();
+                    System.err.println("清理瓦片数据失败: fileId=" + fileId + ", " + e.getMessage());
+                }
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * 删除不再被任何瓦片行引用的瓦片数据（调用方负责在同一事务中提交）
+     * 先锁定候选行再复查引用：写入方在提交前一直锁定其引用的数据行，候选时被跳过；
+     * 锁定之后才开始写入的一方会等待本事务结束，再重新插入数据行。
+     * @return 候选的瓦片数据条数
+     */
+    static int deleteOrphanBlobs(GeospatialMapper mapper) {
+        List<String> orphans = mapper.lockOrphanTileBlobs();
+        for (int i = 0; i < orphans.size(); i += 1000) {
+            mapper.deleteUnreferencedTileBlobs(orphans.subList(i, Math.min(orphans.size(), i + 1000)));
+        }
+        return orphans.size();
+    }
+
+    public long getTileCount() {
+        return tileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 去重后实际写入的瓦片数据条数
+     */
+    public long getUniqueBlobCount() {
+        return uniqueBlobCount;
+    }
+
+    /**
+     * 批量提交次数（即数据库往返次数）
+     */
+    @Override
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * 写入吞吐量（字节/秒，只统计批量提交耗时）
+     */
+    @Override
+    public double getBytesPerSecond() {
+        return flushNanos == 0 ? 0 : totalBytes * 1e9 / flushNanos;
+    }
+}
@@ -0,0 +1,119 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.service.TileCacheService;
+import com.lyz.utils.WeightedLruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 瓦片内存缓存服务实现类
+ * 瓦片坐标只缓存到内容哈希的引用，瓦片数据按内容哈希单独缓存，
+ * 内容相同的瓦片（空白、无数据、占位瓦片）只占用一份内存。
+ * 两级缓存均以字节数计算占用，超过上限时按LRU淘汰。
+ */
+@Service
+public class TileCacheServiceImpl implements TileCacheService {
+
+    // 缓存字节上限，默认256MB
+    @Value("${tile.cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    // 瓦片引用条目的估算开销（对象头、坐标、哈希字符串等）
+    private static final int REF_OVERHEAD = 64;
+
+    // 瓦片数据条目除数据外的估算开销
+    private static final int BLOB_OVERHEAD = 128;
+
+    /**
+     * 瓦片坐标到内容的引用
+     */
+    private record TileRef(String contentHash, LocalDateTime createdAt) {
+    }
+
+    private WeightedLruCache<TileKey, TileRef> refCache;
+
+    private WeightedLruCache<String, byte[]> blobCache;
+
+    @PostConstruct
+    public void init() {
+        // 引用占总上限的1/4，其余用于瓦片数据
+        long refBytes = maxBytes / 4;
+        refCache = new WeightedLruCache<>(refBytes, ref -> REF_OVERHEAD);
+        blobCache = new WeightedLruCache<>(maxBytes - refBytes, data -> data.length + BLOB_OVERHEAD);
+    }
+
+    @Override
+    public GeospatialTile getTile(Long fileId, int z, int x, int y) {
+        TileKey key = new TileKey(fileId, z, x, y);
+        TileRef ref = refCache.get(key);
+        if (ref == null) {
+            return null;
+        }
+        byte[] tileData = blobCache.get(ref.contentHash());
+        if (tileData == null) {
+            // 数据已被淘汰，引用作废
+            refCache.remove(key);
+            return null;
+        }
+
+        GeospatialTile tile = new GeospatialTile();
+        tile.setFileId(fileId);
+        tile.setZoomLevel(z);
+        tile.setTileX(x);
+        tile.setTileY(y);
+        tile.setTileData(tileData);
+        tile.setTileSize(256);
+        tile.setContentHash(ref.contentHash());
+        tile.setCreatedAt(ref.createdAt());
+        return tile;
+    }
+
+    @Override
+    public boolean containsTile(Long fileId, int z, int x, int y) {
+        return refCache.containsKey(new TileKey(fileId, z, x, y));
+    }
+
+    @Override
+    public void putTile(Long fileId, int z, int x, int y, GeospatialTile tile) {
+        if (tile == null || tile.getTileData() == null || tile.getTileData().length == 0
+                || tile.getContentHash() == null) {
+            return;
+        }
+        // 内容已缓存时不再重复保存数据
+        if (blobCache.get(tile.getContentHash()) == null) {
+            blobCache.put(tile.getContentHash(), tile.getTileData());
+        }
+        refCache.put(new TileKey(fileId, z, x, y), new TileRef(tile.getContentHash(), tile.getCreatedAt()));
+    }
+
+    /**
+     * 只清除该文件的引用，瓦片数据可能被其他文件共享，由LRU自然淘汰
+     */
+    @Override
+    public void evictFile(Long fileId) {
+        refCache.removeIf(key -> key.fileId() == fileId);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long hits = refCache.getHitCount();
+        long misses = refCache.getMissCount();
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("evictionCount", refCache.getEvictionCount() + blobCache.getEvictionCount());
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("tileCount", refCache.size());
+        stats.put("blobCount", blobCache.size());
+        stats.put("usedBytes", refCache.getWeight() + blobCache.getWeight());
+        stats.put("maxBytes", refCache.getMaxWeight() + blobCache.getMaxWeight());
+        return stats;
+    }
+}
@@ -0,0 +1,354 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.TileImageUtil;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 瓦片编码器
+ * 编码时从有界的空闲池借出一套图像缓冲、输出缓冲和ImageWriter，用完归还，编码单个瓦片不再分配BufferedImage、
+ * 查找编码器或创建Graphics；空闲池满时归还的编码状态直接释放，常驻的编码状态数不超过池容量。
+ * 编码格式按数据类型（图层）配置（tile.encode.*）：
+ * png（可调压缩级别，不透明瓦片按RGB写出）、palette（颜色不超过256种时写调色板PNG，
+ * 适合颜色渐变着色的NDVI等数值影像）、jpeg（适合多波段影像，含透明像素的瓦片仍写PNG）。
+ */
+@Component
+@ConfigurationProperties(prefix = "tile.encode")
+public class TileEncoder {
+
+    /**
+     * 瓦片编码格式
+     */
+    public enum Codec {
+        PNG, PALETTE, JPEG;
+
+        /**
+         * 解析编码格式名称（不区分大小写）
+         * @throws IllegalArgumentException 不支持的格式
+         */
+        public static Codec parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的瓦片编码格式: " + name + "，可选 png/palette/jpeg");
+            }
+        }
+    }
+
+    private static final int PIXELS = TileImageUtil.TILE_SIZE * TileImageUtil.TILE_SIZE;
+
+    // 调色板颜色查找表槽位数（2的幂，不小于调色板上限的两倍）
+    private static final int PALETTE_SLOTS = 1024;
+
+    // 空闲编码状态池容量（编码是CPU密集操作，同时编码的线程数通常不超过CPU核数）
+    private static final int POOL_CAPACITY = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // 未单独配置的数据类型使用的编码格式
+    private Codec defaultCodec = Codec.PNG;
+
+    // PNG压缩级别（0-9，越大越小越慢）
+    private int pngDeflateLevel = 6;
+
+    // JPEG质量（0-1）
+    private float jpegQuality = 0.85f;
+
+    // 按数据类型配置的编码格式：数据类型 -> png/palette/jpeg
+    private Map<String, Codec> codecs = new HashMap<>();
+
+    // 空闲的编码状态
+    private final BlockingQueue<EncoderState> idleStates = new ArrayBlockingQueue<>(POOL_CAPACITY);
+    private volatile boolean closed;
+
+    // 按实际写出格式统计
+    private final Map<Codec, LongAdder> tileCounts = new EnumMap<>(Codec.class);
+    private final Map<Codec, LongAdder> tileBytes = new EnumMap<>(Codec.class);
+    private final Map<Codec, LongAdder> encodeNanos = new EnumMap<>(Codec.class);
+    private final LongAdder fallbackCount = new LongAdder();
+
+    public TileEncoder() {
+        for (Codec codec : Codec.values()) {
+            tileCounts.put(codec, new LongAdder());
+            tileBytes.put(codec, new LongAdder());
+            encodeNanos.put(codec, new LongAdder());
+        }
+    }
+
+    /**
+     * 获取数据类型对应的编码格式
+     * 派生类型（如时间合成的 NDVI_MAX）未单独配置时使用其基础类型（NDVI）的格式
+     * @param dataType 数据类型（不区分大小写），null或未配置时使用默认格式
+     */
+    public Codec codecFor(String dataType) {
+        String key = dataType == null ? "" : dataType.toUpperCase(Locale.ROOT);
+        while (!key.isEmpty()) {
+            Codec codec = codecs.get(key);
+            if (codec != null) {
+                return codec;
+            }
+            int suffix = key.lastIndexOf('_');
+            key = suffix <= 0 ? "" : key.substring(0, suffix);
+        }
+        return getDefaultCodec();
+    }
+
+    public Codec getDefaultCodec() {
+        return defaultCodec;
+    }
+
+    public void setDefaultCodec(Codec defaultCodec) {
+        this.defaultCodec = defaultCodec;
+    }
+
+    /**
+     * 编码瓦片
+     * @param pixels 256x256 ARGB像素
+     * @param codec 编码格式，无法按该格式编码时（调色板颜色过多、JPEG遇到透明像素）写普通PNG
+     * @return 编码后的数据
+     */
+    public byte[] encode(int[] pixels, Codec codec) throws IOException {
+        long t0 = System.nanoTime();
+        EncoderState s = borrowState();
+        boolean opaque = isOpaque(pixels);
+        Codec written = codec;
+        byte[] data;
+        try {
+            if (codec == Codec.JPEG && opaque) {
+                data = s.write(s.jpegWriter, s.jpegParam, s.rgb(pixels));
+            } else if (codec == Codec.PALETTE && s.buildPalette(pixels)) {
+                data = s.write(s.pngWriter, s.pngParam, s.indexed());
+            } else {
+                written = Codec.PNG;
+                if (codec != Codec.PNG) {
+                    fallbackCount.increment();
+                }
+                data = s.write(s.pngWriter, s.pngParam, opaque ? s.rgb(pixels) : s.argb(pixels));
+            }
+        } finally {
+            returnState(s);
+        }
+        encodeNanos.get(written).add(System.nanoTime() - t0);
+        tileCounts.get(written).increment();
+        tileBytes.get(written).add(data.length);
+        return data;
+    }
+
+    /**
+     * 按文件头识别瓦片格式
+     * @return JPEG 或 PNG
+     */
+    public static String formatOf(byte[] tileData) {
+        if (tileData != null && tileData.length >= 2 && (tileData[0] & 0xFF) == 0xFF && (tileData[1] & 0xFF) == 0xD8) {
+            return "JPEG";
+        }
+        return "PNG";
+    }
+
+    private EncoderState borrowState() {
+        EncoderState s = idleStates.poll();
+        return s != null ? s : new EncoderState();
+    }
+
+    /**
+     * 归还编码状态，空闲池已满或编码器已关闭时释放
+     */
+    private void returnState(EncoderState s) {
+        if (closed || !idleStates.offer(s)) {
+            s.dispose();
+        }
+    }
+
+    /**
+     * 空闲池中的编码状态数
+     */
+    int getIdleStateCount() {
+        return idleStates.size();
+    }
+
+    private static boolean isOpaque(int[] pixels) {
+        for (int pixel : pixels) {
+            if (pixel >>> 24 != 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 编码统计：按实际写出格式的瓦片数、平均字节数和平均编码耗时
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (Codec codec : Codec.values()) {
+            long count = tileCounts.get(codec).sum();
+            Map<String, Object> codecStats = new HashMap<>();
+            codecStats.put("tileCount", count);
+            codecStats.put("totalBytes", tileBytes.get(codec).sum());
+            codecStats.put("bytesPerTile", count == 0 ? 0.0 : (double) tileBytes.get(codec).sum() / count);
+            codecStats.put("encodeMicrosPerTile", count == 0 ? 0.0 : encodeNanos.get(codec).sum() / 1000.0 / count);
+            stats.put(codec.name().toLowerCase(Locale.ROOT), codecStats);
+        }
+        stats.put("fallbackCount", fallbackCount.sum());
+        stats.put("pngDeflateLevel", pngDeflateLevel);
+        stats.put("jpegQuality", jpegQuality);
+        stats.put("idleEncoderCount", idleStates.size());
+        return stats;
+    }
+
+    public int getPngDeflateLevel() {
+        return pngDeflateLevel;
+    }
+
+    public void setPngDeflateLevel(int pngDeflateLevel) {
+        this.pngDeflateLevel = pngDeflateLevel;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public void setJpegQuality(float jpegQuality) {
+        this.jpegQuality = jpegQuality;
+    }
+
+    public Map<String, Codec> getCodecs() {
+        return codecs;
+    }
+
+    public void setCodecs(Map<String, Codec> codecs) {
+        // 键统一为大写
+        Map<String, Codec> normalized = new HashMap<>();
+        codecs.forEach((k, v) -> normalized.put(k.toUpperCase(Locale.ROOT), v));
+        this.codecs = normalized;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        EncoderState s;
+        while ((s = idleStates.poll()) != null) {
+            s.dispose();
+        }
+    }
+
+    /**
+     * 一次编码使用的状态（同一时刻只被一个线程借用）
+     */
+    private final class EncoderState {
+        private final ImageWriter pngWriter = ImageIO.getImageWritersByFormatName("png").next();
+        private final ImageWriter jpegWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+        private final ImageWriteParam pngParam = pngWriter.getDefaultWriteParam();
+        private final ImageWriteParam jpegParam = jpegWriter.getDefaultWriteParam();
+
+        private final BufferedImage argbImage = new BufferedImage(TileImageUtil.TILE_SIZE, TileImageUtil.TILE_SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        private final BufferedImage rgbImage = new BufferedImage(TileImageUtil.TILE_SIZE, TileImageUtil.TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        private final WritableRaster indexRaster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE,
+                TileImageUtil.TILE_SIZE, TileImageUtil.TILE_SIZE, 1, null);
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+
+        // 调色板：开放寻址哈希表（颜色 -> 调色板下标）
+        private final int[] slotColors = new int[PALETTE_SLOTS];
+        private final short[] slotIndexes = new short[PALETTE_SLOTS];
+        private final int[] palette = new int[256];
+        private int paletteSize;
+
+        EncoderState() {
+            if (pngParam.canWriteCompressed()) {
+                pngParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                pngParam.setCompressionQuality(1 - Math.max(0, Math.min(9, pngDeflateLevel)) / 9f);
+            }
+            jpegParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            jpegParam.setCompressionQuality(Math.max(0, Math.min(1, jpegQuality)));
+        }
+
+        BufferedImage argb(int[] pixels) {
+            System.arraycopy(pixels, 0, ((DataBufferInt) argbImage.getRaster().getDataBuffer()).getData(), 0, PIXELS);
+            return argbImage;
+        }
+
+        BufferedImage rgb(int[] pixels) {
+            System.arraycopy(pixels, 0, ((DataBufferInt) rgbImage.getRaster().getDataBuffer()).getData(), 0, PIXELS);
+            return rgbImage;
+        }
+
+        /**
+         * 统计颜色并生成下标像素
+         * @return 颜色不超过256种返回true
+         */
+        boolean buildPalette(int[] pixels) {
+            Arrays.fill(slotIndexes, (short) -1);
+            paletteSize = 0;
+            byte[] indexes = ((DataBufferByte) indexRaster.getDataBuffer()).getData();
+            for (int i = 0; i < PIXELS; i++) {
+                int color = pixels[i];
+                // 全透明像素统一为同一颜色
+                if (color >>> 24 == 0) {
+                    color = 0;
+                }
+                int slot = (color * 0x9E3779B9) >>> 22;
+                while (slotIndexes[slot] >= 0 && slotColors[slot] != color) {
+                    slot = (slot + 1) & (PALETTE_SLOTS - 1);
+                }
+                if (slotIndexes[slot] < 0) {
+                    if (paletteSize == palette.length) {
+                        return false;
+                    }
+                    slotColors[slot] = color;
+                    slotIndexes[slot] = (short) paletteSize;
+                    palette[paletteSize++] = color;
+                }
+                indexes[i] = (byte) slotIndexes[slot];
+            }
+            return true;
+        }
+
+        /**
+         * 以当前调色板包装下标像素（只创建颜色模型，像素缓冲复用）
+         */
+        BufferedImage indexed() {
+            IndexColorModel colorModel = new IndexColorModel(8, paletteSize, palette, 0, true, -1, DataBuffer.TYPE_BYTE);
+            return new BufferedImage(colorModel, indexRaster, false, null);
+        }
+
+        void dispose() {
+            pngWriter.dispose();
+            jpegWriter.dispose();
+        }
+
+        byte[] write(ImageWriter writer, ImageWriteParam param, BufferedImage image) throws IOException {
+            output.reset();
+            try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.setOutput(null);
+            }
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.service.TileCacheService;
+import com.lyz.service.TileStore;
+import com.lyz.utils.CountMinSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 瓦片预取服务
+ * 访问次数按 (fileId, z, x, y) 记录在Count-Min草图中，另外保留估计次数最高的一批候选瓦片；
+ * 草图和热点瓦片定期保存到Redis，启动后按热度把热点瓦片预先载入内存缓存。
+ * 每次访问后在后台预取该瓦片周围的同级瓦片和下一级的四个子瓦片（只读取已生成的瓦片，不触发渲染）。
+ * 预取在低优先级的小线程池中执行，队列满时丢弃最旧的预取任务，不影响前台请求。
+ */
+@Service
+public class TilePrefetchService {
+
+    @Autowired
+    private TileStore tileStore;
+
+    @Autowired
+    private TileCacheService tileCacheService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 是否启用预取和预热
+    @Value("${tile.prefetch.enabled:true}")
+    private boolean enabled;
+
+    // 草图行数
+    @Value("${tile.prefetch.sketch-depth:4}")
+    private int sketchDepth;
+
+    // 草图每行计数器个数
+    @Value("${tile.prefetch.sketch-width:16384}")
+    private int sketchWidth;
+
+    // 保留的热点瓦片数（启动预热的瓦片数）
+    @Value("${tile.prefetch.hot-tiles:1000}")
+    private int hotTiles;
+
+    // 预取同级瓦片的半径（1表示周围8个瓦片，0表示不预取同级瓦片）
+    @Value("${tile.prefetch.neighbour-radius:1}")
+    private int neighbourRadius;
+
+    // 是否预取下一级子瓦片
+    @Value("${tile.prefetch.children:true}")
+    private boolean prefetchChildren;
+
+    // 预取线程数
+    @Value("${tile.prefetch.threads:2}")
+    private int threads;
+
+    // 预取队列长度，队列满时丢弃最旧的任务
+    @Value("${tile.prefetch.queue-size:256}")
+    private int queueSize;
+
+    // Redis键前缀
+    @Value("${tile.prefetch.redis-key:tile:prefetch}")
+    private String redisKey;
+
+    private CountMinSketch sketch;
+
+    // 热点候选瓦片：瓦片 -> 记录时的估计次数
+    private final Map<TileKey, Integer> hotCandidates = new ConcurrentHashMap<>();
+
+    // 进入候选的最小估计次数（候选裁剪后更新）
+    private volatile int hotThreshold = 1;
+
+    // 已排队等待预取的瓦片（中心瓦片），避免重复排队
+    private final Set<TileKey> pending = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor prefetchExecutor;
+
+    private final LongAdder accessCount = new LongAdder();
+    private final LongAdder prefetchedTiles = new LongAdder();
+    private final LongAdder droppedTasks = new LongAdder();
+    private final LongAdder warmedTiles = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        sketch = new CountMinSketch(sketchDepth, sketchWidth);
+        AtomicInteger threadCount = new AtomicInteger();
+        prefetchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "tile-prefetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, (runnable, executor) -> {
+                    // 丢弃最旧的预取任务，为最近的访问让路
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("预取线程池已关闭");
+                    }
+                    droppedTasks.increment();
+                    if (executor.getQueue().poll() instanceof PrefetchTask dropped) {
+                        pending.remove(dropped.center());
+                    }
+                    executor.execute(runnable);
+                });
+        prefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * 记录瓦片访问并在后台预取相邻瓦片
+     */
+    public void recordAccess(Long fileId, int z, int x, int y) {
+        if (!enabled) {
+            return;
+        }
+        accessCount.increment();
+        TileKey key = new TileKey(fileId, z, x, y);
+        int estimate = sketch.add(hash(key));
+        if (estimate >= hotThreshold) {
+            hotCandidates.put(key, estimate);
+            if (hotCandidates.size() > hotTiles * 2) {
+                trimCandidates();
+            }
+        }
+
+        if (pending.add(key)) {
+            try {
+                prefetchExecutor.execute(new PrefetchTask(key));
+            } catch (RejectedExecutionException e) {
+                pending.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 预取任务，执行完或被丢弃时清除中心瓦片的排队标记
+     */
+    private final class PrefetchTask implements Runnable {
+        private final TileKey center;
+
+        PrefetchTask(TileKey center) {
+            this.center = center;
+        }
+
+        TileKey center() {
+            return center;
+        }
+
+        @Override
+        public void run() {
+            try {
+                prefetchAround(center);
+            } catch (Exception e) {
+                System.err.println("预取瓦片失败: fileId=" + center.fileId() + ", " + center.z() + "/"
+                        + center.x() + "/" + center.y() + ", " + e.getMessage());
+            } finally {
+                pending.remove(center);
+            }
+        }
+    }
+
+    /**
+     * 预取瓦片周围的同级瓦片和下一级子瓦片中尚未缓存的部分（一次批量读取）
+     */
+    void prefetchAround(TileKey center) {
+        List<TileKey> keys = new ArrayList<>();
+        for (int dy = -neighbourRadius; dy <= neighbourRadius; dy++) {
+            for (int dx = -neighbourRadius; dx <= neighbourRadius; dx++) {
+                if (dx != 0 || dy != 0) {
+                    addIfMissing(keys, center.fileId(), center.z(), center.x() + dx, center.y() + dy);
+                }
+            }
+        }
+        if (prefetchChildren) {
+            for (int i = 0; i < 4; i++) {
+                addIfMissing(keys, center.fileId(), center.z() + 1, center.x() * 2 + (i & 1),
+                        center.y() * 2 + (i >> 1));
+            }
+        }
+        if (!keys.isEmpty()) {
+            prefetchedTiles.add(loadIntoCache(center.fileId(), keys));
+        }
+    }
+
+    private void addIfMissing(List<TileKey> keys, long fileId, int z, int x, int y) {
+        if (z >= 0 && z < 31 && x >= 0 && y >= 0 && x < 1 << z && y < 1 << z
+                && !tileCacheService.containsTile(fileId, z, x, y)) {
+            keys.add(new TileKey(fileId, z, x, y));
+        }
+    }
+
+    /**
+     * 从瓦片存储批量读取瓦片放入内存缓存
+     * @return 载入的瓦片数
+     */
+    private int loadIntoCache(long fileId, List<TileKey> keys) {
+        List<GeospatialTile> tiles = tileStore.getTiles(fileId, keys);
+        int loaded = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            GeospatialTile tile = tiles.get(i);
+            if (tile != null) {
+                TileKey key = keys.get(i);
+                tileCacheService.putTile(fileId, key.z(), key.x(), key.y(), tile);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 按估计次数保留最热的一批候选瓦片
+     */
+    private synchronized void trimCandidates() {
+        if (hotCandidates.size() <= hotTiles) {
+            return;
+        }
+        List<Map.Entry<TileKey, Integer>> ranked = rankCandidates();
+        for (int i = hotTiles; i < ranked.size(); i++) {
+            hotCandidates.remove(ranked.get(i).getKey());
+        }
+        hotThreshold = Math.max(1, ranked.get(hotTiles - 1).getValue());
+    }
+
+    /**
+     * 候选瓦片按当前估计次数从高到低排序
+     */
+    private List<Map.Entry<TileKey, Integer>> rankCandidates() {
+        List<Map.Entry<TileKey, Integer>> ranked = new ArrayList<>();
+        for (TileKey key : hotCandidates.keySet()) {
+            ranked.add(Map.entry(key, sketch.estimate(hash(key))));
+        }
+        ranked.sort(Map.Entry.<TileKey, Integer>comparingByValue(Comparator.reverseOrder()));
+        return ranked;
+    }
+
+    /**
+     * 获取最热的瓦片
+     * @param limit 最多返回的瓦片数
+     * @return 瓦片 -> 估计访问次数，按次数从高到低
+     */
+    public Map<TileKey, Integer> getHotTiles(int limit) {
+        Map<TileKey, Integer> hot = new LinkedHashMap<>();
+        for (Map.Entry<TileKey, Integer> entry : rankCandidates()) {
+            if (hot.size() >= limit) {
+                break;
+            }
+            hot.put(entry.getKey(), entry.getValue());
+        }
+        return hot;
+    }
+
+    /**
+     * 定期把草图和热点瓦片保存到Redis，然后将计数减半，使访问热度随时间衰减
+     */
+    @Scheduled(fixedDelayString = "${tile.prefetch.persist-interval-ms:300000}",
+            initialDelayString = "${tile.prefetch.persist-interval-ms:300000}")
+    public void persist() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            trimCandidates();
+            StringBuilder hot = new StringBuilder();
+            for (Map.Entry<TileKey, Integer> entry : getHotTiles(hotTiles).entrySet()) {
+                TileKey key = entry.getKey();
+                hot.append(key.fileId()).append(',').append(key.z()).append(',').append(key.x()).append(',')
+                        .append(key.y()).append(',').append(entry.getValue()).append(';');
+            }
+            stringRedisTemplate.opsForValue().set(redisKey + ":sketch",
+                    Base64.getEncoder().encodeToString(sketch.toBytes()));
+            stringRedisTemplate.opsForValue().set(redisKey + ":hot", hot.toString());
+            sketch.halve();
+            hotThreshold = Math.max(1, hotThreshold / 2);
+        } catch (Exception e) {
+            System.err.println("保存瓦片访问热度失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 启动后从Redis恢复访问热度，并在预取线程中按热度预热内存缓存
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        if (!enabled) {
+            return;
+        }
+        List<TileKey> hot = new ArrayList<>();
+        try {
+            String encoded = stringRedisTemplate.opsForValue().get(redisKey + ":sketch");
+            if (encoded != null && !sketch.load(Base64.getDecoder().decode(encoded))) {
+                System.out.println("瓦片访问草图尺寸已变化，忽略保存的计数");
+            }
+            hot = parseHotTiles(stringRedisTemplate.opsForValue().get(redisKey + ":hot"));
+        } catch (Exception e) {
+            System.err.println("读取瓦片访问热度失败: " + e.getMessage());
+        }
+        if (hot.isEmpty()) {
+            return;
+        }
+        List<TileKey> tiles = hot;
+        try {
+            prefetchExecutor.execute(() -> warmCache(tiles));
+        } catch (RejectedExecutionException e) {
+            System.err.println("提交瓦片缓存预热失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按热度顺序预热内存缓存，同一文件的瓦片一次批量读取
+     */
+    void warmCache(List<TileKey> tiles) {
+        long start = System.currentTimeMillis();
+        Map<Long, List<TileKey>> byFile = new LinkedHashMap<>();
+        for (TileKey key : tiles) {
+            byFile.computeIfAbsent(key.fileId(), id -> new ArrayList<>()).add(key);
+        }
+        int loaded = 0;
+        for (Map.Entry<Long, List<TileKey>> entry : byFile.entrySet()) {
+            try {
+                loaded += loadIntoCache(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                System.err.println("预热瓦片缓存失败: fileId=" + entry.getKey() + ", " + e.getMessage());
+            }
+        }
+        warmedTiles.add(loaded);
+        System.out.println("瓦片缓存预热完成: " + loaded + "/" + tiles.size() + " 个瓦片, 耗时="
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 解析保存的热点瓦片（"fileId,z,x,y,count;"），同时恢复为候选瓦片
+     */
+    private List<TileKey> parseHotTiles(String text) {
+        List<TileKey> tiles = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tiles;
+        }
+        for (String item : text.split(";")) {
+            String[] parts = item.split(",");
+            if (parts.length != 5) {
+                continue;
+            }
+            try {
+                TileKey key = new TileKey(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                hotCandidates.put(key, Integer.parseInt(parts[4]));
+                tiles.add(key);
+            } catch (NumberFormatException e) {
+                // 忽略无法解析的条目
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * 预取统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("accessCount", accessCount.sum());
+        stats.put("prefetchedTiles", prefetchedTiles.sum());
+        stats.put("droppedTasks", droppedTasks.sum());
+        stats.put("warmedTiles", warmedTiles.sum());
+        stats.put("queuedTasks", prefetchExecutor.getQueue().size());
+        stats.put("hotCandidates", hotCandidates.size());
+        stats.put("sketchBytes", (long) sketch.getDepth() * sketch.getWidth() * 4);
+        return stats;
+    }
+
+    private static long hash(TileKey key) {
+        long h = key.fileId();
+        h = h * 0x9E3779B97F4A7C15L + key.z();
+        h = h * 0x9E3779B97F4A7C15L + key.x();
+        h = h * 0x9E3779B97F4A7C15L + key.y();
+        return h;
+    }
+}
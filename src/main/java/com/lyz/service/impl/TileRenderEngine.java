@@ -0,0 +1,392 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.TileRenderStats;
+import com.lyz.utils.TileImageUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 瓦片金字塔并行渲染引擎
+ * 渲染与瓦片编码在ForkJoin线程池中按四叉树并行执行，编码后的瓦片进入有界队列，
+ * 由调用线程作为唯一写入者顺序写入存储。队列满时渲染线程阻塞，内存占用有上限。
+ */
+@Component
+public class TileRenderEngine {
+
+    /**
+     * 瓦片渲染器：提供最细一级瓦片的像素，读取源影像的方式由实现决定
+     * 实现必须线程安全（可在多个工作线程中同时调用）
+     */
+    public interface TileRenderer extends AutoCloseable {
+
+        /**
+         * 最细一级（原始分辨率）的缩放级别
+         */
+        int getMaxZoom();
+
+        /**
+         * 最粗一级的缩放级别，更粗的级别不生成瓦片
+         */
+        default int getMinZoom() {
+            return 0;
+        }
+
+        /**
+         * 瓦片是否与影像范围相交
+         */
+        boolean intersects(int z, int x, int y);
+
+        /**
+         * 渲染最细一级瓦片
+         * @return 256x256 ARGB像素，无数据时返回null
+         */
+        int[] renderLeaf(int x, int y) throws IOException;
+
+        /**
+         * 直接渲染任意级别的单个瓦片（按需渲染时使用），不依赖子瓦片
+         * @return 256x256 ARGB像素，瓦片不在影像范围内返回null
+         */
+        int[] renderTile(int z, int x, int y) throws IOException;
+
+        /**
+         * 源影像像素区域影响的最细一级瓦片范围（增量渲染时使用）
+         * @param x0 区域左上角列号
+         * @param y0 区域左上角行号
+         * @param x1 区域右下角列号（不含）
+         * @param y1 区域右下角行号（不含）
+         * @return {minX, minY, maxX, maxY}（含两端），无法确定时返回null（退回全量渲染）
+         */
+        default int[] leafRange(int x0, int y0, int x1, int y1) {
+            return null;
+        }
+
+        /**
+         * 释放源影像读取器
+         */
+        @Override
+        default void close() {
+        }
+    }
+
+    /**
+     * 瓦片写入目标（只在单个写线程中调用）
+     */
+    public interface TileSink {
+        void write(int z, int x, int y, byte[] tileData) throws IOException;
+    }
+
+    /**
+     * 已生成瓦片的读取方式（增量渲染时为未变化的瓦片提供像素，可在多个工作线程中同时调用）
+     */
+    public interface TileSource {
+
+        /**
+         * @return 256x256 ARGB像素，瓦片不存在返回null
+         */
+        int[] read(int z, int x, int y) throws IOException;
+    }
+
+    @Autowired
+    private TileEncoder tileEncoder;
+
+    // 渲染并行度，默认为CPU核数
+    @Value("${tile.render.parallelism:0}")
+    private int parallelism;
+
+    // 已编码待写入瓦片队列容量
+    @Value("${tile.render.queue-capacity:256}")
+    private int queueCapacity;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 生成整个瓦片金字塔（从0级根瓦片开始）
+     * @param fileId 文件ID（用于统计）
+     * @param renderer 瓦片渲染器
+     * @param sink 瓦片写入目标
+     * @return 统计信息
+     */
+    public TileRenderStats render(Long fileId, TileRenderer renderer, TileSink sink) throws IOException {
+        return render(fileId, renderer, tileEncoder.getDefaultCodec(), sink);
+    }
+
+    /**
+     * 生成整个瓦片金字塔（从0级根瓦片开始）
+     * @param fileId 文件ID（用于统计）
+     * @param renderer 瓦片渲染器
+     * @param codec 瓦片编码格式
+     * @param sink 瓦片写入目标
+     * @return 统计信息
+     */
+    public TileRenderStats render(Long fileId, TileRenderer renderer, TileEncoder.Codec codec, TileSink sink)
+            throws IOException {
+        return run(fileId, new RenderJob(renderer, codec, null, null), sink);
+    }
+
+    /**
+     * 增量生成瓦片金字塔：只重新渲染变化的最细一级瓦片及其各级祖先瓦片
+     * 祖先瓦片下采样时，未变化的兄弟瓦片从已有瓦片读取，不渲染也不重新写入；
+     * 原来有瓦片、重新渲染后无数据的位置写入透明瓦片覆盖旧内容。
+     * @param fileId 文件ID（用于统计）
+     * @param renderer 瓦片渲染器
+     * @param codec 瓦片编码格式
+     * @param sink 瓦片写入目标（必须覆盖同位置的已有瓦片，保留其余瓦片）
+     * @param dirtyLeaves 需要重新渲染的最细一级瓦片（leafKey 编码）
+     * @param existing 已有瓦片
+     * @return 统计信息
+     */
+    public TileRenderStats renderIncremental(Long fileId, TileRenderer renderer, TileEncoder.Codec codec,
+                                             TileSink sink, Collection<Long> dirtyLeaves, TileSource existing)
+            throws IOException {
+        // 逐级向上标记祖先瓦片
+        int maxZoom = renderer.getMaxZoom();
+        List<Set<Long>> dirty = new ArrayList<>(maxZoom + 1);
+        for (int z = 0; z <= maxZoom; z++) {
+            dirty.add(new HashSet<>());
+        }
+        for (long leaf : dirtyLeaves) {
+            int x = (int) (leaf >>> 32);
+            int y = (int) leaf;
+            for (int z = maxZoom; z >= 0; z--) {
+                if (!dirty.get(z).add(leafKey(x >> (maxZoom - z), y >> (maxZoom - z)))) {
+                    break;
+                }
+            }
+        }
+        TileRenderStats stats = run(fileId, new RenderJob(renderer, codec, dirty, existing), sink);
+        stats.setIncremental(true);
+        return stats;
+    }
+
+    /**
+     * 瓦片坐标编码为一个long（高32位为X，低32位为Y）
+     */
+    public static long leafKey(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    private TileRenderStats run(Long fileId, RenderJob job, TileSink sink) throws IOException {
+        long start = System.nanoTime();
+
+        ForkJoinTask<int[]> rootTask = pool.submit(job.new PyramidTask(0, 0, 0));
+
+        // 调用线程作为唯一写入者，持续消费队列直到渲染完成且队列清空
+        try {
+            while (true) {
+                EncodedTile tile = job.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (tile == null) {
+                    if (rootTask.isCompletedAbnormally()
+                            || (rootTask.isDone() && job.queue.isEmpty())) {
+                        break;
+                    }
+                    continue;
+                }
+                long t0 = System.nanoTime();
+                sink.write(tile.z, tile.x, tile.y, tile.data);
+                job.writeNanos += System.nanoTime() - t0;
+                job.writtenTiles++;
+                job.writtenBytes += tile.data.length;
+            }
+            rootTask.get();
+        } catch (InterruptedException e) {
+            job.abort(rootTask);
+            Thread.currentThread().interrupt();
+            throw new IOException("瓦片生成被中断", e);
+        } catch (ExecutionException e) {
+            job.abort(rootTask);
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException uio) {
+                throw uio.getCause();
+            }
+            throw new IOException("瓦片渲染失败: " + cause.getMessage(), cause);
+        } catch (IOException | RuntimeException e) {
+            // 写入失败：停止渲染并释放被队列阻塞的渲染线程
+            job.abort(rootTask);
+            throw e;
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        TileRenderStats stats = new TileRenderStats();
+        stats.setFileId(fileId);
+        stats.setParallelism(pool.getParallelism());
+        stats.setTileCount(job.writtenTiles);
+        stats.setTotalBytes(job.writtenBytes);
+        stats.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        stats.setTilesPerSecond(elapsedNanos == 0 ? 0 : job.writtenTiles * 1e9 / elapsedNanos);
+        stats.setDecodeMillis(TimeUnit.NANOSECONDS.toMillis(job.decodeNanos.sum()));
+        stats.setDownsampleMillis(TimeUnit.NANOSECONDS.toMillis(job.downsampleNanos.sum()));
+        stats.setEncodeMillis(TimeUnit.NANOSECONDS.toMillis(job.encodeNanos.sum()));
+        stats.setWriteMillis(TimeUnit.NANOSECONDS.toMillis(job.writeNanos));
+        stats.setReusedTiles(job.reusedTiles.sum());
+        stats.setCodec(job.codec.name());
+        stats.setBytesPerTile(job.writtenTiles == 0 ? 0 : (double) job.writtenBytes / job.writtenTiles);
+        return stats;
+    }
+
+    /**
+     * 编码后的瓦片
+     */
+    private record EncodedTile(int z, int x, int y, byte[] data) {
+    }
+
+    /**
+     * 单次金字塔生成任务的共享状态
+     */
+    private final class RenderJob {
+        private final TileRenderer renderer;
+        private final TileEncoder.Codec codec;
+        // 增量渲染时各级需要重新生成的瓦片，全量渲染为null
+        private final List<Set<Long>> dirty;
+        private final TileSource existing;
+        private final BlockingQueue<EncodedTile> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final LongAdder decodeNanos = new LongAdder();
+        private final LongAdder downsampleNanos = new LongAdder();
+        private final LongAdder encodeNanos = new LongAdder();
+        private final LongAdder reusedTiles = new LongAdder();
+        private volatile boolean aborted;
+
+        // 以下字段只由写线程访问
+        private long writeNanos;
+        private long writtenTiles;
+        private long writtenBytes;
+
+        RenderJob(TileRenderer renderer, TileEncoder.Codec codec, List<Set<Long>> dirty, TileSource existing) {
+            this.renderer = renderer;
+            this.codec = codec;
+            this.dirty = dirty;
+            this.existing = existing;
+        }
+
+        boolean isDirty(int z, int x, int y) {
+            return dirty == null || dirty.get(z).contains(leafKey(x, y));
+        }
+
+        void abort(ForkJoinTask<?> rootTask) {
+            aborted = true;
+            rootTask.cancel(true);
+            queue.clear();
+        }
+
+        /**
+         * 四叉树递归任务：先并行生成四个子瓦片，再下采样得到本瓦片
+         */
+        private final class PyramidTask extends RecursiveTask<int[]> {
+            private static final long serialVersionUID = 1L;
+
+            private final int z;
+            private final int x;
+            private final int y;
+
+            PyramidTask(int z, int x, int y) {
+                this.z = z;
+                this.x = x;
+                this.y = y;
+            }
+
+            @Override
+            protected int[] compute() {
+                if (aborted) {
+                    throw new CancellationException("瓦片生成已取消");
+                }
+                if (!renderer.intersects(z, x, y)) {
+                    return null;
+                }
+                try {
+                    if (!isDirty(z, x, y)) {
+                        // 未变化的瓦片：只为父瓦片下采样提供已有像素
+                        if (z < renderer.getMinZoom()) {
+                            return null;
+                        }
+                        reusedTiles.increment();
+                        return existing.read(z, x, y);
+                    }
+                    if (z < renderer.getMinZoom()) {
+                        // 比最粗级别更粗：只向下遍历，不生成本级瓦片
+                        ForkJoinTask.invokeAll(new PyramidTask(z + 1, x * 2, y * 2),
+                                new PyramidTask(z + 1, x * 2 + 1, y * 2),
+                                new PyramidTask(z + 1, x * 2, y * 2 + 1),
+                                new PyramidTask(z + 1, x * 2 + 1, y * 2 + 1));
+                        return null;
+                    }
+                    int[] pixels;
+                    if (z == renderer.getMaxZoom()) {
+                        long t0 = System.nanoTime();
+                        pixels = renderer.renderLeaf(x, y);
+                        decodeNanos.add(System.nanoTime() - t0);
+                    } else {
+                        PyramidTask c10 = new PyramidTask(z + 1, x * 2 + 1, y * 2);
+                        PyramidTask c01 = new PyramidTask(z + 1, x * 2, y * 2 + 1);
+                        PyramidTask c11 = new PyramidTask(z + 1, x * 2 + 1, y * 2 + 1);
+                        c10.fork();
+                        c01.fork();
+                        c11.fork();
+                        int[] p00 = new PyramidTask(z + 1, x * 2, y * 2).compute();
+                        int[] p11 = c11.join();
+                        int[] p01 = c01.join();
+                        int[] p10 = c10.join();
+
+                        long t0 = System.nanoTime();
+                        pixels = TileImageUtil.downsample(p00, p10, p01, p11);
+                        downsampleNanos.add(System.nanoTime() - t0);
+                    }
+
+                    if (pixels == null && dirty != null && existing.read(z, x, y) != null) {
+                        // 原有瓦片所在位置已无数据，写入透明瓦片覆盖
+                        pixels = new int[TileImageUtil.TILE_SIZE * TileImageUtil.TILE_SIZE];
+                    }
+                    if (pixels != null) {
+                        long t0 = System.nanoTime();
+                        byte[] data = tileEncoder.encode(pixels, codec);
+                        encodeNanos.add(System.nanoTime() - t0);
+                        // 队列满时阻塞，等待写线程消费；任务取消后不再等待
+                        EncodedTile tile = new EncodedTile(z, x, y, data);
+                        while (!queue.offer(tile, 100, TimeUnit.MILLISECONDS)) {
+                            if (aborted) {
+                                throw new CancellationException("瓦片生成已取消");
+                            }
+                        }
+                    }
+                    return pixels;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("瓦片生成被中断");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.ZonalStats;
+import com.lyz.utils.CrsTransformUtil;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.TiffReaderPool;
+import com.lyz.utils.TiffWindowReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 水泥厂周边区域统计服务
+ * 对 cement_plant_geodata 中关联的每个（水泥厂, 影像）组合，统计以水泥厂经纬度为中心、指定半径内
+ * 影像第一波段（如NDVI）的均值、最小值和最大值。
+ * 每个水泥厂只读取其缓冲区外接矩形对应的像素窗口。影像逐幅处理：同一影像的各组合在线程池中并行计算、
+ * 复用该影像的读取器，影像统计完成后即关闭读取器；结果按批写入 cement_plant_zonal_stats。
+ * 某幅影像读取失败时记录该影像并继续统计其余影像，失败影像的组合不写入结果。
+ */
+@Service
+public class ZonalStatsService {
+
+    // 单次读取的最大样本数，大半径窗口按行分段读取
+    private static final int WINDOW_SAMPLES = 1 << 20;
+
+    // WGS84椭球长半轴（米），用于计算球面距离
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    @Autowired
+    private GeospatialMapper geospatialMapper;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    // 计算并行度，默认为CPU核数
+    @Value("${tile.zonal-stats.parallelism:0}")
+    private int parallelism;
+
+    // 每累积多少条结果提交一次
+    @Value("${tile.zonal-stats.flush-size:1000}")
+    private int flushSize;
+
+    private ExecutorService jobExecutor;
+    private ExecutorService zoneExecutor;
+
+    // 同一时间只运行一个批量统计任务
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // 每个计算线程的样本缓冲区
+    private final ThreadLocal<float[]> sampleBuffer = ThreadLocal.withInitial(() -> new float[0]);
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        jobExecutor = Executors.newSingleThreadExecutor();
+        zoneExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        zoneExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交批量统计任务
+     * @param radiusMeters 统计半径（米）
+     * @param dataType 影像数据类型（cement_plant_geodata.data_type），如 NDVI
+     * @param fileId 只统计该影像，为空时统计所有关联影像
+     * @return 是否已提交（已有任务在运行时返回false）
+     */
+    public boolean submit(double radiusMeters, String dataType, Long fileId) {
+        if (!(radiusMeters > 0)) {
+            throw new IllegalArgumentException("统计半径必须大于0");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        jobExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                List<ZonalStats> targets = geospatialMapper.listZonalTargets(dataType, fileId);
+                RunResult result = run(targets, radiusMeters);
+                System.out.println("水泥厂周边统计完成: 组合数=" + targets.size() + ", 写入=" + result.written()
+                        + ", 失败影像=" + result.failedFileIds() + ", 耗时="
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                System.err.println("水泥厂周边统计失败: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 获取水泥厂在各影像上的周边统计
+     */
+    public List<ZonalStats> getStats(Long plantId) {
+        return geospatialMapper.listZonalStatsByPlantId(plantId);
+    }
+
+    /**
+     * 批量统计结果
+     * @param written 写入的结果数
+     * @param failedFileIds 读取失败、没有写入结果的影像
+     */
+    record RunResult(int written, List<Long> failedFileIds) {
+    }
+
+    /**
+     * 统计并写入结果
+     * @param targets 待统计的（水泥厂, 影像）组合（含水泥厂经纬度），按影像分组
+     * @return 写入的结果数（影像不覆盖水泥厂缓冲区的组合不写入）和失败的影像
+     */
+    RunResult run(List<ZonalStats> targets, double radiusMeters) throws IOException {
+        Map<Long, List<ZonalStats>> targetsByFile = new LinkedHashMap<>();
+        for (ZonalStats target : targets) {
+            targetsByFile.computeIfAbsent(target.getFileId(), id -> new ArrayList<>()).add(target);
+        }
+
+        int written = 0;
+        List<Long> failedFileIds = new ArrayList<>();
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            GeospatialMapper batchMapper = session.getMapper(GeospatialMapper.class);
+            int pending = 0;
+            for (Map.Entry<Long, List<ZonalStats>> entry : targetsByFile.entrySet()) {
+                List<ZonalStats> results;
+                try {
+                    results = computeFile(entry.getKey(), entry.getValue(), radiusMeters);
+                } catch (IOException e) {
+                    System.err.println("影像周边统计失败，跳过: fileId=" + entry.getKey() + ", " + e.getMessage());
+                    failedFileIds.add(entry.getKey());
+                    continue;
+                }
+                for (ZonalStats stats : results) {
+                    batchMapper.upsertZonalStats(stats);
+                    written++;
+                    if (++pending >= flushSize) {
+                        session.flushStatements();
+                        session.commit();
+                        pending = 0;
+                    }
+                }
+            }
+            session.flushStatements();
+            session.commit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("水泥厂周边统计被中断", e);
+        }
+        return new RunResult(written, failedFileIds);
+    }
+
+    /**
+     * 统计一幅影像上的全部组合，完成后关闭该影像的读取器
+     * @return 统计结果，影像没有地理参考或坐标系不受支持时返回空列表
+     * @throws IOException 影像无法读取或统计失败
+     */
+    private List<ZonalStats> computeFile(Long fileId, List<ZonalStats> targets, double radiusMeters)
+            throws IOException, InterruptedException {
+        RasterSource source = openSource(fileId);
+        if (source == null) {
+            return List.of();
+        }
+        // 某个组合失败后，尚未开始的组合直接跳过
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<ZonalStats>> futures = new ArrayList<>(targets.size());
+        try {
+            for (ZonalStats target : targets) {
+                futures.add(zoneExecutor.submit(() -> {
+                    if (failed.get()) {
+                        return null;
+                    }
+                    try {
+                        return compute(source, target, radiusMeters);
+                    } catch (IOException | RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }));
+            }
+            List<ZonalStats> results = new ArrayList<>();
+            IOException error = null;
+            // 等待全部组合结束后才关闭读取器
+            for (Future<ZonalStats> future : futures) {
+                try {
+                    ZonalStats stats = future.get();
+                    if (stats != null) {
+                        results.add(stats);
+                    }
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        Throwable cause = e.getCause();
+                        error = cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        } finally {
+            source.readerPool().close();
+        }
+    }
+
+    /**
+     * 影像及其读取器
+     */
+    private record RasterSource(Long fileId, GeoTiffHeader header, int epsg, float noData,
+                                TiffReaderPool readerPool) {
+    }
+
+    /**
+     * 打开影像，影像记录不存在、没有地理参考或坐标系不受支持时返回null（跳过该影像）
+     * @throws IOException 影像无法读取
+     */
+    private RasterSource openSource(Long fileId) throws IOException {
+        GeospatialFile file = geospatialMapper.findFileById(fileId);
+        if (file == null) {
+            return null;
+        }
+        File tifFile = new File(file.getFilePath());
+        try {
+            GeoTiffHeader header = GeoTiffHeader.read(tifFile.toPath());
+            int epsg = header.getEpsgCode();
+            if (epsg == 0 && file.getCoordinateSystem() != null && file.getCoordinateSystem().startsWith("EPSG:")) {
+                epsg = Integer.parseInt(file.getCoordinateSystem().substring(5));
+            }
+            if (!header.isGeoreferenced() || !CrsTransformUtil.isSupported(epsg)) {
+                System.err.println("影像没有地理参考或坐标系不受支持，跳过周边统计: fileId=" + fileId);
+                return null;
+            }
+            float noData = header.getNoData() != null ? header.getNoData().floatValue() : Float.NaN;
+            return new RasterSource(fileId, header, epsg, noData, new TiffReaderPool(tifFile));
+        } catch (NumberFormatException e) {
+            System.err.println("影像坐标系无效，跳过周边统计: fileId=" + fileId + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 统计一个水泥厂在一幅影像上的缓冲区
+     * 缓冲区外接矩形换算为像素窗口后只读取该窗口，像素中心到水泥厂的距离不超过半径的像素参与统计
+     * @return 统计结果，影像不覆盖缓冲区时返回null
+     */
+    private ZonalStats compute(RasterSource source, ZonalStats target, double radiusMeters) throws IOException {
+        GeoTiffHeader header = source.header();
+        double lon = target.getLongitude();
+        double lat = target.getLatitude();
+        double psx = header.getPixelSizeX();
+        double psy = header.getPixelSizeY();
+
+        // 水泥厂在影像坐标系中的位置，及该处每个坐标单位对应的米数
+        double[] centre = CrsTransformUtil.fromLonLat(source.epsg(), lon, lat);
+        double metersX = distance(lon, lat, CrsTransformUtil.toLonLat(source.epsg(), centre[0] + psx, centre[1])) / psx;
+        double metersY = distance(lon, lat, CrsTransformUtil.toLonLat(source.epsg(), centre[0], centre[1] + psy)) / psy;
+        double rx = radiusMeters / metersX;
+        double ry = radiusMeters / metersY;
+
+        int col0 = Math.max(0, (int) Math.floor((centre[0] - rx - header.getOriginX()) / psx));
+        int col1 = Math.min(header.getWidth() - 1, (int) Math.floor((centre[0] + rx - header.getOriginX()) / psx));
+        int row0 = Math.max(0, (int) Math.floor((header.getOriginY() - centre[1] - ry) / psy));
+        int row1 = Math.min(header.getHeight() - 1, (int) Math.floor((header.getOriginY() - centre[1] + ry) / psy));
+        if (col0 > col1 || row0 > row1) {
+            return null;
+        }
+
+        int w = col1 - col0 + 1;
+        int rowsPerRead = Math.max(1, Math.min(row1 - row0 + 1, WINDOW_SAMPLES / w));
+        float[] samples = sampleBuffer.get();
+        if (samples.length < w * rowsPerRead) {
+            samples = new float[w * rowsPerRead];
+            sampleBuffer.set(samples);
+        }
+
+        double r2 = radiusMeters * radiusMeters;
+        long count = 0;
+        long noDataCount = 0;
+        double sum = 0;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        float noData = source.noData();
+
+        TiffWindowReader reader = source.readerPool().borrow();
+        try {
+            for (int y = row0; y <= row1; y += rowsPerRead) {
+                int h = Math.min(rowsPerRead, row1 - y + 1);
+                Raster raster = reader.readRasterWindow(col0, y, w, h, 1);
+                raster.getSamples(raster.getMinX(), raster.getMinY(), w, h, 0, samples);
+                for (int r = 0; r < h; r++) {
+                    double dy = (header.getOriginY() - (y + r + 0.5) * psy - centre[1]) * metersY;
+                    double dy2 = dy * dy;
+                    for (int c = 0; c < w; c++) {
+                        double dx = (header.getOriginX() + (col0 + c + 0.5) * psx - centre[0]) * metersX;
+                        if (dx * dx + dy2 > r2) {
+                            continue;
+                        }
+                        float v = samples[r * w + c];
+                        if (v != v || v == noData) {
+                            noDataCount++;
+                            continue;
+                        }
+                        count++;
+                        sum += v;
+                        if (v < min) {
+                            min = v;
+                        }
+                        if (v > max) {
+                            max = v;
+                        }
+                    }
+                }
+            }
+        } finally {
+            source.readerPool().release(reader);
+        }
+        if (count == 0 && noDataCount == 0) {
+            return null;
+        }
+
+        ZonalStats stats = new ZonalStats();
+        stats.setPlantId(target.getPlantId());
+        stats.setFileId(source.fileId());
+        stats.setDataType(target.getDataType());
+        stats.setLongitude(lon);
+        stats.setLatitude(lat);
+        stats.setRadiusMeters(radiusMeters);
+        stats.setPixelCount(count);
+        stats.setNoDataCount(noDataCount);
+        if (count > 0) {
+            stats.setMeanValue(sum / count);
+            stats.setMinValue((double) min);
+            stats.setMaxValue((double) max);
+        }
+        return stats;
+    }
+
+    /**
+     * 两点间球面距离（米）
+     */
+    private static double distance(double lon, double lat, double[] other) {
+        double phi1 = Math.toRadians(lat);
+        double phi2 = Math.toRadians(other[1]);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(other[0] - lon);
+        double a = Math.sin(dPhi / 2) * Math.sin(dPhi / 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2) * Math.sin(dLambda / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+}
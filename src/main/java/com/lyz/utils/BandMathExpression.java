@@ -0,0 +1,274 @@
+package com.lyz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 波段运算表达式
+ * 表达式如 "(NIR-RED)/(NIR+RED)"，支持 + - * / 、一元负号、括号、数字常量，
+ * 波段用 B1..Bn（从1开始）或别名（如 NIR、RED）引用。
+ * 解析时编译为后缀指令序列，求值时每条指令对整个样本数组做一次循环，
+ * 不逐像素解释表达式，也不产生装箱对象。除以0得到NaN或无穷大，任一输入为NaN则结果为NaN。
+ * 编译后的表达式不可变，可在多个线程中同时求值。
+ */
+public final class BandMathExpression {
+
+    private static final int OP_BAND = 0;
+    private static final int OP_CONST = 1;
+    private static final int OP_ADD = 2;
+    private static final int OP_SUB = 3;
+    private static final int OP_MUL = 4;
+    private static final int OP_DIV = 5;
+    private static final int OP_NEG = 6;
+
+    // 求值栈缓冲区（每个线程一组，按需扩容）
+    private static final ThreadLocal<float[][]> STACK = ThreadLocal.withInitial(() -> new float[0][]);
+
+    private final String source;
+    private final int[] ops;
+    private final int[] bandArgs;
+    private final float[] constArgs;
+    private final int maxDepth;
+    private final int bandCount;
+
+    private BandMathExpression(String source, int[] ops, int[] bandArgs, float[] constArgs, int maxDepth) {
+        this.source = source;
+        this.ops = ops;
+        this.bandArgs = bandArgs;
+        this.constArgs = constArgs;
+        this.maxDepth = maxDepth;
+        int max = 0;
+        for (int i = 0; i < ops.length; i++) {
+            if (ops[i] == OP_BAND) {
+                max = Math.max(max, bandArgs[i] + 1);
+            }
+        }
+        this.bandCount = max;
+    }
+
+    /**
+     * 编译表达式
+     * @param expression 表达式
+     * @param aliases 波段别名（大写名称到从1开始的波段号），可为空
+     * @throws IllegalArgumentException 表达式语法错误或引用了未知波段
+     */
+    public static BandMathExpression compile(String expression, Map<String, Integer> aliases) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("波段运算表达式不能为空");
+        }
+        Parser parser = new Parser(expression, aliases == null ? Map.of() : aliases);
+        parser.parseExpression();
+        if (parser.pos < expression.length()) {
+            throw new IllegalArgumentException("波段运算表达式无法解析: " + expression + "（位置" + parser.pos + "）");
+        }
+        int n = parser.ops.size();
+        int[] ops = new int[n];
+        int[] bandArgs = new int[n];
+        float[] constArgs = new float[n];
+        int depth = 0;
+        int maxDepth = 0;
+        for (int i = 0; i < n; i++) {
+            ops[i] = parser.ops.get(i);
+            bandArgs[i] = parser.bandArgs.get(i);
+            constArgs[i] = parser.constArgs.get(i);
+            if (ops[i] == OP_BAND || ops[i] == OP_CONST) {
+                depth++;
+            } else if (ops[i] != OP_NEG) {
+                depth--;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        return new BandMathExpression(expression, ops, bandArgs, constArgs, maxDepth);
+    }
+
+    /**
+     * 表达式引用的最大波段数（输入影像至少需要这么多波段）
+     */
+    public int getBandCount() {
+        return bandCount;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 对样本数组求值
+     * @param bands 各波段样本（bands[i]为第i+1个波段），长度不小于count
+     * @param count 样本数
+     * @param out 输出数组，长度不小于count
+     */
+    public void evaluate(float[][] bands, int count, float[] out) {
+        float[][] stack = STACK.get();
+        if (stack.length < maxDepth || (maxDepth > 0 && stack[0].length < count)) {
+            stack = new float[Math.max(maxDepth, stack.length)][count];
+            STACK.set(stack);
+        }
+        int top = -1;
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case OP_BAND -> System.arraycopy(bands[bandArgs[i]], 0, stack[++top], 0, count);
+                case OP_CONST -> Arrays.fill(stack[++top], 0, count, constArgs[i]);
+                case OP_NEG -> {
+                    float[] a = stack[top];
+                    for (int j = 0; j < count; j++) {
+                        a[j] = -a[j];
+                    }
+                }
+                default -> {
+                    float[] a = stack[top - 1];
+                    float[] b = stack[top];
+                    top--;
+                    switch (ops[i]) {
+                        case OP_ADD -> {
+                            for (int j = 0; j < count; j++) {
+                                a[j] += b[j];
+                            }
+                        }
+                        case OP_SUB -> {
+                            for (int j = 0; j < count; j++) {
+                                a[j] -= b[j];
+                            }
+                        }
+                        case OP_MUL -> {
+                            for (int j = 0; j < count; j++) {
+                                a[j] *= b[j];
+                            }
+                        }
+                        default -> {
+                            for (int j = 0; j < count; j++) {
+                                a[j] /= b[j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        System.arraycopy(stack[0], 0, out, 0, count);
+    }
+
+    /**
+     * 递归下降解析器，直接输出后缀指令
+     */
+    private static final class Parser {
+        private final String text;
+        private final Map<String, Integer> aliases;
+        private final List<Integer> ops = new ArrayList<>();
+        private final List<Integer> bandArgs = new ArrayList<>();
+        private final List<Float> constArgs = new ArrayList<>();
+        private int pos;
+
+        Parser(String text, Map<String, Integer> aliases) {
+            this.text = text;
+            this.aliases = aliases;
+        }
+
+        void parseExpression() {
+            parseTerm();
+            while (true) {
+                char c = peek();
+                if (c == '+' || c == '-') {
+                    pos++;
+                    parseTerm();
+                    emit(c == '+' ? OP_ADD : OP_SUB, 0, 0);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void parseTerm() {
+            parseUnary();
+            while (true) {
+                char c = peek();
+                if (c == '*' || c == '/') {
+                    pos++;
+                    parseUnary();
+                    emit(c == '*' ? OP_MUL : OP_DIV, 0, 0);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void parseUnary() {
+            char c = peek();
+            if (c == '-') {
+                pos++;
+                parseUnary();
+                emit(OP_NEG, 0, 0);
+            } else if (c == '+') {
+                pos++;
+                parseUnary();
+            } else {
+                parsePrimary();
+            }
+        }
+
+        private void parsePrimary() {
+            char c = peek();
+            if (c == '(') {
+                pos++;
+                parseExpression();
+                if (peek() != ')') {
+                    throw error("缺少右括号");
+                }
+                pos++;
+            } else if (Character.isDigit(c) || c == '.') {
+                int start = pos;
+                while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                    pos++;
+                }
+                try {
+                    emit(OP_CONST, 0, Float.parseFloat(text.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("无效的数字");
+                }
+            } else if (Character.isLetter(c)) {
+                int start = pos;
+                while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                    pos++;
+                }
+                emit(OP_BAND, resolveBand(text.substring(start, pos)), 0);
+            } else {
+                throw error(c == 0 ? "表达式不完整" : "意外的字符 '" + c + "'");
+            }
+        }
+
+        private int resolveBand(String name) {
+            String upper = name.toUpperCase(Locale.ROOT);
+            Integer band = aliases.get(upper);
+            if (band == null && upper.length() > 1 && upper.charAt(0) == 'B') {
+                try {
+                    band = Integer.parseInt(upper.substring(1));
+                } catch (NumberFormatException e) {
+                    // 不是Bn形式
+                }
+            }
+            if (band == null || band < 1) {
+                throw error("未知波段 " + name);
+            }
+            return band - 1;
+        }
+
+        private char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private void emit(int op, int band, float value) {
+            ops.add(op);
+            bandArgs.add(band);
+            constArgs.add(value);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("波段运算表达式错误: " + message + "（" + text + "，位置" + pos + "）");
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 云优化GeoTIFF（COG）写入器
+ * 输出小端序经典TIFF：全分辨率影像和逐级缩小一半的概览影像均按分块Deflate压缩、像素交错存放。
+ * 所有IFD紧跟文件头集中在文件开头，分块数据按从最小概览到全分辨率的顺序存放，
+ * 客户端用少量Range请求读取文件头后即可只取需要的级别和分块。
+ * 写入过程中各级分块先追加到同目录的临时文件（每级一个），概览分块由上一级的四个子分块
+ * 2x2平均得到（读回临时文件解压，不需要整级驻留内存）；commit时写文件头和IFD、
+ * 按顺序拼接各级数据并原子替换目标文件。分块的写入和概览生成可在多个线程中并行。
+ */
+public class CogWriter implements AutoCloseable {
+
+    // 解压器（每个线程一个）
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final Path target;
+    private final Path tempFile;
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final int bitsPerSample;
+    private final int sampleFormat;
+    private final int blockSize;
+    private final Double noData;
+    private final double fillValue;
+    private final List<Level> levels = new ArrayList<>();
+    // commit或close后置位（由 this 锁保护）
+    private boolean finished;
+
+    // 地理参考（左上角坐标、像素大小、EPSG）
+    private boolean georeferenced;
+    private double originX;
+    private double originY;
+    private double pixelSizeX;
+    private double pixelSizeY;
+    private int epsg;
+
+    /**
+     * 一个分辨率级别：尺寸、分块表和分块数据临时文件
+     */
+    private static final class Level {
+        private final int width;
+        private final int height;
+        private final int tilesAcross;
+        private final int tilesDown;
+        private final long[] offsets;
+        private final long[] byteCounts;
+        private final Path dataFile;
+        private final FileChannel channel;
+        private long size;
+        // 不再接受分块写入（与分块表一样由该级别的锁保护）
+        private boolean closed;
+
+        Level(int width, int height, int blockSize, Path dataFile) throws IOException {
+            this.width = width;
+            this.height = height;
+            this.tilesAcross = (width + blockSize - 1) / blockSize;
+            this.tilesDown = (height + blockSize - 1) / blockSize;
+            this.offsets = new long[tilesAcross * tilesDown];
+            this.byteCounts = new long[tilesAcross * tilesDown];
+            this.dataFile = dataFile;
+            this.channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    /**
+     * @param target 目标文件
+     * @param width 影像宽度
+     * @param height 影像高度
+     * @param bands 波段数
+     * @param bitsPerSample 样本位数（8、16、32、64）
+     * @param sampleFormat 样本格式（1无符号整数、2有符号整数、3浮点）
+     * @param blockSize 分块边长（16的倍数）
+     * @param noData 无数据值，没有时传null（浮点影像以NaN表示无数据）
+     */
+    public CogWriter(Path target, int width, int height, int bands, int bitsPerSample, int sampleFormat,
+                     int blockSize, Double noData) throws IOException {
+        if (width <= 0 || height <= 0 || bands <= 0 || blockSize <= 0 || blockSize % 16 != 0) {
+            throw new IllegalArgumentException("无效的影像或分块尺寸: " + width + "x" + height + "x" + bands
+                    + ", " + blockSize);
+        }
+        if (!isSupported(bitsPerSample, sampleFormat)) {
+            throw new IllegalArgumentException("不支持的样本类型: " + bitsPerSample + "位, 格式" + sampleFormat);
+        }
+        this.target = target;
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.bitsPerSample = bitsPerSample;
+        this.sampleFormat = sampleFormat;
+        this.blockSize = blockSize;
+        this.noData = noData;
+        this.fillValue = noData != null ? noData : sampleFormat == 3 ? Double.NaN : 0;
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        this.tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+
+        // 逐级缩小一半，直到整级只有一个分块
+        int levelWidth = width;
+        int levelHeight = height;
+        try {
+            while (true) {
+                levels.add(new Level(levelWidth, levelHeight, blockSize,
+                        target.resolveSibling(target.getFileName() + ".L" + levels.size() + ".tmp")));
+                if (levelWidth <= blockSize && levelHeight <= blockSize) {
+                    break;
+                }
+                levelWidth = (levelWidth + 1) / 2;
+                levelHeight = (levelHeight + 1) / 2;
+            }
+        } catch (IOException e) {
+            try {
+                closeLevels();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 是否支持该样本类型
+     */
+    public static boolean isSupported(int bitsPerSample, int sampleFormat) {
+        return switch (sampleFormat) {
+            case 1, 2 -> bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 32;
+            case 3 -> bitsPerSample == 32 || bitsPerSample == 64;
+            default -> false;
+        };
+    }
+
+    /**
+     * 设置地理参考
+     * @param originX 左上角X坐标
+     * @param originY 左上角Y坐标
+     * @param pixelSizeX X方向像素大小
+     * @param pixelSizeY Y方向像素大小（正值）
+     * @param epsg 坐标系EPSG代码，未知时传0
+     */
+    public void setGeoreference(double originX, double originY, double pixelSizeX, double pixelSizeY, int epsg) {
+        this.georeferenced = true;
+        this.originX = originX;
+        this.originY = originY;
+        this.pixelSizeX = pixelSizeX;
+        this.pixelSizeY = pixelSizeY;
+        this.epsg = epsg;
+    }
+
+    /**
+     * 级别数（全分辨率为0级）
+     */
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    public int getTilesAcross(int level) {
+        return levels.get(level).tilesAcross;
+    }
+
+    public int getTilesDown(int level) {
+        return levels.get(level).tilesDown;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * 超出影像范围或无数据的样本值
+     */
+    public double getFillValue() {
+        return fillValue;
+    }
+
+    /**
+     * 写入全分辨率分块（线程安全）
+     * @param col 分块列号
+     * @param row 分块行号
+     * @param samples 像素交错、按行存放的样本，行宽为blockSize；超出影像范围的部分应填 getFillValue
+     */
+    public void writeTile(int col, int row, double[] samples) throws IOException {
+        writeTile(0, col, row, samples);
+    }
+
+    /**
+     * 由上一级的四个子分块生成概览分块（线程安全，上一级必须已全部写入）
+     * @param level 概览级别（从1开始）
+     * @param col 分块列号
+     * @param row 分块行号
+     */
+    public void buildOverviewTile(int level, int col, int row) throws IOException {
+        if (level <= 0 || level >= levels.size()) {
+            throw new IllegalArgumentException("概览级别超出范围: " + level);
+        }
+        Level child = levels.get(level - 1);
+        double[][] children = new double[4][];
+        for (int i = 0; i < 4; i++) {
+            int childCol = col * 2 + (i & 1);
+            int childRow = row * 2 + (i >> 1);
+            if (childCol < child.tilesAcross && childRow < child.tilesDown) {
+                children[i] = readTile(level - 1, childCol, childRow);
+            }
+        }
+
+        double[] samples = new double[blockSize * blockSize * bands];
+        Arrays.fill(samples, fillValue);
+        int half = blockSize / 2;
+        for (int i = 0; i < 4; i++) {
+            if (children[i] == null) {
+                continue;
+            }
+            // 子分块在影像内的像素范围
+            int childX0 = (col * 2 + (i & 1)) * blockSize;
+            int childY0 = (row * 2 + (i >> 1)) * blockSize;
+            int validWidth = Math.min(blockSize, child.width - childX0);
+            int validHeight = Math.min(blockSize, child.height - childY0);
+            int offsetX = (i & 1) * half;
+            int offsetY = (i >> 1) * half;
+            for (int y = 0; y < half && y * 2 < validHeight; y++) {
+                for (int x = 0; x < half && x * 2 < validWidth; x++) {
+                    int out = ((offsetY + y) * blockSize + offsetX + x) * bands;
+                    for (int b = 0; b < bands; b++) {
+                        double sum = 0;
+                        int count = 0;
+                        for (int dy = 0; dy < 2 && y * 2 + dy < validHeight; dy++) {
+                            for (int dx = 0; dx < 2 && x * 2 + dx < validWidth; dx++) {
+                                double v = children[i][((y * 2 + dy) * blockSize + x * 2 + dx) * bands + b];
+                                if (!Double.isNaN(v) && (noData == null || v != noData)) {
+                                    sum += v;
+                                    count++;
+                                }
+                            }
+                        }
+                        if (count > 0) {
+                            samples[out + b] = sampleFormat == 3 ? sum / count : Math.round(sum / count);
+                        }
+                    }
+                }
+            }
+        }
+        writeTile(level, col, row, samples);
+    }
+
+    private void writeTile(int level, int col, int row, double[] samples) throws IOException {
+        Level l = levels.get(level);
+        if (col < 0 || row < 0 || col >= l.tilesAcross || row >= l.tilesDown) {
+            throw new IllegalArgumentException("分块超出范围: " + level + "/" + col + "," + row);
+        }
+        byte[] compressed = TiffWriterUtil.deflate(encode(samples));
+        synchronized (l) {
+            if (l.closed) {
+                throw new IOException("COG已关闭");
+            }
+            long offset = l.size;
+            TiffWriterUtil.writeFully(l.channel, ByteBuffer.wrap(compressed), offset);
+            l.size += compressed.length;
+            int index = row * l.tilesAcross + col;
+            l.offsets[index] = offset;
+            l.byteCounts[index] = compressed.length;
+        }
+    }
+
+    /**
+     * 读回已写入的分块（线程安全）
+     */
+    double[] readTile(int level, int col, int row) throws IOException {
+        Level l = levels.get(level);
+        int index = row * l.tilesAcross + col;
+        long offset;
+        int length;
+        synchronized (l) {
+            offset = l.offsets[index];
+            length = (int) l.byteCounts[index];
+        }
+        if (length == 0) {
+            throw new IOException("分块尚未写入: " + level + "/" + col + "," + row);
+        }
+        ByteBuffer compressed = ByteBuffer.allocate(length);
+        while (compressed.hasRemaining()) {
+            if (l.channel.read(compressed, offset + compressed.position()) < 0) {
+                throw new IOException("分块数据不完整: " + level + "/" + col + "," + row);
+            }
+        }
+        byte[] raw = new byte[blockSize * blockSize * bands * (bitsPerSample / 8)];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed.array());
+        try {
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, n, raw.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("分块解压失败: " + level + "/" + col + "," + row, e);
+        }
+        return decode(raw);
+    }
+
+    private byte[] encode(double[] samples) {
+        int count = blockSize * blockSize * bands;
+        ByteBuffer raw = ByteBuffer.allocate(count * (bitsPerSample / 8)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            double v = samples[i];
+            switch (sampleFormat * 100 + bitsPerSample) {
+                case 108 -> raw.put((byte) clamp(v, 0, 255));
+                case 208 -> raw.put((byte) clamp(v, Byte.MIN_VALUE, Byte.MAX_VALUE));
+                case 116 -> raw.putShort((short) clamp(v, 0, 65535));
+                case 216 -> raw.putShort((short) clamp(v, Short.MIN_VALUE, Short.MAX_VALUE));
+                case 132 -> raw.putInt((int) (long) clamp(v, 0, 0xFFFFFFFFL));
+                case 232 -> raw.putInt((int) clamp(v, Integer.MIN_VALUE, Integer.MAX_VALUE));
+                case 332 -> raw.putFloat((float) v);
+                default -> raw.putDouble(v);
+            }
+        }
+        return raw.array();
+    }
+
+    private double[] decode(byte[] bytes) {
+        ByteBuffer raw = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        double[] samples = new double[blockSize * blockSize * bands];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = switch (sampleFormat * 100 + bitsPerSample) {
+                case 108 -> raw.get() & 0xFF;
+                case 208 -> raw.get();
+                case 116 -> raw.getShort() & 0xFFFF;
+                case 216 -> raw.getShort();
+                case 132 -> raw.getInt() & 0xFFFFFFFFL;
+                case 232 -> raw.getInt();
+                case 332 -> raw.getFloat();
+                default -> raw.getDouble();
+            };
+        }
+        return samples;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        if (Double.isNaN(v)) {
+            return 0;
+        }
+        return Math.max(min, Math.min(max, Math.rint(v)));
+    }
+
+    /**
+     * 写入文件头和所有IFD，按从最小概览到全分辨率的顺序拼接分块数据，替换目标文件
+     */
+    public void commit() throws IOException {
+        synchronized (this) {
+            if (finished) {
+                throw new IOException("COG已关闭");
+            }
+            finish();
+        }
+        try {
+            for (int i = 0; i < levels.size(); i++) {
+                for (long count : levels.get(i).byteCounts) {
+                    if (count == 0) {
+                        throw new IOException("第" + i + "级有分块未写入");
+                    }
+                }
+            }
+
+            // IFD区大小
+            List<byte[]> ifds = new ArrayList<>();
+            long ifdSize = 0;
+            for (int i = 0; i < levels.size(); i++) {
+                ifdSize += buildIfd(i, 0, 0, new long[levels.get(i).offsets.length]).length;
+            }
+
+            // 各级数据在文件中的起始位置：最小概览在前，全分辨率在最后
+            long[] dataStart = new long[levels.size()];
+            long position = TiffWriterUtil.HEADER_SIZE + ifdSize;
+            for (int i = levels.size() - 1; i >= 0; i--) {
+                dataStart[i] = position;
+                position += levels.get(i).size;
+            }
+            TiffWriterUtil.checkOffset(position);
+
+            long ifdOffset = TiffWriterUtil.HEADER_SIZE;
+            for (int i = 0; i < levels.size(); i++) {
+                long[] offsets = levels.get(i).offsets.clone();
+                for (int t = 0; t < offsets.length; t++) {
+                    offsets[t] += dataStart[i];
+                }
+                byte[] probe = buildIfd(i, ifdOffset, 0, offsets);
+                long next = i + 1 < levels.size() ? ifdOffset + probe.length : 0;
+                byte[] ifd = buildIfd(i, ifdOffset, next, offsets);
+                ifds.add(ifd);
+                ifdOffset += ifd.length;
+            }
+
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                TiffWriterUtil.writeHeader(out, TiffWriterUtil.HEADER_SIZE);
+                long written = TiffWriterUtil.HEADER_SIZE;
+                for (byte[] ifd : ifds) {
+                    written += TiffWriterUtil.writeFully(out, ByteBuffer.wrap(ifd), written);
+                }
+                for (int i = levels.size() - 1; i >= 0; i--) {
+                    Level l = levels.get(i);
+                    long copied = 0;
+                    while (copied < l.size) {
+                        copied += out.transferFrom(l.channel.position(copied), written + copied, l.size - copied);
+                    }
+                    written += l.size;
+                }
+                out.force(true);
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            closeLevels();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 构造一级的IFD（条目之后紧跟各条目的外部数据）
+     * @param level 级别
+     * @param ifdOffset IFD在文件中的偏移
+     * @param nextIfd 下一个IFD的偏移，没有时为0
+     * @param offsets 分块在文件中的偏移
+     */
+    private byte[] buildIfd(int level, long ifdOffset, long nextIfd, long[] offsets) {
+        Level l = levels.get(level);
+        boolean rgb = bitsPerSample == 8 && sampleFormat == 1 && bands >= 3;
+        TiffWriterUtil.IfdBuilder ifd = new TiffWriterUtil.IfdBuilder()
+                .add(254, TiffWriterUtil.TYPE_LONG, level == 0 ? 0 : 1) // 概览为缩小分辨率影像
+                .add(256, TiffWriterUtil.TYPE_LONG, l.width)
+                .add(257, TiffWriterUtil.TYPE_LONG, l.height)
+                .add(258, TiffWriterUtil.TYPE_SHORT, repeat(bitsPerSample))
+                .add(259, TiffWriterUtil.TYPE_SHORT, 8) // Deflate
+                .add(262, TiffWriterUtil.TYPE_SHORT, rgb ? 2 : 1) // RGB或BlackIsZero
+                .add(277, TiffWriterUtil.TYPE_SHORT, bands)
+                .add(284, TiffWriterUtil.TYPE_SHORT, 1)
+                .add(322, TiffWriterUtil.TYPE_LONG, blockSize)
+                .add(323, TiffWriterUtil.TYPE_LONG, blockSize)
+                .add(324, TiffWriterUtil.TYPE_LONG, offsets)
+                .add(325, TiffWriterUtil.TYPE_LONG, l.byteCounts);
+        int extraSamples = bands - (rgb ? 3 : 1);
+        if (extraSamples > 0) {
+            ifd.add(338, TiffWriterUtil.TYPE_SHORT, new long[extraSamples]); // 未指定含义的附加波段
+        }
+        ifd.add(339, TiffWriterUtil.TYPE_SHORT, repeat(sampleFormat));
+
+        if (level == 0 && georeferenced) {
+            ifd.addGeoreference(originX, originY, pixelSizeX, pixelSizeY, epsg);
+        }
+        if (level == 0 && noData != null) {
+            String text = noData.isNaN() ? "nan"
+                    : noData == Math.rint(noData) ? String.valueOf(noData.longValue()) : noData.toString();
+            ifd.addAscii(42113, text);
+        }
+        return ifd.build(ifdOffset, nextIfd);
+    }
+
+    private long[] repeat(long value) {
+        long[] values = new long[bands];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private void closeLevels() throws IOException {
+        for (Level level : levels) {
+            level.channel.close();
+            Files.deleteIfExists(level.dataFile);
+        }
+    }
+
+    /**
+     * 停止接受分块写入（调用方持有 this 锁）
+     * 在各级别的锁内置位，进行中的写入完成后才返回
+     */
+    private void finish() {
+        finished = true;
+        for (Level level : levels) {
+            synchronized (level) {
+                level.closed = true;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (finished && levels.stream().noneMatch(l -> l.channel.isOpen())) {
+                return;
+            }
+            finish();
+        }
+        closeLevels();
+        Files.deleteIfExists(tempFile);
+    }
+}
@@ -0,0 +1,132 @@
+package com.lyz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 颜色渐变查找表
+ * 按取值范围预先计算固定长度的ARGB查找表，渲染时每个像素只需一次下标计算和数组访问。
+ * 渐变由若干控制点定义，格式为 "值:#RRGGBB[AA],值:#RRGGBB[AA],..."，控制点之间线性插值。
+ * 实例不可变，线程安全。
+ */
+public final class ColorRamp {
+
+    private final int[] lut;
+    private final float min;
+    private final float max;
+    private final float scale;
+
+    private ColorRamp(int[] lut, float min, float max) {
+        this.lut = lut;
+        this.min = min;
+        this.max = max;
+        this.scale = max > min ? lut.length / (max - min) : 0;
+    }
+
+    /**
+     * 解析控制点定义并生成查找表
+     * @param spec 控制点定义，如 "-1:#8c510a,0:#f6e8c3,1:#01665e"
+     * @param size 查找表长度（如256或1024）
+     * @throws IllegalArgumentException 定义格式错误
+     */
+    public static ColorRamp parse(String spec, int size) {
+        List<float[]> stops = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2 || !kv[1].startsWith("#") || (kv[1].length() != 7 && kv[1].length() != 9)) {
+                throw new IllegalArgumentException("颜色渐变控制点格式错误: " + part);
+            }
+            float value = Float.parseFloat(kv[0].trim());
+            long rgba = Long.parseLong(kv[1].substring(1), 16);
+            if (kv[1].length() == 7) {
+                rgba = rgba << 8 | 0xFF;
+            }
+            stops.add(new float[]{value, rgba >> 24 & 0xFF, rgba >> 16 & 0xFF, rgba >> 8 & 0xFF, rgba & 0xFF});
+        }
+        if (stops.size() < 2) {
+            throw new IllegalArgumentException("颜色渐变至少需要两个控制点: " + spec);
+        }
+        stops.sort((a, b) -> Float.compare(a[0], b[0]));
+
+        float min = stops.get(0)[0];
+        float max = stops.get(stops.size() - 1)[0];
+        int[] lut = new int[size];
+        int segment = 0;
+        for (int i = 0; i < size; i++) {
+            // 查找表第i项对应区间中点的取值
+            float value = min + (max - min) * (i + 0.5f) / size;
+            while (segment < stops.size() - 2 && value > stops.get(segment + 1)[0]) {
+                segment++;
+            }
+            float[] a = stops.get(segment);
+            float[] b = stops.get(segment + 1);
+            float t = b[0] > a[0] ? Math.max(0, Math.min(1, (value - a[0]) / (b[0] - a[0]))) : 0;
+            int r = Math.round(a[1] + (b[1] - a[1]) * t);
+            int g = Math.round(a[2] + (b[2] - a[2]) * t);
+            int bl = Math.round(a[3] + (b[3] - a[3]) * t);
+            int alpha = Math.round(a[4] + (b[4] - a[4]) * t);
+            lut[i] = alpha << 24 | r << 16 | g << 8 | bl;
+        }
+        return new ColorRamp(lut, min, max);
+    }
+
+    /**
+     * 将取值映射为ARGB颜色写入目标数组
+     * NaN和无数据值映射为全透明，超出范围的值取两端颜色
+     * @param values 取值
+     * @param count 像素数
+     * @param noData 无数据值（没有时传NaN）
+     * @param argb 输出ARGB
+     */
+    public void apply(float[] values, int count, float noData, int[] argb) {
+        int[] table = lut;
+        int last = table.length - 1;
+        float lo = min;
+        float s = scale;
+        for (int i = 0; i < count; i++) {
+            float v = values[i];
+            if (v != v || v == noData) {
+                argb[i] = 0;
+                continue;
+            }
+            int index = (int) ((v - lo) * s);
+            if (index < 0) {
+                index = 0;
+            } else if (index > last) {
+                index = last;
+            }
+            argb[i] = table[index];
+        }
+    }
+
+    /**
+     * 单个取值对应的ARGB颜色
+     */
+    public int colorOf(float value) {
+        if (value != value) {
+            return 0;
+        }
+        int index = (int) ((value - min) * scale);
+        return lut[Math.max(0, Math.min(lut.length - 1, index))];
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public int getSize() {
+        return lut.length;
+    }
+
+    /**
+     * 查找表内容的哈希，渐变配置变化时随之变化
+     */
+    public int fingerprint() {
+        return 31 * Arrays.hashCode(lut) + Float.hashCode(min) * 17 + Float.hashCode(max);
+    }
+}
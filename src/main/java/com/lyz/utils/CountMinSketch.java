@@ -0,0 +1,132 @@
+package com.lyz.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min计数草图
+ * 用 depth 行、每行 width 个计数器近似统计大量键的出现次数，占用内存固定（depth*width*4字节）。
+ * 估计值只会偏大不会偏小；更新采用保守更新（只增加当前最小的计数器），减小哈希冲突带来的高估。
+ * 计数器饱和于Integer.MAX_VALUE，halve 将全部计数减半用于衰减旧的访问记录。
+ * 线程安全（并发更新时估计值可能略有出入）。
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param depth 行数（哈希函数个数）
+     * @param width 每行计数器个数（向上取为2的幂）
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || depth > 16 || width <= 0 || width > (1 << 24)) {
+            throw new IllegalArgumentException("无效的草图尺寸: " + depth + "x" + width);
+        }
+        this.depth = depth;
+        this.width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+        this.counters = new AtomicIntegerArray(depth * this.width);
+    }
+
+    /**
+     * 计数加1
+     * @return 加1后的估计值
+     */
+    public int add(long key) {
+        int[] slots = slots(key);
+        int min = Integer.MAX_VALUE;
+        for (int slot : slots) {
+            min = Math.min(min, counters.get(slot));
+        }
+        if (min == Integer.MAX_VALUE) {
+            return min;
+        }
+        int target = min + 1;
+        for (int slot : slots) {
+            counters.accumulateAndGet(slot, target, Math::max);
+        }
+        return target;
+    }
+
+    /**
+     * 估计键的出现次数
+     */
+    public int estimate(long key) {
+        int min = Integer.MAX_VALUE;
+        for (int slot : slots(key)) {
+            min = Math.min(min, counters.get(slot));
+        }
+        return min;
+    }
+
+    /**
+     * 全部计数减半
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, v -> v >>> 1);
+        }
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 序列化：行数、列数和全部计数器（大端）
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + counters.length() * 4);
+        buffer.putInt(depth).putInt(width);
+        for (int i = 0; i < counters.length(); i++) {
+            buffer.putInt(counters.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 从 toBytes 的结果恢复计数
+     * @return 尺寸不一致或数据不完整时不恢复并返回false
+     */
+    public boolean load(byte[] data) {
+        if (data == null || data.length != 8 + counters.length() * 4) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.getInt() != depth || buffer.getInt() != width) {
+            return false;
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, buffer.getInt());
+        }
+        return true;
+    }
+
+    /**
+     * 键在各行的计数器下标（由一个64位混合哈希派生各行哈希）
+     */
+    private int[] slots(long key) {
+        long h = mix(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        int[] slots = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            slots[i] = i * width + ((h1 + i * h2) & (width - 1));
+        }
+        return slots;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
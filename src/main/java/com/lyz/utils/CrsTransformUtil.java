@@ -0,0 +1,227 @@
+package com.lyz.utils;
+
+/**
+ * 坐标系转换工具类
+ * 不依赖GDAL/PROJ，只支持项目中常见的坐标系：
+ * <ul>
+ *   <li>地理坐标系：EPSG:4326（WGS84）、4490（CGCS2000）等，经纬度直接使用</li>
+ *   <li>Web墨卡托：EPSG:3857</li>
+ *   <li>UTM：EPSG:32601-32660（北半球）、32701-32760（南半球）</li>
+ *   <li>CGCS2000高斯-克吕格：EPSG:4491-4554（3度带/6度带，含带号或不含带号）</li>
+ * </ul>
+ * 不同大地基准之间不做基准转换（CGCS2000与WGS84相差在厘米级），椭球统一按WGS84计算。
+ */
+public class CrsTransformUtil {
+
+    // WGS84椭球
+    private static final double A = 6378137.0;
+    private static final double F = 1 / 298.257223563;
+    private static final double E2 = F * (2 - F);
+    private static final double EP2 = E2 / (1 - E2);
+
+    // Web墨卡托纬度上限
+    public static final double MAX_MERCATOR_LAT = 85.0511287798066;
+
+    /**
+     * 横轴墨卡托投影参数
+     */
+    private record TransverseMercator(double lon0, double k0, double falseEasting, double falseNorthing) {
+    }
+
+    /**
+     * 是否支持该坐标系
+     */
+    public static boolean isSupported(int epsg) {
+        return isGeographic(epsg) || isWebMercator(epsg) || transverseMercator(epsg) != null;
+    }
+
+    /**
+     * 是否为地理坐标系（经纬度）
+     */
+    public static boolean isGeographic(int epsg) {
+        return epsg == 4326 || epsg == 4490 || epsg == 4214 || epsg == 4610 || epsg == 4269 || epsg == 4258;
+    }
+
+    private static boolean isWebMercator(int epsg) {
+        return epsg == 3857 || epsg == 900913 || epsg == 3785 || epsg == 102100;
+    }
+
+    private static TransverseMercator transverseMercator(int epsg) {
+        if (epsg >= 32601 && epsg <= 32660) {
+            return new TransverseMercator((epsg - 32600) * 6 - 183, 0.9996, 500000, 0);
+        }
+        if (epsg >= 32701 && epsg <= 32760) {
+            return new TransverseMercator((epsg - 32700) * 6 - 183, 0.9996, 500000, 10000000);
+        }
+        // CGCS2000 6度带，坐标含带号（13-23带）
+        if (epsg >= 4491 && epsg <= 4501) {
+            int zone = 13 + epsg - 4491;
+            return new TransverseMercator(zone * 6 - 3, 1.0, zone * 1000000.0 + 500000, 0);
+        }
+        // CGCS2000 6度带，中央经线75E-135E
+        if (epsg >= 4502 && epsg <= 4512) {
+            return new TransverseMercator(75 + (epsg - 4502) * 6, 1.0, 500000, 0);
+        }
+        // CGCS2000 3度带，坐标含带号（25-45带）
+        if (epsg >= 4513 && epsg <= 4533) {
+            int zone = 25 + epsg - 4513;
+            return new TransverseMercator(zone * 3, 1.0, zone * 1000000.0 + 500000, 0);
+        }
+        // CGCS2000 3度带，中央经线75E-135E
+        if (epsg >= 4534 && epsg <= 4554) {
+            return new TransverseMercator(75 + (epsg - 4534) * 3, 1.0, 500000, 0);
+        }
+        return null;
+    }
+
+    /**
+     * 原始坐标转换为WGS84经纬度
+     * @return {经度, 纬度}
+     * @throws IllegalArgumentException 不支持的坐标系
+     */
+    public static double[] toLonLat(int epsg, double x, double y) {
+        if (isGeographic(epsg)) {
+            return new double[]{x, y};
+        }
+        if (isWebMercator(epsg)) {
+            return mercatorToLonLat(x, y);
+        }
+        TransverseMercator tm = transverseMercator(epsg);
+        if (tm != null) {
+            return inverseTransverseMercator(tm, x, y);
+        }
+        throw new IllegalArgumentException("不支持的坐标系: EPSG:" + epsg);
+    }
+
+    /**
+     * WGS84经纬度转换为原始坐标
+     * @return {x, y}
+     * @throws IllegalArgumentException 不支持的坐标系
+     */
+    public static double[] fromLonLat(int epsg, double lon, double lat) {
+        if (isGeographic(epsg)) {
+            return new double[]{lon, lat};
+        }
+        if (isWebMercator(epsg)) {
+            return lonLatToMercator(lon, lat);
+        }
+        TransverseMercator tm = transverseMercator(epsg);
+        if (tm != null) {
+            return forwardTransverseMercator(tm, lon, lat);
+        }
+        throw new IllegalArgumentException("不支持的坐标系: EPSG:" + epsg);
+    }
+
+    /**
+     * 原始坐标系下的矩形范围转换为WGS84经纬度范围
+     * 投影坐标系的矩形边界在经纬度下是曲线，沿四条边采样取外包矩形
+     * @return {西, 南, 东, 北}
+     */
+    public static double[] toLonLatBounds(int epsg, double minX, double minY, double maxX, double maxY) {
+        if (isGeographic(epsg)) {
+            return new double[]{minX, minY, maxX, maxY};
+        }
+        double west = Double.POSITIVE_INFINITY;
+        double south = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        int steps = 8;
+        for (int i = 0; i <= steps; i++) {
+            double t = (double) i / steps;
+            double x = minX + (maxX - minX) * t;
+            double y = minY + (maxY - minY) * t;
+            double[][] points = {
+                    toLonLat(epsg, x, minY), toLonLat(epsg, x, maxY),
+                    toLonLat(epsg, minX, y), toLonLat(epsg, maxX, y)
+            };
+            for (double[] p : points) {
+                west = Math.min(west, p[0]);
+                east = Math.max(east, p[0]);
+                south = Math.min(south, p[1]);
+                north = Math.max(north, p[1]);
+            }
+        }
+        return new double[]{west, south, east, north};
+    }
+
+    /**
+     * WGS84经纬度转换为Web墨卡托（EPSG:3857）坐标，纬度超出范围时截断
+     */
+    public static double[] lonLatToMercator(double lon, double lat) {
+        double clampedLat = Math.max(-MAX_MERCATOR_LAT, Math.min(MAX_MERCATOR_LAT, lat));
+        double x = A * Math.toRadians(lon);
+        double y = A * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(clampedLat) / 2));
+        return new double[]{x, y};
+    }
+
+    /**
+     * Web墨卡托（EPSG:3857）坐标转换为WGS84经纬度
+     */
+    public static double[] mercatorToLonLat(double x, double y) {
+        double lon = Math.toDegrees(x / A);
+        double lat = Math.toDegrees(2 * Math.atan(Math.exp(y / A)) - Math.PI / 2);
+        return new double[]{lon, lat};
+    }
+
+    /**
+     * 横轴墨卡托正算（Snyder公式）
+     */
+    private static double[] forwardTransverseMercator(TransverseMercator tm, double lon, double lat) {
+        double phi = Math.toRadians(lat);
+        double sinPhi = Math.sin(phi);
+        double cosPhi = Math.cos(phi);
+        double tanPhi = Math.tan(phi);
+        double n = A / Math.sqrt(1 - E2 * sinPhi * sinPhi);
+        double t = tanPhi * tanPhi;
+        double c = EP2 * cosPhi * cosPhi;
+        double a = Math.toRadians(lon - tm.lon0()) * cosPhi;
+        double e4 = E2 * E2;
+        double e6 = e4 * E2;
+        double m = A * ((1 - E2 / 4 - 3 * e4 / 64 - 5 * e6 / 256) * phi
+                - (3 * E2 / 8 + 3 * e4 / 32 + 45 * e6 / 1024) * Math.sin(2 * phi)
+                + (15 * e4 / 256 + 45 * e6 / 1024) * Math.sin(4 * phi)
+                - (35 * e6 / 3072) * Math.sin(6 * phi));
+
+        double a2 = a * a;
+        double x = tm.falseEasting() + tm.k0() * n * (a + (1 - t + c) * a2 * a / 6
+                + (5 - 18 * t + t * t + 72 * c - 58 * EP2) * a2 * a2 * a / 120);
+        double y = tm.falseNorthing() + tm.k0() * (m + n * tanPhi * (a2 / 2
+                + (5 - t + 9 * c + 4 * c * c) * a2 * a2 / 24
+                + (61 - 58 * t + t * t + 600 * c - 330 * EP2) * a2 * a2 * a2 / 720));
+        return new double[]{x, y};
+    }
+
+    /**
+     * 横轴墨卡托反算（Snyder公式）
+     */
+    private static double[] inverseTransverseMercator(TransverseMercator tm, double x, double y) {
+        double e4 = E2 * E2;
+        double e6 = e4 * E2;
+        double m = (y - tm.falseNorthing()) / tm.k0();
+        double mu = m / (A * (1 - E2 / 4 - 3 * e4 / 64 - 5 * e6 / 256));
+        double sqrt = Math.sqrt(1 - E2);
+        double e1 = (1 - sqrt) / (1 + sqrt);
+        double phi1 = mu + (3 * e1 / 2 - 27 * Math.pow(e1, 3) / 32) * Math.sin(2 * mu)
+                + (21 * e1 * e1 / 16 - 55 * Math.pow(e1, 4) / 32) * Math.sin(4 * mu)
+                + (151 * Math.pow(e1, 3) / 96) * Math.sin(6 * mu)
+                + (1097 * Math.pow(e1, 4) / 512) * Math.sin(8 * mu);
+
+        double sinPhi1 = Math.sin(phi1);
+        double cosPhi1 = Math.cos(phi1);
+        double tanPhi1 = Math.tan(phi1);
+        double c1 = EP2 * cosPhi1 * cosPhi1;
+        double t1 = tanPhi1 * tanPhi1;
+        double denom = 1 - E2 * sinPhi1 * sinPhi1;
+        double n1 = A / Math.sqrt(denom);
+        double r1 = A * (1 - E2) / Math.pow(denom, 1.5);
+        double d = (x - tm.falseEasting()) / (n1 * tm.k0());
+        double d2 = d * d;
+
+        double lat = phi1 - (n1 * tanPhi1 / r1) * (d2 / 2
+                - (5 + 3 * t1 + 10 * c1 - 4 * c1 * c1 - 9 * EP2) * d2 * d2 / 24
+                + (61 + 90 * t1 + 298 * c1 + 45 * t1 * t1 - 252 * EP2 - 3 * c1 * c1) * d2 * d2 * d2 / 720);
+        double lon = tm.lon0() + Math.toDegrees((d - (1 + 2 * t1 + c1) * d2 * d / 6
+                + (5 - 2 * c1 + 28 * t1 - 3 * c1 * c1 + 8 * EP2 + 24 * t1 * t1) * d2 * d2 * d / 120) / cosPhi1);
+        return new double[]{lon, Math.toDegrees(lat)};
+    }
+}
@@ -0,0 +1,500 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GeoTIFF文件头解析器
+ * 只读取文件头和第一个IFD（支持经典TIFF和BigTIFF），通过FileChannel定位读取少量字节，
+ * 耗时与文件大小无关。解析影像尺寸、波段、样本格式以及地理参考
+ * （ModelPixelScale、ModelTiepoint、ModelTransformation、GeoKeyDirectory、GDAL_NODATA）。
+ */
+public class GeoTiffHeader {
+
+    // TIFF标签
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_STRIP_OFFSETS = 273;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_ROWS_PER_STRIP = 278;
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_TILE_LENGTH = 323;
+    private static final int TAG_TILE_OFFSETS = 324;
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+    private static final int TAG_SAMPLE_FORMAT = 339;
+    private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    private static final int TAG_MODEL_TIEPOINT = 33922;
+    private static final int TAG_MODEL_TRANSFORMATION = 34264;
+    private static final int TAG_GEO_KEY_DIRECTORY = 34735;
+    private static final int TAG_GDAL_NODATA = 42113;
+
+    // GeoKey
+    private static final int KEY_MODEL_TYPE = 1024;
+    private static final int KEY_RASTER_TYPE = 1025;
+    private static final int KEY_GEOGRAPHIC_TYPE = 2048;
+    private static final int KEY_PROJECTED_CS_TYPE = 3072;
+
+    private static final int MODEL_TYPE_PROJECTED = 1;
+    private static final int MODEL_TYPE_GEOGRAPHIC = 2;
+    private static final int RASTER_PIXEL_IS_POINT = 2;
+
+    // 各TIFF数据类型的字节数（下标为类型编号）
+    private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4, 0, 0, 8, 8, 8};
+
+    private int width;
+    private int height;
+    private int samplesPerPixel = 1;
+    private int bitsPerSample = 1;
+    private int sampleFormat = 1;
+    private int compression = 1;
+    private int tileWidth;
+    private int tileHeight;
+    private boolean bigTiff;
+    private Double noData;
+    private int rowsPerStrip;
+    private int planarConfiguration = 1;
+
+    // 字节序和条带/分块偏移表、字节数表条目，用于定位读取单个像素和校验条带/分块内容
+    private ByteOrder byteOrder;
+    private IfdEntry chunkOffsets;
+    private IfdEntry chunkByteCounts;
+
+    // 仿射变换：x = originX + col * pixelSizeX，y = originY - row * pixelSizeY（像素左上角）
+    private boolean georeferenced;
+    private double originX;
+    private double originY;
+    private double pixelSizeX;
+    private double pixelSizeY;
+
+    private final Map<Integer, Integer> geoKeys = new HashMap<>();
+
+    /**
+     * IFD条目
+     */
+    private record IfdEntry(int tag, int type, long count, long valueOrOffset, int valueFieldSize) {
+    }
+
+    /**
+     * 解析文件头
+     * @param path TIF文件路径
+     * @return 文件头信息
+     * @throws IOException 不是有效的TIFF文件
+     */
+    public static GeoTiffHeader read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            GeoTiffHeader header = new GeoTiffHeader();
+            header.parse(channel);
+            return header;
+        }
+    }
+
+    private void parse(FileChannel channel) throws IOException {
+        ByteBuffer head = readAt(channel, 0, 16, ByteOrder.BIG_ENDIAN);
+        ByteOrder order;
+        short byteOrderMark = head.getShort(0);
+        if (byteOrderMark == 0x4949) {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if (byteOrderMark == 0x4D4D) {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new IOException("不是有效的TIFF文件");
+        }
+        head.order(order);
+        int version = head.getShort(2) & 0xFFFF;
+        long ifdOffset;
+        if (version == 42) {
+            ifdOffset = head.getInt(4) & 0xFFFFFFFFL;
+        } else if (version == 43) {
+            bigTiff = true;
+            ifdOffset = head.getLong(8);
+        } else {
+            throw new IOException("不支持的TIFF版本: " + version);
+        }
+
+        // 一次读取第一个IFD的全部条目
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        ByteBuffer countBuffer = readAt(channel, ifdOffset, countSize, order);
+        long entryCount = bigTiff ? countBuffer.getLong(0) : countBuffer.getShort(0) & 0xFFFF;
+        if (entryCount <= 0 || entryCount > 4096) {
+            throw new IOException("TIFF目录条目数无效: " + entryCount);
+        }
+        ByteBuffer entries = readAt(channel, ifdOffset + countSize, (int) entryCount * entrySize, order);
+
+        Map<Integer, IfdEntry> tags = new HashMap<>();
+        for (int i = 0; i < entryCount; i++) {
+            int base = i * entrySize;
+            int tag = entries.getShort(base) & 0xFFFF;
+            int type = entries.getShort(base + 2) & 0xFFFF;
+            long count = bigTiff ? entries.getLong(base + 4) : entries.getInt(base + 4) & 0xFFFFFFFFL;
+            long value = bigTiff ? entries.getLong(base + 12) : entries.getInt(base + 8) & 0xFFFFFFFFL;
+            tags.put(tag, new IfdEntry(tag, type, count, value, bigTiff ? 8 : 4));
+        }
+
+        width = (int) firstLong(channel, order, tags.get(TAG_IMAGE_WIDTH), 0);
+        height = (int) firstLong(channel, order, tags.get(TAG_IMAGE_LENGTH), 0);
+        if (width <= 0 || height <= 0) {
+            throw new IOException("TIFF缺少影像尺寸");
+        }
+        samplesPerPixel = (int) firstLong(channel, order, tags.get(TAG_SAMPLES_PER_PIXEL), 1);
+        bitsPerSample = (int) firstLong(channel, order, tags.get(TAG_BITS_PER_SAMPLE), 1);
+        sampleFormat = (int) firstLong(channel, order, tags.get(TAG_SAMPLE_FORMAT), 1);
+        compression = (int) firstLong(channel, order, tags.get(TAG_COMPRESSION), 1);
+        tileWidth = (int) firstLong(channel, order, tags.get(TAG_TILE_WIDTH), 0);
+        tileHeight = (int) firstLong(channel, order, tags.get(TAG_TILE_LENGTH), 0);
+        rowsPerStrip = (int) Math.min(height, firstLong(channel, order, tags.get(TAG_ROWS_PER_STRIP), height));
+        planarConfiguration = (int) firstLong(channel, order, tags.get(TAG_PLANAR_CONFIGURATION), 1);
+        byteOrder = order;
+        chunkOffsets = tags.get(tileWidth > 0 ? TAG_TILE_OFFSETS : TAG_STRIP_OFFSETS);
+        chunkByteCounts = tags.get(tileWidth > 0 ? TAG_TILE_BYTE_COUNTS : TAG_STRIP_BYTE_COUNTS);
+
+        IfdEntry noDataEntry = tags.get(TAG_GDAL_NODATA);
+        if (noDataEntry != null) {
+            String text = readAscii(channel, order, noDataEntry).trim();
+            try {
+                // GDAL写入的NaN为小写"nan"
+                noData = "nan".equalsIgnoreCase(text) ? Double.NaN : Double.valueOf(text);
+            } catch (NumberFormatException e) {
+                // 非数字的无数据值忽略
+            }
+        }
+
+        IfdEntry keyEntry = tags.get(TAG_GEO_KEY_DIRECTORY);
+        if (keyEntry != null) {
+            long[] keys = readLongs(channel, order, keyEntry);
+            // 头部4个值：版本、修订号、次修订号、键数量；之后每个键4个值
+            int keyCount = keys.length >= 4 ? (int) keys[3] : 0;
+            for (int i = 0; i < keyCount && 4 + i * 4 + 3 < keys.length; i++) {
+                int base = 4 + i * 4;
+                // 只保存直接存放在目录中的短整型键值
+                if (keys[base + 1] == 0) {
+                    geoKeys.put((int) keys[base], (int) keys[base + 3]);
+                }
+            }
+        }
+
+        IfdEntry scaleEntry = tags.get(TAG_MODEL_PIXEL_SCALE);
+        IfdEntry tiepointEntry = tags.get(TAG_MODEL_TIEPOINT);
+        IfdEntry transformEntry = tags.get(TAG_MODEL_TRANSFORMATION);
+        if (scaleEntry != null && tiepointEntry != null) {
+            double[] scale = readDoubles(channel, order, scaleEntry);
+            double[] tiepoint = readDoubles(channel, order, tiepointEntry);
+            if (scale.length >= 2 && tiepoint.length >= 6) {
+                pixelSizeX = scale[0];
+                pixelSizeY = scale[1];
+                originX = tiepoint[3] - tiepoint[0] * pixelSizeX;
+                originY = tiepoint[4] + tiepoint[1] * pixelSizeY;
+                georeferenced = true;
+            }
+        } else if (transformEntry != null) {
+            // 4x4矩阵，只支持无旋转的情况
+            double[] m = readDoubles(channel, order, transformEntry);
+            if (m.length >= 8 && m[1] == 0 && m[4] == 0) {
+                pixelSizeX = m[0];
+                pixelSizeY = -m[5];
+                originX = m[3];
+                originY = m[7];
+                georeferenced = true;
+            }
+        }
+        if (georeferenced && Integer.valueOf(RASTER_PIXEL_IS_POINT).equals(geoKeys.get(KEY_RASTER_TYPE))) {
+            // 坐标指向像素中心，换算到像素左上角
+            originX -= pixelSizeX / 2;
+            originY += pixelSizeY / 2;
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length, ByteOrder order) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("TIFF文件意外结束");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 读取条目的原始值字节（值较短时直接存放在条目中，否则按偏移读取）
+     */
+    private static ByteBuffer readValueBytes(FileChannel channel, ByteOrder order, IfdEntry entry) throws IOException {
+        int typeSize = entry.type() < TYPE_SIZES.length ? TYPE_SIZES[entry.type()] : 0;
+        if (typeSize == 0) {
+            throw new IOException("不支持的TIFF数据类型: " + entry.type());
+        }
+        long length = entry.count() * typeSize;
+        if (length > 16 * 1024 * 1024) {
+            throw new IOException("TIFF标签值过大: " + entry.tag());
+        }
+        if (length <= entry.valueFieldSize()) {
+            // 值存放在条目中：按原字节序还原值字段
+            ByteBuffer inline = ByteBuffer.allocate(entry.valueFieldSize()).order(order);
+            if (entry.valueFieldSize() == 8) {
+                inline.putLong(0, entry.valueOrOffset());
+            } else {
+                inline.putInt(0, (int) entry.valueOrOffset());
+            }
+            return inline.limit((int) length);
+        }
+        return readAt(channel, entry.valueOrOffset(), (int) length, order);
+    }
+
+    private static long[] readLongs(FileChannel channel, ByteOrder order, IfdEntry entry) throws IOException {
+        ByteBuffer bytes = readValueBytes(channel, order, entry);
+        long[] values = new long[(int) entry.count()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = switch (entry.type()) {
+                case 1, 7 -> bytes.get() & 0xFF;
+                case 6 -> bytes.get();
+                case 3 -> bytes.getShort() & 0xFFFF;
+                case 8 -> bytes.getShort();
+                case 4, 13 -> bytes.getInt() & 0xFFFFFFFFL;
+                case 9 -> bytes.getInt();
+                case 16, 17, 18 -> bytes.getLong();
+                default -> throw new IOException("TIFF标签" + entry.tag() + "不是整数类型");
+            };
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(FileChannel channel, ByteOrder order, IfdEntry entry) throws IOException {
+        if (entry.type() != 11 && entry.type() != 12) {
+            long[] longs = readLongs(channel, order, entry);
+            double[] values = new double[longs.length];
+            for (int i = 0; i < longs.length; i++) {
+                values[i] = longs[i];
+            }
+            return values;
+        }
+        ByteBuffer bytes = readValueBytes(channel, order, entry);
+        double[] values = new double[(int) entry.count()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = entry.type() == 12 ? bytes.getDouble() : bytes.getFloat();
+        }
+        return values;
+    }
+
+    private static String readAscii(FileChannel channel, ByteOrder order, IfdEntry entry) throws IOException {
+        ByteBuffer bytes = readValueBytes(channel, order, entry);
+        byte[] chars = new byte[bytes.remaining()];
+        bytes.get(chars);
+        int length = 0;
+        while (length < chars.length && chars[length] != 0) {
+            length++;
+        }
+        return new String(chars, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static long firstLong(FileChannel channel, ByteOrder order, IfdEntry entry, long defaultValue) throws IOException {
+        if (entry == null || entry.count() == 0) {
+            return defaultValue;
+        }
+        return readLongs(channel, order, entry)[0];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSamplesPerPixel() {
+        return samplesPerPixel;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * 样本格式：1无符号整数，2有符号整数，3浮点
+     */
+    public int getSampleFormat() {
+        return sampleFormat;
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    /**
+     * 内部分块宽度，条带存储时为0
+     */
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public boolean isBigTiff() {
+        return bigTiff;
+    }
+
+    /**
+     * 每个条带的行数（分块影像无意义）
+     */
+    public int getRowsPerStrip() {
+        return rowsPerStrip;
+    }
+
+    /**
+     * 波段存放方式：1为像素交错，2为按波段分平面
+     */
+    public int getPlanarConfiguration() {
+        return planarConfiguration;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * 读取第index个条带/分块在文件中的偏移（只读取偏移表中的一个元素）
+     * @param channel 同一文件的通道
+     */
+    public long readChunkOffset(FileChannel channel, int index) throws IOException {
+        if (chunkOffsets == null || index < 0 || index >= chunkOffsets.count()) {
+            throw new IOException("条带/分块序号超出范围: " + index);
+        }
+        int typeSize = TYPE_SIZES[chunkOffsets.type()];
+        if (chunkOffsets.count() * typeSize <= chunkOffsets.valueFieldSize()) {
+            return readLongs(channel, byteOrder, chunkOffsets)[index];
+        }
+        ByteBuffer value = readAt(channel, chunkOffsets.valueOrOffset() + (long) index * typeSize, typeSize, byteOrder);
+        return switch (chunkOffsets.type()) {
+            case 3 -> value.getShort(0) & 0xFFFF;
+            case 4, 13 -> value.getInt(0) & 0xFFFFFFFFL;
+            case 16, 17, 18 -> value.getLong(0);
+            default -> throw new IOException("不支持的偏移表类型: " + chunkOffsets.type());
+        };
+    }
+
+    /**
+     * 条带/分块总数（按波段分平面时包含所有平面），没有偏移表返回0
+     */
+    public int getChunkCount() {
+        return chunkOffsets == null ? 0 : (int) chunkOffsets.count();
+    }
+
+    /**
+     * 读取整个条带/分块偏移表
+     * @param channel 同一文件的通道
+     */
+    public long[] readChunkOffsets(FileChannel channel) throws IOException {
+        if (chunkOffsets == null) {
+            throw new IOException("缺少条带/分块偏移表");
+        }
+        return readLongs(channel, byteOrder, chunkOffsets);
+    }
+
+    /**
+     * 读取整个条带/分块字节数表（压缩后的字节数）
+     * @param channel 同一文件的通道
+     */
+    public long[] readChunkByteCounts(FileChannel channel) throws IOException {
+        if (chunkByteCounts == null || chunkOffsets == null || chunkByteCounts.count() != chunkOffsets.count()) {
+            throw new IOException("缺少条带/分块字节数表");
+        }
+        return readLongs(channel, byteOrder, chunkByteCounts);
+    }
+
+    /**
+     * 无数据值（GDAL_NODATA），未设置返回null
+     */
+    public Double getNoData() {
+        return noData;
+    }
+
+    /**
+     * 数据类型名称（UINT8/UINT16/INT16/INT32/FLOAT32/FLOAT64等）
+     */
+    public String getDataTypeName() {
+        String prefix = switch (sampleFormat) {
+            case 2 -> "INT";
+            case 3 -> "FLOAT";
+            default -> "UINT";
+        };
+        if (bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 32 && bitsPerSample != 64) {
+            return "UNKNOWN";
+        }
+        if ("FLOAT".equals(prefix) && bitsPerSample < 32) {
+            return "UNKNOWN";
+        }
+        return prefix + bitsPerSample;
+    }
+
+    /**
+     * 是否包含地理参考（像素比例+控制点，或仿射变换矩阵）
+     */
+    public boolean isGeoreferenced() {
+        return georeferenced;
+    }
+
+    /**
+     * 影像左上角X坐标（原始坐标系）
+     */
+    public double getOriginX() {
+        return originX;
+    }
+
+    /**
+     * 影像左上角Y坐标（原始坐标系）
+     */
+    public double getOriginY() {
+        return originY;
+    }
+
+    /**
+     * X方向像素大小（原始坐标系单位）
+     */
+    public double getPixelSizeX() {
+        return pixelSizeX;
+    }
+
+    /**
+     * Y方向像素大小（原始坐标系单位，正值）
+     */
+    public double getPixelSizeY() {
+        return pixelSizeY;
+    }
+
+    /**
+     * 坐标系EPSG代码，无法确定时返回0
+     */
+    public int getEpsgCode() {
+        Integer modelType = geoKeys.get(KEY_MODEL_TYPE);
+        Integer projected = geoKeys.get(KEY_PROJECTED_CS_TYPE);
+        Integer geographic = geoKeys.get(KEY_GEOGRAPHIC_TYPE);
+        // 32767表示用户自定义坐标系
+        if ((modelType == null || modelType == MODEL_TYPE_PROJECTED) && projected != null && projected != 32767) {
+            return projected;
+        }
+        if ((modelType == null || modelType == MODEL_TYPE_GEOGRAPHIC) && geographic != null && geographic != 32767) {
+            return geographic;
+        }
+        return 0;
+    }
+
+    /**
+     * GeoKey值（只包含直接存放在目录中的短整型键）
+     */
+    public Integer getGeoKey(int keyId) {
+        return geoKeys.get(keyId);
+    }
+}
@@ -0,0 +1,200 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 单波段FLOAT32分块GeoTIFF写入器
+ * 输出小端序经典TIFF，按分块（默认256x256）Deflate压缩，附带地理参考和GDAL_NODATA（NaN）。
+ * 分块可按任意顺序、从多个线程写入：压缩在调用线程中完成，只有追加写文件时加锁，
+ * 因此内存中只有正在处理的分块，整幅结果不会驻留内存。
+ * 先写入同目录的临时文件，commit时写IFD并原子替换目标文件；未commit就close则删除临时文件。
+ */
+public class GeoTiffWriter implements AutoCloseable {
+
+    private final Path target;
+    private final Path tempFile;
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesAcross;
+    private final int tilesDown;
+    private final long[] tileOffsets;
+    private final long[] tileByteCounts;
+    private long position = TiffWriterUtil.HEADER_SIZE;
+    private boolean finished;
+
+    // 地理参考（左上角坐标、像素大小、EPSG）
+    private boolean georeferenced;
+    private double originX;
+    private double originY;
+    private double pixelSizeX;
+    private double pixelSizeY;
+    private int epsg;
+
+    /**
+     * @param target 目标文件
+     * @param width 影像宽度
+     * @param height 影像高度
+     * @param tileSize 分块边长（16的倍数）
+     */
+    public GeoTiffWriter(Path target, int width, int height, int tileSize) throws IOException {
+        if (width <= 0 || height <= 0 || tileSize <= 0 || tileSize % 16 != 0) {
+            throw new IllegalArgumentException("无效的影像或分块尺寸: " + width + "x" + height + ", " + tileSize);
+        }
+        this.target = target;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesAcross = (width + tileSize - 1) / tileSize;
+        this.tilesDown = (height + tileSize - 1) / tileSize;
+        this.tileOffsets = new long[tilesAcross * tilesDown];
+        this.tileByteCounts = new long[tilesAcross * tilesDown];
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        this.tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * 设置地理参考
+     * @param originX 左上角X坐标
+     * @param originY 左上角Y坐标
+     * @param pixelSizeX X方向像素大小
+     * @param pixelSizeY Y方向像素大小（正值）
+     * @param epsg 坐标系EPSG代码，未知时传0
+     */
+    public void setGeoreference(double originX, double originY, double pixelSizeX, double pixelSizeY, int epsg) {
+        this.georeferenced = true;
+        this.originX = originX;
+        this.originY = originY;
+        this.pixelSizeX = pixelSizeX;
+        this.pixelSizeY = pixelSizeY;
+        this.epsg = epsg;
+    }
+
+    public int getTilesAcross() {
+        return tilesAcross;
+    }
+
+    public int getTilesDown() {
+        return tilesDown;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * 写入一个分块（线程安全）
+     * @param col 分块列号
+     * @param row 分块行号
+     * @param samples 按行存放的样本，行宽为tileSize；超出影像范围的部分应填NaN
+     */
+    public void writeTile(int col, int row, float[] samples) throws IOException {
+        if (col < 0 || row < 0 || col >= tilesAcross || row >= tilesDown) {
+            throw new IllegalArgumentException("分块超出范围: " + col + "," + row);
+        }
+        byte[] compressed = compress(samples);
+        synchronized (this) {
+            if (finished) {
+                throw new IOException("GeoTIFF已关闭");
+            }
+            long offset = position;
+            TiffWriterUtil.checkOffset(offset + compressed.length);
+            TiffWriterUtil.writeFully(channel, ByteBuffer.wrap(compressed), offset);
+            position += compressed.length;
+            int index = row * tilesAcross + col;
+            tileOffsets[index] = offset;
+            tileByteCounts[index] = compressed.length;
+        }
+    }
+
+    private byte[] compress(float[] samples) {
+        int count = tileSize * tileSize;
+        ByteBuffer raw = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asFloatBuffer().put(samples, 0, count);
+        return TiffWriterUtil.deflate(raw.array());
+    }
+
+    /**
+     * 写入IFD并替换目标文件
+     * 未写入的分块共用一个全NaN分块
+     */
+    public synchronized void commit() throws IOException {
+        if (finished) {
+            throw new IOException("GeoTIFF已关闭");
+        }
+        // 未写入的分块指向一个全NaN分块，保证通用读取器可以解码
+        byte[] emptyTile = null;
+        long emptyOffset = 0;
+        for (int i = 0; i < tileOffsets.length; i++) {
+            if (tileByteCounts[i] == 0) {
+                if (emptyTile == null) {
+                    float[] nan = new float[tileSize * tileSize];
+                    Arrays.fill(nan, Float.NaN);
+                    emptyTile = compress(nan);
+                    emptyOffset = position;
+                    TiffWriterUtil.writeFully(channel, ByteBuffer.wrap(emptyTile), emptyOffset);
+                    position += emptyTile.length;
+                }
+                tileOffsets[i] = emptyOffset;
+                tileByteCounts[i] = emptyTile.length;
+            }
+        }
+
+        // IFD须从偶数偏移开始
+        long ifdOffset = position + (position & 1);
+        byte[] ifd = buildIfd(ifdOffset);
+        TiffWriterUtil.checkOffset(ifdOffset + ifd.length);
+        TiffWriterUtil.writeFully(channel, ByteBuffer.wrap(ifd), ifdOffset);
+        TiffWriterUtil.writeHeader(channel, ifdOffset);
+        channel.force(true);
+        channel.close();
+        finished = true;
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 构造IFD（条目之后紧跟各条目的外部数据）
+     * 只有1个分块时分块偏移和长度直接存放在条目中
+     */
+    private byte[] buildIfd(long ifdOffset) {
+        TiffWriterUtil.IfdBuilder ifd = new TiffWriterUtil.IfdBuilder()
+                .add(256, TiffWriterUtil.TYPE_LONG, width)
+                .add(257, TiffWriterUtil.TYPE_LONG, height)
+                .add(258, TiffWriterUtil.TYPE_SHORT, 32)
+                .add(259, TiffWriterUtil.TYPE_SHORT, 8) // Deflate
+                .add(262, TiffWriterUtil.TYPE_SHORT, 1) // BlackIsZero
+                .add(277, TiffWriterUtil.TYPE_SHORT, 1)
+                .add(284, TiffWriterUtil.TYPE_SHORT, 1)
+                .add(322, TiffWriterUtil.TYPE_LONG, tileSize)
+                .add(323, TiffWriterUtil.TYPE_LONG, tileSize)
+                .add(324, TiffWriterUtil.TYPE_LONG, tileOffsets)
+                .add(325, TiffWriterUtil.TYPE_LONG, tileByteCounts)
+                .add(339, TiffWriterUtil.TYPE_SHORT, 3); // IEEE浮点
+        if (georeferenced) {
+            ifd.addGeoreference(originX, originY, pixelSizeX, pixelSizeY, epsg);
+        }
+        // GDAL_NODATA
+        ifd.addAscii(42113, "nan");
+        return ifd.build(ifdOffset, 0);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            channel.close();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
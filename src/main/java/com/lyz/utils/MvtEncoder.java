@@ -0,0 +1,241 @@
+package com.lyz.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapbox矢量瓦片（MVT 2.1）编码器
+ * 直接按vector_tile.proto写出protobuf字节，只支持点要素：
+ * 经纬度按Web墨卡托投影到瓦片坐标（0~extent），超出瓦片加缓冲区范围的点被裁剪掉。
+ * 属性键和值在图层内去重，属性值支持字符串、整数、浮点数和布尔值（null值的属性不写出）。
+ * 非线程安全，每个瓦片使用一个编码器。
+ */
+public class MvtEncoder {
+
+    // 点几何命令：MoveTo，重复1次
+    private static final int MOVE_TO_ONE = (1 & 0x7) | (1 << 3);
+
+    private static final int GEOM_TYPE_POINT = 1;
+
+    private final int z;
+    private final int x;
+    private final int y;
+    private final int extent;
+    private final int buffer;
+    private final List<Layer> layers = new ArrayList<>();
+
+    /**
+     * @param z 缩放级别
+     * @param x 瓦片X坐标
+     * @param y 瓦片Y坐标
+     * @param extent 瓦片坐标范围（通常为4096）
+     * @param buffer 瓦片外保留的缓冲区（瓦片坐标单位），避免位于瓦片边缘的符号被截断
+     */
+    public MvtEncoder(int z, int x, int y, int extent, int buffer) {
+        this.z = z;
+        this.x = x;
+        this.y = y;
+        this.extent = extent;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 瓦片（含缓冲区）的经纬度范围 {minLon, minLat, maxLon, maxLat}
+     */
+    public double[] getBounds() {
+        double n = 1L << z;
+        double pad = (double) buffer / extent;
+        double minLon = (x - pad) / n * 360.0 - 180.0;
+        double maxLon = (x + 1 + pad) / n * 360.0 - 180.0;
+        double maxLat = tileYToLat((y - pad) / n);
+        double minLat = tileYToLat((y + 1 + pad) / n);
+        return new double[]{minLon, minLat, maxLon, maxLat};
+    }
+
+    private static double tileYToLat(double fraction) {
+        double clamped = Math.max(0, Math.min(1, fraction));
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * clamped))));
+    }
+
+    /**
+     * 添加图层
+     * @param name 图层名称
+     */
+    public Layer layer(String name) {
+        Layer layer = new Layer(name);
+        layers.add(layer);
+        return layer;
+    }
+
+    /**
+     * 编码瓦片，没有要素的图层不写出
+     * @return 瓦片字节，所有图层都没有要素时为空数组
+     */
+    public byte[] encode() {
+        ProtoWriter tile = new ProtoWriter();
+        for (Layer layer : layers) {
+            if (!layer.features.isEmpty()) {
+                tile.writeBytes(3, layer.encode());
+            }
+        }
+        return tile.toByteArray();
+    }
+
+    /**
+     * 一个图层的要素和去重后的属性键值
+     */
+    public final class Layer {
+        private final String name;
+        private final List<byte[]> features = new ArrayList<>();
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+        private final Map<Object, Integer> values = new LinkedHashMap<>();
+
+        private Layer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 添加点要素
+         * @param id 要素ID
+         * @param lon 经度
+         * @param lat 纬度
+         * @param properties 属性（按插入顺序写出）
+         * @return 点在瓦片加缓冲区范围外、被裁剪掉时返回false
+         */
+        public boolean addPoint(long id, double lon, double lat, Map<String, Object> properties) {
+            double n = 1L << z;
+            double sinLat = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, lat))));
+            double worldX = (lon + 180.0) / 360.0 * n;
+            double worldY = (0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI)) * n;
+            long px = Math.round((worldX - x) * extent);
+            long py = Math.round((worldY - y) * extent);
+            if (px < -buffer || py < -buffer || px > extent + buffer || py > extent + buffer) {
+                return false;
+            }
+
+            ProtoWriter feature = new ProtoWriter();
+            feature.writeVarintField(1, id);
+            ProtoWriter tags = new ProtoWriter();
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                Object value = normalize(property.getValue());
+                if (value == null) {
+                    continue;
+                }
+                tags.writeVarint(keys.computeIfAbsent(property.getKey(), k -> keys.size()));
+                tags.writeVarint(values.computeIfAbsent(value, v -> values.size()));
+            }
+            feature.writeBytes(2, tags.toByteArray());
+            feature.writeVarintField(3, GEOM_TYPE_POINT);
+            ProtoWriter geometry = new ProtoWriter();
+            geometry.writeVarint(MOVE_TO_ONE);
+            geometry.writeVarint(zigZag(px));
+            geometry.writeVarint(zigZag(py));
+            feature.writeBytes(4, geometry.toByteArray());
+            features.add(feature.toByteArray());
+            return true;
+        }
+
+        public int getFeatureCount() {
+            return features.size();
+        }
+
+        private byte[] encode() {
+            ProtoWriter layer = new ProtoWriter();
+            layer.writeVarintField(15, 2);
+            layer.writeString(1, name);
+            for (byte[] feature : features) {
+                layer.writeBytes(2, feature);
+            }
+            for (String key : keys.keySet()) {
+                layer.writeString(3, key);
+            }
+            for (Object value : values.keySet()) {
+                layer.writeBytes(4, encodeValue(value));
+            }
+            layer.writeVarintField(5, extent);
+            return layer.toByteArray();
+        }
+    }
+
+    /**
+     * 属性值统一为String、Long、Double或Boolean，便于去重
+     */
+    private static Object normalize(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number number) {
+            double d = number.doubleValue();
+            return Double.isNaN(d) ? null : d;
+        }
+        return value.toString();
+    }
+
+    private static byte[] encodeValue(Object value) {
+        ProtoWriter writer = new ProtoWriter();
+        if (value instanceof String s) {
+            writer.writeString(1, s);
+        } else if (value instanceof Double d) {
+            writer.writeDoubleField(3, d);
+        } else if (value instanceof Long l) {
+            // 有符号整数用sint_value（ZigZag编码，负数也很紧凑）
+            writer.writeVarintField(6, zigZag(l));
+        } else {
+            writer.writeVarintField(7, (Boolean) value ? 1 : 0);
+        }
+        return writer.toByteArray();
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    /**
+     * protobuf字段写入器（只包含MVT用到的varint、64位和长度前缀三种线类型）
+     */
+    private static final class ProtoWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void writeVarintField(int field, long value) {
+            writeVarint((long) field << 3);
+            writeVarint(value);
+        }
+
+        void writeDoubleField(int field, double value) {
+            writeVarint(((long) field << 3) | 1);
+            long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < 8; i++) {
+                out.write((int) (bits >>> (i * 8)) & 0xFF);
+            }
+        }
+
+        void writeBytes(int field, byte[] data) {
+            writeVarint(((long) field << 3) | 2);
+            writeVarint(data.length);
+            out.write(data, 0, data.length);
+        }
+
+        void writeString(int field, String value) {
+            writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package com.lyz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分级点聚合索引（supercluster算法）
+ * 由坐标数组一次构建：点投影到Web墨卡托单位平面后，从最细级别开始逐级把半径内的点/聚合合并为聚合
+ * （位置为加权中心），每一级的结果存放在基本类型数组中，并建立静态KD树索引。
+ * 查询某一缩放级别、某一范围的聚合只需在该级的KD树上做范围查询，不随点总数线性增长。
+ * 构建后新增的点先放在待合并列表中：查询时合并到所在级别最近的聚合（或作为单独的点返回），
+ * 待合并点较多时应整体重建索引。构建后只读，待合并列表写时复制，可在多个线程中同时查询和新增。
+ */
+public final class PointClusterIndex {
+
+    // KD树叶子节点大小
+    private static final int NODE_SIZE = 64;
+
+    /**
+     * 查询结果：聚合或单个点
+     * @param id 单个点为原始ID，聚合为聚合ID（负数）
+     * @param longitude 经度（聚合为加权中心）
+     * @param latitude 纬度
+     * @param pointCount 包含的点数
+     * @param cluster 是否为聚合
+     * @param expansionZoom 聚合拆开的缩放级别（单个点为null）
+     */
+    public record Cluster(long id, double longitude, double latitude, int pointCount, boolean cluster,
+                          Integer expansionZoom) {
+    }
+
+    /**
+     * 一个缩放级别的聚合结果
+     */
+    private static final class Level {
+        private final double[] xs;
+        private final double[] ys;
+        private final int[] counts;
+        private final long[] ids;
+        // 聚合形成的级别，单个点为-1
+        private final int[] formedAt;
+        private final KdIndex index;
+
+        Level(double[] xs, double[] ys, int[] counts, long[] ids, int[] formedAt) {
+            this.xs = xs;
+            this.ys = ys;
+            this.counts = counts;
+            this.ids = ids;
+            this.formedAt = formedAt;
+            this.index = new KdIndex(xs, ys);
+        }
+
+        int size() {
+            return xs.length;
+        }
+    }
+
+    /**
+     * 待合并的新增点
+     */
+    private record Pending(long[] ids, double[] xs, double[] ys) {
+    }
+
+    private final int minZoom;
+    private final int maxZoom;
+    private final double radius;
+    private final int extent;
+    private final int minPoints;
+    // 下标 z - minZoom；最后一级（maxZoom + 1）为原始点
+    private final Level[] levels;
+    private final int pointCount;
+    // 已建索引的点ID（排序），用于新增时去重
+    private final long[] sortedIds;
+    private volatile Pending pending = new Pending(new long[0], new double[0], new double[0]);
+
+    /**
+     * 构建索引
+     * @param ids 点ID
+     * @param longitudes 经度
+     * @param latitudes 纬度
+     * @param count 点数（数组可以更长）
+     * @param minZoom 最小缩放级别
+     * @param maxZoom 最大聚合级别，更大的级别返回单个点
+     * @param radius 聚合半径（像素）
+     * @param extent 瓦片像素大小（半径的参照，通常为256或512）
+     * @param minPoints 形成聚合的最少点数
+     */
+    public PointClusterIndex(long[] ids, double[] longitudes, double[] latitudes, int count,
+                             int minZoom, int maxZoom, double radius, int extent, int minPoints) {
+        if (minZoom < 0 || maxZoom < minZoom || maxZoom > 30 || radius <= 0 || extent <= 0 || minPoints < 2) {
+            throw new IllegalArgumentException("无效的聚合参数");
+        }
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.radius = radius;
+        this.extent = extent;
+        this.minPoints = minPoints;
+        this.pointCount = count;
+        this.levels = new Level[maxZoom - minZoom + 2];
+
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        int[] counts = new int[count];
+        int[] formedAt = new int[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = lngX(longitudes[i]);
+            ys[i] = latY(latitudes[i]);
+            counts[i] = 1;
+            formedAt[i] = -1;
+        }
+        Level level = new Level(xs, ys, counts, Arrays.copyOf(ids, count), formedAt);
+        this.sortedIds = Arrays.copyOf(ids, count);
+        Arrays.sort(sortedIds);
+        levels[levels.length - 1] = level;
+        for (int z = maxZoom; z >= minZoom; z--) {
+            level = clusterLevel(level, z);
+            levels[z - minZoom] = level;
+        }
+    }
+
+    /**
+     * 把上一级（更细）的结果按本级半径合并
+     */
+    private Level clusterLevel(Level source, int zoom) {
+        double r = radius / (extent * Math.pow(2, zoom));
+        int n = source.size();
+        boolean[] done = new boolean[n];
+        DoubleList xs = new DoubleList(n);
+        DoubleList ys = new DoubleList(n);
+        IntList counts = new IntList(n);
+        LongList ids = new LongList(n);
+        IntList formedAt = new IntList(n);
+        IntList neighbours = new IntList(16);
+
+        for (int i = 0; i < n; i++) {
+            if (done[i]) {
+                continue;
+            }
+            done[i] = true;
+            neighbours.clear();
+            source.index.within(source.xs[i], source.ys[i], r, neighbours);
+
+            int total = source.counts[i];
+            for (int k = 0; k < neighbours.size; k++) {
+                int j = neighbours.values[k];
+                if (!done[j]) {
+                    total += source.counts[j];
+                }
+            }
+            if (total > source.counts[i] && total >= minPoints) {
+                double wx = source.xs[i] * source.counts[i];
+                double wy = source.ys[i] * source.counts[i];
+                for (int k = 0; k < neighbours.size; k++) {
+                    int j = neighbours.values[k];
+                    if (!done[j]) {
+                        done[j] = true;
+                        wx += source.xs[j] * source.counts[j];
+                        wy += source.ys[j] * source.counts[j];
+                    }
+                }
+                xs.add(wx / total);
+                ys.add(wy / total);
+                counts.add(total);
+                // 聚合ID：负数，由级别和在本级的序号组成，全局唯一
+                ids.add(-(((long) xs.size << 5) + zoom + 1));
+                formedAt.add(zoom);
+            } else {
+                // 不足以形成聚合：原样保留
+                xs.add(source.xs[i]);
+                ys.add(source.ys[i]);
+                counts.add(source.counts[i]);
+                ids.add(source.ids[i]);
+                formedAt.add(source.formedAt[i]);
+            }
+        }
+        return new Level(xs.toArray(), ys.toArray(), counts.toArray(), ids.toArray(), formedAt.toArray());
+    }
+
+    /**
+     * 新增一个点（在下次重建前作为待合并点参与查询）
+     * 已在索引中或已新增过的ID忽略，避免重建读取和提交后回调重复加入同一个点
+     * @return 是否加入
+     */
+    public synchronized boolean insert(long id, double longitude, double latitude) {
+        Pending current = pending;
+        if (Arrays.binarySearch(sortedIds, id) >= 0) {
+            return false;
+        }
+        for (long pendingId : current.ids()) {
+            if (pendingId == id) {
+                return false;
+            }
+        }
+        int n = current.ids().length;
+        long[] ids = Arrays.copyOf(current.ids(), n + 1);
+        double[] xs = Arrays.copyOf(current.xs(), n + 1);
+        double[] ys = Arrays.copyOf(current.ys(), n + 1);
+        ids[n] = id;
+        xs[n] = lngX(longitude);
+        ys[n] = latY(latitude);
+        pending = new Pending(ids, xs, ys);
+        return true;
+    }
+
+    /**
+     * 待合并的新增点数
+     */
+    public int getPendingCount() {
+        return pending.ids().length;
+    }
+
+    /**
+     * 构建时的点数加上待合并的新增点数
+     */
+    public int size() {
+        return pointCount + getPendingCount();
+    }
+
+    /**
+     * 查询范围内的聚合
+     * @param minLng 最小经度
+     * @param minLat 最小纬度
+     * @param maxLng 最大经度（小于最小经度时表示跨越180度经线）
+     * @param maxLat 最大纬度
+     * @param zoom 缩放级别
+     */
+    public List<Cluster> getClusters(double minLng, double minLat, double maxLng, double maxLat, int zoom) {
+        if (maxLng - minLng >= 360) {
+            minLng = -180;
+            maxLng = 180;
+        } else if (minLng > maxLng) {
+            // 跨越180度经线：分成东西两段查询
+            List<Cluster> east = getClusters(minLng, minLat, 180, maxLat, zoom);
+            east.addAll(getClusters(-180, minLat, maxLng, maxLat, zoom));
+            return east;
+        }
+        int z = Math.max(minZoom, Math.min(maxZoom + 1, zoom));
+        Level level = levels[z - minZoom];
+        double minX = lngX(minLng);
+        double maxX = lngX(maxLng);
+        double minY = latY(maxLat);
+        double maxY = latY(minLat);
+
+        IntList found = new IntList(64);
+        level.index.range(minX, minY, maxX, maxY, found);
+        int[] addedCounts = new int[found.size];
+        double[] addedX = new double[found.size];
+        double[] addedY = new double[found.size];
+        List<Cluster> result = new ArrayList<>(found.size);
+
+        // 待合并点：合并到本级半径内最近的结果中，没有时作为单个点
+        Pending current = pending;
+        if (current.ids().length > 0) {
+            Map<Integer, Integer> positions = new HashMap<>();
+            for (int k = 0; k < found.size; k++) {
+                positions.put(found.values[k], k);
+            }
+            double r = z > maxZoom ? 0 : radius / (extent * Math.pow(2, z));
+            IntList near = new IntList(16);
+            for (int p = 0; p < current.ids().length; p++) {
+                double px = current.xs()[p];
+                double py = current.ys()[p];
+                if (px < minX || px > maxX || py < minY || py > maxY) {
+                    continue;
+                }
+                Integer target = null;
+                if (r > 0) {
+                    near.clear();
+                    level.index.within(px, py, r, near);
+                    double best = Double.MAX_VALUE;
+                    for (int k = 0; k < near.size; k++) {
+                        Integer position = positions.get(near.values[k]);
+                        int j = near.values[k];
+                        double d = (level.xs[j] - px) * (level.xs[j] - px) + (level.ys[j] - py) * (level.ys[j] - py);
+                        if (position != null && d < best) {
+                            best = d;
+                            target = position;
+                        }
+                    }
+                }
+                if (target != null) {
+                    addedCounts[target]++;
+                    addedX[target] += px;
+                    addedY[target] += py;
+                } else {
+                    result.add(new Cluster(current.ids()[p], xLng(px), yLat(py), 1, false, null));
+                }
+            }
+        }
+
+        for (int k = 0; k < found.size; k++) {
+            int i = found.values[k];
+            int count = level.counts[i] + addedCounts[k];
+            double x = (level.xs[i] * level.counts[i] + addedX[k]) / count;
+            double y = (level.ys[i] * level.counts[i] + addedY[k]) / count;
+            if (count == 1) {
+                result.add(new Cluster(level.ids[i], xLng(x), yLat(y), 1, false, null));
+            } else {
+                // 单个点合并了新增点时，放大一级即可分开
+                int formed = level.formedAt[i] >= 0 ? level.formedAt[i] : z;
+                long id = level.counts[i] > 1 ? level.ids[i] : -(((long) i << 5) + z + 1) - (1L << 62);
+                result.add(new Cluster(id, xLng(x), yLat(y), count, true, Math.min(maxZoom + 1, formed + 1)));
+            }
+        }
+        return result;
+    }
+
+    // Web墨卡托单位平面：x、y均为0~1，y向下
+    private static double lngX(double lng) {
+        return lng / 360 + 0.5;
+    }
+
+    private static double latY(double lat) {
+        double sin = Math.sin(Math.toRadians(lat));
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return y < 0 ? 0 : y > 1 ? 1 : y;
+    }
+
+    private static double xLng(double x) {
+        return (x - 0.5) * 360;
+    }
+
+    private static double yLat(double y) {
+        double y2 = (180 - y * 360) * Math.PI / 180;
+        return 360 * Math.atan(Math.exp(y2)) / Math.PI - 90;
+    }
+
+    /**
+     * 静态KD树：点按KD树顺序重排后存放在数组中，叶子节点不再细分
+     */
+    private static final class KdIndex {
+        private final int[] order;
+        private final double[] coords;
+
+        KdIndex(double[] xs, double[] ys) {
+            int n = xs.length;
+            order = new int[n];
+            coords = new double[n * 2];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+                coords[2 * i] = xs[i];
+                coords[2 * i + 1] = ys[i];
+            }
+            sort(0, n - 1, 0);
+        }
+
+        private void sort(int left, int right, int axis) {
+            if (right - left <= NODE_SIZE) {
+                return;
+            }
+            int m = (left + right) >> 1;
+            select(m, left, right, axis);
+            sort(left, m - 1, 1 - axis);
+            sort(m + 1, right, 1 - axis);
+        }
+
+        /**
+         * Floyd-Rivest选择：使第k个元素就位，左侧不大于它、右侧不小于它
+         */
+        private void select(int k, int left, int right, int axis) {
+            while (right > left) {
+                if (right - left > 600) {
+                    int n = right - left + 1;
+                    int m = k - left + 1;
+                    double z = Math.log(n);
+                    double s = 0.5 * Math.exp(2 * z / 3);
+                    double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * (m - n / 2.0 < 0 ? -1 : 1);
+                    int newLeft = (int) Math.max(left, Math.floor(k - m * s / n + sd));
+                    int newRight = (int) Math.min(right, Math.floor(k + (n - m) * s / n + sd));
+                    select(k, newLeft, newRight, axis);
+                }
+                double t = coords[2 * k + axis];
+                int i = left;
+                int j = right;
+                swap(left, k);
+                if (coords[2 * right + axis] > t) {
+                    swap(left, right);
+                }
+                while (i < j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                    while (coords[2 * i + axis] < t) {
+                        i++;
+                    }
+                    while (coords[2 * j + axis] > t) {
+                        j--;
+                    }
+                }
+                if (coords[2 * left + axis] == t) {
+                    swap(left, j);
+                } else {
+                    j++;
+                    swap(j, right);
+                }
+                if (j <= k) {
+                    left = j + 1;
+                }
+                if (k <= j) {
+                    right = j - 1;
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            int o = order[i];
+            order[i] = order[j];
+            order[j] = o;
+            double x = coords[2 * i];
+            coords[2 * i] = coords[2 * j];
+            coords[2 * j] = x;
+            double y = coords[2 * i + 1];
+            coords[2 * i + 1] = coords[2 * j + 1];
+            coords[2 * j + 1] = y;
+        }
+
+        /**
+         * 范围查询，结果为点在原数组中的下标
+         */
+        void range(double minX, double minY, double maxX, double maxY, IntList result) {
+            if (order.length > 0) {
+                range(0, order.length - 1, 0, minX, minY, maxX, maxY, result);
+            }
+        }
+
+        private void range(int left, int right, int axis, double minX, double minY, double maxX, double maxY,
+                           IntList result) {
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i++) {
+                    double x = coords[2 * i];
+                    double y = coords[2 * i + 1];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        result.add(order[i]);
+                    }
+                }
+                return;
+            }
+            int m = (left + right) >> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                result.add(order[m]);
+            }
+            double value = axis == 0 ? x : y;
+            if (axis == 0 ? minX <= value : minY <= value) {
+                range(left, m - 1, 1 - axis, minX, minY, maxX, maxY, result);
+            }
+            if (axis == 0 ? maxX >= value : maxY >= value) {
+                range(m + 1, right, 1 - axis, minX, minY, maxX, maxY, result);
+            }
+        }
+
+        /**
+         * 半径查询，结果为点在原数组中的下标
+         */
+        void within(double qx, double qy, double r, IntList result) {
+            if (order.length > 0) {
+                within(0, order.length - 1, 0, qx, qy, r * r, r, result);
+            }
+        }
+
+        private void within(int left, int right, int axis, double qx, double qy, double r2, double r,
+                            IntList result) {
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i++) {
+                    double dx = coords[2 * i] - qx;
+                    double dy = coords[2 * i + 1] - qy;
+                    if (dx * dx + dy * dy <= r2) {
+                        result.add(order[i]);
+                    }
+                }
+                return;
+            }
+            int m = (left + right) >> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if ((x - qx) * (x - qx) + (y - qy) * (y - qy) <= r2) {
+                result.add(order[m]);
+            }
+            double value = axis == 0 ? x : y;
+            double q = axis == 0 ? qx : qy;
+            if (q - r <= value) {
+                within(left, m - 1, 1 - axis, qx, qy, r2, r, result);
+            }
+            if (q + r >= value) {
+                within(m + 1, right, 1 - axis, qx, qy, r2, r, result);
+            }
+        }
+    }
+
+    private static final class IntList {
+        private int[] values;
+        private int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(4, capacity)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DoubleList {
+        private double[] values;
+        private int size;
+
+        DoubleList(int capacity) {
+            values = new double[Math.max(4, capacity)];
+        }
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class LongList {
+        private long[] values;
+        private int size;
+
+        LongList(int capacity) {
+            values = new long[Math.max(4, capacity)];
+        }
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
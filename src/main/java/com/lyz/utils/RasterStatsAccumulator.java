@@ -0,0 +1,218 @@
+package com.lyz.utils;
+
+import java.util.Arrays;
+
+/**
+ * 单波段统计累加器
+ * 逐样本更新有效/无数据计数、最小最大值和Welford均值/方差，并统计固定分箱直方图。
+ * 每个并行任务持有自己的累加器，最后用 merge 合并（均值/方差按Chan等人的并行公式合并，结果与顺序计算一致）。
+ * 直方图分箱范围：
+ * 固定范围（如8位影像的0~256）时计数精确；
+ * 自适应范围时以首批数据的最小最大值为初始范围，遇到范围外的值将范围宽度加倍并两两合并相邻分箱（仍然精确），
+ * 不同范围的直方图合并时按分箱中心重新分配（近似）。
+ * 非线程安全。
+ */
+public class RasterStatsAccumulator {
+
+    private final int binCount;
+    private final boolean fixedRange;
+    private long count;
+    private long noDataCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double mean;
+    private double m2;
+
+    // 直方图：[histMin, histMax) 均分为binCount个分箱，histMax处的值计入最后一个分箱
+    private double histMin;
+    private double histMax;
+    private final long[] bins;
+
+    /**
+     * 自适应直方图范围
+     */
+    public RasterStatsAccumulator(int binCount) {
+        this.binCount = binCount;
+        this.fixedRange = false;
+        this.bins = new long[binCount];
+        this.histMin = Double.NaN;
+        this.histMax = Double.NaN;
+    }
+
+    /**
+     * 固定直方图范围（范围外的值计入两端分箱）
+     */
+    public RasterStatsAccumulator(int binCount, double histMin, double histMax) {
+        if (!(histMax > histMin)) {
+            throw new IllegalArgumentException("无效的直方图范围: " + histMin + "~" + histMax);
+        }
+        this.binCount = binCount;
+        this.fixedRange = true;
+        this.bins = new long[binCount];
+        this.histMin = histMin;
+        this.histMax = histMax;
+    }
+
+    /**
+     * 累加一批样本，NaN和无数据值只计入无数据数
+     * @param samples 样本
+     * @param n 样本数
+     * @param noData 无数据值（没有时传NaN）
+     */
+    public void add(float[] samples, int n, float noData) {
+        if (!fixedRange) {
+            // 先确定本批有效值范围，范围最多扩展一次
+            float batchMin = Float.POSITIVE_INFINITY;
+            float batchMax = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                float v = samples[i];
+                if (v == v && v != noData) {
+                    batchMin = Math.min(batchMin, v);
+                    batchMax = Math.max(batchMax, v);
+                }
+            }
+            if (batchMin > batchMax) {
+                noDataCount += n;
+                return;
+            }
+            ensureRange(batchMin, batchMax);
+        }
+
+        double scale = binCount / (histMax - histMin);
+        int last = binCount - 1;
+        for (int i = 0; i < n; i++) {
+            float v = samples[i];
+            if (v != v || v == noData) {
+                noDataCount++;
+                continue;
+            }
+            count++;
+            double delta = v - mean;
+            mean += delta / count;
+            m2 += delta * (v - mean);
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+            int bin = (int) ((v - histMin) * scale);
+            bins[bin < 0 ? 0 : Math.min(bin, last)]++;
+        }
+    }
+
+    /**
+     * 扩展自适应直方图范围以包含[lo, hi]
+     */
+    private void ensureRange(double lo, double hi) {
+        if (Double.isNaN(histMin)) {
+            histMin = lo;
+            histMax = hi > lo ? hi : lo + Math.max(Math.abs(lo) * 1e-6, 1e-6);
+            return;
+        }
+        while (lo < histMin || hi > histMax) {
+            double width = histMax - histMin;
+            boolean up = hi > histMax;
+            // 相邻两个分箱合并为一个，原范围占新范围的一半
+            long[] merged = new long[binCount];
+            int offset = up ? 0 : binCount / 2;
+            for (int i = 0; i < binCount; i++) {
+                merged[Math.min(binCount - 1, offset + i / 2)] += bins[i];
+            }
+            System.arraycopy(merged, 0, bins, 0, binCount);
+            if (up) {
+                histMax = histMin + 2 * width;
+            } else {
+                histMin = histMax - 2 * width;
+            }
+        }
+    }
+
+    /**
+     * 合并另一个累加器（分箱数须相同）
+     */
+    public void merge(RasterStatsAccumulator other) {
+        noDataCount += other.noDataCount;
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+        } else {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        if (!fixedRange) {
+            ensureRange(other.histMin, other.histMax);
+        }
+        if (histMin == other.histMin && histMax == other.histMax) {
+            for (int i = 0; i < binCount; i++) {
+                bins[i] += other.bins[i];
+            }
+            return;
+        }
+        // 范围不同：按对方分箱中心重新分配
+        double otherWidth = (other.histMax - other.histMin) / binCount;
+        double scale = binCount / (histMax - histMin);
+        for (int i = 0; i < binCount; i++) {
+            if (other.bins[i] == 0) {
+                continue;
+            }
+            double centre = other.histMin + (i + 0.5) * otherWidth;
+            int bin = (int) ((centre - histMin) * scale);
+            bins[bin < 0 ? 0 : Math.min(bin, binCount - 1)] += other.bins[i];
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getNoDataCount() {
+        return noDataCount;
+    }
+
+    /**
+     * 最小值，没有有效值时返回NaN
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * 总体标准差
+     */
+    public double getStdDev() {
+        return count == 0 ? Double.NaN : Math.sqrt(m2 / count);
+    }
+
+    public double getHistogramMin() {
+        return histMin;
+    }
+
+    public double getHistogramMax() {
+        return histMax;
+    }
+
+    public long[] getHistogram() {
+        return Arrays.copyOf(bins, binCount);
+    }
+}
@@ -0,0 +1,170 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 带引用计数的LRU缓存，用于缓存需要关闭的资源（如打开的影像读取器）
+ * 使用方通过 acquire 借出资源，用完后关闭借用（Lease）归还。
+ * 被淘汰或失效的资源先从缓存中移除，等最后一个借用归还后才关闭，不会关闭正在使用的资源。
+ */
+public class RefCountingLruCache<K, V extends AutoCloseable> {
+
+    /**
+     * 缓存未命中时创建资源，返回null表示资源不可用（不缓存）
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws IOException;
+    }
+
+    private final class Holder {
+        private final V value;
+        private int refs;
+        // 已从缓存移除，引用归零时关闭
+        private boolean retired;
+
+        Holder(V value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 一次借用，关闭时归还资源
+     */
+    public final class Lease implements AutoCloseable {
+        private final Holder holder;
+        private boolean released;
+
+        private Lease(Holder holder) {
+            this.holder = holder;
+        }
+
+        public V get() {
+            return holder.value;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(holder);
+            }
+        }
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final LinkedHashMap<K, Holder> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param name    缓存名称（用于日志）
+     * @param maxSize 最多缓存的资源数，超过时淘汰最久未使用的
+     */
+    public RefCountingLruCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * 借出资源，不存在时用 loader 创建并缓存
+     * @return 借用，loader 返回null时返回null
+     */
+    public Lease acquire(K key, Loader<K, V> loader) throws IOException {
+        List<V> toClose = new ArrayList<>();
+        Lease lease;
+        synchronized (entries) {
+            Holder holder = entries.get(key);
+            if (holder == null) {
+                V value = loader.load(key);
+                if (value == null) {
+                    return null;
+                }
+                holder = new Holder(value);
+                entries.put(key, holder);
+                Iterator<Holder> iterator = entries.values().iterator();
+                while (entries.size() > maxSize && iterator.hasNext()) {
+                    Holder eldest = iterator.next();
+                    if (eldest == holder) {
+                        break;
+                    }
+                    iterator.remove();
+                    retire(eldest, toClose);
+                }
+            }
+            holder.refs++;
+            lease = new Lease(holder);
+        }
+        closeAll(toClose);
+        return lease;
+    }
+
+    /**
+     * 移除资源，正在使用时等最后一个借用归还后关闭
+     */
+    public void invalidate(K key) {
+        List<V> toClose = new ArrayList<>();
+        synchronized (entries) {
+            Holder holder = entries.remove(key);
+            if (holder != null) {
+                retire(holder, toClose);
+            }
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * 移除全部资源（用于服务关闭）
+     */
+    public void clear() {
+        List<V> toClose = new ArrayList<>();
+        synchronized (entries) {
+            for (Holder holder : entries.values()) {
+                retire(holder, toClose);
+            }
+            entries.clear();
+        }
+        closeAll(toClose);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void release(Holder holder) {
+        boolean close;
+        synchronized (entries) {
+            holder.refs--;
+            close = holder.retired && holder.refs == 0;
+        }
+        if (close) {
+            closeQuietly(holder.value);
+        }
+    }
+
+    private void retire(Holder holder, List<V> toClose) {
+        holder.retired = true;
+        if (holder.refs == 0) {
+            toClose.add(holder.value);
+        }
+    }
+
+    private void closeAll(List<V> values) {
+        for (V value : values) {
+            closeQuietly(value);
+        }
+    }
+
+    private void closeQuietly(V value) {
+        try {
+            value.close();
+        } catch (Exception e) {
+            System.err.println("关闭缓存资源失败: " + name + ", " + e.getMessage());
+        }
+    }
+}
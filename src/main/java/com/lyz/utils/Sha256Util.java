@@ -0,0 +1,24 @@
+package com.lyz.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 摘要工具类
+ * 每次调用创建新的MessageDigest，可在多线程（如并行切片）中安全使用
+ */
+public class Sha256Util {
+
+    /**
+     * 计算字节数组的SHA-256，返回64位十六进制字符串
+     */
+    public static String getSha256String(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MessageDigest不支持SHA-256", e);
+        }
+    }
+}
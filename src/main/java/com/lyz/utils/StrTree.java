@@ -0,0 +1,165 @@
+package com.lyz.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 静态R树（Sort-Tile-Recursive批量构建）
+ * 构建后不可修改，数据变化时整体重建。各层节点的包围盒存放在基本类型数组中，
+ * 节点i的子节点为下一层的[i*NODE_CAPACITY, (i+1)*NODE_CAPACITY)，不需要指针。
+ * 构建后只读，可在多个线程中同时查询。
+ * @param <T> 元素类型
+ */
+public final class StrTree<T> {
+
+    private static final int NODE_CAPACITY = 16;
+
+    // levels[0]为叶子层（每个元素一个包围盒），最后一层为根
+    private final double[][] minX;
+    private final double[][] minY;
+    private final double[][] maxX;
+    private final double[][] maxY;
+    private final List<T> items;
+
+    private StrTree(List<T> items, double[][] minX, double[][] minY, double[][] maxX, double[][] maxY) {
+        this.items = items;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * 构建R树
+     * @param items 元素
+     * @param bounds 元素的包围盒 {minX, minY, maxX, maxY}
+     */
+    public static <T> StrTree<T> build(List<T> items, Function<T, double[]> bounds) {
+        int n = items.size();
+        List<Object[]> entries = new ArrayList<>(n);
+        for (T item : items) {
+            entries.add(new Object[]{item, bounds.apply(item)});
+        }
+
+        // 叶子按X切成若干竖条，条内按Y排序，使相邻元素在空间上聚集
+        entries.sort(Comparator.comparingDouble(e -> centreX((double[]) e[1])));
+        int leafNodes = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = Math.max(1, (int) Math.ceil(Math.sqrt(leafNodes)));
+        int sliceSize = slices * NODE_CAPACITY;
+        for (int start = 0; start < n; start += sliceSize) {
+            entries.subList(start, Math.min(n, start + sliceSize))
+                    .sort(Comparator.comparingDouble(e -> centreY((double[]) e[1])));
+        }
+
+        List<T> sorted = new ArrayList<>(n);
+        List<double[]> levelMinX = new ArrayList<>();
+        List<double[]> levelMinY = new ArrayList<>();
+        List<double[]> levelMaxX = new ArrayList<>();
+        List<double[]> levelMaxY = new ArrayList<>();
+        double[] x0 = new double[n];
+        double[] y0 = new double[n];
+        double[] x1 = new double[n];
+        double[] y1 = new double[n];
+        for (int i = 0; i < n; i++) {
+            @SuppressWarnings("unchecked")
+            T item = (T) entries.get(i)[0];
+            double[] b = (double[]) entries.get(i)[1];
+            sorted.add(item);
+            x0[i] = b[0];
+            y0[i] = b[1];
+            x1[i] = b[2];
+            y1[i] = b[3];
+        }
+        levelMinX.add(x0);
+        levelMinY.add(y0);
+        levelMaxX.add(x1);
+        levelMaxY.add(y1);
+
+        // 逐层向上合并，直到只剩一个根节点
+        while (x0.length > 1) {
+            int parents = (x0.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            double[] px0 = new double[parents];
+            double[] py0 = new double[parents];
+            double[] px1 = new double[parents];
+            double[] py1 = new double[parents];
+            for (int p = 0; p < parents; p++) {
+                px0[p] = Double.POSITIVE_INFINITY;
+                py0[p] = Double.POSITIVE_INFINITY;
+                px1[p] = Double.NEGATIVE_INFINITY;
+                py1[p] = Double.NEGATIVE_INFINITY;
+                int end = Math.min(x0.length, (p + 1) * NODE_CAPACITY);
+                for (int c = p * NODE_CAPACITY; c < end; c++) {
+                    px0[p] = Math.min(px0[p], x0[c]);
+                    py0[p] = Math.min(py0[p], y0[c]);
+                    px1[p] = Math.max(px1[p], x1[c]);
+                    py1[p] = Math.max(py1[p], y1[c]);
+                }
+            }
+            x0 = px0;
+            y0 = py0;
+            x1 = px1;
+            y1 = py1;
+            levelMinX.add(x0);
+            levelMinY.add(y0);
+            levelMaxX.add(x1);
+            levelMaxY.add(y1);
+        }
+        return new StrTree<>(sorted, levelMinX.toArray(new double[0][]), levelMinY.toArray(new double[0][]),
+                levelMaxX.toArray(new double[0][]), levelMaxY.toArray(new double[0][]));
+    }
+
+    private static double centreX(double[] b) {
+        return (b[0] + b[2]) / 2;
+    }
+
+    private static double centreY(double[] b) {
+        return (b[1] + b[3]) / 2;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * 查询包含点的元素
+     */
+    public List<T> query(double x, double y) {
+        return query(x, y, x, y);
+    }
+
+    /**
+     * 查询包围盒与矩形相交的元素
+     */
+    public List<T> query(double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        List<T> result = new ArrayList<>();
+        if (!items.isEmpty()) {
+            search(minX.length - 1, 0, qMinX, qMinY, qMaxX, qMaxY, result);
+        }
+        return result;
+    }
+
+    private void search(int level, int node, double qMinX, double qMinY, double qMaxX, double qMaxY, List<T> result) {
+        if (minX[level][node] > qMaxX || maxX[level][node] < qMinX
+                || minY[level][node] > qMaxY || maxY[level][node] < qMinY) {
+            return;
+        }
+        if (level == 0) {
+            result.add(items.get(node));
+            return;
+        }
+        int end = Math.min(minX[level - 1].length, (node + 1) * NODE_CAPACITY);
+        for (int child = node * NODE_CAPACITY; child < end; child++) {
+            search(level - 1, child, qMinX, qMinY, qMaxX, qMaxY, result);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StrTree{size=" + items.size() + ", levels=" + minX.length + ", root="
+                + (items.isEmpty() ? "[]" : Arrays.toString(new double[]{minX[minX.length - 1][0],
+                minY[minY.length - 1][0], maxX[maxX.length - 1][0], maxY[maxY.length - 1][0]})) + "}";
+    }
+}
@@ -0,0 +1,149 @@
+package com.lyz.utils;
+
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TIF单像素读取器
+ * 未压缩影像按文件头中的条带/分块偏移直接计算样本位置，用FileChannel定位读取几个字节；
+ * 压缩影像只解码像素所在的条带或分块（基于TiffWindowReader的1x1窗口）。
+ * 读取耗时与影像大小无关。定位读取线程安全，压缩影像的读取加锁串行。
+ */
+public class TiffPixelReader implements AutoCloseable {
+
+    private final Path path;
+    private final GeoTiffHeader header;
+    private final FileChannel channel;
+    private final boolean direct;
+    private final int bytesPerSample;
+    private TiffWindowReader windowReader;
+
+    private TiffPixelReader(Path path, GeoTiffHeader header, FileChannel channel) {
+        this.path = path;
+        this.header = header;
+        this.channel = channel;
+        int bits = header.getBitsPerSample();
+        this.bytesPerSample = bits / 8;
+        this.direct = header.getCompression() == 1
+                && (bits == 8 || bits == 16 || bits == 32 || bits == 64)
+                && (header.getSampleFormat() != 3 || bits >= 32);
+    }
+
+    /**
+     * 打开TIF文件（只解析文件头）
+     */
+    public static TiffPixelReader open(Path path) throws IOException {
+        GeoTiffHeader header = GeoTiffHeader.read(path);
+        return new TiffPixelReader(path, header, FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    public GeoTiffHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * 是否可以直接定位读取样本（未压缩）
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * 读取一个像素各波段的样本值
+     * @param x 列号
+     * @param y 行号
+     * @return 各波段样本值
+     */
+    public double[] readPixel(int x, int y) throws IOException {
+        if (x < 0 || y < 0 || x >= header.getWidth() || y >= header.getHeight()) {
+            throw new IllegalArgumentException("像素超出影像范围: " + x + "," + y);
+        }
+        int bands = header.getSamplesPerPixel();
+        double[] values = new double[bands];
+        if (!direct) {
+            synchronized (this) {
+                if (windowReader == null) {
+                    windowReader = TiffWindowReader.open(path.toFile());
+                }
+                Raster raster = windowReader.readRasterWindow(x, y, 1, 1, 1);
+                for (int b = 0; b < bands && b < raster.getNumBands(); b++) {
+                    values[b] = raster.getSampleDouble(raster.getMinX(), raster.getMinY(), b);
+                }
+            }
+            return values;
+        }
+
+        // 像素所在的条带/分块，以及像素在其中的序号
+        int chunk;
+        long pixelInChunk;
+        int chunksPerPlane;
+        if (header.getTileWidth() > 0) {
+            int tileWidth = header.getTileWidth();
+            int tileHeight = header.getTileHeight();
+            int tilesAcross = (header.getWidth() + tileWidth - 1) / tileWidth;
+            int tilesDown = (header.getHeight() + tileHeight - 1) / tileHeight;
+            chunk = (y / tileHeight) * tilesAcross + x / tileWidth;
+            pixelInChunk = (long) (y % tileHeight) * tileWidth + x % tileWidth;
+            chunksPerPlane = tilesAcross * tilesDown;
+        } else {
+            int rowsPerStrip = Math.max(1, header.getRowsPerStrip());
+            chunk = y / rowsPerStrip;
+            pixelInChunk = (long) (y % rowsPerStrip) * header.getWidth() + x;
+            chunksPerPlane = (header.getHeight() + rowsPerStrip - 1) / rowsPerStrip;
+        }
+
+        boolean planar = header.getPlanarConfiguration() == 2 && bands > 1;
+        if (planar) {
+            for (int b = 0; b < bands; b++) {
+                long offset = header.readChunkOffset(channel, b * chunksPerPlane + chunk);
+                values[b] = decode(readAt(offset + pixelInChunk * bytesPerSample, bytesPerSample), 0);
+            }
+        } else {
+            long offset = header.readChunkOffset(channel, chunk);
+            ByteBuffer pixel = readAt(offset + pixelInChunk * bands * bytesPerSample, bands * bytesPerSample);
+            for (int b = 0; b < bands; b++) {
+                values[b] = decode(pixel, b * bytesPerSample);
+            }
+        }
+        return values;
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(header.getByteOrder());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("TIFF文件意外结束");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private double decode(ByteBuffer buffer, int index) {
+        int format = header.getSampleFormat();
+        return switch (bytesPerSample) {
+            case 1 -> format == 2 ? buffer.get(index) : buffer.get(index) & 0xFF;
+            case 2 -> format == 2 ? buffer.getShort(index) : buffer.getShort(index) & 0xFFFF;
+            case 4 -> format == 3 ? buffer.getFloat(index)
+                    : format == 2 ? buffer.getInt(index) : buffer.getInt(index) & 0xFFFFFFFFL;
+            case 8 -> format == 3 ? buffer.getDouble(index) : buffer.getLong(index);
+            default -> throw new IllegalStateException("不支持的样本字节数: " + bytesPerSample);
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            synchronized (this) {
+                if (windowReader != null) {
+                    windowReader.close();
+                }
+            }
+        }
+    }
+}
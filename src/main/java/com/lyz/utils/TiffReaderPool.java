@@ -0,0 +1,56 @@
+package com.lyz.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TIF窗口读取器池
+ * ImageReader非线程安全，并行切片时每个工作线程借用一个独立的读取器，用完归还复用，
+ * 避免每个瓦片都重新解析文件头
+ */
+public class TiffReaderPool implements AutoCloseable {
+
+    private final File file;
+    private final Queue<TiffWindowReader> idle = new ConcurrentLinkedQueue<>();
+    private final Queue<TiffWindowReader> all = new ConcurrentLinkedQueue<>();
+
+    public TiffReaderPool(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 借用读取器，池中没有空闲读取器时新建
+     */
+    public TiffWindowReader borrow() throws IOException {
+        TiffWindowReader reader = idle.poll();
+        if (reader == null) {
+            reader = TiffWindowReader.open(file);
+            all.add(reader);
+        }
+        return reader;
+    }
+
+    /**
+     * 归还读取器
+     */
+    public void release(TiffWindowReader reader) {
+        if (reader != null) {
+            idle.add(reader);
+        }
+    }
+
+    @Override
+    public void close() {
+        TiffWindowReader reader;
+        while ((reader = all.poll()) != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.err.println("关闭TIF读取器失败: " + e.getMessage());
+            }
+        }
+        idle.clear();
+    }
+}
@@ -0,0 +1,170 @@
+package com.lyz.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * TIF窗口读取器
+ * 基于ImageReader的sourceRegion/sourceSubsampling，只解码目标窗口涉及的条带或分块，
+ * 内存占用与窗口大小相关，与整幅影像大小无关。
+ * 注意：ImageReader非线程安全，每个线程应使用独立的读取器实例。
+ */
+public class TiffWindowReader implements AutoCloseable {
+
+    // 浮点样本缓冲区（每个线程一个，避免每个窗口重新分配）
+    private static final ThreadLocal<float[]> SAMPLE_BUFFER = ThreadLocal.withInitial(() -> new float[0]);
+
+    /**
+     * ARGB像素窗口
+     * @param width 宽度
+     * @param height 高度
+     * @param pixels 按行存放的ARGB像素
+     */
+    public record ArgbWindow(int width, int height, int[] pixels) {
+    }
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+
+    private TiffWindowReader(ImageInputStream input, ImageReader reader) throws IOException {
+        this.input = input;
+        this.reader = reader;
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+    }
+
+    /**
+     * 打开TIF文件（只读取文件头，不解码像素）
+     */
+    public static TiffWindowReader open(File file) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("无法打开文件: " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("不支持的影像格式: " + file);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        try {
+            return new TiffWindowReader(input, reader);
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            input.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 波段数量（来自文件头的原始影像类型）
+     */
+    public int getNumBands() throws IOException {
+        ImageTypeSpecifier rawType = reader.getRawImageType(0);
+        return rawType != null ? rawType.getNumBands() : 1;
+    }
+
+    /**
+     * 样本数据类型（java.awt.image.DataBuffer.TYPE_*），无法确定时返回-1
+     */
+    public int getSampleDataType() throws IOException {
+        ImageTypeSpecifier rawType = reader.getRawImageType(0);
+        return rawType != null ? rawType.getSampleModel().getDataType() : -1;
+    }
+
+    /**
+     * 读取窗口并转换为图像
+     * @param x 窗口左上角列号
+     * @param y 窗口左上角行号
+     * @param w 窗口宽度（像素）
+     * @param h 窗口高度（像素）
+     * @param subsampling 抽样间隔（1为原始分辨率，n表示每n个像素取1个）
+     */
+    public BufferedImage readWindow(int x, int y, int w, int h, int subsampling) throws IOException {
+        return reader.read(0, createParam(x, y, w, h, subsampling));
+    }
+
+    /**
+     * 读取窗口的原始栅格数据（不做颜色转换，适用于浮点等非图像数据）
+     */
+    public Raster readRasterWindow(int x, int y, int w, int h, int subsampling) throws IOException {
+        ImageReadParam param = createParam(x, y, w, h, subsampling);
+        // JDK自带的TIFF读取器不支持readRaster，此时解码为图像后取其栅格（样本值不变）
+        if (reader.canReadRaster()) {
+            return reader.readRaster(0, param);
+        }
+        return reader.read(0, param).getRaster();
+    }
+
+    /**
+     * 读取窗口并转换为ARGB像素
+     * 没有颜色渐变时按影像自身颜色解码；有颜色渐变时读取第一个波段的原始样本（如NDVI浮点值），
+     * 经查找表直接映射为ARGB，无数据值和NaN为透明
+     * @param ramp 颜色渐变，null表示按影像自身颜色
+     * @param noData 无数据值（没有时传NaN）
+     */
+    public ArgbWindow readArgbWindow(int x, int y, int w, int h, int subsampling, ColorRamp ramp, float noData)
+            throws IOException {
+        if (ramp == null) {
+            BufferedImage image = readWindow(x, y, w, h, subsampling);
+            int iw = image.getWidth();
+            int ih = image.getHeight();
+            return new ArgbWindow(iw, ih, image.getRGB(0, 0, iw, ih, null, 0, iw));
+        }
+        Raster raster = readRasterWindow(x, y, w, h, subsampling);
+        int rw = raster.getWidth();
+        int rh = raster.getHeight();
+        int count = rw * rh;
+        float[] samples = SAMPLE_BUFFER.get();
+        if (samples.length < count) {
+            samples = new float[count];
+            SAMPLE_BUFFER.set(samples);
+        }
+        raster.getSamples(raster.getMinX(), raster.getMinY(), rw, rh, 0, samples);
+        int[] pixels = new int[count];
+        ramp.apply(samples, count, noData, pixels);
+        return new ArgbWindow(rw, rh, pixels);
+    }
+
+    private ImageReadParam createParam(int x, int y, int w, int h, int subsampling) {
+        int cx = Math.max(0, x);
+        int cy = Math.max(0, y);
+        int cw = Math.min(x + w, width) - cx;
+        int ch = Math.min(y + h, height) - cy;
+        if (cw <= 0 || ch <= 0) {
+            throw new IllegalArgumentException("读取窗口超出影像范围: " + x + "," + y + "," + w + "," + h);
+        }
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(cx, cy, cw, ch));
+        if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        return param;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
@@ -0,0 +1,181 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * TIFF写入工具类
+ * GeoTiffWriter 和 CogWriter 共用的小端序经典TIFF写入部分：文件头、IFD构造、地理参考标签和Deflate压缩
+ */
+public class TiffWriterUtil {
+
+    public static final short TYPE_ASCII = 2;
+    public static final short TYPE_SHORT = 3;
+    public static final short TYPE_LONG = 4;
+    public static final short TYPE_DOUBLE = 12;
+
+    // 文件头长度
+    public static final int HEADER_SIZE = 8;
+
+    // 经典TIFF偏移为32位
+    public static final long MAX_OFFSET = 0xFFFFFFFFL;
+
+    // 压缩器（每个线程一个）
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(6));
+
+    /**
+     * 检查文件长度能否用经典TIFF的32位偏移表示
+     * @param end 文件写到的位置
+     */
+    public static void checkOffset(long end) throws IOException {
+        if (end > MAX_OFFSET) {
+            throw new IOException("结果超过4GB，经典TIFF无法保存");
+        }
+    }
+
+    /**
+     * Deflate压缩一个分块
+     */
+    public static byte[] deflate(byte[] raw) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[Math.max(64, raw.length / 4)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 在文件开头写入小端序经典TIFF文件头
+     * @param firstIfdOffset 第一个IFD的偏移
+     */
+    public static void writeHeader(FileChannel channel, long firstIfdOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt((int) firstIfdOffset);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    /**
+     * 在指定位置写入缓冲区的全部剩余字节
+     * @return 写入的字节数
+     */
+    public static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * IFD构造器：条目按标签顺序添加，值放不进4字节时写入条目之后的外部数据区
+     */
+    public static final class IfdBuilder {
+        private record Entry(int tag, short type, int count, byte[] value) {
+        }
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        public IfdBuilder add(int tag, short type, long value) {
+            return add(tag, type, new long[]{value});
+        }
+
+        /**
+         * 添加SHORT或LONG类型的条目
+         */
+        public IfdBuilder add(int tag, short type, long[] values) {
+            int size = type == TYPE_SHORT ? 2 : 4;
+            ByteBuffer value = ByteBuffer.allocate(values.length * size).order(ByteOrder.LITTLE_ENDIAN);
+            for (long v : values) {
+                if (type == TYPE_SHORT) {
+                    value.putShort((short) v);
+                } else {
+                    value.putInt((int) v);
+                }
+            }
+            entries.add(new Entry(tag, type, values.length, value.array()));
+            return this;
+        }
+
+        public IfdBuilder addDoubles(int tag, double... values) {
+            ByteBuffer value = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (double v : values) {
+                value.putDouble(v);
+            }
+            entries.add(new Entry(tag, TYPE_DOUBLE, values.length, value.array()));
+            return this;
+        }
+
+        public IfdBuilder addAscii(int tag, String text) {
+            byte[] value = (text + "\0").getBytes(StandardCharsets.US_ASCII);
+            entries.add(new Entry(tag, TYPE_ASCII, value.length, value));
+            return this;
+        }
+
+        /**
+         * 添加地理参考：像素大小、左上角坐标和GeoKeyDirectory（模型类型、栅格类型PixelIsArea、坐标系）
+         * @param epsg 坐标系EPSG代码，未知时传0
+         */
+        public IfdBuilder addGeoreference(double originX, double originY, double pixelSizeX, double pixelSizeY,
+                                          int epsg) {
+            addDoubles(33550, pixelSizeX, pixelSizeY, 0);
+            addDoubles(33922, 0, 0, 0, originX, originY, 0);
+            boolean geographic = CrsTransformUtil.isGeographic(epsg);
+            long[] keys = epsg != 0
+                    ? new long[]{1, 1, 0, 3, 1024, 0, 1, geographic ? 2 : 1, 1025, 0, 1, 1,
+                            geographic ? 2048 : 3072, 0, 1, epsg}
+                    : new long[]{1, 1, 0, 1, 1025, 0, 1, 1};
+            return add(34735, TYPE_SHORT, keys);
+        }
+
+        /**
+         * 生成IFD字节（条目之后紧跟各条目的外部数据）
+         * @param ifdOffset IFD在文件中的偏移（须为偶数）
+         * @param nextIfd 下一个IFD的偏移，没有时为0
+         */
+        public byte[] build(long ifdOffset, long nextIfd) {
+            int entriesSize = 2 + entries.size() * 12 + 4;
+            int extraSize = 0;
+            for (Entry entry : entries) {
+                if (entry.value().length > 4) {
+                    extraSize += entry.value().length + (entry.value().length & 1);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(entriesSize + extraSize).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putShort((short) entries.size());
+            long extraOffset = ifdOffset + entriesSize;
+            ByteBuffer extra = ByteBuffer.allocate(extraSize).order(ByteOrder.LITTLE_ENDIAN);
+            for (Entry entry : entries) {
+                buffer.putShort((short) entry.tag()).putShort(entry.type()).putInt(entry.count());
+                if (entry.value().length <= 4) {
+                    buffer.put(Arrays.copyOf(entry.value(), 4));
+                } else {
+                    // 外部数据从偶数偏移开始
+                    buffer.putInt((int) (extraOffset + extra.position()));
+                    extra.put(entry.value());
+                    if ((entry.value().length & 1) == 1) {
+                        extra.put((byte) 0);
+                    }
+                }
+            }
+            buffer.putInt((int) nextIfd);
+            buffer.put(extra.array());
+            return buffer.array();
+        }
+    }
+}
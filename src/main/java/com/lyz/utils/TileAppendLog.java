@@ -0,0 +1,231 @@
+package com.lyz.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 瓦片追加日志
+ * 打包瓦片文件只能整体写入，按需渲染的单个瓦片追加到同目录的日志文件中。
+ * 文件格式（大端序）：文件头 魔数"LYZL"(int) | 版本(int)，之后为各条记录：
+ * 键(long) | 长度(int) | 写入时间(long，毫秒) | SHA-256(32字节) | 瓦片内容。
+ * 打开时扫描一遍建立内存索引，末尾不完整的记录（写入中途宕机）被截断；
+ * 没有文件头的旧格式日志（记录中没有写入时间）按文件修改时间转换为当前格式。
+ * 追加串行执行，读取使用定位读，可与追加并发。
+ */
+public class TileAppendLog implements AutoCloseable {
+
+    public static final int MAGIC = 0x4C595A4C; // "LYZL"
+    public static final int VERSION = 2;
+
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8 + 4 + 8 + 32;
+    // 旧格式记录头：键 | 长度 | SHA-256
+    private static final int LEGACY_RECORD_HEADER_SIZE = 8 + 4 + 32;
+
+    private final FileChannel channel;
+    private final Map<Long, Entry> index = new ConcurrentHashMap<>();
+    private long end;
+
+    /**
+     * 索引条目：offset指向瓦片内容
+     */
+    private record Entry(long offset, int length, long writeTime, byte[] hash) {
+    }
+
+    private TileAppendLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 打开日志文件，不存在时创建
+     */
+    public static TileAppendLog open(Path path) throws IOException {
+        if (Files.exists(path) && Files.size(path) > 0 && !hasFileHeader(path)) {
+            convertLegacy(path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        TileAppendLog log = new TileAppendLog(channel);
+        try {
+            log.scan();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return log;
+    }
+
+    private static boolean hasFileHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            int n;
+            do {
+                n = channel.read(header);
+            } while (n >= 0 && header.hasRemaining());
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * 旧格式日志转换为当前格式，写入时间取文件修改时间
+     */
+    private static void convertLegacy(Path path) throws IOException {
+        long writeTime = Files.getLastModifiedTime(path).toMillis();
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.capacity() + data.capacity() / 8);
+        out.write(ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array());
+        while (data.remaining() >= LEGACY_RECORD_HEADER_SIZE) {
+            long key = data.getLong();
+            int length = data.getInt();
+            byte[] hash = new byte[32];
+            data.get(hash);
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            byte[] tileData = new byte[length];
+            data.get(tileData);
+            out.write(record(key, tileData, writeTime, hash).array());
+        }
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tempFile, out.toByteArray());
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void scan() throws IOException {
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE) {
+            // 新文件（或连文件头都没写完）：写入文件头
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            end = FILE_HEADER_SIZE;
+            return;
+        }
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(fileHeader, 0);
+        int version = fileHeader.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("不支持的瓦片日志版本: " + version);
+        }
+
+        long position = FILE_HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            long key = header.getLong();
+            int length = header.getInt();
+            long writeTime = header.getLong();
+            byte[] hash = new byte[32];
+            header.get(hash);
+            long dataOffset = position + RECORD_HEADER_SIZE;
+            if (length < 0 || dataOffset + length > size) {
+                break;
+            }
+            index.put(key, new Entry(dataOffset, length, writeTime, hash));
+            position = dataOffset + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        end = position;
+    }
+
+    private static ByteBuffer record(long key, byte[] tileData, long writeTime, byte[] hash) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + tileData.length);
+        record.putLong(key).putInt(tileData.length).putLong(writeTime).put(hash).put(tileData).flip();
+        return record;
+    }
+
+    /**
+     * 追加瓦片，同一瓦片追加多次时以最后一次为准
+     */
+    public synchronized void append(int z, int x, int y, byte[] tileData) throws IOException {
+        long key = TileArchiveWriter.key(z, x, y);
+        byte[] hash = HexFormat.of().parseHex(Sha256Util.getSha256String(tileData));
+        long writeTime = System.currentTimeMillis();
+        ByteBuffer record = record(key, tileData, writeTime, hash);
+        long position = end;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        index.put(key, new Entry(end + RECORD_HEADER_SIZE, tileData.length, writeTime, hash));
+        end = position;
+    }
+
+    /**
+     * 读取瓦片内容
+     * @return 瓦片内容，不存在返回null
+     */
+    public byte[] read(int z, int x, int y) throws IOException {
+        Entry entry = find(z, x, y);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+        readFully(buffer, entry.offset());
+        return buffer.array();
+    }
+
+    /**
+     * 瓦片内容的SHA-256（十六进制）
+     * @return 不存在返回null
+     */
+    public String getContentHash(int z, int x, int y) {
+        Entry entry = find(z, x, y);
+        return entry == null ? null : HexFormat.of().formatHex(entry.hash());
+    }
+
+    /**
+     * 瓦片的写入时间
+     * @return 不存在返回null
+     */
+    public Instant getWriteTime(int z, int x, int y) {
+        Entry entry = find(z, x, y);
+        return entry == null ? null : Instant.ofEpochMilli(entry.writeTime());
+    }
+
+    /**
+     * 已记录的瓦片数
+     */
+    public int size() {
+        return index.size();
+    }
+
+    private Entry find(int z, int x, int y) {
+        try {
+            return index.get(TileArchiveWriter.key(z, x, y));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("瓦片日志文件意外结束");
+            }
+            position += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,151 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * 打包瓦片文件读取器（格式见 TileArchiveWriter）
+ * 目录和数据区通过 FileChannel.map 只读映射，查找瓦片为目录二分查找，
+ * 返回的瓦片内容是映射区的只读切片，不经过堆内存拷贝。线程安全。
+ */
+public class TileArchiveReader implements AutoCloseable {
+
+    // 单个映射区最大字节数，超过时数据区分段映射
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final int entryCount;
+    private final MappedByteBuffer directory;
+    private final MappedByteBuffer[] chunks;
+    private final long dataOffset;
+    private final Instant lastModified;
+
+    private TileArchiveReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(TileArchiveWriter.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // 读满文件头
+            }
+            header.flip();
+            if (header.remaining() < TileArchiveWriter.HEADER_SIZE || header.getInt() != TileArchiveWriter.MAGIC) {
+                throw new IOException("不是有效的瓦片打包文件: " + path);
+            }
+            int version = header.getInt();
+            if (version != TileArchiveWriter.VERSION) {
+                throw new IOException("不支持的瓦片打包文件版本: " + version);
+            }
+            this.entryCount = header.getInt();
+            header.getInt();
+            long dirOffset = header.getLong();
+            this.dataOffset = header.getLong();
+
+            this.directory = channel.map(FileChannel.MapMode.READ_ONLY, dirOffset,
+                    (long) entryCount * TileArchiveWriter.ENTRY_SIZE);
+            long dataLength = dirOffset - dataOffset;
+            int chunkCount = (int) ((dataLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = dataOffset + i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, dirOffset - start));
+            }
+            this.lastModified = Files.getLastModifiedTime(path).toInstant();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开打包文件
+     */
+    public static TileArchiveReader open(Path path) throws IOException {
+        return new TileArchiveReader(path);
+    }
+
+    /**
+     * 瓦片数
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * 文件写入时间
+     */
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 查找瓦片在目录中的位置
+     * @return 条目序号，不存在返回-1
+     */
+    public int find(int z, int x, int y) {
+        long key;
+        try {
+            key = TileArchiveWriter.key(z, x, y);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = directory.getLong(mid * TileArchiveWriter.ENTRY_SIZE);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 获取瓦片内容
+     * @param index 条目序号（find的返回值）
+     * @return 只读切片；瓦片跨越两个映射区时（仅超大文件）返回拼接后的副本
+     */
+    public ByteBuffer getData(int index) {
+        int base = index * TileArchiveWriter.ENTRY_SIZE;
+        long offset = directory.getLong(base + 8) - dataOffset;
+        int length = directory.getInt(base + 16);
+        int chunk = (int) (offset / CHUNK_SIZE);
+        int chunkOffset = (int) (offset % CHUNK_SIZE);
+        if (chunkOffset + (long) length <= chunks[chunk].capacity()) {
+            return chunks[chunk].slice(chunkOffset, length).asReadOnlyBuffer();
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        int first = chunks[chunk].capacity() - chunkOffset;
+        copy.put(chunks[chunk].slice(chunkOffset, first));
+        copy.put(chunks[chunk + 1].slice(0, length - first));
+        return copy.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * 获取瓦片内容的SHA-256（十六进制）
+     */
+    public String getContentHash(int index) {
+        byte[] hash = new byte[32];
+        directory.get(index * TileArchiveWriter.ENTRY_SIZE + 20, hash);
+        return HexFormat.of().formatHex(hash);
+    }
+
+    /**
+     * 关闭文件通道；已映射的区域在不再被引用后由JVM回收，正在读取的线程不受影响
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,169 @@
+package com.lyz.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 打包瓦片文件写入器
+ * 一个文件保存一套瓦片金字塔，格式（大端序）：
+ * <pre>
+ * 文件头 32字节: 魔数"LYZT" | 版本(int) | 瓦片数(int) | 保留(int) | 目录偏移(long) | 数据偏移(long)
+ * 数据区: 各瓦片内容依次存放
+ * 目录区: 按瓦片键升序的定长条目 键(long) | 数据偏移(long) | 长度(int) | SHA-256(32字节)
+ * </pre>
+ * 内容相同的瓦片只写一份数据，多个目录条目指向同一偏移。
+ * 先写入同目录的临时文件（名称唯一），commit时写目录和文件头后原子替换目标文件，读者不会看到写了一半的文件。
+ * 非线程安全，只能由单个写线程使用。
+ */
+public class TileArchiveWriter implements AutoCloseable {
+
+    public static final int MAGIC = 0x4C595A54; // "LYZT"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int ENTRY_SIZE = 8 + 8 + 4 + 32;
+
+    private final Path target;
+    private final Path tempFile;
+    private final DataOutputStream out;
+    private final List<Entry> entries = new ArrayList<>();
+    // 已写入的内容哈希 -> 数据偏移
+    private final Map<String, Long> offsetsByHash = new HashMap<>();
+    private long position = HEADER_SIZE;
+    private boolean finished;
+
+    /**
+     * 目录条目
+     */
+    private record Entry(long key, long offset, int length, byte[] hash) {
+    }
+
+    public TileArchiveWriter(Path target) throws IOException {
+        this.target = target;
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        // 临时文件名唯一，同一目标的多个写入器互不干扰
+        Path dir = target.toAbsolutePath().getParent();
+        this.tempFile = Files.createTempFile(dir, target.getFileName() + ".", ".tmp");
+        OutputStream fileOut = null;
+        try {
+            fileOut = Files.newOutputStream(tempFile);
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 20));
+            // 文件头占位，commit时回填
+            out.write(new byte[HEADER_SIZE]);
+        } catch (IOException e) {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 瓦片键：z占高位，同一级别内按x、y排序
+     */
+    public static long key(int z, int x, int y) {
+        if (z < 0 || z > 29 || x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            throw new IllegalArgumentException("瓦片坐标超出范围: " + z + "/" + x + "/" + y);
+        }
+        return (long) z << 58 | (long) x << 29 | y;
+    }
+
+    /**
+     * 写入瓦片，同一瓦片写入多次时以最后一次为准
+     */
+    public void write(int z, int x, int y, byte[] tileData) throws IOException {
+        long key = key(z, x, y);
+        String hashHex = Sha256Util.getSha256String(tileData);
+        Long offset = offsetsByHash.get(hashHex);
+        if (offset == null) {
+            offset = position;
+            out.write(tileData);
+            position += tileData.length;
+            offsetsByHash.put(hashHex, offset);
+        }
+        entries.add(new Entry(key, offset, tileData.length, HexFormat.of().parseHex(hashHex)));
+    }
+
+    /**
+     * 去重后实际写入的瓦片数据条数
+     */
+    public int getUniqueBlobCount() {
+        return offsetsByHash.size();
+    }
+
+    /**
+     * 已写入的瓦片数
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * 写入目录和文件头，原子替换目标文件
+     */
+    public void commit() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            // 稳定排序后同一键保留最后写入的条目
+            entries.sort(Comparator.comparingLong(Entry::key));
+            List<Entry> directory = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                if (!directory.isEmpty() && directory.get(directory.size() - 1).key() == entry.key()) {
+                    directory.set(directory.size() - 1, entry);
+                } else {
+                    directory.add(entry);
+                }
+            }
+
+            long dirOffset = position;
+            for (Entry entry : directory) {
+                out.writeLong(entry.key());
+                out.writeLong(entry.offset());
+                out.writeInt(entry.length());
+                out.write(entry.hash());
+            }
+            out.close();
+
+            try (RandomAccessFile raf = new RandomAccessFile(tempFile.toFile(), "rw")) {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeInt(directory.size());
+                raf.writeInt(0);
+                raf.writeLong(dirOffset);
+                raf.writeLong(HEADER_SIZE);
+                raf.getFD().sync();
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 未提交时丢弃临时文件
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            out.close();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
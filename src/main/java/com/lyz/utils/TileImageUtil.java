@@ -0,0 +1,118 @@
+package com.lyz.utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 瓦片像素处理工具类
+ * 瓦片统一以256x256的int[] ARGB数组表示，行优先存储
+ */
+public class TileImageUtil {
+
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * 将四个子瓦片按2x2盒式滤波下采样为一个父瓦片
+     * 子瓦片为null表示该位置无数据（视为全透明）
+     * @param c00 左上子瓦片
+     * @param c10 右上子瓦片
+     * @param c01 左下子瓦片
+     * @param c11 右下子瓦片
+     * @return 父瓦片像素，四个子瓦片都为null时返回null
+     */
+    public static int[] downsample(int[] c00, int[] c10, int[] c01, int[] c11) {
+        if (c00 == null && c10 == null && c01 == null && c11 == null) {
+            return null;
+        }
+        int[] parent = new int[TILE_SIZE * TILE_SIZE];
+        int half = TILE_SIZE / 2;
+        downsampleQuadrant(c00, parent, 0, 0);
+        downsampleQuadrant(c10, parent, half, 0);
+        downsampleQuadrant(c01, parent, 0, half);
+        downsampleQuadrant(c11, parent, half, half);
+        return parent;
+    }
+
+    /**
+     * 将一个子瓦片缩小一半写入父瓦片的对应象限
+     * 颜色按alpha加权平均，避免透明像素把边缘颜色拉黑
+     */
+    private static void downsampleQuadrant(int[] child, int[] parent, int offsetX, int offsetY) {
+        if (child == null) {
+            return;
+        }
+        int half = TILE_SIZE / 2;
+        for (int y = 0; y < half; y++) {
+            int row0 = (y * 2) * TILE_SIZE;
+            int row1 = row0 + TILE_SIZE;
+            int out = (offsetY + y) * TILE_SIZE + offsetX;
+            for (int x = 0; x < half; x++) {
+                int i = x * 2;
+                int p0 = child[row0 + i];
+                int p1 = child[row0 + i + 1];
+                int p2 = child[row1 + i];
+                int p3 = child[row1 + i + 1];
+                int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+                int sumA = a0 + a1 + a2 + a3;
+                if (sumA == 0) {
+                    parent[out + x] = 0;
+                    continue;
+                }
+                int r = (((p0 >> 16) & 0xFF) * a0 + ((p1 >> 16) & 0xFF) * a1
+                        + ((p2 >> 16) & 0xFF) * a2 + ((p3 >> 16) & 0xFF) * a3) / sumA;
+                int g = (((p0 >> 8) & 0xFF) * a0 + ((p1 >> 8) & 0xFF) * a1
+                        + ((p2 >> 8) & 0xFF) * a2 + ((p3 >> 8) & 0xFF) * a3) / sumA;
+                int b = ((p0 & 0xFF) * a0 + (p1 & 0xFF) * a1
+                        + (p2 & 0xFF) * a2 + (p3 & 0xFF) * a3) / sumA;
+                int a = (sumA + 2) >> 2;
+                parent[out + x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * 将图像像素拷贝到瓦片数组的左上角，其余部分保持透明
+     */
+    public static int[] fromImage(BufferedImage image) {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        int w = Math.min(image.getWidth(), TILE_SIZE);
+        int h = Math.min(image.getHeight(), TILE_SIZE);
+        image.getRGB(0, 0, w, h, pixels, 0, TILE_SIZE);
+        return pixels;
+    }
+
+    /**
+     * 将ARGB窗口拷贝到瓦片左上角（窗口不足256像素时其余部分透明）
+     */
+    public static int[] fromWindow(TiffWindowReader.ArgbWindow window) {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        int w = Math.min(window.width(), TILE_SIZE);
+        int h = Math.min(window.height(), TILE_SIZE);
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(window.pixels(), row * window.width(), pixels, row * TILE_SIZE, w);
+        }
+        return pixels;
+    }
+
+    /**
+     * 将瓦片像素拷贝为ARGB图像
+     */
+    public static BufferedImage toImage(int[] pixels) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        int[] target = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, target, 0, pixels.length);
+        return image;
+    }
+
+    /**
+     * 将瓦片像素编码为PNG
+     */
+    public static byte[] encodePng(int[] pixels) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(16 * 1024);
+        ImageIO.write(toImage(pixels), "PNG", baos);
+        return baos.toByteArray();
+    }
+}
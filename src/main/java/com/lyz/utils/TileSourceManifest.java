@@ -0,0 +1,157 @@
+package com.lyz.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 瓦片源影像清单：影像布局摘要加上每个条带/分块的CRC32校验值
+ * 校验值直接对文件中压缩后的原始字节计算，不解码像素。重新处理同一文件时与上次的清单比较，
+ * 布局一致时只有校验值不同的条带/分块覆盖的像素区域需要重新渲染瓦片。
+ * 从存储中恢复的清单只用于比较，像素区域按当前清单的布局计算。
+ */
+public final class TileSourceManifest {
+
+    // 单次读取的最大字节数（超大条带分段计算校验值）
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final String layout;
+    private final int[] checksums;
+
+    // 条带/分块网格，只有从影像计算的清单才有
+    private final int width;
+    private final int height;
+    private final int chunkWidth;
+    private final int chunkHeight;
+
+    private TileSourceManifest(String layout, int[] checksums, int width, int height, int chunkWidth, int chunkHeight) {
+        this.layout = layout;
+        this.checksums = checksums;
+        this.width = width;
+        this.height = height;
+        this.chunkWidth = chunkWidth;
+        this.chunkHeight = chunkHeight;
+    }
+
+    /**
+     * 计算影像的清单
+     * @param path TIF文件
+     * @param renderSignature 渲染参数摘要（网格、级别上限、颜色渐变等），参数变化时清单不可比较
+     */
+    public static TileSourceManifest compute(Path path, String renderSignature) throws IOException {
+        GeoTiffHeader header = GeoTiffHeader.read(path);
+        boolean tiled = header.getTileWidth() > 0;
+        int chunkWidth = tiled ? header.getTileWidth() : header.getWidth();
+        int chunkHeight = tiled ? header.getTileHeight() : header.getRowsPerStrip();
+        if (chunkWidth <= 0 || chunkHeight <= 0) {
+            throw new IOException("无效的条带/分块尺寸: " + chunkWidth + "x" + chunkHeight);
+        }
+
+        int[] checksums;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] offsets = header.readChunkOffsets(channel);
+            long[] byteCounts = header.readChunkByteCounts(channel);
+            checksums = new int[offsets.length];
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < offsets.length; i++) {
+                crc.reset();
+                long position = offsets[i];
+                long end = offsets[i] + byteCounts[i];
+                while (position < end) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                    int n = channel.read(buffer, position);
+                    if (n < 0) {
+                        throw new IOException("条带/分块超出文件末尾: " + i);
+                    }
+                    buffer.flip();
+                    crc.update(buffer);
+                    position += n;
+                }
+                checksums[i] = (int) crc.getValue();
+            }
+        }
+        return new TileSourceManifest(layoutOf(header, chunkWidth, chunkHeight) + "|" + renderSignature,
+                checksums, header.getWidth(), header.getHeight(), chunkWidth, chunkHeight);
+    }
+
+    /**
+     * 从存储中恢复清单
+     * @param layout 布局摘要
+     * @param checksums toBytes 的结果
+     */
+    public static TileSourceManifest fromBytes(String layout, byte[] checksums) {
+        ByteBuffer buffer = ByteBuffer.wrap(checksums);
+        int[] values = new int[checksums.length / 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt();
+        }
+        return new TileSourceManifest(layout, values, 0, 0, 0, 0);
+    }
+
+    /**
+     * 影响像素解码和地理定位的文件头字段
+     */
+    private static String layoutOf(GeoTiffHeader header, int chunkWidth, int chunkHeight) {
+        return header.getWidth() + "x" + header.getHeight()
+                + ";chunk=" + chunkWidth + "x" + chunkHeight + (header.getTileWidth() > 0 ? "t" : "s")
+                + ";bands=" + header.getSamplesPerPixel() + ";bits=" + header.getBitsPerSample()
+                + ";format=" + header.getSampleFormat() + ";compression=" + header.getCompression()
+                + ";planar=" + header.getPlanarConfiguration() + ";order=" + header.getByteOrder()
+                + ";geo=" + (header.isGeoreferenced() ? header.getEpsgCode() + "," + header.getOriginX() + ","
+                + header.getOriginY() + "," + header.getPixelSizeX() + "," + header.getPixelSizeY() : "none")
+                + ";nodata=" + header.getNoData();
+    }
+
+    public String getLayout() {
+        return layout;
+    }
+
+    public int getChunkCount() {
+        return checksums.length;
+    }
+
+    /**
+     * 校验值序列化为字节（每个4字节，大端）
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(checksums.length * 4);
+        for (int checksum : checksums) {
+            buffer.putInt(checksum);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 与上次的清单比较
+     * @param previous 上次处理时的清单
+     * @return 变化的条带/分块覆盖的像素区域 {x0, y0, x1, y1}（右下角不含），没有变化返回空列表；
+     *         布局或渲染参数不同、无法增量更新时返回null
+     */
+    public List<int[]> changedRegions(TileSourceManifest previous) {
+        if (previous == null || chunkWidth == 0 || !layout.equals(previous.layout)
+                || checksums.length != previous.checksums.length) {
+            return null;
+        }
+        int across = (width + chunkWidth - 1) / chunkWidth;
+        int down = (height + chunkHeight - 1) / chunkHeight;
+        int perPlane = across * down;
+        List<int[]> regions = new ArrayList<>();
+        for (int i = 0; i < checksums.length; i++) {
+            if (checksums[i] == previous.checksums[i]) {
+                continue;
+            }
+            // 按波段分平面时各平面的条带/分块覆盖相同的像素区域
+            int index = i % perPlane;
+            int x0 = index % across * chunkWidth;
+            int y0 = index / across * chunkHeight;
+            regions.add(new int[]{x0, y0, Math.min(width, x0 + chunkWidth), Math.min(height, y0 + chunkHeight)});
+        }
+        return regions;
+    }
+}
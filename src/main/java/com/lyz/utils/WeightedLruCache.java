@@ -0,0 +1,191 @@
+package com.lyz.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按权重（字节数）限额的分段LRU缓存
+ * 每个分段是一个访问顺序的LinkedHashMap，分段内加锁，降低高并发下的锁竞争
+ */
+public class WeightedLruCache<K, V> {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final List<Segment> segments;
+    private final ToIntFunction<V> weigher;
+    private final long maxWeight;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maxWeight 总权重上限（通常为字节数）
+     * @param weigher   计算单个值权重的函数
+     */
+    public WeightedLruCache(long maxWeight, ToIntFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        // 分段是内部类，不能创建泛型数组，用列表保存
+        List<Segment> created = new ArrayList<>(SEGMENT_COUNT);
+        long segmentWeight = Math.max(1, maxWeight / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            created.add(new Segment(segmentWeight));
+        }
+        this.segments = List.copyOf(created);
+    }
+
+    public V get(K key) {
+        V value = segmentFor(key).get(key);
+        if (value != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 是否包含键（不计入命中统计，也不改变访问顺序）
+     */
+    public boolean containsKey(K key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+        segmentFor(key).put(key, value);
+    }
+
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * 删除满足条件的所有键（如按文件ID失效）
+     */
+    public void removeIf(Predicate<K> predicate) {
+        for (Segment segment : segments) {
+            segment.removeIf(predicate);
+        }
+    }
+
+    public void clear() {
+        removeIf(k -> true);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getWeight() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.weight();
+        }
+        return total;
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    private Segment segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments.get(h & (SEGMENT_COUNT - 1));
+    }
+
+    private final class Segment {
+        private final long capacity;
+        private final LinkedHashMap<K, V> map = new LinkedHashMap<>(64, 0.75f, true);
+        private long weight;
+
+        Segment(long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        synchronized boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+
+        synchronized void put(K key, V value) {
+            int w = weigher.applyAsInt(value);
+            if (w > capacity) {
+                // 单个值超过分段容量，不缓存
+                V old = map.remove(key);
+                if (old != null) {
+                    weight -= weigher.applyAsInt(old);
+                }
+                return;
+            }
+            V old = map.put(key, value);
+            if (old != null) {
+                weight -= weigher.applyAsInt(old);
+            }
+            weight += w;
+            // 按访问顺序淘汰最久未使用的条目
+            Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+            while (weight > capacity && it.hasNext()) {
+                Map.Entry<K, V> eldest = it.next();
+                weight -= weigher.applyAsInt(eldest.getValue());
+                it.remove();
+                evictionCount.increment();
+            }
+        }
+
+        synchronized void remove(K key) {
+            V old = map.remove(key);
+            if (old != null) {
+                weight -= weigher.applyAsInt(old);
+            }
+        }
+
+        synchronized void removeIf(Predicate<K> predicate) {
+            Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, V> entry = it.next();
+                if (predicate.test(entry.getKey())) {
+                    weight -= weigher.applyAsInt(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
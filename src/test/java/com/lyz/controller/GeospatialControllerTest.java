@@ -0,0 +1,135 @@
+package com.lyz.controller;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.service.TileCacheService;
+import com.lyz.service.impl.MvtTileService;
+import com.lyz.service.impl.TifProcessingService;
+import com.lyz.service.impl.TilePrefetchService;
+import com.lyz.utils.Sha256Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 地理空间控制器单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class GeospatialControllerTest {
+
+    @Mock
+    private MvtTileService mvtTileService;
+
+    @Mock
+    private GeospatialMapper geospatialMapper;
+
+    @Mock
+    private TilePrefetchService tilePrefetchService;
+
+    @Mock
+    private TileCacheService tileCacheService;
+
+    @Mock
+    private TifProcessingService tifProcessingService;
+
+    @InjectMocks
+    private GeospatialController geospatialController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(geospatialController, "maxBatchTiles", 256);
+        ReflectionTestUtils.setField(geospatialController, "maxTileZoom", 20);
+        mockMvc = MockMvcBuilders.standaloneSetup(geospatialController).build();
+    }
+
+    @Test
+    void testGetTiles_RejectsOutOfRangeCoordinates() throws Exception {
+        // 负坐标、超过级别上限、x/y超出 2^z
+        for (String body : new String[]{"[[3,1,1],[-1,0,0]]", "[[21,0,0]]", "[[2,4,0]]", "[[2,0,-1]]"}) {
+            mockMvc.perform(post("/geo/tiles/{fileId}", 5L).contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+        // 单个瓦片使用相同的校验
+        mockMvc.perform(get("/geo/tile/{fileId}/{z}/{x}/{y}", 5L, 2, 4, 0))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(geospatialMapper, tilePrefetchService);
+    }
+
+    @Test
+    void testGetVectorTile_ETagFromContent() throws Exception {
+        byte[] tile = {0x1A, 0x02, 0x08, 0x01};
+        when(mvtTileService.getTile("plants", 3, 6, 3)).thenReturn(tile);
+        String eTag = "\"" + Sha256Util.getSha256String(tile) + "\"";
+
+        mockMvc.perform(get("/geo/mvt/{layer}/{z}/{x}/{y}", "plants", 3, 6, 3))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().bytes(tile));
+
+        // 同样内容的瓦片（如服务重启后重新生成）ETag不变，返回304
+        mockMvc.perform(get("/geo/mvt/{layer}/{z}/{x}/{y}", "plants", 3, 6, 3).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+
+        // 内容变化后旧ETag失效
+        when(mvtTileService.getTile("plants", 3, 6, 3)).thenReturn(new byte[]{0x1A, 0x00});
+        mockMvc.perform(get("/geo/mvt/{layer}/{z}/{x}/{y}", "plants", 3, 6, 3).header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetTile_ConditionalRequestReturns304() throws Exception {
+        byte[] tileData = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3};
+        GeospatialTile tile = new GeospatialTile();
+        tile.setTileData(tileData);
+        tile.setContentHash(Sha256Util.getSha256String(tileData));
+        // HTTP日期精确到秒
+        tile.setCreatedAt(LocalDateTime.of(2024, 5, 1, 10, 0, 0));
+        when(tileCacheService.getTile(5L, 3, 2, 1)).thenReturn(tile);
+        String eTag = "\"" + tile.getContentHash() + "\"";
+        HttpHeaders expected = new HttpHeaders();
+        expected.setLastModified(tile.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant());
+        String lastModified = expected.getFirst(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(get("/geo/tile/{fileId}/{z}/{x}/{y}", 5L, 3, 2, 1))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(header().string("Last-Modified", lastModified))
+                .andExpect(content().bytes(tileData));
+
+        // 带上次的ETag重新验证，返回304且不带响应体
+        mockMvc.perform(get("/geo/tile/{fileId}/{z}/{x}/{y}", 5L, 3, 2, 1).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().bytes(new byte[0]));
+
+        // 只带修改时间的客户端同样返回304
+        mockMvc.perform(get("/geo/tile/{fileId}/{z}/{x}/{y}", 5L, 3, 2, 1).header("If-Modified-Since", lastModified))
+                .andExpect(status().isNotModified());
+
+        // ETag不匹配时返回完整瓦片
+        mockMvc.perform(get("/geo/tile/{fileId}/{z}/{x}/{y}", 5L, 3, 2, 1).header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(tileData));
+
+        // 缓存命中时不查数据库也不重新渲染
+        verifyNoInteractions(geospatialMapper, tifProcessingService);
+    }
+}
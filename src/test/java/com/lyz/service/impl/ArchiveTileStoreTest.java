@@ -0,0 +1,117 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.service.TileStore;
+import com.lyz.utils.TileArchiveWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 打包文件瓦片存储单元测试
+ */
+class ArchiveTileStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ArchiveTileStore tileStore;
+
+    @BeforeEach
+    void setUp() {
+        tileStore = new ArchiveTileStore();
+        ReflectionTestUtils.setField(tileStore, "archiveDir", tempDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        tileStore.closeAll();
+    }
+
+    @Test
+    void testAbort_KeepsExistingArchiveAndLog() throws IOException {
+        try (TileStore.TileWriter writer = tileStore.openWriter(1L)) {
+            writer.write(0, 0, 0, new byte[]{1});
+        }
+        tileStore.putTile(1L, 1, 0, 0, new byte[]{2});
+
+        // 生成中途失败：放弃后关闭不提交，旧打包文件和追加日志保持不变
+        TileStore.TileWriter writer = tileStore.openWriter(1L);
+        writer.write(0, 0, 0, new byte[]{9});
+        writer.abort();
+        writer.close();
+
+        assertArrayEquals(new byte[]{1}, tileStore.getTile(1L, 0, 0, 0).getTileData());
+        assertArrayEquals(new byte[]{2}, tileStore.getTile(1L, 1, 0, 0).getTileData());
+        assertEquals(List.of(), listFiles(".tmp"));
+    }
+
+    @Test
+    void testGetTile_AppendLogTimeIsStable() throws Exception {
+        tileStore.putTile(2L, 3, 1, 1, new byte[]{3});
+        GeospatialTile first = tileStore.getTile(2L, 3, 1, 1);
+        Thread.sleep(5);
+        GeospatialTile second = tileStore.getTile(2L, 3, 1, 1);
+        assertEquals(first.getCreatedAt(), second.getCreatedAt());
+
+        // 提交整套金字塔后追加日志作废
+        try (TileStore.TileWriter writer = tileStore.openWriter(2L)) {
+            writer.write(3, 1, 1, new byte[]{4});
+        }
+        assertArrayEquals(new byte[]{4}, tileStore.getTile(2L, 3, 1, 1).getTileData());
+        assertFalse(Files.exists(tempDir.resolve("2.tiles.log")));
+    }
+
+    @Test
+    void testCommit_PublishesNewVersionWithoutReplacingMappedFile() throws Exception {
+        // 旧格式的打包文件仍可读取
+        try (TileArchiveWriter legacy = new TileArchiveWriter(tempDir.resolve("3.tiles"))) {
+            legacy.write(0, 0, 0, new byte[]{1});
+            legacy.commit();
+        }
+        assertArrayEquals(new byte[]{1}, tileStore.getTile(3L, 0, 0, 0).getTileData());
+
+        // 读取器仍映射着旧文件时提交：以新版本发布，不替换旧文件
+        for (byte value = 2; value <= 3; value++) {
+            try (TileStore.TileWriter writer = tileStore.openWriter(3L)) {
+                writer.write(0, 0, 0, new byte[]{value});
+            }
+            assertArrayEquals(new byte[]{value}, tileStore.getTile(3L, 0, 0, 0).getTileData());
+        }
+        // 打开新版本时旧版本已删除
+        List<String> archives = listFiles(".tiles");
+        assertEquals(1, archives.size());
+        assertTrue(archives.get(0).matches("3\\.\\d+\\.tiles"));
+
+        tileStore.deleteTiles(3L);
+        assertNull(tileStore.getTile(3L, 0, 0, 0));
+    }
+
+    @Test
+    void testDeleteTiles_DoesNotTouchOtherFiles() throws Exception {
+        for (long fileId : new long[]{1L, 11L}) {
+            try (TileStore.TileWriter writer = tileStore.openWriter(fileId)) {
+                writer.write(0, 0, 0, new byte[]{(byte) fileId});
+            }
+        }
+        tileStore.deleteTiles(1L);
+        assertNull(tileStore.getTile(1L, 0, 0, 0));
+        assertArrayEquals(new byte[]{11}, tileStore.getTile(11L, 0, 0, 0).getTileData());
+    }
+
+    private List<String> listFiles(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(suffix)).toList();
+        }
+    }
+}
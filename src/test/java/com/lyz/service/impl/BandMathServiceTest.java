@@ -0,0 +1,125 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.BandMathExpression;
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.GeoTiffWriter;
+import com.lyz.utils.TiffWindowReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 波段运算服务单元测试
+ */
+class BandMathServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BandMathService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BandMathService();
+        ReflectionTestUtils.setField(service, "parallelism", 3);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testCompute_WritesTiledFloatGeoTiff() throws Exception {
+        // 300x200的4波段16位影像（跨2x1个分块，含不完整的边缘分块）：RED=100，NIR=列号
+        File source = writeFourBandTif(300, 200);
+        GeoTiffHeader header = GeoTiffHeader.read(source.toPath());
+        BandMathExpression expression = BandMathExpression.compile("(NIR-RED)/(NIR+RED)",
+                BandMathService.parseAliases("BLUE:1,GREEN:2,RED:3,NIR:4"));
+        Path target = tempDir.resolve("scene_NDVI.tif");
+
+        int tiles = service.compute(source, header, expression, target);
+
+        assertEquals(2, tiles);
+        assertFalse(Files.exists(tempDir.resolve("scene_NDVI.tif.tmp")));
+
+        GeoTiffHeader result = GeoTiffHeader.read(target);
+        assertEquals(300, result.getWidth());
+        assertEquals(200, result.getHeight());
+        assertEquals("FLOAT32", result.getDataTypeName());
+        assertEquals(256, result.getTileWidth());
+        assertTrue(Double.isNaN(result.getNoData()));
+
+        try (TiffWindowReader reader = TiffWindowReader.open(target.toFile())) {
+            Raster raster = reader.readRasterWindow(0, 0, 300, 200, 1);
+            assertEquals(-1f, raster.getSampleFloat(0, 0, 0), 1e-6);
+            assertEquals(0f, raster.getSampleFloat(100, 50, 0), 1e-6);
+            assertEquals((299f - 100) / (299 + 100), raster.getSampleFloat(299, 199, 0), 1e-6);
+            assertEquals((260f - 100) / (260 + 100), raster.getSampleFloat(260, 10, 0), 1e-6);
+        }
+    }
+
+    @Test
+    void testGeoTiffWriter_KeepsGeoreference() throws Exception {
+        Path target = tempDir.resolve("geo.tif");
+        try (GeoTiffWriter writer = new GeoTiffWriter(target, 20, 10, 16)) {
+            writer.setGeoreference(114.0, 38.5, 0.0002, 0.0002, 4326);
+            writer.writeTile(0, 0, new float[16 * 16]);
+            // 第二个分块不写，提交时用全NaN分块补齐
+            writer.commit();
+        }
+
+        GeoTiffHeader header = GeoTiffHeader.read(target);
+        assertTrue(header.isGeoreferenced());
+        assertEquals(4326, header.getEpsgCode());
+        assertEquals(114.0, header.getOriginX(), 1e-9);
+        assertEquals(38.5, header.getOriginY(), 1e-9);
+        assertEquals(0.0002, header.getPixelSizeY(), 1e-12);
+        try (TiffWindowReader reader = TiffWindowReader.open(target.toFile())) {
+            Raster raster = reader.readRasterWindow(0, 0, 20, 10, 1);
+            assertEquals(0f, raster.getSampleFloat(0, 0, 0));
+            assertTrue(Float.isNaN(raster.getSampleFloat(19, 9, 0)));
+        }
+    }
+
+    @Test
+    void testParseAliases_UnknownBandRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BandMathExpression.compile("(SWIR-NIR)/(SWIR+NIR)",
+                BandMathService.parseAliases("BLUE:1,GREEN:2,RED:3,NIR:4")));
+        assertThrows(IllegalArgumentException.class, () -> BandMathService.parseAliases("NIR=4"));
+    }
+
+    private File writeFourBandTif(int width, int height) throws Exception {
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_USHORT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.setSample(x, y, 0, 20);
+                raster.setSample(x, y, 1, 40);
+                raster.setSample(x, y, 2, 100);
+                raster.setSample(x, y, 3, x);
+            }
+        }
+        File tif = tempDir.resolve("scene.tif").toFile();
+        ImageIO.write(new BufferedImage(colorModel, raster, false, null), "TIFF", tif);
+        return tif;
+    }
+}
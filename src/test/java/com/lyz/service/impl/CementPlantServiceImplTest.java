@@ -38,6 +38,12 @@ class CementPlantServiceImplTest {
     @Mock
     private GeospatialMapper geospatialMapper;
 
+    @Mock
+    private MvtTileService mvtTileService;
+
+    @Mock
+    private PointClusterService pointClusterService;
+
     @InjectMocks
     private CementPlantServiceImpl cementPlantService;
 
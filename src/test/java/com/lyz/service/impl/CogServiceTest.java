@@ -0,0 +1,138 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.GeoTiffWriter;
+import com.lyz.utils.TiffWindowReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * COG转换服务单元测试
+ */
+class CogServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CogService cogService;
+
+    @BeforeEach
+    void setUp() {
+        cogService = new CogService();
+        ReflectionTestUtils.setField(cogService, "cogDir", tempDir.resolve("cog").toString());
+        ReflectionTestUtils.setField(cogService, "blockSize", 64);
+        ReflectionTestUtils.setField(cogService, "parallelism", 2);
+        cogService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cogService.shutdown();
+    }
+
+    @Test
+    void testConvert_FloatWithOverviews() throws Exception {
+        Path source = tempDir.resolve("ndvi.tif");
+        try (GeoTiffWriter writer = new GeoTiffWriter(source, 300, 200, 48)) {
+            writer.setGeoreference(116.0, 40.0, 0.001, 0.001, 4326);
+            for (int row = 0; row < writer.getTilesDown(); row++) {
+                for (int col = 0; col < writer.getTilesAcross(); col++) {
+                    float[] samples = new float[48 * 48];
+                    for (int i = 0; i < samples.length; i++) {
+                        int x = col * 48 + i % 48;
+                        int y = row * 48 + i / 48;
+                        samples[i] = x == 1 && y == 1 ? Float.NaN : x * 0.5f + y;
+                    }
+                    writer.writeTile(col, row, samples);
+                }
+            }
+            writer.commit();
+        }
+
+        Path target = tempDir.resolve("cog").resolve("1.tif");
+        assertTrue(cogService.convert(source.toFile(), target));
+
+        // 全分辨率：分块、地理参考不变
+        GeoTiffHeader header = GeoTiffHeader.read(target);
+        assertEquals(300, header.getWidth());
+        assertEquals(200, header.getHeight());
+        assertEquals(64, header.getTileWidth());
+        assertEquals(3, header.getSampleFormat());
+        assertEquals(4326, header.getEpsgCode());
+        assertEquals(116.0, header.getOriginX(), 1e-9);
+        assertEquals(0.001, header.getPixelSizeY(), 1e-12);
+
+        try (TiffWindowReader original = TiffWindowReader.open(source.toFile());
+             TiffWindowReader cog = TiffWindowReader.open(target.toFile())) {
+            Raster expected = original.readRasterWindow(100, 50, 150, 120, 1);
+            Raster actual = cog.readRasterWindow(100, 50, 150, 120, 1);
+            assertArrayEquals(expected.getSamples(0, 0, 150, 120, 0, (float[]) null),
+                    actual.getSamples(0, 0, 150, 120, 0, (float[]) null));
+        }
+
+        // 概览：300x200 -> 150x100 -> 75x50 -> 38x25，为2x2平均值，NaN不参与平均
+        File cogFile = target.toFile();
+        try (ImageInputStream input = ImageIO.createImageInputStream(cogFile)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                assertEquals(4, reader.getNumImages(true));
+                assertEquals(150, reader.getWidth(1));
+                assertEquals(100, reader.getHeight(1));
+                assertEquals(38, reader.getWidth(3));
+
+                BufferedImage overview = reader.read(1);
+                // 像素(2,3)对应原始(4..5, 6..7)：x*0.5+y 的平均值
+                assertEquals(4.5 * 0.5 + 6.5, overview.getRaster().getSampleFloat(2, 3, 0), 1e-5);
+                // 像素(0,0)的四个原始像素中(1,1)为NaN：其余三个的平均值
+                assertEquals((0 + 0.5 + 1) / 3.0, overview.getRaster().getSampleFloat(0, 0, 0), 1e-5);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Test
+    void testConvert_RgbStrips() throws Exception {
+        BufferedImage image = new BufferedImage(130, 70, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 70; y++) {
+            for (int x = 0; x < 130; x++) {
+                image.setRGB(x, y, (x << 16) | (y << 8) | ((x + y) & 0xFF));
+            }
+        }
+        File source = tempDir.resolve("rgb.tif").toFile();
+        assertTrue(ImageIO.write(image, "tiff", source));
+
+        Path target = tempDir.resolve("cog").resolve("2.tif");
+        assertTrue(cogService.convert(source, target));
+
+        GeoTiffHeader header = GeoTiffHeader.read(target);
+        assertEquals(3, header.getSamplesPerPixel());
+        assertEquals(64, header.getTileWidth());
+
+        BufferedImage converted = ImageIO.read(target.toFile());
+        assertEquals(130, converted.getWidth());
+        for (int y = 0; y < 70; y += 7) {
+            for (int x = 0; x < 130; x += 13) {
+                assertEquals(image.getRGB(x, y), converted.getRGB(x, y), "像素(" + x + "," + y + ")");
+            }
+        }
+        assertEquals(target.toFile(), cogService.getCogFile(2L, source));
+        assertNull(cogService.getCogFile(3L, source));
+    }
+}
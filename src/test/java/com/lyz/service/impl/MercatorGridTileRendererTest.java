@@ -0,0 +1,113 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.CrsTransformUtil;
+import com.lyz.utils.GeoTiffHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.plugins.tiff.TIFFDirectory;
+import javax.imageio.plugins.tiff.TIFFField;
+import javax.imageio.plugins.tiff.TIFFTag;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Web墨卡托网格瓦片渲染器单元测试
+ */
+class MercatorGridTileRendererTest {
+
+    private static final int RED = 0xFFFF0000;
+    private static final int BLUE = 0xFF0000FF;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRender_PixelsLandOnTheRightGridCell() throws Exception {
+        // 512x512 WGS84影像，左上角(114.0, 38.5)，像素0.0002度；左半红色，右半蓝色
+        File tif = writeGeoTiff(512, 512, 114.0, 38.5, 0.0002);
+        GeoTiffHeader header = GeoTiffHeader.read(tif.toPath());
+        assertTrue(MercatorGridTileRenderer.supports(header));
+
+        try (MercatorGridTileRenderer renderer = new MercatorGridTileRenderer(tif, header, 20, null)) {
+            // 360/(256*0.0002)≈7031，向上取整到13级；影像约0.1度宽，11级时缩到一个瓦片，再保留两级概览
+            assertEquals(13, renderer.getMaxZoom());
+            assertEquals(9, renderer.getMinZoom());
+
+            int z = renderer.getMaxZoom();
+            // 影像左半部分内一点
+            assertEquals(RED, pixelAt(renderer, z, 114.02, 38.45));
+            // 影像右半部分内一点
+            assertEquals(BLUE, pixelAt(renderer, z, 114.08, 38.45));
+
+            // 影像范围之外
+            int[] outside = tileOf(z, 113.5, 38.45);
+            assertFalse(renderer.intersects(z, outside[0], outside[1]));
+            assertNull(renderer.renderTile(z, outside[0], outside[1]));
+        }
+
+        // 最细级别受上限限制
+        try (MercatorGridTileRenderer renderer = new MercatorGridTileRenderer(tif, header, 10, null)) {
+            assertEquals(10, renderer.getMaxZoom());
+            assertEquals(RED, pixelAt(renderer, 10, 114.01, 38.45));
+        }
+    }
+
+    private static int pixelAt(MercatorGridTileRenderer renderer, int z, double lon, double lat) throws Exception {
+        int[] tile = tileOf(z, lon, lat);
+        assertTrue(renderer.intersects(z, tile[0], tile[1]));
+        int[] pixels = renderer.renderTile(z, tile[0], tile[1]);
+        assertNotNull(pixels);
+        return pixels[tile[3] * 256 + tile[2]];
+    }
+
+    /**
+     * 经纬度所在瓦片及瓦片内像素 {x, y, px, py}
+     */
+    private static int[] tileOf(int z, double lon, double lat) {
+        double world = 2 * Math.PI * 6378137.0;
+        double[] m = CrsTransformUtil.lonLatToMercator(lon, lat);
+        double gx = (m[0] + world / 2) / world * (1 << z) * 256;
+        double gy = (world / 2 - m[1]) / world * (1 << z) * 256;
+        return new int[]{(int) gx / 256, (int) gy / 256, (int) gx % 256, (int) gy % 256};
+    }
+
+    private File writeGeoTiff(int width, int height, double west, double north, double pixelSize) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, x < width / 2 ? RED : BLUE);
+            }
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("TIFF").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        TIFFDirectory directory = TIFFDirectory.createFromMetadata(metadata);
+        directory.addTIFFField(new TIFFField(new TIFFTag("ModelPixelScale", 33550, 1 << TIFFTag.TIFF_DOUBLE),
+                TIFFTag.TIFF_DOUBLE, 3, new double[]{pixelSize, pixelSize, 0}));
+        directory.addTIFFField(new TIFFField(new TIFFTag("ModelTiepoint", 33922, 1 << TIFFTag.TIFF_DOUBLE),
+                TIFFTag.TIFF_DOUBLE, 6, new double[]{0, 0, 0, west, north, 0}));
+        directory.addTIFFField(new TIFFField(new TIFFTag("GeoKeyDirectory", 34735, 1 << TIFFTag.TIFF_SHORT),
+                TIFFTag.TIFF_SHORT, 12, new char[]{1, 1, 0, 2, 1024, 0, 1, 2, 2048, 0, 1, 4326}));
+
+        File file = tempDir.resolve("geo.tif").toFile();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, directory.getAsMetadata()), param);
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+}
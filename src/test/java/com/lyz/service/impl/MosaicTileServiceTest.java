@@ -0,0 +1,164 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.utils.ColorRamp;
+import com.lyz.utils.GeoTiffWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 镶嵌瓦片服务单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class MosaicTileServiceTest {
+
+    private static final int Z = 13;
+
+    private final ColorRamp ramp = ColorRamp.parse("-1:#ff0000,1:#00ff00", 256);
+
+    @Mock
+    private GeospatialMapper geospatialMapper;
+
+    @Mock
+    private ColorRampRegistry colorRampRegistry;
+
+    @InjectMocks
+    private MosaicTileService mosaicTileService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(mosaicTileService, "tileEncoder", TileEncoderTest.newEncoder());
+        ReflectionTestUtils.setField(mosaicTileService, "cacheBytes", 1L << 24);
+        ReflectionTestUtils.setField(mosaicTileService, "indexTtlSeconds", 60L);
+        ReflectionTestUtils.setField(mosaicTileService, "maxOpenFiles", 4);
+        ReflectionTestUtils.setField(mosaicTileService, "maxZoomLimit", 20);
+        mosaicTileService.init();
+        when(colorRampRegistry.getRamp(anyString())).thenReturn(ramp);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mosaicTileService.shutdown();
+    }
+
+    @Test
+    void testGetTile_NewestFirstAndMaxComposite() throws Exception {
+        // 两幅重叠的NDVI影像（左上角(114.0, 38.5)，像素0.0002度）：
+        // 较新影像左半无数据、右半0.5；较旧影像左半-0.5、右半0.8
+        GeospatialFile newer = ndviFile(1L, Float.NaN, 0.5f);
+        GeospatialFile older = ndviFile(2L, -0.5f, 0.8f);
+        when(geospatialMapper.listMosaicFiles("NDVI")).thenReturn(List.of(newer, older));
+
+        double leftLon = 114.0 + 16 * 0.0002;
+        double rightLon = 114.0 + 48 * 0.0002;
+        double lat = 38.5 - 32 * 0.0002;
+        int[] tile = tileOf(leftLon, lat);
+
+        // newest：右半取较新影像，左半由较旧影像填补
+        GeospatialTile newest = mosaicTileService.getTile("ndvi", "newest", Z, tile[0], tile[1]);
+        assertNotNull(newest);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(newest.getTileData()));
+        assertEquals(ramp.colorOf(-0.5f), pixelAt(image, tile, leftLon, lat));
+        assertEquals(ramp.colorOf(0.5f), pixelAt(image, tile, rightLon, lat));
+
+        // max：逐像素取最大值
+        GeospatialTile max = mosaicTileService.getTile("NDVI", "max", Z, tile[0], tile[1]);
+        image = ImageIO.read(new ByteArrayInputStream(max.getTileData()));
+        assertEquals(ramp.colorOf(-0.5f), pixelAt(image, tile, leftLon, lat));
+        assertEquals(ramp.colorOf(0.8f), pixelAt(image, tile, rightLon, lat));
+
+        // 合成结果被缓存，图层索引只构建一次
+        assertSame(newest, mosaicTileService.getTile("NDVI", "newest", Z, tile[0], tile[1]));
+        verify(geospatialMapper, times(1)).listMosaicFiles("NDVI");
+
+        // 没有影像覆盖的瓦片
+        assertNull(mosaicTileService.getTile("NDVI", "newest", Z, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> mosaicTileService.getTile("NDVI", "median", Z, tile[0], tile[1]));
+    }
+
+    @Test
+    void testGetTile_ReadFailureRetriedNotCached() throws Exception {
+        GeospatialFile newer = ndviFile(1L, Float.NaN, 0.5f);
+        GeospatialFile older = ndviFile(2L, -0.5f, 0.8f);
+        when(geospatialMapper.listMosaicFiles("NDVI")).thenReturn(List.of(newer, older));
+        double leftLon = 114.0 + 16 * 0.0002;
+        double lat = 38.5 - 32 * 0.0002;
+        int[] tile = tileOf(leftLon, lat);
+
+        // 较旧影像暂时无法读取：本次只合成较新影像，结果不缓存
+        Path olderPath = Path.of(older.getFilePath());
+        Path moved = tempDir.resolve("moved.tif");
+        Files.move(olderPath, moved);
+        GeospatialTile partial = mosaicTileService.getTile("NDVI", "newest", Z, tile[0], tile[1]);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(partial.getTileData()));
+        assertEquals(0, pixelAt(image, tile, leftLon, lat) >>> 24);
+
+        // 文件恢复后重新合成，读取失败的文件没有被永久排除
+        Files.move(moved, olderPath);
+        GeospatialTile complete = mosaicTileService.getTile("NDVI", "newest", Z, tile[0], tile[1]);
+        assertNotSame(partial, complete);
+        image = ImageIO.read(new ByteArrayInputStream(complete.getTileData()));
+        assertEquals(ramp.colorOf(-0.5f), pixelAt(image, tile, leftLon, lat));
+    }
+
+    private GeospatialFile ndviFile(Long fileId, float left, float right) throws Exception {
+        Path tif = tempDir.resolve("ndvi_" + fileId + ".tif");
+        try (GeoTiffWriter writer = new GeoTiffWriter(tif, 64, 64, 64)) {
+            writer.setGeoreference(114.0, 38.5, 0.0002, 0.0002, 4326);
+            float[] samples = new float[64 * 64];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = i % 64 < 32 ? left : right;
+            }
+            writer.writeTile(0, 0, samples);
+            writer.commit();
+        }
+        GeospatialFile file = new GeospatialFile();
+        file.setFileId(fileId);
+        file.setFilePath(tif.toString());
+        file.setBoundsWest(BigDecimal.valueOf(114.0));
+        file.setBoundsEast(BigDecimal.valueOf(114.0128));
+        file.setBoundsSouth(BigDecimal.valueOf(38.4872));
+        file.setBoundsNorth(BigDecimal.valueOf(38.5));
+        return file;
+    }
+
+    private static int[] tileOf(double lon, double lat) {
+        double n = 1 << Z;
+        double latRad = Math.toRadians(lat);
+        return new int[]{(int) Math.floor((lon + 180) / 360 * n),
+                (int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n)};
+    }
+
+    private static int pixelAt(BufferedImage image, int[] tile, double lon, double lat) {
+        double n = 1 << Z;
+        double latRad = Math.toRadians(lat);
+        int px = (int) (((lon + 180) / 360 * n - tile[0]) * 256);
+        int py = (int) (((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n - tile[1]) * 256);
+        return image.getRGB(px, py);
+    }
+}
@@ -0,0 +1,102 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.CementPlantMapper;
+import com.lyz.pojo.CementPlantIdentification;
+import com.lyz.pojo.CementPlantMapPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 水泥厂矢量瓦片服务单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class MvtTileServiceTest {
+
+    @Mock
+    private CementPlantMapper cementPlantMapper;
+
+    @InjectMocks
+    private MvtTileService mvtTileService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(mvtTileService, "extent", 4096);
+        ReflectionTestUtils.setField(mvtTileService, "buffer", 64);
+        ReflectionTestUtils.setField(mvtTileService, "cacheBytes", 1024 * 1024L);
+        mvtTileService.init();
+    }
+
+    @Test
+    void testGetTile_CachedUntilInvalidated() {
+        when(cementPlantMapper.listPlantMapPoints()).thenReturn(List.of(plant(1L, "北京水泥厂", 116.4, 39.9)));
+        when(cementPlantMapper.listIdentifications()).thenReturn(List.of(identification(10L, 116.4, 39.9)));
+
+        // z3瓦片(6,3)包含北京；(0,0)没有要素
+        byte[] tile = mvtTileService.getTile(MvtTileService.LAYER_PLANTS, 3, 6, 3);
+        assertTrue(contains(tile, "plants"));
+        assertTrue(contains(tile, "北京水泥厂"));
+        assertEquals(0, mvtTileService.getTile(MvtTileService.LAYER_PLANTS, 3, 0, 0).length);
+        assertTrue(contains(mvtTileService.getTile(MvtTileService.LAYER_IDENTIFICATIONS, 3, 6, 3), "GF-2"));
+
+        // 命中缓存，不再查询数据库
+        assertSame(tile, mvtTileService.getTile(MvtTileService.LAYER_PLANTS, 3, 6, 3));
+        verify(cementPlantMapper, times(1)).listPlantMapPoints();
+
+        // 写入后失效：重新载入点位
+        long generation = mvtTileService.getGeneration();
+        when(cementPlantMapper.listPlantMapPoints()).thenReturn(List.of(plant(1L, "北京新水泥厂", 116.4, 39.9)));
+        mvtTileService.invalidate();
+        assertTrue(mvtTileService.getGeneration() > generation);
+        assertTrue(contains(mvtTileService.getTile(MvtTileService.LAYER_PLANTS, 3, 6, 3), "北京新水泥厂"));
+        verify(cementPlantMapper, times(2)).listPlantMapPoints();
+    }
+
+    @Test
+    void testGetTile_InvalidLayerOrCoordinates() {
+        assertThrows(IllegalArgumentException.class, () -> mvtTileService.getTile("roads", 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> mvtTileService.getTile(MvtTileService.LAYER_PLANTS, 2, 4, 0));
+        verifyNoInteractions(cementPlantMapper);
+    }
+
+    private static CementPlantMapPoint plant(Long id, String name, double lon, double lat) {
+        CementPlantMapPoint plant = new CementPlantMapPoint();
+        plant.setPlantId(id);
+        plant.setPlantName(name);
+        plant.setLongitude(lon);
+        plant.setLatitude(lat);
+        plant.setStatus("active");
+        plant.setLatestNdvi(0.42f);
+        plant.setIdentificationCount(1);
+        return plant;
+    }
+
+    private static CementPlantIdentification identification(Long id, double lon, double lat) {
+        CementPlantIdentification identification = new CementPlantIdentification();
+        identification.setIdentificationId(id);
+        identification.setPlantId(1L);
+        identification.setLongitude(BigDecimal.valueOf(lon));
+        identification.setLatitude(BigDecimal.valueOf(lat));
+        identification.setIdentificationTime(LocalDateTime.of(2024, 5, 1, 10, 0));
+        identification.setDataSource("GF-2");
+        identification.setNdviIndex(0.42f);
+        return identification;
+    }
+
+    private static boolean contains(byte[] tile, String text) {
+        return new String(tile, StandardCharsets.ISO_8859_1)
+                .contains(new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,153 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.CementPlantMapper;
+import com.lyz.utils.PointClusterIndex;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 点聚合服务单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class PointClusterServiceTest {
+
+    @Mock
+    private CementPlantMapper cementPlantMapper;
+
+    @InjectMocks
+    private PointClusterService pointClusterService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pointClusterService, "radius", 60.0);
+        ReflectionTestUtils.setField(pointClusterService, "extent", 256);
+        ReflectionTestUtils.setField(pointClusterService, "minZoom", 0);
+        ReflectionTestUtils.setField(pointClusterService, "maxZoom", 16);
+        ReflectionTestUtils.setField(pointClusterService, "minPoints", 2);
+        ReflectionTestUtils.setField(pointClusterService, "rebuildThreshold", 1024);
+        pointClusterService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pointClusterService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetClusters_BuildsOnceAndAppliesInserts() {
+        doAnswer(invocation -> {
+            ResultHandler<Map<String, Object>> handler = invocation.getArgument(0);
+            DefaultResultContext<Map<String, Object>> context = new DefaultResultContext<>();
+            context.nextResultObject(Map.of("id", 1L, "longitude", new BigDecimal("116.40"), "latitude", new BigDecimal("39.90")));
+            handler.handleResult(context);
+            context.nextResultObject(Map.of("id", 2L, "longitude", new BigDecimal("116.41"), "latitude", new BigDecimal("39.91")));
+            handler.handleResult(context);
+            return null;
+        }).when(cementPlantMapper).scanPlantCoordinates(any());
+
+        List<PointClusterIndex.Cluster> clusters =
+                pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 5);
+        assertEquals(1, clusters.size());
+        assertEquals(2, clusters.get(0).pointCount());
+
+        // 新增的点直接合并，不重新查询数据库
+        pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, 3L,
+                new BigDecimal("116.42"), new BigDecimal("39.92"));
+        clusters = pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 5);
+        assertEquals(3, clusters.get(0).pointCount());
+        assertEquals(3, pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 18).size());
+        verify(cementPlantMapper, times(1)).scanPlantCoordinates(any());
+        verify(cementPlantMapper, never()).scanIdentificationCoordinates(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnInserted_DuringBuildNotDuplicated() {
+        doAnswer(invocation -> {
+            ResultHandler<Map<String, Object>> handler = invocation.getArgument(0);
+            DefaultResultContext<Map<String, Object>> context = new DefaultResultContext<>();
+            context.nextResultObject(Map.of("id", 1L, "longitude", new BigDecimal("116.40"), "latitude", new BigDecimal("39.90")));
+            handler.handleResult(context);
+            // 读取期间提交的新增：2已在读取结果中，3的回调重复触发
+            pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, 2L,
+                    new BigDecimal("116.41"), new BigDecimal("39.91"));
+            pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, 3L,
+                    new BigDecimal("116.42"), new BigDecimal("39.92"));
+            pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, 3L,
+                    new BigDecimal("116.42"), new BigDecimal("39.92"));
+            context.nextResultObject(Map.of("id", 2L, "longitude", new BigDecimal("116.41"), "latitude", new BigDecimal("39.91")));
+            handler.handleResult(context);
+            return null;
+        }).when(cementPlantMapper).scanPlantCoordinates(any());
+
+        List<PointClusterIndex.Cluster> clusters =
+                pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 5);
+        assertEquals(1, clusters.size());
+        assertEquals(3, clusters.get(0).pointCount());
+
+        // 新索引生效后才到达的提交回调（点已在读取结果中）同样忽略
+        pointClusterService.onInserted(PointClusterService.LAYER_PLANTS, 2L,
+                new BigDecimal("116.41"), new BigDecimal("39.91"));
+        assertEquals(3, pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 5)
+                .get(0).pointCount());
+        assertEquals(3, pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 18).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInvalidate_InTransactionRebuildsAfterCommitOnly() {
+        doAnswer(invocation -> {
+            ResultHandler<Map<String, Object>> handler = invocation.getArgument(0);
+            DefaultResultContext<Map<String, Object>> context = new DefaultResultContext<>();
+            context.nextResultObject(Map.of("id", 1L, "longitude", new BigDecimal("116.40"), "latitude", new BigDecimal("39.90")));
+            handler.handleResult(context);
+            return null;
+        }).when(cementPlantMapper).scanPlantCoordinates(any());
+        pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, 70, 15, 140, 55, 5);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            pointClusterService.invalidate(PointClusterService.LAYER_PLANTS);
+            // 提交前不重建（读到的还是提交前的数据）
+            Map<String, Object> layerStats =
+                    (Map<String, Object>) pointClusterService.getStats().get(PointClusterService.LAYER_PLANTS);
+            assertEquals(false, layerStats.get("stale"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(cementPlantMapper, timeout(2000).times(2)).scanPlantCoordinates(any());
+        // 只在提交后重建一次
+        verify(cementPlantMapper, after(300).times(2)).scanPlantCoordinates(any());
+    }
+
+    @Test
+    void testGetClusters_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> pointClusterService.getClusters("roads", -180, -85, 180, 85, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, -180, -85, 180, 85, 30));
+        assertThrows(IllegalArgumentException.class,
+                () -> pointClusterService.getClusters(PointClusterService.LAYER_PLANTS, -180, 60, 180, 10, 3));
+        verifyNoInteractions(cementPlantMapper);
+    }
+}
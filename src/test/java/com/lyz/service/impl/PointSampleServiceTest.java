@@ -0,0 +1,114 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.CementPlantGeodata;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.PointSample;
+import com.lyz.utils.GeoTiffWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 点采样服务单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class PointSampleServiceTest {
+
+    @Mock
+    private GeospatialMapper geospatialMapper;
+
+    @InjectMocks
+    private PointSampleService pointSampleService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pointSampleService, "parallelism", 2);
+        ReflectionTestUtils.setField(pointSampleService, "indexTtlSeconds", 60L);
+        ReflectionTestUtils.setField(pointSampleService, "timeoutMs", 10000L);
+        pointSampleService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pointSampleService.shutdown();
+    }
+
+    @Test
+    void testSample_TimeSeriesAcrossFiles() throws Exception {
+        // 三幅覆盖同一区域的NDVI影像（值分别为0.1、0.2、0.3），另一幅在别处
+        GeospatialFile march = ndviFile(1L, 0.3f, "2024-03-01");
+        GeospatialFile january = ndviFile(2L, 0.1f, "2024-01-01");
+        GeospatialFile february = ndviFile(3L, 0.2f, "2024-02-01");
+        GeospatialFile elsewhere = ndviFile(4L, 0.9f, "2024-01-15");
+        elsewhere.setBoundsWest(BigDecimal.valueOf(100.0));
+        elsewhere.setBoundsEast(BigDecimal.valueOf(100.1));
+        when(geospatialMapper.listFiles(null, null)).thenReturn(List.of(march, january, february, elsewhere));
+        when(geospatialMapper.listGeodataByFileIds(anyList())).thenReturn(List.of(
+                relation(1L, "NDVI", "2024-03-01"), relation(2L, "NDVI", "2024-01-01"),
+                relation(3L, "RGB", "2024-02-01")));
+
+        List<PointSample> series = pointSampleService.sample(114.003, 38.497, null);
+        assertEquals(List.of(2L, 3L, 1L), series.stream().map(PointSample::getFileId).toList());
+        assertEquals(0.1, series.get(0).getValue(), 1e-6);
+        assertEquals(15, series.get(0).getPixelX());
+        assertEquals(15, series.get(0).getPixelY());
+
+        // 按数据类型过滤；索引只构建一次
+        List<PointSample> ndvi = pointSampleService.sample(114.003, 38.497, "ndvi");
+        assertEquals(List.of(2L, 1L), ndvi.stream().map(PointSample::getFileId).toList());
+        verify(geospatialMapper, times(1)).listFiles(null, null);
+
+        // 影像范围外
+        assertTrue(pointSampleService.sample(120.0, 30.0, null).isEmpty());
+    }
+
+    private GeospatialFile ndviFile(Long fileId, float value, String uploaded) throws Exception {
+        // 64x64 WGS84影像，左上角(114.0, 38.5)，像素0.0002度
+        Path tif = tempDir.resolve("ndvi_" + fileId + ".tif");
+        try (GeoTiffWriter writer = new GeoTiffWriter(tif, 64, 64, 64)) {
+            writer.setGeoreference(114.0, 38.5, 0.0002, 0.0002, 4326);
+            float[] samples = new float[64 * 64];
+            Arrays.fill(samples, value);
+            writer.writeTile(0, 0, samples);
+            writer.commit();
+        }
+        GeospatialFile file = new GeospatialFile();
+        file.setFileId(fileId);
+        file.setFileName(tif.getFileName().toString());
+        file.setFilePath(tif.toString());
+        file.setBoundsWest(BigDecimal.valueOf(114.0));
+        file.setBoundsEast(BigDecimal.valueOf(114.0128));
+        file.setBoundsSouth(BigDecimal.valueOf(38.4872));
+        file.setBoundsNorth(BigDecimal.valueOf(38.5));
+        file.setUploadTime(LocalDateTime.parse(uploaded + "T00:00:00").plusDays(40));
+        return file;
+    }
+
+    private static CementPlantGeodata relation(Long fileId, String dataType, String acquired) {
+        CementPlantGeodata relation = new CementPlantGeodata();
+        relation.setFileId(fileId);
+        relation.setDataType(dataType);
+        relation.setAcquisitionDate(LocalDateTime.parse(acquired + "T00:00:00"));
+        return relation;
+    }
+}
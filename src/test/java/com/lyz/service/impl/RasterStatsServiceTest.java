@@ -0,0 +1,79 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.RasterBandStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 栅格统计服务单元测试
+ */
+class RasterStatsServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RasterStatsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RasterStatsService();
+        ReflectionTestUtils.setField(service, "parallelism", 3);
+        ReflectionTestUtils.setField(service, "histogramBins", 256);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testCompute_PerBandStatistics() throws Exception {
+        // 300x200 RGB影像：R=列号%256，G恒为100，B上半0下半200
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 300; x++) {
+                raster.setSample(x, y, 0, x % 256);
+                raster.setSample(x, y, 1, 100);
+                raster.setSample(x, y, 2, y < 100 ? 0 : 200);
+            }
+        }
+        File tif = tempDir.resolve("rgb.tif").toFile();
+        ImageIO.write(image, "TIFF", tif);
+
+        List<RasterBandStats> stats = service.compute(7L, tif);
+
+        assertEquals(3, stats.size());
+        RasterBandStats green = stats.get(1);
+        assertEquals(7L, green.getFileId());
+        assertEquals(2, green.getBandIndex());
+        assertEquals(60000L, green.getValidCount());
+        assertEquals(100.0, green.getMeanValue(), 1e-9);
+        assertEquals(0.0, green.getStdDev(), 1e-9);
+        assertEquals(60000L, green.getHistogram()[100]);
+
+        RasterBandStats blue = stats.get(2);
+        assertEquals(0.0, blue.getMinValue());
+        assertEquals(200.0, blue.getMaxValue());
+        assertEquals(100.0, blue.getMeanValue(), 1e-9);
+        assertEquals(100.0, blue.getStdDev(), 1e-9);
+
+        RasterBandStats red = stats.get(0);
+        assertEquals(255.0, red.getMaxValue());
+        assertEquals(60000L, Arrays.stream(red.getHistogram()).mapToLong(Long::longValue).sum());
+    }
+}
@@ -0,0 +1,133 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.GeoTiffHeader;
+import com.lyz.utils.GeoTiffWriter;
+import com.lyz.utils.TiffPixelReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 时间合成服务单元测试
+ */
+class TemporalCompositeServiceTest {
+
+    private static final double PIXEL = 0.0002;
+
+    private TemporalCompositeService compositeService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        compositeService = new TemporalCompositeService();
+        ReflectionTestUtils.setField(compositeService, "parallelism", 2);
+        compositeService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        compositeService.shutdown();
+    }
+
+    @Test
+    void testCompute_UnionGridMaxAndMedian() throws Exception {
+        // 三幅300x300影像：第二幅向东偏移100像素，第三幅向南偏移100像素；第一幅左上角为NaN
+        File a = ndvi("a.tif", 114.0, 38.5, 0.1f, true);
+        File b = ndvi("b.tif", 114.0 + 100 * PIXEL, 38.5, 0.5f, false);
+        File c = ndvi("c.tif", 114.0, 38.5 - 100 * PIXEL, 0.3f, false);
+        List<File> inputs = List.of(a, b, c);
+
+        Path max = tempDir.resolve("max.tif");
+        int tiles = compositeService.compute(inputs, TemporalCompositeService.Method.MAX, max);
+        GeoTiffHeader header = GeoTiffHeader.read(max);
+        // 并集范围400x400，与第一幅输入的网格对齐
+        assertEquals(400, header.getWidth());
+        assertEquals(400, header.getHeight());
+        assertEquals(4, tiles);
+        assertEquals(114.0, header.getOriginX(), 1e-9);
+        assertEquals(38.5, header.getOriginY(), 1e-9);
+        assertEquals(4326, header.getEpsgCode());
+        try (TiffPixelReader reader = TiffPixelReader.open(max)) {
+            assertTrue(Double.isNaN(reader.readPixel(0, 0)[0]));
+            assertEquals(0.1, reader.readPixel(50, 50)[0], 1e-6);
+            assertEquals(0.5, reader.readPixel(150, 150)[0], 1e-6);
+            assertEquals(0.3, reader.readPixel(50, 350)[0], 1e-6);
+            // 没有输入覆盖
+            assertTrue(Double.isNaN(reader.readPixel(350, 350)[0]));
+        }
+
+        Path median = tempDir.resolve("median.tif");
+        compositeService.compute(inputs, TemporalCompositeService.Method.MEDIAN, median);
+        try (TiffPixelReader reader = TiffPixelReader.open(median)) {
+            // 三幅均覆盖时取中间值，两幅覆盖时取平均
+            assertEquals(0.3, reader.readPixel(150, 150)[0], 1e-6);
+            assertEquals(0.3, reader.readPixel(150, 50)[0], 1e-6);
+            assertEquals(0.2, reader.readPixel(50, 150)[0], 1e-6);
+        }
+    }
+
+    @Test
+    void testCompute_RejectsMismatchedPixelSize() throws Exception {
+        File a = ndvi("a.tif", 114.0, 38.5, 0.1f, false);
+        Path coarse = tempDir.resolve("coarse.tif");
+        try (GeoTiffWriter writer = new GeoTiffWriter(coarse, 64, 64, 64)) {
+            writer.setGeoreference(114.0, 38.5, PIXEL * 2, PIXEL * 2, 4326);
+            writer.commit();
+        }
+        assertThrows(IllegalArgumentException.class, () -> compositeService.compute(List.of(a, coarse.toFile()),
+                TemporalCompositeService.Method.MEAN, tempDir.resolve("out.tif")));
+    }
+
+    @Test
+    void testReducer_SkipsNaNForEveryMethod() {
+        float nan = Float.NaN;
+        float[][] inputs = {{0.2f, nan, nan, 0.1f}, {0.6f, 0.3f, nan, 0.4f}, {0.4f, nan, nan, 0.3f}};
+        float[][] expected = {
+                {0.6f, 0.3f, nan, 0.4f},
+                {0.2f, 0.3f, nan, 0.1f},
+                {0.4f, 0.3f, nan, 0.26666668f},
+                {0.4f, 0.3f, nan, 0.3f}};
+        TemporalCompositeService.Method[] methods = TemporalCompositeService.Method.values();
+        for (int m = 0; m < methods.length; m++) {
+            TemporalCompositeService.Reducer reducer = new TemporalCompositeService.Reducer(methods[m], 4);
+            for (float[] input : inputs) {
+                reducer.add(input.clone());
+            }
+            assertArrayEquals(expected[m], reducer.result(), 1e-6f, methods[m].name());
+        }
+        // 没有相交输入的分块全部为NaN
+        float[] empty = new TemporalCompositeService.Reducer(TemporalCompositeService.Method.MEDIAN, 4).result();
+        assertTrue(Float.isNaN(empty[0]) && Float.isNaN(empty[3]));
+    }
+
+    private File ndvi(String name, double originX, double originY, float value, boolean noDataCorner)
+            throws Exception {
+        Path tif = tempDir.resolve(name);
+        try (GeoTiffWriter writer = new GeoTiffWriter(tif, 300, 300, 256)) {
+            writer.setGeoreference(originX, originY, PIXEL, PIXEL, 4326);
+            float[] samples = new float[256 * 256];
+            for (int row = 0; row < writer.getTilesDown(); row++) {
+                for (int col = 0; col < writer.getTilesAcross(); col++) {
+                    Arrays.fill(samples, value);
+                    if (noDataCorner && row == 0 && col == 0) {
+                        samples[0] = Float.NaN;
+                    }
+                    writer.writeTile(col, row, samples);
+                }
+            }
+            writer.commit();
+        }
+        return tif.toFile();
+    }
+}
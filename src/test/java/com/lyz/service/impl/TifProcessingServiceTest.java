@@ -0,0 +1,166 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.service.TileStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TIF文件处理服务单元测试（按需渲染）
+ */
+@ExtendWith(MockitoExtension.class)
+class TifProcessingServiceTest {
+
+    @Mock
+    private TileStore tileStore;
+
+    @Mock
+    private GeospatialMapper geospatialMapper;
+
+    @Mock
+    private CogService cogService;
+
+    @InjectMocks
+    private TifProcessingService tifProcessingService;
+
+    @TempDir
+    Path tempDir;
+
+    private GeospatialFile file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(tifProcessingService, "renderMode", "lazy");
+        ReflectionTestUtils.setField(tifProcessingService, "tileEncoder", TileEncoderTest.newEncoder());
+
+        BufferedImage image = new BufferedImage(600, 400, BufferedImage.TYPE_3BYTE_BGR);
+        File tif = tempDir.resolve("test.tif").toFile();
+        ImageIO.write(image, "TIFF", tif);
+
+        file = new GeospatialFile();
+        file.setFileId(1L);
+        file.setFilePath(tif.getAbsolutePath());
+        file.setStatus("processed");
+    }
+
+    @AfterEach
+    void tearDown() {
+        tifProcessingService.shutdown();
+    }
+
+    @Test
+    void testGetTile_LazyModeRendersAndWritesThrough() throws Exception {
+        // 600x400影像：maxZoom=2，z2共3x2个瓦片
+        GeospatialTile tile = tifProcessingService.getTile(file, 2, 2, 1);
+
+        assertNotNull(tile);
+        assertNotNull(tile.getContentHash());
+        verify(tileStore).putTile(eq(1L), eq(2), eq(2), eq(1), eq(tile.getTileData()));
+
+        // 影像范围之外不渲染
+        assertNull(tifProcessingService.getTile(file, 2, 3, 0));
+        verify(tileStore, times(1)).putTile(anyLong(), anyInt(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void testGetTile_EagerModeDoesNotRender() throws Exception {
+        ReflectionTestUtils.setField(tifProcessingService, "renderMode", "eager");
+
+        assertNull(tifProcessingService.getTile(file, 0, 0, 0));
+        verify(tileStore, never()).putTile(anyLong(), anyInt(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void testGetTile_ConcurrentMissesShareOneRender() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(tileStore).putTile(anyLong(), anyInt(), anyInt(), anyInt(), any());
+
+        CompletableFuture<GeospatialTile> first = CompletableFuture.supplyAsync(() -> tifProcessingService.getTile(file, 0, 0, 0));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<GeospatialTile> second = CompletableFuture.supplyAsync(() -> tifProcessingService.getTile(file, 0, 0, 0));
+        // 让第二个请求进入等待后再完成第一次渲染
+        Thread.sleep(200);
+        release.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        verify(tileStore, times(1)).putTile(anyLong(), anyInt(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void testGetTiles_StoredTilesFetchedOnceMissingRendered() throws Exception {
+        GeospatialTile stored = new GeospatialTile();
+        stored.setTileData(new byte[]{1});
+        List<TileKey> keys = List.of(new TileKey(1L, 2, 0, 0), new TileKey(1L, 2, 2, 1), new TileKey(1L, 2, 3, 0));
+        when(tileStore.getTiles(1L, keys)).thenReturn(new ArrayList<>(Arrays.asList(stored, null, null)));
+
+        List<GeospatialTile> tiles = tifProcessingService.getTiles(file, keys);
+
+        // 已生成的瓦片直接返回，缺失的瓦片按需渲染，影像范围之外仍为null
+        assertEquals(3, tiles.size());
+        assertSame(stored, tiles.get(0));
+        assertNotNull(tiles.get(1));
+        assertNull(tiles.get(2));
+        verify(tileStore).putTile(eq(1L), eq(2), eq(2), eq(1), any());
+        verify(tileStore, times(1)).putTile(anyLong(), anyInt(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void testGenerateTiles_StoreFailureKeepsExistingTiles() throws Exception {
+        ColorRampRegistry colorRampRegistry = new ColorRampRegistry();
+        ReflectionTestUtils.setField(colorRampRegistry, "rampSize", 256);
+        ReflectionTestUtils.setField(tifProcessingService, "colorRampRegistry", colorRampRegistry);
+        when(tileStore.openWriter(1L)).thenThrow(new IllegalStateException("数据库不可用"));
+
+        // 可解码的影像写入失败时直接抛出，不用占位瓦片替换已有瓦片
+        assertThrows(IllegalStateException.class, () -> ReflectionTestUtils.invokeMethod(
+                tifProcessingService, "generateTiles", 1L, new File(file.getFilePath())));
+        verify(tileStore, times(1)).openWriter(1L);
+        verify(geospatialMapper, never()).upsertTileManifest(any());
+    }
+
+    @Test
+    void testGenerateTiles_UndecodableFileWritesPlaceholders() throws Exception {
+        File broken = tempDir.resolve("broken.tif").toFile();
+        Files.write(broken.toPath(), new byte[]{1, 2, 3, 4});
+        TileStore.TileWriter writer = mock(TileStore.TileWriter.class);
+        when(tileStore.openWriter(1L)).thenReturn(writer);
+
+        ReflectionTestUtils.invokeMethod(tifProcessingService, "generateTiles", 1L, broken);
+
+        // 0-2级共21个占位瓦片
+        verify(writer, times(21)).write(anyInt(), anyInt(), anyInt(), any());
+        verify(writer).close();
+        verify(geospatialMapper).deleteTileManifest(1L);
+    }
+}
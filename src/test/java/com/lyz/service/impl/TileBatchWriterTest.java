@@ -0,0 +1,155 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 瓦片批量写入器单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class TileBatchWriterTest {
+
+    @Mock
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Mock
+    private SqlSession sqlSession;
+
+    @Mock
+    private GeospatialMapper geospatialMapper;
+
+    @BeforeEach
+    void setUp() {
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH, false)).thenReturn(sqlSession);
+        when(sqlSession.getMapper(GeospatialMapper.class)).thenReturn(geospatialMapper);
+    }
+
+    @Test
+    void testWrite_FlushesEveryNTiles() throws IOException {
+        try (TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 3, Long.MAX_VALUE)) {
+            for (int i = 0; i < 7; i++) {
+                writer.write(2, i, 0, new byte[]{1, 2, (byte) i});
+            }
+            verify(sqlSession, times(2)).commit();
+            assertEquals(7, writer.getTileCount());
+            assertEquals(21, writer.getTotalBytes());
+        }
+        // 关闭时提交剩余的1个瓦片，再清理不再被引用的瓦片数据
+        verify(sqlSession, times(3)).flushStatements();
+        verify(sqlSession, times(4)).commit();
+        verify(sqlSession).close();
+        verify(geospatialMapper).lockOrphanTileBlobs();
+        verify(geospatialMapper, times(7)).insertTileBlob(anyString(), any(byte[].class), eq(3));
+        verify(geospatialMapper, times(7)).insertTile(eq(1L), eq(2), anyInt(), eq(0), eq(256), eq("PNG"), anyString(), isNull());
+    }
+
+    @Test
+    void testWrite_SameContentStoredOnce() throws IOException {
+        byte[] blank = {9, 9, 9};
+        try (TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 2, Long.MAX_VALUE)) {
+            for (int i = 0; i < 5; i++) {
+                writer.write(3, i, 1, blank);
+            }
+            assertEquals(1, writer.getUniqueBlobCount());
+        }
+        verify(geospatialMapper, times(1)).insertTileBlob(anyString(), eq(blank), eq(3));
+        verify(geospatialMapper, times(5)).insertTile(eq(1L), eq(3), anyInt(), eq(1), eq(256), eq("PNG"), anyString(), isNull());
+    }
+
+    @Test
+    void testWrite_FlushesOnByteThreshold() throws IOException {
+        TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 1000, 10);
+        writer.write(0, 0, 0, new byte[6]);
+        verify(sqlSession, never()).commit();
+        writer.write(1, 0, 0, new byte[]{1, 2, 3, 4, 5, 6});
+        verify(sqlSession).commit();
+        assertEquals(1, writer.getFlushCount());
+
+        // 没有待提交的语句时不再提交瓦片，只提交一次清理
+        writer.close();
+        verify(sqlSession, times(1)).flushStatements();
+        verify(sqlSession, times(2)).commit();
+    }
+
+    @Test
+    void testClose_DeletesLockedOrphansInChunks() throws IOException {
+        List<String> orphans = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            orphans.add("hash" + i);
+        }
+        when(geospatialMapper.lockOrphanTileBlobs()).thenReturn(orphans);
+        try (TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 10, Long.MAX_VALUE)) {
+            writer.write(0, 0, 0, new byte[]{1});
+        }
+        verify(geospatialMapper, times(3)).deleteUnreferencedTileBlobs(anyList());
+        verify(sqlSession, times(2)).commit();
+    }
+
+    @Test
+    void testClose_CleanupFailureKeepsTiles() throws IOException {
+        when(geospatialMapper.lockOrphanTileBlobs()).thenThrow(new RuntimeException("锁等待超时"));
+        TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 10, Long.MAX_VALUE);
+        writer.write(0, 0, 0, new byte[]{1});
+        writer.close();
+        verify(sqlSession).commit();
+        verify(sqlSession).rollback();
+        verify(sqlSession).close();
+    }
+
+    @Test
+    void testFlush_FailureRollsBack() {
+        when(sqlSession.flushStatements()).thenThrow(new RuntimeException("连接断开"));
+        TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 1, Long.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> writer.write(0, 0, 0, new byte[]{1}));
+        verify(sqlSession).rollback();
+    }
+
+    @Test
+    void testClose_ReplaceDeletesStaleTilesInLastCommit() throws IOException {
+        when(geospatialMapper.nextTileGeneration()).thenReturn(42L);
+        try (TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 2, Long.MAX_VALUE, true)) {
+            for (int i = 0; i < 3; i++) {
+                writer.write(1, i, 0, new byte[]{(byte) i});
+            }
+            verify(geospatialMapper, never()).deleteTilesExceptGeneration(anyLong(), anyLong());
+        }
+        verify(geospatialMapper, times(3)).insertTile(eq(1L), eq(1), anyInt(), eq(0), eq(256), anyString(), anyString(), eq(42L));
+        InOrder inOrder = inOrder(geospatialMapper, sqlSession);
+        inOrder.verify(geospatialMapper).insertTile(eq(1L), eq(1), eq(2), eq(0), eq(256), anyString(), anyString(), eq(42L));
+        inOrder.verify(geospatialMapper).deleteTilesExceptGeneration(1L, 42L);
+        inOrder.verify(sqlSession).commit();
+        inOrder.verify(geospatialMapper).lockOrphanTileBlobs();
+    }
+
+    @Test
+    void testAbort_SkipsCommitAndStaleDeletion() throws IOException {
+        when(geospatialMapper.nextTileGeneration()).thenReturn(7L);
+        TileBatchWriter writer = new TileBatchWriter(sqlSessionFactory, 1L, 100, Long.MAX_VALUE, true);
+        writer.write(0, 0, 0, new byte[]{1});
+        writer.abort();
+        writer.close();
+
+        verify(sqlSession).rollback();
+        verify(sqlSession, never()).flushStatements();
+        verify(geospatialMapper, never()).insertTile(anyLong(), anyInt(), anyInt(), anyInt(), anyInt(), anyString(), anyString(), any());
+        verify(geospatialMapper, never()).deleteTilesExceptGeneration(anyLong(), anyLong());
+        verify(sqlSession).close();
+    }
+}
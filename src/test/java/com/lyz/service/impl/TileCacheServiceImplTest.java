@@ -0,0 +1,102 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.GeospatialTile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 瓦片内存缓存服务单元测试
+ */
+class TileCacheServiceImplTest {
+
+    private TileCacheServiceImpl tileCacheService;
+
+    private int hashSeq;
+
+    @BeforeEach
+    void setUp() {
+        tileCacheService = new TileCacheServiceImpl();
+        // 16个分段，每段1024字节
+        ReflectionTestUtils.setField(tileCacheService, "maxBytes", 16 * 1024L);
+        tileCacheService.init();
+    }
+
+    @Test
+    void testPutAndGet_Hit() {
+        GeospatialTile tile = tile(3);
+        tileCacheService.putTile(1L, 3, 4, 5, tile);
+
+        GeospatialTile cached = tileCacheService.getTile(1L, 3, 4, 5);
+        assertSame(tile.getTileData(), cached.getTileData());
+        assertEquals(tile.getContentHash(), cached.getContentHash());
+        assertNull(tileCacheService.getTile(1L, 3, 4, 6));
+
+        Map<String, Object> stats = tileCacheService.getStats();
+        assertEquals(1L, stats.get("hitCount"));
+        assertEquals(1L, stats.get("missCount"));
+        assertEquals(64L + 3 + 128, stats.get("usedBytes"));
+    }
+
+    @Test
+    void testEvictFile_OnlyTargetFile() {
+        tileCacheService.putTile(1L, 0, 0, 0, tile(10));
+        tileCacheService.putTile(1L, 1, 0, 0, tile(10));
+        tileCacheService.putTile(2L, 0, 0, 0, tile(10));
+
+        tileCacheService.evictFile(1L);
+
+        assertNull(tileCacheService.getTile(1L, 0, 0, 0));
+        assertNull(tileCacheService.getTile(1L, 1, 0, 0));
+        assertNotNull(tileCacheService.getTile(2L, 0, 0, 0));
+        // 三个瓦片数据各不相同，清除引用后数据仍由LRU管理
+        assertEquals(64L + 3 * (10 + 128), tileCacheService.getStats().get("usedBytes"));
+    }
+
+    @Test
+    void testByteBudget_EvictsLeastRecentlyUsed() {
+        // 写入远超上限的数据，总占用不能超过上限
+        for (int i = 0; i < 200; i++) {
+            tileCacheService.putTile(1L, 10, i, 0, tile(400));
+        }
+
+        Map<String, Object> stats = tileCacheService.getStats();
+        assertTrue((Long) stats.get("usedBytes") <= 16 * 1024L);
+        assertTrue((Long) stats.get("evictionCount") > 0);
+    }
+
+    @Test
+    void testSameContent_StoredOnce() {
+        GeospatialTile blank = tile(100);
+        for (int i = 0; i < 10; i++) {
+            tileCacheService.putTile(1L, 5, i, 0, blank);
+        }
+        tileCacheService.putTile(2L, 0, 0, 0, blank);
+
+        Map<String, Object> stats = tileCacheService.getStats();
+        assertEquals(11, stats.get("tileCount"));
+        assertEquals(1, stats.get("blobCount"));
+        assertEquals(11L * 64 + 100 + 128, stats.get("usedBytes"));
+        assertSame(tileCacheService.getTile(1L, 5, 3, 0).getTileData(), tileCacheService.getTile(2L, 0, 0, 0).getTileData());
+    }
+
+    @Test
+    void testEmptyTile_NotCached() {
+        tileCacheService.putTile(1L, 0, 0, 0, tile(0));
+        tileCacheService.putTile(1L, 0, 0, 1, null);
+
+        assertNull(tileCacheService.getTile(1L, 0, 0, 0));
+        assertEquals(0, tileCacheService.getStats().get("tileCount"));
+    }
+
+    private GeospatialTile tile(int size) {
+        GeospatialTile tile = new GeospatialTile();
+        tile.setTileData(new byte[size]);
+        tile.setContentHash("hash-" + (hashSeq++));
+        return tile;
+    }
+}
@@ -0,0 +1,116 @@
+package com.lyz.service.impl;
+
+import com.lyz.utils.TileImageUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 瓦片编码器单元测试
+ */
+class TileEncoderTest {
+
+    private TileEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        encoder = newEncoder();
+        encoder.setCodecs(Map.of("ndvi", TileEncoder.Codec.PALETTE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+
+    /**
+     * 使用默认配置的编码器
+     */
+    static TileEncoder newEncoder() {
+        return new TileEncoder();
+    }
+
+    @Test
+    void testEncode_PaletteIsLosslessAndSmaller() throws Exception {
+        // 少量颜色加透明区域（颜色渐变着色的NDVI瓦片）
+        int[] pixels = new int[256 * 256];
+        for (int i = 0; i < pixels.length; i++) {
+            int x = i % 256;
+            pixels[i] = x < 16 ? 0 : 0xFF000000 | (x / 16 * 15) << 8 | (i / 256 / 32 * 30);
+        }
+
+        byte[] palette = encoder.encode(pixels, encoder.codecFor("NDVI_MAX"));
+        byte[] png = encoder.encode(pixels, TileEncoder.Codec.PNG);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(palette));
+        assertInstanceOf(IndexColorModel.class, decoded.getColorModel());
+        assertArrayEquals(pixels, TileImageUtil.fromImage(decoded));
+        assertTrue(palette.length < png.length, "调色板PNG应小于真彩色PNG");
+        assertEquals("PNG", TileEncoder.formatOf(palette));
+    }
+
+    @Test
+    void testEncode_FallsBackToPngWhenCodecNotApplicable() throws Exception {
+        int[] opaque = new int[256 * 256];
+        for (int i = 0; i < opaque.length; i++) {
+            opaque[i] = 0xFF000000 | i * 7919;
+        }
+        byte[] jpeg = encoder.encode(opaque, TileEncoder.Codec.JPEG);
+        assertEquals("JPEG", TileEncoder.formatOf(jpeg));
+
+        // 超过256种颜色不能写调色板；含透明像素不能写JPEG
+        BufferedImage truecolor = ImageIO.read(new ByteArrayInputStream(encoder.encode(opaque, TileEncoder.Codec.PALETTE)));
+        assertFalse(truecolor.getColorModel() instanceof IndexColorModel);
+        int[] transparent = opaque.clone();
+        transparent[0] = 0;
+        byte[] png = encoder.encode(transparent, TileEncoder.Codec.JPEG);
+        assertEquals("PNG", TileEncoder.formatOf(png));
+        assertArrayEquals(transparent, TileImageUtil.fromImage(ImageIO.read(new ByteArrayInputStream(png))));
+
+        Map<String, Object> stats = encoder.getStats();
+        assertEquals(2L, stats.get("fallbackCount"));
+        assertEquals(1L, ((Map<?, ?>) stats.get("jpeg")).get("tileCount"));
+        assertEquals(TileEncoder.Codec.PNG, encoder.codecFor("RGB"));
+    }
+
+    @Test
+    void testEncode_IdleStatesBounded() throws Exception {
+        int[] pixels = new int[256 * 256];
+        Arrays.fill(pixels, 0xFF336699);
+        byte[] expected = encoder.encode(pixels, TileEncoder.Codec.PNG);
+
+        // 大量线程并发编码后，常驻的空闲编码状态不超过池容量
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 256; i++) {
+                results.add(executor.submit(() -> encoder.encode(pixels, TileEncoder.Codec.PNG)));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(encoder.getIdleStateCount() <= Math.max(2, Runtime.getRuntime().availableProcessors()));
+        assertTrue(encoder.getIdleStateCount() > 0);
+
+        // 关闭后释放空闲状态
+        encoder.shutdown();
+        assertEquals(0, encoder.getIdleStateCount());
+    }
+}
@@ -0,0 +1,153 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.GeospatialTile;
+import com.lyz.pojo.TileKey;
+import com.lyz.service.TileStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 瓦片预取服务单元测试
+ */
+class TilePrefetchServiceTest {
+
+    private final List<TilePrefetchService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(TilePrefetchService::shutdown);
+    }
+
+    @Test
+    void testRecordAccess_PrefetchesUncachedNeighboursAndChildren() throws Exception {
+        TileStore tileStore = storeWithAllTiles();
+        TileCacheServiceImpl cache = newCache();
+        cache.putTile(1L, 2, 0, 0, tile(1L, 2, 0, 0));
+        TilePrefetchService service = newService(tileStore, cache, mock(StringRedisTemplate.class), 1, true);
+
+        service.recordAccess(1L, 2, 1, 1);
+
+        // 周围8个同级瓦片中已缓存1个，另有z3的4个子瓦片，一次批量读取
+        waitUntil(() -> cache.containsTile(1L, 3, 3, 3));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TileKey>> keys = ArgumentCaptor.forClass(List.class);
+        verify(tileStore, timeout(5000)).getTiles(eq(1L), keys.capture());
+        Set<String> requested = keys.getValue().stream().map(k -> k.z() + "/" + k.x() + "/" + k.y())
+                .collect(Collectors.toSet());
+        assertEquals(11, requested.size());
+        assertFalse(requested.contains("2/0/0"));
+        assertFalse(requested.contains("2/1/1"));
+        assertTrue(requested.containsAll(Set.of("2/2/2", "3/2/2", "3/3/2", "3/2/3", "3/3/3")));
+        assertTrue(cache.containsTile(1L, 2, 2, 0));
+    }
+
+    @Test
+    void testPersistAndWarmup_HottestTilesLoadedAfterRestart() throws Exception {
+        Map<String, String> redis = new HashMap<>();
+        StringRedisTemplate redisTemplate = redisBackedBy(redis);
+
+        TilePrefetchService before = newService(mock(TileStore.class), newCache(), redisTemplate, 0, false);
+        for (int i = 0; i < 5; i++) {
+            before.recordAccess(7L, 3, 4, 2);
+        }
+        before.recordAccess(7L, 3, 4, 3);
+        assertEquals(new TileKey(7L, 3, 4, 2), before.getHotTiles(1).keySet().iterator().next());
+        before.persist();
+        assertTrue(redis.containsKey("tile:prefetch:sketch"));
+
+        // 重启后恢复热度并预热缓存
+        TileStore tileStore = storeWithAllTiles();
+        TileCacheServiceImpl cache = newCache();
+        TilePrefetchService after = newService(tileStore, cache, redisTemplate, 0, false);
+        after.warmup();
+
+        waitUntil(() -> cache.containsTile(7L, 3, 4, 2) && cache.containsTile(7L, 3, 4, 3));
+        assertEquals(new TileKey(7L, 3, 4, 2), after.getHotTiles(1).keySet().iterator().next());
+        verify(tileStore, times(1)).getTiles(eq(7L), anyList());
+    }
+
+    private TilePrefetchService newService(TileStore tileStore, TileCacheServiceImpl cache,
+                                           StringRedisTemplate redisTemplate, int radius, boolean children) {
+        TilePrefetchService service = new TilePrefetchService();
+        ReflectionTestUtils.setField(service, "tileStore", tileStore);
+        ReflectionTestUtils.setField(service, "tileCacheService", cache);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "sketchDepth", 4);
+        ReflectionTestUtils.setField(service, "sketchWidth", 1024);
+        ReflectionTestUtils.setField(service, "hotTiles", 100);
+        ReflectionTestUtils.setField(service, "neighbourRadius", radius);
+        ReflectionTestUtils.setField(service, "prefetchChildren", children);
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "queueSize", 16);
+        ReflectionTestUtils.setField(service, "redisKey", "tile:prefetch");
+        service.init();
+        services.add(service);
+        return service;
+    }
+
+    private static TileCacheServiceImpl newCache() {
+        TileCacheServiceImpl cache = new TileCacheServiceImpl();
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024 * 1024L);
+        cache.init();
+        return cache;
+    }
+
+    /**
+     * 所有请求的瓦片都存在的瓦片存储
+     */
+    @SuppressWarnings("unchecked")
+    private static TileStore storeWithAllTiles() {
+        TileStore tileStore = mock(TileStore.class);
+        when(tileStore.getTiles(anyLong(), anyList())).thenAnswer(invocation -> {
+            List<TileKey> keys = invocation.getArgument(1);
+            List<GeospatialTile> tiles = new ArrayList<>();
+            for (TileKey key : keys) {
+                tiles.add(tile(invocation.getArgument(0), key.z(), key.x(), key.y()));
+            }
+            return tiles;
+        });
+        return tileStore;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate redisBackedBy(Map<String, String> redis) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> operations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(operations);
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(operations).set(anyString(), anyString());
+        when(operations.get(anyString())).thenAnswer(invocation -> redis.get((String) invocation.getArgument(0)));
+        return redisTemplate;
+    }
+
+    private static GeospatialTile tile(long fileId, int z, int x, int y) {
+        GeospatialTile tile = new GeospatialTile();
+        tile.setTileData(new byte[]{(byte) z, (byte) x, (byte) y});
+        tile.setContentHash(fileId + "/" + z + "/" + x + "/" + y);
+        return tile;
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,148 @@
+package com.lyz.service.impl;
+
+import com.lyz.pojo.TileRenderStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 瓦片金字塔并行渲染引擎单元测试
+ */
+class TileRenderEngineTest {
+
+    private TileRenderEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new TileRenderEngine();
+        ReflectionTestUtils.setField(engine, "tileEncoder", TileEncoderTest.newEncoder());
+        ReflectionTestUtils.setField(engine, "parallelism", 4);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 2);
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testRender_WritesEveryIntersectingTileOnce() throws Exception {
+        // 3级金字塔，最细一级只有左上3x2个瓦片有数据
+        TileRenderEngine.TileRenderer renderer = new FakeRenderer(2, 3, 2);
+        Set<String> written = new HashSet<>();
+
+        TileRenderStats stats = engine.render(1L, renderer, (z, x, y, data) -> {
+            assertTrue(written.add(z + "/" + x + "/" + y), "瓦片重复写入");
+            assertTrue(data.length > 0);
+        });
+
+        // z2: 6个，z1: 2个，z0: 1个
+        assertEquals(9, written.size());
+        assertTrue(written.containsAll(Set.of("0/0/0", "1/0/0", "1/1/0", "2/2/1")));
+        assertFalse(written.contains("2/3/0"));
+        assertEquals(9, stats.getTileCount());
+        assertEquals(4, stats.getParallelism());
+    }
+
+    @Test
+    void testRender_SkipsLevelsAboveMinZoom() throws Exception {
+        FakeRenderer renderer = new FakeRenderer(3, 8, 8);
+        renderer.minZoom = 2;
+        Set<String> written = new HashSet<>();
+
+        engine.render(1L, renderer, (z, x, y, data) -> written.add(z + "/" + x + "/" + y));
+
+        // z3: 64个，z2: 16个，z0和z1不生成
+        assertEquals(80, written.size());
+        assertTrue(written.stream().noneMatch(key -> key.startsWith("0/") || key.startsWith("1/")));
+    }
+
+    @Test
+    void testRender_SinkFailureStopsRendering() {
+        TileRenderEngine.TileRenderer renderer = new FakeRenderer(4, 16, 16);
+
+        IOException e = assertThrows(IOException.class, () -> engine.render(1L, renderer, (z, x, y, data) -> {
+            throw new IOException("写入失败");
+        }));
+        assertEquals("写入失败", e.getMessage());
+    }
+
+    @Test
+    void testRenderIncremental_RewritesOnlyDirtyLeafAndAncestors() throws Exception {
+        FakeRenderer renderer = new FakeRenderer(2, 4, 4);
+        Map<String, int[]> stored = new HashMap<>();
+        engine.render(1L, renderer, (z, x, y, data) -> stored.put(z + "/" + x + "/" + y, new int[256 * 256]));
+        assertEquals(21, stored.size());
+        renderer.leafRenders.set(0);
+
+        Set<String> written = new HashSet<>();
+        TileRenderStats stats = engine.renderIncremental(1L, renderer, TileEncoder.Codec.PNG,
+                (z, x, y, data) -> assertTrue(written.add(z + "/" + x + "/" + y), "瓦片重复写入"),
+                List.of(TileRenderEngine.leafKey(1, 2)), (z, x, y) -> stored.get(z + "/" + x + "/" + y));
+
+        // 只重新渲染一个最细瓦片，兄弟瓦片读取已有像素
+        assertEquals(Set.of("2/1/2", "1/0/1", "0/0/0"), written);
+        assertEquals(1, renderer.leafRenders.get());
+        assertEquals(6, stats.getReusedTiles());
+        assertTrue(stats.isIncremental());
+    }
+
+    /**
+     * 最细一级只有左上角 cols x rows 个瓦片有数据
+     */
+    private static class FakeRenderer implements TileRenderEngine.TileRenderer {
+        private final int maxZoom;
+        private final int cols;
+        private final int rows;
+        private int minZoom;
+        private final AtomicInteger leafRenders = new AtomicInteger();
+
+        FakeRenderer(int maxZoom, int cols, int rows) {
+            this.maxZoom = maxZoom;
+            this.cols = cols;
+            this.rows = rows;
+        }
+
+        @Override
+        public int getMaxZoom() {
+            return maxZoom;
+        }
+
+        @Override
+        public int getMinZoom() {
+            return minZoom;
+        }
+
+        @Override
+        public boolean intersects(int z, int x, int y) {
+            int shift = maxZoom - z;
+            return (x << shift) < cols && (y << shift) < rows;
+        }
+
+        @Override
+        public int[] renderLeaf(int x, int y) {
+            leafRenders.incrementAndGet();
+            int[] pixels = new int[256 * 256];
+            Arrays.fill(pixels, 0xFF000000 | (x * 40) << 8 | y * 40);
+            return pixels;
+        }
+
+        @Override
+        public int[] renderTile(int z, int x, int y) {
+            return z == maxZoom ? renderLeaf(x, y) : null;
+        }
+    }
+}
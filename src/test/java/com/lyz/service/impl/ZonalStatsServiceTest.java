@@ -0,0 +1,149 @@
+package com.lyz.service.impl;
+
+import com.lyz.mapper.GeospatialMapper;
+import com.lyz.pojo.GeospatialFile;
+import com.lyz.pojo.ZonalStats;
+import com.lyz.utils.GeoTiffWriter;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 水泥厂周边区域统计服务单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ZonalStatsServiceTest {
+
+    @Mock
+    private GeospatialMapper geospatialMapper;
+
+    @Mock
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Mock
+    private SqlSession sqlSession;
+
+    @Mock
+    private GeospatialMapper batchMapper;
+
+    @InjectMocks
+    private ZonalStatsService zonalStatsService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(zonalStatsService, "parallelism", 2);
+        ReflectionTestUtils.setField(zonalStatsService, "flushSize", 1000);
+        zonalStatsService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        zonalStatsService.shutdown();
+    }
+
+    @Test
+    void testRun_StatisticsWithinRadius() throws Exception {
+        mockFile(5L, writeNdvi("ndvi.tif"));
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH, false)).thenReturn(sqlSession);
+        when(sqlSession.getMapper(GeospatialMapper.class)).thenReturn(batchMapper);
+
+        // 水泥厂1位于中心像素中心；水泥厂2在影像范围之外
+        ZonalStats inside = target(1L, 5L, 114.0 + 32.5 * 0.0002, 38.5 - 32.5 * 0.0002);
+        ZonalStats outside = target(2L, 5L, 115.0, 38.0);
+
+        ZonalStatsService.RunResult result = zonalStatsService.run(List.of(inside, outside), 100);
+
+        assertEquals(1, result.written());
+        assertTrue(result.failedFileIds().isEmpty());
+        ArgumentCaptor<ZonalStats> captor = ArgumentCaptor.forClass(ZonalStats.class);
+        verify(batchMapper, times(1)).upsertZonalStats(captor.capture());
+        verify(sqlSession).commit();
+        ZonalStats stats = captor.getValue();
+        assertEquals(1L, stats.getPlantId());
+        assertEquals(5L, stats.getFileId());
+        assertEquals(0.9, stats.getMaxValue(), 1e-6);
+        assertEquals(0.5, stats.getMinValue(), 1e-6);
+        assertEquals(0L, stats.getNoDataCount());
+
+        // 100米半径：东西向像素约17.4米，南北向约22.2米，圆内约81个像素
+        long pixels = stats.getPixelCount();
+        assertTrue(pixels > 60 && pixels < 100, "pixels=" + pixels);
+        assertEquals((0.5 * (pixels - 1) + 0.9) / pixels, stats.getMeanValue(), 1e-6);
+    }
+
+    @Test
+    void testRun_FailedFileRecordedAndOthersContinue() throws Exception {
+        // 影像5的文件已被删除，影像6正常
+        mockFile(5L, tempDir.resolve("missing.tif"));
+        mockFile(6L, writeNdvi("ndvi6.tif"));
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH, false)).thenReturn(sqlSession);
+        when(sqlSession.getMapper(GeospatialMapper.class)).thenReturn(batchMapper);
+        double lon = 114.0 + 32.5 * 0.0002;
+        double lat = 38.5 - 32.5 * 0.0002;
+
+        ZonalStatsService.RunResult result = zonalStatsService.run(
+                List.of(target(1L, 5L, lon, lat), target(2L, 5L, lon, lat), target(1L, 6L, lon, lat)), 100);
+
+        assertEquals(1, result.written());
+        assertEquals(List.of(5L), result.failedFileIds());
+        ArgumentCaptor<ZonalStats> captor = ArgumentCaptor.forClass(ZonalStats.class);
+        verify(batchMapper, times(1)).upsertZonalStats(captor.capture());
+        assertEquals(6L, captor.getValue().getFileId());
+        verify(sqlSession).commit();
+    }
+
+    /**
+     * 64x64 WGS84影像，左上角(114.0, 38.5)，像素0.0002度，NDVI恒为0.5，中心像素0.9，左上角像素为NaN
+     */
+    private Path writeNdvi(String name) throws Exception {
+        Path tif = tempDir.resolve(name);
+        try (GeoTiffWriter writer = new GeoTiffWriter(tif, 64, 64, 64)) {
+            writer.setGeoreference(114.0, 38.5, 0.0002, 0.0002, 4326);
+            float[] samples = new float[64 * 64];
+            Arrays.fill(samples, 0.5f);
+            samples[32 * 64 + 32] = 0.9f;
+            samples[0] = Float.NaN;
+            writer.writeTile(0, 0, samples);
+            writer.commit();
+        }
+        return tif;
+    }
+
+    private void mockFile(Long fileId, Path tif) {
+        GeospatialFile file = new GeospatialFile();
+        file.setFileId(fileId);
+        file.setFilePath(tif.toString());
+        when(geospatialMapper.findFileById(fileId)).thenReturn(file);
+    }
+
+    private static ZonalStats target(Long plantId, Long fileId, double lon, double lat) {
+        ZonalStats target = new ZonalStats();
+        target.setPlantId(plantId);
+        target.setFileId(fileId);
+        target.setDataType("NDVI");
+        target.setLongitude(lon);
+        target.setLatitude(lat);
+        return target;
+    }
+}
@@ -0,0 +1,53 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 波段运算表达式单元测试
+ */
+class BandMathExpressionTest {
+
+    private static final Map<String, Integer> ALIASES = Map.of("RED", 3, "NIR", 4);
+
+    @Test
+    void testEvaluate_Ndvi() {
+        BandMathExpression expression = BandMathExpression.compile("(NIR - RED) / (NIR + RED)", ALIASES);
+        assertEquals(4, expression.getBandCount());
+
+        float[] red = {100, 50, 0, 30};
+        float[] nir = {300, 50, 0, Float.NaN};
+        float[] out = new float[4];
+        expression.evaluate(new float[][]{null, null, red, nir}, 4, out);
+
+        assertEquals(0.5f, out[0], 1e-6);
+        assertEquals(0f, out[1], 1e-6);
+        // 0/0和NaN输入都得到NaN
+        assertTrue(Float.isNaN(out[2]));
+        assertTrue(Float.isNaN(out[3]));
+    }
+
+    @Test
+    void testEvaluate_PrecedenceUnaryAndConstants() {
+        BandMathExpression expression = BandMathExpression.compile("-B1 + 2 * b2 - 0.5 * (B1 - B2) / 2", null);
+        float[] b1 = {4};
+        float[] b2 = {1};
+        float[] out = new float[1];
+        expression.evaluate(new float[][]{b1, b2}, 1, out);
+
+        // -4 + 2 - 0.5*3/2
+        assertEquals(-2.75f, out[0], 1e-6);
+    }
+
+    @Test
+    void testCompile_InvalidExpression() {
+        assertThrows(IllegalArgumentException.class, () -> BandMathExpression.compile("(NIR-RED", ALIASES));
+        assertThrows(IllegalArgumentException.class, () -> BandMathExpression.compile("NIR-SWIR", ALIASES));
+        assertThrows(IllegalArgumentException.class, () -> BandMathExpression.compile("NIR RED", ALIASES));
+        assertThrows(IllegalArgumentException.class, () -> BandMathExpression.compile("B0+1", ALIASES));
+        assertThrows(IllegalArgumentException.class, () -> BandMathExpression.compile(" ", ALIASES));
+    }
+}
@@ -0,0 +1,48 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 颜色渐变查找表单元测试
+ */
+class ColorRampTest {
+
+    @Test
+    void testParse_InterpolatesBetweenStops() {
+        ColorRamp ramp = ColorRamp.parse("1:#ffffff, -1:#000000", 256);
+
+        assertEquals(-1f, ramp.getMin());
+        assertEquals(1f, ramp.getMax());
+        assertEquals(256, ramp.getSize());
+        assertEquals(0xFF000000, ramp.colorOf(-1f));
+        assertEquals(0xFFFFFFFF, ramp.colorOf(1f));
+        // 中间值约为50%灰
+        int mid = ramp.colorOf(0f) & 0xFF;
+        assertTrue(mid >= 126 && mid <= 129, "mid=" + mid);
+    }
+
+    @Test
+    void testApply_NoDataAndClamp() {
+        ColorRamp ramp = ColorRamp.parse("0:#ff000080,1:#0000ff", 1024);
+        float[] values = {Float.NaN, -9999f, -5f, 0f, 1f, 5f};
+        int[] argb = new int[values.length];
+
+        ramp.apply(values, values.length, -9999f, argb);
+
+        assertEquals(0, argb[0]);
+        assertEquals(0, argb[1]);
+        // 超出范围取两端颜色，控制点可带透明度
+        assertEquals(0x80FF0000, argb[2]);
+        assertEquals(0x80FF0000, argb[3]);
+        assertEquals(0xFF0000FF, argb[4]);
+        assertEquals(0xFF0000FF, argb[5]);
+    }
+
+    @Test
+    void testParse_InvalidSpec() {
+        assertThrows(IllegalArgumentException.class, () -> ColorRamp.parse("0:#ff0000", 256));
+        assertThrows(IllegalArgumentException.class, () -> ColorRamp.parse("0:red,1:blue", 256));
+    }
+}
@@ -0,0 +1,54 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Count-Min计数草图单元测试
+ */
+class CountMinSketchTest {
+
+    @Test
+    void testEstimate_NeverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(4, 1000);
+        assertEquals(1024, sketch.getWidth());
+
+        for (long key = 0; key < 5000; key++) {
+            for (int i = 0; i <= key % 5; i++) {
+                sketch.add(key);
+            }
+        }
+        int exact = 0;
+        for (long key = 0; key < 5000; key++) {
+            int estimate = sketch.estimate(key);
+            assertTrue(estimate >= key % 5 + 1, "键" + key);
+            if (estimate == key % 5 + 1) {
+                exact++;
+            }
+        }
+        // 热点键远高于平均计数，冲突带来的高估不影响排序
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(-1L);
+        }
+        assertTrue(sketch.estimate(-1L) >= 1000);
+        assertTrue(exact > 0);
+    }
+
+    @Test
+    void testHalveAndRoundTrip() {
+        CountMinSketch sketch = new CountMinSketch(3, 256);
+        for (int i = 0; i < 10; i++) {
+            sketch.add(42L);
+        }
+        sketch.halve();
+        assertEquals(5, sketch.estimate(42L));
+
+        CountMinSketch restored = new CountMinSketch(3, 256);
+        assertTrue(restored.load(sketch.toBytes()));
+        assertEquals(5, restored.estimate(42L));
+
+        // 尺寸不一致时不恢复
+        assertFalse(new CountMinSketch(4, 256).load(sketch.toBytes()));
+    }
+}
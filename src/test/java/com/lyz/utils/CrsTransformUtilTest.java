@@ -0,0 +1,51 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 坐标系转换工具单元测试
+ */
+class CrsTransformUtilTest {
+
+    @Test
+    void testWebMercator_KnownValues() {
+        double[] xy = CrsTransformUtil.lonLatToMercator(180, 0);
+        assertEquals(20037508.342789244, xy[0], 1e-6);
+        assertEquals(0, xy[1], 1e-6);
+
+        double[] lonLat = CrsTransformUtil.toLonLat(3857, 12723898.0, 4601878.0);
+        assertEquals(114.3, lonLat[0], 1e-3);
+        assertEquals(38.15, lonLat[1], 1e-2);
+    }
+
+    @Test
+    void testUtm_CentralMeridianAndRoundTrip() {
+        // UTM 50N中央经线117E
+        double[] xy = CrsTransformUtil.fromLonLat(32650, 117, 0);
+        assertEquals(500000, xy[0], 1e-6);
+        assertEquals(0, xy[1], 1e-6);
+
+        double[] forward = CrsTransformUtil.fromLonLat(32650, 115.5, 38.2);
+        double[] back = CrsTransformUtil.toLonLat(32650, forward[0], forward[1]);
+        assertEquals(115.5, back[0], 1e-7);
+        assertEquals(38.2, back[1], 1e-7);
+    }
+
+    @Test
+    void testGaussKruger_ZonePrefixedRoundTrip() {
+        // CGCS2000 3度带第38带（中央经线114E），东坐标含带号
+        double[] xy = CrsTransformUtil.fromLonLat(4526, 114.35, 38.15);
+        assertEquals(38, (int) (xy[0] / 1000000));
+        double[] back = CrsTransformUtil.toLonLat(4526, xy[0], xy[1]);
+        assertEquals(114.35, back[0], 1e-7);
+        assertEquals(38.15, back[1], 1e-7);
+    }
+
+    @Test
+    void testToLonLatBounds_Unsupported() {
+        assertFalse(CrsTransformUtil.isSupported(2000));
+        assertThrows(IllegalArgumentException.class, () -> CrsTransformUtil.toLonLatBounds(2000, 0, 0, 1, 1));
+    }
+}
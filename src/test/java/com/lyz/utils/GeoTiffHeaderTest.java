@@ -0,0 +1,160 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GeoTIFF文件头解析单元测试
+ */
+class GeoTiffHeaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRead_ClassicTiffWithGeoKeys() throws Exception {
+        // 1000x500单波段FLOAT32，WGS84，左上角(114.3, 38.2)，像素0.0001度
+        Path path = tempDir.resolve("ndvi.tif");
+        Files.write(path, new TiffBuilder(ByteOrder.LITTLE_ENDIAN, false)
+                .shortTag(256, 1000).shortTag(257, 500).shortTag(258, 32).shortTag(277, 1).shortTag(339, 3)
+                .doubleTag(33550, 0.0001, 0.0001, 0)
+                .doubleTag(33922, 0, 0, 0, 114.3, 38.2, 0)
+                .shortTag(34735, 1, 1, 0, 3, 1024, 0, 1, 2, 1025, 0, 1, 1, 2048, 0, 1, 4326)
+                .asciiTag(42113, "-9999")
+                .build());
+
+        GeoTiffHeader header = GeoTiffHeader.read(path);
+        assertEquals(1000, header.getWidth());
+        assertEquals(500, header.getHeight());
+        assertEquals(1, header.getSamplesPerPixel());
+        assertEquals("FLOAT32", header.getDataTypeName());
+        assertTrue(header.isGeoreferenced());
+        assertEquals(4326, header.getEpsgCode());
+        assertEquals(114.3, header.getOriginX(), 1e-9);
+        assertEquals(38.2, header.getOriginY(), 1e-9);
+        assertEquals(0.0001, header.getPixelSizeY(), 1e-12);
+        assertEquals(-9999.0, header.getNoData());
+    }
+
+    @Test
+    void testRead_BigTiffProjected() throws Exception {
+        // BigTIFF大端序，UTM 50N，像素中心坐标（PixelIsPoint）
+        Path path = tempDir.resolve("utm.tif");
+        Files.write(path, new TiffBuilder(ByteOrder.BIG_ENDIAN, true)
+                .shortTag(256, 300).shortTag(257, 200).shortTag(258, 16, 16, 16).shortTag(277, 3)
+                .doubleTag(33550, 10, 10, 0)
+                .doubleTag(33922, 0, 0, 0, 500005, 4300005, 0)
+                .shortTag(34735, 1, 1, 0, 3, 1024, 0, 1, 1, 1025, 0, 1, 2, 3072, 0, 1, 32650)
+                .build());
+
+        GeoTiffHeader header = GeoTiffHeader.read(path);
+        assertTrue(header.isBigTiff());
+        assertEquals(300, header.getWidth());
+        assertEquals(3, header.getSamplesPerPixel());
+        assertEquals("UINT16", header.getDataTypeName());
+        assertEquals(32650, header.getEpsgCode());
+        assertEquals(500000, header.getOriginX(), 1e-6);
+        assertEquals(4300010, header.getOriginY(), 1e-6);
+        assertNull(header.getNoData());
+    }
+
+    @Test
+    void testRead_NotTiff() throws Exception {
+        Path path = tempDir.resolve("bad.tif");
+        Files.write(path, new byte[]{'P', 'N', 'G', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(java.io.IOException.class, () -> GeoTiffHeader.read(path));
+    }
+
+    /**
+     * 构造只有文件头和一个IFD的TIFF文件，标签值一律存放在IFD之后
+     */
+    private static class TiffBuilder {
+        private final ByteOrder order;
+        private final boolean bigTiff;
+        private final List<Object[]> tags = new ArrayList<>();
+
+        TiffBuilder(ByteOrder order, boolean bigTiff) {
+            this.order = order;
+            this.bigTiff = bigTiff;
+        }
+
+        TiffBuilder shortTag(int tag, int... values) {
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 2).order(order);
+            for (int v : values) {
+                buffer.putShort((short) v);
+            }
+            tags.add(new Object[]{tag, 3, values.length, buffer.array()});
+            return this;
+        }
+
+        TiffBuilder doubleTag(int tag, double... values) {
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 8).order(order);
+            for (double v : values) {
+                buffer.putDouble(v);
+            }
+            tags.add(new Object[]{tag, 12, values.length, buffer.array()});
+            return this;
+        }
+
+        TiffBuilder asciiTag(int tag, String value) {
+            byte[] bytes = (value + "\0").getBytes();
+            tags.add(new Object[]{tag, 2, bytes.length, bytes});
+            return this;
+        }
+
+        byte[] build() {
+            int headerSize = bigTiff ? 16 : 8;
+            int entrySize = bigTiff ? 20 : 12;
+            int valueField = bigTiff ? 8 : 4;
+            int ifdSize = (bigTiff ? 8 : 2) + tags.size() * entrySize + valueField;
+            ByteBuffer out = ByteBuffer.allocate(4096).order(order);
+            out.putShort(order == ByteOrder.LITTLE_ENDIAN ? (short) 0x4949 : (short) 0x4D4D);
+            if (bigTiff) {
+                out.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(headerSize);
+                out.putLong(tags.size());
+            } else {
+                out.putShort((short) 42).putInt(headerSize);
+                out.putShort((short) tags.size());
+            }
+            ByteArrayOutputStream values = new ByteArrayOutputStream();
+            long valueOffset = headerSize + ifdSize;
+            tags.sort((a, b) -> Integer.compare((int) a[0], (int) b[0]));
+            for (Object[] tag : tags) {
+                byte[] data = (byte[]) tag[3];
+                out.putShort((short) (int) tag[0]).putShort((short) (int) tag[1]);
+                if (bigTiff) {
+                    out.putLong((int) tag[2]);
+                } else {
+                    out.putInt((int) tag[2]);
+                }
+                if (data.length <= valueField) {
+                    byte[] field = new byte[valueField];
+                    System.arraycopy(data, 0, field, 0, data.length);
+                    out.put(field);
+                } else {
+                    if (bigTiff) {
+                        out.putLong(valueOffset + values.size());
+                    } else {
+                        out.putInt((int) (valueOffset + values.size()));
+                    }
+                    values.writeBytes(data);
+                }
+            }
+            out.put(new byte[valueField]);
+            out.put(values.toByteArray());
+            byte[] result = new byte[out.position()];
+            out.flip().get(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MVT编码器单元测试（按vector_tile.proto解码验证）
+ */
+class MvtEncoderTest {
+
+    @Test
+    void testEncode_PointQuantisedWithDedupedProperties() {
+        // z1瓦片(1,0)覆盖东经0~180、北纬0~85
+        MvtEncoder encoder = new MvtEncoder(1, 1, 0, 4096, 64);
+        MvtEncoder.Layer layer = encoder.layer("plants");
+        assertTrue(layer.addPoint(7, 90.0, 0.0, props("active", 0.5f)));
+        assertTrue(layer.addPoint(8, 135.0, 0.0, props("active", null)));
+        // 西半球的点被裁剪
+        assertFalse(layer.addPoint(9, -90.0, 10.0, props("inactive", 0.1f)));
+        encoder.layer("empty");
+
+        Message tile = Message.parse(encoder.encode());
+        assertEquals(1, tile.all(3).size());
+        Message decoded = Message.parse(tile.bytes(3));
+        assertEquals(2L, decoded.varint(15));
+        assertEquals("plants", decoded.string(1));
+        assertEquals(4096L, decoded.varint(5));
+        assertEquals(List.of("status", "ndvi"), decoded.strings(3));
+        // 相同的status值只写一次：active、0.5
+        assertEquals(2, decoded.all(4).size());
+        assertEquals("active", Message.parse((byte[]) decoded.all(4).get(0)).string(1));
+        assertEquals(0.5, Message.parse((byte[]) decoded.all(4).get(1)).float64(3), 1e-9);
+
+        List<Object> features = decoded.all(2);
+        assertEquals(2, features.size());
+        Message first = Message.parse((byte[]) features.get(0));
+        assertEquals(7L, first.varint(1));
+        assertEquals(1L, first.varint(3));
+        assertArrayEquals(new long[]{0, 0, 1, 1}, packed(first.bytes(2)));
+        // 东经90°、赤道：瓦片中部偏左下 (2048, 4096)
+        long[] geometry = packed(first.bytes(4));
+        assertEquals(9, geometry[0]);
+        assertEquals(2048, unZigZag(geometry[1]));
+        assertEquals(4096, unZigZag(geometry[2]));
+        // 第二个要素的ndvi为null，只有status
+        assertArrayEquals(new long[]{0, 0}, packed(Message.parse((byte[]) features.get(1)).bytes(2)));
+    }
+
+    @Test
+    void testBounds_IncludeBuffer() {
+        double[] bounds = new MvtEncoder(0, 0, 0, 4096, 0).getBounds();
+        assertEquals(-180.0, bounds[0], 1e-9);
+        assertEquals(180.0, bounds[2], 1e-9);
+        assertEquals(85.0511, bounds[3], 1e-4);
+
+        double[] buffered = new MvtEncoder(2, 1, 1, 4096, 64).getBounds();
+        assertTrue(buffered[0] < -90.0);
+        assertTrue(buffered[2] > 0.0);
+    }
+
+    private static Map<String, Object> props(String status, Float ndvi) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("status", status);
+        properties.put("ndvi", ndvi);
+        return properties;
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long[] packed(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<Long> values = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            values.add(Message.readVarint(buffer));
+        }
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * 最简protobuf解码：字段号 -> 值列表（varint为Long，64位为Double，长度前缀为byte[]）
+     */
+    private record Message(Map<Integer, List<Object>> fields) {
+        static Message parse(byte[] data) {
+            Map<Integer, List<Object>> fields = new LinkedHashMap<>();
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                long tag = readVarint(buffer);
+                Object value = switch ((int) (tag & 7)) {
+                    case 0 -> readVarint(buffer);
+                    case 1 -> buffer.getDouble();
+                    case 2 -> {
+                        byte[] bytes = new byte[(int) readVarint(buffer)];
+                        buffer.get(bytes);
+                        yield bytes;
+                    }
+                    default -> throw new IllegalStateException("不支持的线类型: " + tag);
+                };
+                fields.computeIfAbsent((int) (tag >>> 3), k -> new ArrayList<>()).add(value);
+            }
+            return new Message(fields);
+        }
+
+        static long readVarint(ByteBuffer buffer) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        List<Object> all(int field) {
+            return fields.getOrDefault(field, List.of());
+        }
+
+        long varint(int field) {
+            return (Long) all(field).get(0);
+        }
+
+        double float64(int field) {
+            return (Double) all(field).get(0);
+        }
+
+        byte[] bytes(int field) {
+            return (byte[]) all(field).get(0);
+        }
+
+        String string(int field) {
+            return new String(bytes(field), StandardCharsets.UTF_8);
+        }
+
+        List<String> strings(int field) {
+            return all(field).stream().map(v -> new String((byte[]) v, StandardCharsets.UTF_8)).toList();
+        }
+    }
+}
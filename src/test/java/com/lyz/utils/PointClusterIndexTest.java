@@ -0,0 +1,91 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分级点聚合索引单元测试
+ */
+class PointClusterIndexTest {
+
+    @Test
+    void testGetClusters_CountsPreservedAtEveryZoom() {
+        // 2000个随机点：每一级全球范围内的聚合点数之和都等于总点数，最细级别返回全部单个点
+        Random random = new Random(7);
+        int n = 2000;
+        long[] ids = new long[n];
+        double[] lons = new double[n];
+        double[] lats = new double[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i + 1;
+            lons[i] = 100 + random.nextDouble() * 20;
+            lats[i] = 20 + random.nextDouble() * 20;
+        }
+        PointClusterIndex index = new PointClusterIndex(ids, lons, lats, n, 0, 16, 60, 256, 2);
+
+        int previous = 0;
+        for (int z = 0; z <= 17; z++) {
+            List<PointClusterIndex.Cluster> clusters = index.getClusters(-180, -85, 180, 85, z);
+            assertEquals(n, clusters.stream().mapToInt(PointClusterIndex.Cluster::pointCount).sum());
+            assertTrue(clusters.size() >= previous);
+            previous = clusters.size();
+            for (PointClusterIndex.Cluster cluster : clusters) {
+                assertEquals(cluster.pointCount() > 1, cluster.cluster());
+                if (cluster.cluster()) {
+                    assertTrue(cluster.id() < 0);
+                    assertTrue(cluster.expansionZoom() > z);
+                }
+            }
+        }
+        assertTrue(index.getClusters(-180, -85, 180, 85, 0).size() < 10);
+        assertEquals(n, index.getClusters(-180, -85, 180, 85, 17).size());
+
+        // 范围查询：只返回范围内的点
+        List<PointClusterIndex.Cluster> part = index.getClusters(100, 20, 105, 25, 17);
+        long expected = 0;
+        for (int i = 0; i < n; i++) {
+            if (lons[i] <= 105 && lats[i] <= 25) {
+                expected++;
+            }
+        }
+        assertEquals(expected, part.size());
+        assertTrue(part.stream().allMatch(c -> c.longitude() <= 105 + 1e-9 && c.latitude() <= 25 + 1e-9));
+    }
+
+    @Test
+    void testInsert_MergedIntoNearbyClusterUntilRebuild() {
+        long[] ids = {1, 2, 3};
+        double[] lons = {116.40, 116.41, 121.47};
+        double[] lats = {39.90, 39.91, 31.23};
+        PointClusterIndex index = new PointClusterIndex(ids, lons, lats, 3, 0, 16, 60, 256, 2);
+
+        // z5：北京两个点聚合，上海单独
+        List<PointClusterIndex.Cluster> before = index.getClusters(-180, -85, 180, 85, 5);
+        assertEquals(2, before.size());
+
+        // 北京附近新增一个点：合并进北京的聚合；远处新增的点单独返回
+        index.insert(4, 116.42, 39.92);
+        index.insert(5, -74.0, 40.7);
+        assertEquals(2, index.getPendingCount());
+        // 已在索引中或已新增过的ID忽略
+        assertFalse(index.insert(2, 116.41, 39.91));
+        assertFalse(index.insert(4, 116.42, 39.92));
+        assertEquals(2, index.getPendingCount());
+        assertEquals(5, index.size());
+        List<PointClusterIndex.Cluster> after = index.getClusters(-180, -85, 180, 85, 5);
+        assertEquals(3, after.size());
+        assertTrue(after.stream().anyMatch(c -> c.cluster() && c.pointCount() == 3));
+        assertTrue(after.stream().anyMatch(c -> !c.cluster() && c.id() == 5));
+
+        // 最细级别：全部为单个点
+        assertEquals(5, index.getClusters(-180, -85, 180, 85, 17).size());
+
+        // 跨越180度经线的范围
+        assertEquals(0, index.getClusters(170, -85, -170, 85, 17).size());
+        assertEquals(1, index.getClusters(170, -85, -70, 85, 17).size());
+    }
+}
@@ -0,0 +1,86 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 单波段统计累加器单元测试
+ */
+class RasterStatsAccumulatorTest {
+
+    @Test
+    void testMerge_MatchesSequentialResult() {
+        Random random = new Random(42);
+        float[] values = new float[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) (random.nextGaussian() * 0.3 + 0.2);
+        }
+        values[17] = Float.NaN;
+        values[18] = -9999f;
+
+        RasterStatsAccumulator sequential = new RasterStatsAccumulator(64);
+        sequential.add(values, values.length, -9999f);
+
+        // 分成三段分别累加后合并
+        RasterStatsAccumulator merged = new RasterStatsAccumulator(64);
+        int[] cuts = {0, 1234, 7000, values.length};
+        for (int i = 0; i < 3; i++) {
+            RasterStatsAccumulator part = new RasterStatsAccumulator(64);
+            float[] slice = Arrays.copyOfRange(values, cuts[i], cuts[i + 1]);
+            part.add(slice, slice.length, -9999f);
+            merged.merge(part);
+        }
+
+        double sum = 0;
+        for (float v : values) {
+            if (!Float.isNaN(v) && v != -9999f) {
+                sum += v;
+            }
+        }
+        double mean = sum / 9998;
+        double ss = 0;
+        for (float v : values) {
+            if (!Float.isNaN(v) && v != -9999f) {
+                ss += (v - mean) * (v - mean);
+            }
+        }
+
+        for (RasterStatsAccumulator acc : new RasterStatsAccumulator[]{sequential, merged}) {
+            assertEquals(9998, acc.getCount());
+            assertEquals(2, acc.getNoDataCount());
+            assertEquals(mean, acc.getMean(), 1e-9);
+            assertEquals(Math.sqrt(ss / 9998), acc.getStdDev(), 1e-9);
+            assertEquals(9998, Arrays.stream(acc.getHistogram()).sum());
+        }
+        assertEquals(sequential.getMin(), merged.getMin());
+        assertEquals(sequential.getMax(), merged.getMax());
+    }
+
+    @Test
+    void testAdd_AdaptiveRangeGrowsWithoutLosingCounts() {
+        RasterStatsAccumulator acc = new RasterStatsAccumulator(4);
+        acc.add(new float[]{0f, 1f, 2f, 3f, 4f}, 5, Float.NaN);
+        // 范围[0,4]，再加入超出上下限的值
+        acc.add(new float[]{10f, -5f}, 2, Float.NaN);
+
+        assertTrue(acc.getHistogramMin() <= -5);
+        assertTrue(acc.getHistogramMax() >= 10);
+        assertEquals(7, Arrays.stream(acc.getHistogram()).sum());
+        assertEquals(-5.0, acc.getMin());
+        assertEquals(10.0, acc.getMax());
+    }
+
+    @Test
+    void testAdd_FixedRangeBins() {
+        RasterStatsAccumulator acc = new RasterStatsAccumulator(4, 0, 256);
+        acc.add(new float[]{0, 63, 64, 200, 255}, 5, Float.NaN);
+
+        assertArrayEquals(new long[]{2, 1, 0, 2}, acc.getHistogram());
+        assertEquals(0.0, acc.getHistogramMin());
+        assertEquals(256.0, acc.getHistogramMax());
+    }
+}
@@ -0,0 +1,71 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 带引用计数的LRU缓存单元测试
+ */
+class RefCountingLruCacheTest {
+
+    private static final class Resource implements AutoCloseable {
+        private final AtomicInteger closeCount = new AtomicInteger();
+
+        @Override
+        public void close() {
+            closeCount.incrementAndGet();
+        }
+    }
+
+    @Test
+    void testEviction_ClosesAfterLastRelease() throws Exception {
+        RefCountingLruCache<Integer, Resource> cache = new RefCountingLruCache<>("test", 2);
+        RefCountingLruCache<Integer, Resource>.Lease inUse = cache.acquire(1, key -> new Resource());
+        Resource first = inUse.get();
+        try (RefCountingLruCache<Integer, Resource>.Lease lease = cache.acquire(2, key -> new Resource())) {
+            assertNotNull(lease.get());
+        }
+        // 第3个资源淘汰最久未使用的1，但1仍在使用，不能关闭
+        Resource third;
+        try (RefCountingLruCache<Integer, Resource>.Lease lease = cache.acquire(3, key -> new Resource())) {
+            third = lease.get();
+        }
+        assertEquals(2, cache.size());
+        assertEquals(0, first.closeCount.get());
+
+        // 归还后关闭，重复归还不会重复关闭
+        inUse.close();
+        inUse.close();
+        assertEquals(1, first.closeCount.get());
+
+        // 未使用的资源失效时立即关闭
+        cache.invalidate(3);
+        assertEquals(1, third.closeCount.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testInvalidate_InUseClosedOnRelease() throws Exception {
+        RefCountingLruCache<Integer, Resource> cache = new RefCountingLruCache<>("test", 4);
+        RefCountingLruCache<Integer, Resource>.Lease a = cache.acquire(1, key -> new Resource());
+        RefCountingLruCache<Integer, Resource>.Lease b = cache.acquire(1, key -> fail("已缓存的资源不应重新创建"));
+        Resource resource = a.get();
+        assertSame(resource, b.get());
+
+        cache.invalidate(1);
+        // 失效后重新借用得到新资源
+        try (RefCountingLruCache<Integer, Resource>.Lease c = cache.acquire(1, key -> new Resource())) {
+            assertNotSame(resource, c.get());
+        }
+        a.close();
+        assertEquals(0, resource.closeCount.get());
+        b.close();
+        assertEquals(1, resource.closeCount.get());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
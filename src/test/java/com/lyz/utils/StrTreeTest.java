@@ -0,0 +1,52 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 静态R树单元测试
+ */
+class StrTreeTest {
+
+    @Test
+    void testQuery_MatchesLinearScan() {
+        // 1000个随机矩形，与逐个比较的结果一致
+        Random random = new Random(42);
+        List<double[]> boxes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double x = random.nextDouble() * 360 - 180;
+            double y = random.nextDouble() * 180 - 90;
+            boxes.add(new double[]{x, y, x + random.nextDouble() * 5, y + random.nextDouble() * 5});
+        }
+        StrTree<double[]> tree = StrTree.build(boxes, b -> b);
+        assertEquals(1000, tree.size());
+
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 360 - 180;
+            double y = random.nextDouble() * 180 - 90;
+            List<double[]> expected = boxes.stream()
+                    .filter(b -> b[0] <= x && x <= b[2] && b[1] <= y && y <= b[3])
+                    .toList();
+            List<double[]> actual = tree.query(x, y);
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+        }
+    }
+
+    @Test
+    void testQuery_EmptyAndRectangle() {
+        StrTree<String> empty = StrTree.build(List.of(), s -> new double[4]);
+        assertTrue(empty.query(0, 0).isEmpty());
+
+        StrTree<String> tree = StrTree.build(List.of("a", "b"),
+                s -> s.equals("a") ? new double[]{0, 0, 1, 1} : new double[]{10, 10, 11, 11});
+        assertEquals(List.of("a"), tree.query(0.5, 0.5));
+        assertEquals(2, tree.query(-1, -1, 20, 20).size());
+        assertTrue(tree.query(5, 5).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TIF单像素读取器单元测试
+ */
+class TiffPixelReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadPixel_UncompressedStripsPositionedRead() throws Exception {
+        // 未压缩的RGB条带影像：定位读取，结果与整幅解码一致
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 300; x++) {
+                image.setRGB(x, y, ((x & 0xFF) << 16) | ((y & 0xFF) << 8) | ((x + y) & 0xFF));
+            }
+        }
+        File tif = tempDir.resolve("rgb.tif").toFile();
+        assertTrue(ImageIO.write(image, "tiff", tif));
+
+        try (TiffPixelReader reader = TiffPixelReader.open(tif.toPath())) {
+            assertTrue(reader.isDirect());
+            assertArrayEquals(new double[]{123, 77, 200}, reader.readPixel(123, 77));
+            assertArrayEquals(new double[]{299 & 0xFF, 199, (299 + 199) & 0xFF}, reader.readPixel(299, 199));
+            assertThrows(IllegalArgumentException.class, () -> reader.readPixel(300, 0));
+        }
+    }
+
+    @Test
+    void testReadPixel_UncompressedFloat() throws Exception {
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_FLOAT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(64, 32);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 64; x++) {
+                raster.setSample(x, y, 0, x * 0.5f - y);
+            }
+        }
+        File tif = tempDir.resolve("float.tif").toFile();
+        assertTrue(ImageIO.write(new BufferedImage(colorModel, raster, false, null), "TIFF", tif));
+
+        try (TiffPixelReader reader = TiffPixelReader.open(tif.toPath())) {
+            assertTrue(reader.isDirect());
+            assertEquals(40 * 0.5 - 9, reader.readPixel(40, 9)[0], 1e-6);
+        }
+    }
+
+    @Test
+    void testReadPixel_CompressedTilesDecodeContainingTile() throws Exception {
+        // Deflate压缩的分块影像：只解码像素所在分块
+        Path tif = tempDir.resolve("tiled.tif");
+        try (GeoTiffWriter writer = new GeoTiffWriter(tif, 100, 70, 64)) {
+            for (int row = 0; row < writer.getTilesDown(); row++) {
+                for (int col = 0; col < writer.getTilesAcross(); col++) {
+                    float[] samples = new float[64 * 64];
+                    for (int i = 0; i < samples.length; i++) {
+                        samples[i] = (row * 64 + i / 64) * 1000 + col * 64 + i % 64;
+                    }
+                    writer.writeTile(col, row, samples);
+                }
+            }
+            writer.commit();
+        }
+
+        try (TiffPixelReader reader = TiffPixelReader.open(tif)) {
+            assertFalse(reader.isDirect());
+            assertEquals(65 * 1000 + 99, reader.readPixel(99, 65)[0], 1e-3);
+            assertEquals(3 * 1000 + 5, reader.readPixel(5, 3)[0], 1e-3);
+        }
+    }
+}
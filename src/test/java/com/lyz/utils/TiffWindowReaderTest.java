@@ -0,0 +1,102 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TIF窗口读取器单元测试
+ */
+class TiffWindowReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadWindow_RegionAndSubsampling() throws Exception {
+        File tif = writeGradientTif(600, 400);
+
+        try (TiffWindowReader reader = TiffWindowReader.open(tif)) {
+            assertEquals(600, reader.getWidth());
+            assertEquals(400, reader.getHeight());
+            assertEquals(3, reader.getNumBands());
+
+            // 原始分辨率窗口
+            BufferedImage window = reader.readWindow(100, 50, 20, 10, 1);
+            assertEquals(20, window.getWidth());
+            assertEquals(10, window.getHeight());
+            assertEquals(pixel(100, 50), window.getRGB(0, 0) & 0xFFFFFF);
+
+            // 抽样窗口：每4个像素取1个
+            BufferedImage sampled = reader.readWindow(0, 0, 400, 400, 4);
+            assertEquals(100, sampled.getWidth());
+            assertEquals(100, sampled.getHeight());
+            assertEquals(pixel(8, 12), sampled.getRGB(2, 3) & 0xFFFFFF);
+        }
+    }
+
+    @Test
+    void testReadWindow_ClippedAtEdge() throws Exception {
+        File tif = writeGradientTif(300, 300);
+
+        try (TiffWindowReader reader = TiffWindowReader.open(tif)) {
+            BufferedImage window = reader.readWindow(256, 256, 256, 256, 1);
+            assertEquals(44, window.getWidth());
+            assertEquals(44, window.getHeight());
+            assertThrows(IllegalArgumentException.class, () -> reader.readWindow(400, 0, 10, 10, 1));
+        }
+    }
+
+    @Test
+    void testReadArgbWindow_FloatSamplesThroughColorRamp() throws Exception {
+        // 单波段FLOAT32影像：左半-1，右半1，左上角为无数据值
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_FLOAT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(64, 32);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 64; x++) {
+                raster.setSample(x, y, 0, x < 32 ? -1f : 1f);
+            }
+        }
+        raster.setSample(0, 0, 0, -9999f);
+        File tif = tempDir.resolve("float.tif").toFile();
+        ImageIO.write(new BufferedImage(colorModel, raster, false, null), "TIFF", tif);
+
+        ColorRamp ramp = ColorRamp.parse("-1:#ff0000,1:#00ff00", 256);
+        try (TiffWindowReader reader = TiffWindowReader.open(tif)) {
+            TiffWindowReader.ArgbWindow window = reader.readArgbWindow(0, 0, 64, 32, 1, ramp, -9999f);
+            assertEquals(64, window.width());
+            assertEquals(32, window.height());
+            assertEquals(0, window.pixels()[0]);
+            assertEquals(0xFFFF0000, window.pixels()[1]);
+            assertEquals(0xFF00FF00, window.pixels()[63]);
+        }
+    }
+
+    private File writeGradientTif(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pixel(x, y));
+            }
+        }
+        File file = tempDir.resolve("test.tif").toFile();
+        assertTrue(ImageIO.write(image, "tiff", file));
+        return file;
+    }
+
+    private static int pixel(int x, int y) {
+        return ((x & 0xFF) << 16) | ((y & 0xFF) << 8) | ((x + y) & 0xFF);
+    }
+}
@@ -0,0 +1,148 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 打包瓦片文件读写单元测试
+ */
+class TileArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteAndRead_RoundTrip() throws Exception {
+        Path path = tempDir.resolve("1.tiles");
+        try (TileArchiveWriter writer = new TileArchiveWriter(path)) {
+            // 按金字塔生成顺序（自底向上）写入，读取时应能按坐标查到
+            writer.write(1, 1, 1, new byte[]{11});
+            writer.write(1, 0, 1, new byte[]{10, 10});
+            writer.write(0, 0, 0, new byte[]{1, 2, 3});
+            writer.write(1, 0, 1, new byte[]{12});
+            writer.commit();
+        }
+        assertEquals(0, countTempFiles());
+
+        try (TileArchiveReader reader = TileArchiveReader.open(path)) {
+            assertEquals(3, reader.getEntryCount());
+            assertArrayEquals(new byte[]{1, 2, 3}, toBytes(reader.getData(reader.find(0, 0, 0))));
+            // 重复写入的瓦片以最后一次为准
+            assertArrayEquals(new byte[]{12}, toBytes(reader.getData(reader.find(1, 0, 1))));
+            assertEquals(Sha256Util.getSha256String(new byte[]{11}), reader.getContentHash(reader.find(1, 1, 1)));
+            assertEquals(-1, reader.find(1, 1, 0));
+            assertEquals(-1, reader.find(2, 9, 9));
+        }
+    }
+
+    @Test
+    void testWrite_SameContentStoredOnce() throws Exception {
+        Path path = tempDir.resolve("3.tiles");
+        byte[] blank = new byte[1000];
+        try (TileArchiveWriter writer = new TileArchiveWriter(path)) {
+            for (int x = 0; x < 4; x++) {
+                writer.write(2, x, 0, blank);
+            }
+            writer.write(0, 0, 0, new byte[]{7});
+            assertEquals(2, writer.getUniqueBlobCount());
+            writer.commit();
+        }
+        // 数据区只有一份空白瓦片
+        assertEquals(TileArchiveWriter.HEADER_SIZE + 1000 + 1 + 5L * TileArchiveWriter.ENTRY_SIZE, Files.size(path));
+
+        try (TileArchiveReader reader = TileArchiveReader.open(path)) {
+            assertArrayEquals(blank, toBytes(reader.getData(reader.find(2, 3, 0))));
+            assertArrayEquals(new byte[]{7}, toBytes(reader.getData(reader.find(0, 0, 0))));
+        }
+    }
+
+    @Test
+    void testClose_WithoutCommitDiscardsFile() throws Exception {
+        Path path = tempDir.resolve("2.tiles");
+        try (TileArchiveWriter writer = new TileArchiveWriter(path)) {
+            writer.write(0, 0, 0, new byte[]{1});
+        }
+        assertFalse(Files.exists(path));
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    void testWrite_ConcurrentWritersSameTarget() throws Exception {
+        Path path = tempDir.resolve("6.tiles");
+        // 同一文件同时重新处理：两个写入器使用各自的临时文件，先提交的不会被后打开的截断
+        try (TileArchiveWriter first = new TileArchiveWriter(path);
+             TileArchiveWriter second = new TileArchiveWriter(path)) {
+            first.write(0, 0, 0, new byte[]{1, 1});
+            second.write(0, 0, 0, new byte[]{2});
+            first.commit();
+        }
+        try (TileArchiveReader reader = TileArchiveReader.open(path)) {
+            assertArrayEquals(new byte[]{1, 1}, toBytes(reader.getData(reader.find(0, 0, 0))));
+        }
+        assertEquals(0, countTempFiles());
+    }
+
+    @Test
+    void testAppendLog_WriteTimePersisted() throws Exception {
+        Path path = tempDir.resolve("4.tiles.log");
+        Instant writeTime;
+        try (TileAppendLog log = TileAppendLog.open(path)) {
+            log.append(3, 1, 2, new byte[]{5, 6});
+            writeTime = log.getWriteTime(3, 1, 2);
+            assertNotNull(writeTime);
+            assertNull(log.getWriteTime(3, 2, 2));
+        }
+        Thread.sleep(5);
+
+        // 重新打开后写入时间不变（不随读取时间变化）
+        try (TileAppendLog log = TileAppendLog.open(path)) {
+            assertEquals(writeTime, log.getWriteTime(3, 1, 2));
+            assertArrayEquals(new byte[]{5, 6}, log.read(3, 1, 2));
+        }
+    }
+
+    @Test
+    void testAppendLog_ConvertsLegacyFormat() throws Exception {
+        // 旧格式：键 | 长度 | SHA-256 | 内容，没有文件头和写入时间
+        Path path = tempDir.resolve("5.tiles.log");
+        byte[] tileData = {9, 8, 7};
+        ByteBuffer legacy = ByteBuffer.allocate(8 + 4 + 32 + tileData.length);
+        legacy.putLong(TileArchiveWriter.key(2, 1, 1)).putInt(tileData.length)
+                .put(HexFormat.of().parseHex(Sha256Util.getSha256String(tileData))).put(tileData);
+        Files.write(path, legacy.array());
+        Instant modified = Instant.parse("2024-05-01T10:00:00Z");
+        Files.setLastModifiedTime(path, FileTime.from(modified));
+
+        try (TileAppendLog log = TileAppendLog.open(path)) {
+            assertArrayEquals(tileData, log.read(2, 1, 1));
+            assertEquals(modified, log.getWriteTime(2, 1, 1));
+            log.append(2, 0, 0, new byte[]{1});
+        }
+        try (TileAppendLog log = TileAppendLog.open(path)) {
+            assertEquals(2, log.size());
+            assertArrayEquals(tileData, log.read(2, 1, 1));
+        }
+    }
+
+    private long countTempFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,52 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 瓦片像素处理工具类单元测试
+ */
+class TileImageUtilTest {
+
+    private static final int SIZE = TileImageUtil.TILE_SIZE;
+
+    @Test
+    void testDownsample_QuadrantsPlacedCorrectly() {
+        int[] red = filled(0xFFFF0000);
+        int[] blue = filled(0xFF0000FF);
+
+        int[] parent = TileImageUtil.downsample(red, blue, null, red);
+
+        assertEquals(0xFFFF0000, parent[0]);                          // 左上
+        assertEquals(0xFF0000FF, parent[SIZE - 1]);                   // 右上
+        assertEquals(0, parent[(SIZE - 1) * SIZE]);                   // 左下无数据，透明
+        assertEquals(0xFFFF0000, parent[SIZE * SIZE - 1]);            // 右下
+    }
+
+    @Test
+    void testDownsample_AlphaWeightedAverage() {
+        int[] child = new int[SIZE * SIZE];
+        // 2x2块：两个不透明白色，两个全透明
+        child[0] = 0xFFFFFFFF;
+        child[1] = 0xFFFFFFFF;
+
+        int[] parent = TileImageUtil.downsample(child, null, null, null);
+
+        // 透明像素不参与颜色平均，颜色保持白色，alpha减半
+        assertEquals(0x80FFFFFF, parent[0]);
+    }
+
+    @Test
+    void testDownsample_AllMissing() {
+        assertNull(TileImageUtil.downsample(null, null, null, null));
+    }
+
+    private static int[] filled(int argb) {
+        int[] pixels = new int[SIZE * SIZE];
+        Arrays.fill(pixels, argb);
+        return pixels;
+    }
+}
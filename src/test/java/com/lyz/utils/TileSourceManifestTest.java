@@ -0,0 +1,66 @@
+package com.lyz.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 瓦片源影像清单单元测试
+ */
+class TileSourceManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testChangedRegions_OnlyModifiedTile() throws Exception {
+        Path original = writeTiff("a.tif", 100, 70, -1);
+        Path modified = writeTiff("b.tif", 100, 70, 1);
+
+        TileSourceManifest before = TileSourceManifest.compute(original, "grid");
+        TileSourceManifest stored = TileSourceManifest.fromBytes(before.getLayout(), before.toBytes());
+        assertEquals(4, stored.getChunkCount());
+
+        // 内容相同：没有变化区域
+        assertTrue(TileSourceManifest.compute(original, "grid").changedRegions(stored).isEmpty());
+
+        // 只修改右上角分块：变化区域为该分块在影像内的部分
+        List<int[]> regions = TileSourceManifest.compute(modified, "grid").changedRegions(stored);
+        assertEquals(1, regions.size());
+        assertArrayEquals(new int[]{64, 0, 100, 64}, regions.get(0));
+    }
+
+    @Test
+    void testChangedRegions_LayoutOrSignatureChangeNotComparable() throws Exception {
+        TileSourceManifest stored = TileSourceManifest.compute(writeTiff("a.tif", 100, 70, -1), "grid");
+
+        assertNull(TileSourceManifest.compute(writeTiff("b.tif", 120, 70, -1), "grid").changedRegions(stored));
+        assertNull(TileSourceManifest.compute(writeTiff("c.tif", 100, 70, -1), "other").changedRegions(stored));
+        assertNull(stored.changedRegions(null));
+    }
+
+    /**
+     * 64x64分块的浮点影像
+     * @param modifiedCol 该列分块的取值加1，-1表示不修改
+     */
+    private Path writeTiff(String name, int width, int height, int modifiedCol) throws Exception {
+        Path tif = tempDir.resolve(name);
+        try (GeoTiffWriter writer = new GeoTiffWriter(tif, width, height, 64)) {
+            for (int row = 0; row < writer.getTilesDown(); row++) {
+                for (int col = 0; col < writer.getTilesAcross(); col++) {
+                    float[] samples = new float[64 * 64];
+                    for (int i = 0; i < samples.length; i++) {
+                        samples[i] = i + (col == modifiedCol && row == 0 ? 1 : 0);
+                    }
+                    writer.writeTile(col, row, samples);
+                }
+            }
+            writer.commit();
+        }
+        return tif;
+    }
+}